@@ -14,17 +14,22 @@
 package org.mozkito.core.apps.versions;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
-import org.apache.commons.collections4.map.UnmodifiableMap;
-
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.ObjectIdMap;
 import org.mozkito.core.libs.versions.model.Branch;
 import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Endpoint;
+import org.mozkito.core.libs.versions.repositories.GitRepository;
 import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Contract;
 import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.exec.ProcessScheduler.Priority;
 import org.mozkito.skeleton.sequel.DatabaseDumper;
 import org.mozkito.skeleton.sequel.SequelDatabase;
 
@@ -46,11 +51,17 @@ public class BranchMiner implements Runnable {
 	private final Depot                  depot;
 	
 	/** The branch head hashes. */
-	private final Map<String, Branch>    branchHeadHashes = new HashMap<String, Branch>();
+	private final ObjectIdMap<Branch>    branchHeadHashes = new ObjectIdMap<>();
 	
 	/** The branch dumper. */
 	private final DatabaseDumper<Branch> branchDumper;
 	
+	/** The branches persisted by previous runs by name. */
+	private final Map<String, Branch>    knownBranches    = new HashMap<String, Branch>();
+	
+	/** The repository used to read the references in process; null if git is used. */
+	private GitRepository                repository;
+	
 	/**
 	 * Instantiates a new branch miner.
 	 *
@@ -68,12 +79,32 @@ public class BranchMiner implements Runnable {
 	}
 	
 	/**
-	 * Gets the branch heads.
+	 * Registers the branch with the given name and head.
+	 *
+	 * @param headHash
+	 *            the head hash
+	 * @param branchName
+	 *            the branch name
+	 */
+	private void addBranch(final ObjectId headHash,
+	                       final String branchName) {
+		Branch branch = this.knownBranches.get(branchName);
+		if (branch == null) {
+			branch = new Branch(this.depot, branchName);
+			this.branchDumper.saveLater(branch);
+		}
+		
+		Asserts.notNull(this.branchHeadHashes);
+		this.branchHeadHashes.put(headHash, branch);
+	}
+	
+	/**
+	 * Gets the branches by the commit hash of their head.
 	 *
 	 * @return the branch heads
 	 */
-	public Map<String, Branch> getBranchHeads() {
-		return UnmodifiableMap.unmodifiableMap(this.branchHeadHashes);
+	public ObjectIdMap<Branch> getBranchHeads() {
+		return this.branchHeadHashes;
 	}
 	
 	/**
@@ -82,7 +113,16 @@ public class BranchMiner implements Runnable {
 	 * @see java.lang.Runnable#run()
 	 */
 	public void run() {
-		final Command command = Command.execute("git", new String[] { "ls-remote", "--heads" }, this.cloneDir);
+		if (this.repository != null) {
+			// the remote tracking branches of the clone, i.e. the heads of the depot as of the last clone or fetch
+			for (final Entry<String, ObjectId> ref : this.repository.getRefs(GraphMiner.REMOTE_REFS).entrySet()) {
+				addBranch(ref.getValue(), ref.getKey());
+			}
+			return;
+		}
+		
+		final Command command = Command.execute("git", new String[] { "ls-remote", "--heads" }, this.cloneDir,
+		                                        OutputMode.BUFFERED, Priority.HIGH);
 		
 		String line;
 		
@@ -91,17 +131,35 @@ public class BranchMiner implements Runnable {
 				continue RESULTS;
 			}
 			
-			final String headHash = line.substring(0, 40);
-			String branchName = line.substring(40).trim();
+			final ObjectId headHash = ObjectId.fromHex(line, 0);
+			String branchName = line.substring(ObjectId.HEX_LENGTH).trim();
 			Contract.asserts(branchName.startsWith(TAG));
 			branchName = branchName.substring(TAG.length());
 			
-			final Branch branch = new Branch(this.depot, branchName);
-			this.branchDumper.saveLater(branch);
-			
-			Asserts.notNull(this.branchHeadHashes);
-			this.branchHeadHashes.put(headHash, branch);
+			addBranch(headHash, branchName);
 		}
 	}
 	
+	/**
+	 * Sets the branches persisted by previous runs. Known branches are reused instead of being persisted again.
+	 *
+	 * @param branches
+	 *            the branches
+	 */
+	public void setKnownBranches(final Collection<Branch> branches) {
+		for (final Branch branch : branches) {
+			this.knownBranches.put(branch.getName(), branch);
+		}
+	}
+	
+	/**
+	 * Reads the branches from the given repository instead of running git.
+	 *
+	 * @param repository
+	 *            the repository
+	 */
+	public void setRepository(final GitRepository repository) {
+		this.repository = repository;
+	}
+	
 }
@@ -13,19 +13,34 @@
 
 package org.mozkito.core.apps.versions;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-
-import org.apache.commons.collections4.map.UnmodifiableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import org.mozkito.core.apps.versions.RenameMiner.Candidate;
 import org.mozkito.core.libs.users.IdentityCache;
 import org.mozkito.core.libs.users.model.Identity;
 import org.mozkito.core.libs.versions.ChangeType;
+import org.mozkito.core.libs.versions.Commit;
 import org.mozkito.core.libs.versions.Graph;
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.PathDictionary;
 import org.mozkito.core.libs.versions.builders.ChangeSetBuilder;
 import org.mozkito.core.libs.versions.model.ChangeSet;
 import org.mozkito.core.libs.versions.model.Depot;
@@ -35,38 +50,87 @@ import org.mozkito.libraries.logging.Logger;
 import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.io.ByteLineReader;
 import org.mozkito.skeleton.sequel.DatabaseDumper;
+import org.mozkito.skeleton.sequel.IDatabaseDumper;
 
 /**
- * The Class ChangeSetMiner.
+ * The Class ChangeSetMiner. Change sets are handed to the change set dumper and released once their revisions have
+ * been parsed; only the slim {@link Commit} of each change set is added to the graph.
  *
  * @author Sascha Just
  */
 public class ChangeSetMiner implements Runnable {
 	
+	/**
+	 * The parser used to process the output of git log.
+	 */
+	public static enum ParserMode {
+		
+		/** Reads the output line by line as strings. */
+		TEXT,
+		/** Scans the raw output bytes and decodes numbers, modes and change types in place. */
+		BYTES;
+	}
+	
+	/**
+	 * The point in time renames and copies are detected.
+	 */
+	public static enum RenameMode {
+		
+		/** Git log detects renames and copies while mining the change sets. */
+		INLINE,
+		/**
+		 * The change sets are mined without rename detection; candidates are diffed again concurrently afterwards.
+		 *
+		 * @see RenameMiner
+		 */
+		DEFERRED;
+	}
+	
 	/** The Constant END_TAG. */
 	private static final String             END_TAG               = "<<<#$@#$@<<<";
 	
 	/** The Constant START_TAG. */
 	private static final String             START_TAG             = ">>>#$@#$@>>>";
 	
+	/** The Constant END_TAG_BYTES. */
+	private static final byte[]             END_TAG_BYTES         = END_TAG.getBytes(StandardCharsets.US_ASCII);
+	
+	/** The Constant START_TAG_BYTES. */
+	private static final byte[]             START_TAG_BYTES       = START_TAG.getBytes(StandardCharsets.US_ASCII);
+	
 	/** The Constant BIN_CHANGE_INDICATOR. */
 	private static final char               BIN_CHANGE_INDICATOR  = '-';
 	
+	/** The Constant RAW_INDICATOR. */
+	private static final byte               RAW_INDICATOR         = ':';
+	
+	/** The Constant TAB. */
+	private static final byte               TAB                   = '\t';
+	
+	/**
+	 * The encoding of the output of git log. Messages are re-encoded by <code>--encoding</code>; paths are quoted to
+	 * ASCII unless <code>core.quotePath</code> is disabled, in which case they are the raw bytes git has been given,
+	 * i.e. UTF-8 on all common setups.
+	 */
+	static final Charset                    GIT_CHARSET           = StandardCharsets.UTF_8;
+	
 	/** The raw old mode offset. */
-	private static int                      RAW_OLD_MODE_OFFSET   = 1;
+	static final int                        RAW_OLD_MODE_OFFSET   = 1;
 	
 	/** The raw new mode offset. */
-	private static int                      RAW_NEW_MODE_OFFSET   = 8;
+	static final int                        RAW_NEW_MODE_OFFSET   = 8;
 	
 	/** The raw old hash offset. */
-	private static int                      RAW_OLD_HASH_OFFSET   = 15;
+	static final int                        RAW_OLD_HASH_OFFSET   = 15;
 	
 	/** The raw new hash offset. */
-	private static int                      RAW_NEW_HASH_OFFSET   = 56;
+	static final int                        RAW_NEW_HASH_OFFSET   = 56;
 	
 	/** The raw changetype offset. */
-	private static int                      RAW_CHANGETYPE_OFFSET = 97;
+	static final int                        RAW_CHANGETYPE_OFFSET = 97;
 	
 	/** The clone dir. */
 	private final File                      cloneDir;
@@ -76,17 +140,14 @@ public class ChangeSetMiner implements Runnable {
 	/** The graph. */
 	private final Graph                     graph;
 	
-	/** The change sets. */
-	private final Map<String, ChangeSet>    changeSets            = new HashMap<String, ChangeSet>();
-	
-	/** The file cache. */
-	private final Map<String, Handle>       fileCache             = new HashMap<>();
+	/** The paths of all handles. The value of a node is the id of its handle or 0 if there is none yet. */
+	private final PathDictionary            paths                 = new PathDictionary(GIT_CHARSET);
 	
 	/** The change set dumper. */
 	private final DatabaseDumper<ChangeSet> changeSetDumper;
 	
 	/** The revision dumper. */
-	private final DatabaseDumper<Revision>  revisionDumper;
+	private final IDatabaseDumper<Revision> revisionDumper;
 	
 	/** The handle dumper. */
 	private final DatabaseDumper<Handle>    handleDumper;
@@ -97,8 +158,33 @@ public class ChangeSetMiner implements Runnable {
 	/** The counter. */
 	private long                            counter               = 0;
 	
+	/** The line. */
 	private String                          line;
 	
+	/** The parser mode. */
+	private ParserMode                      parserMode            = ParserMode.TEXT;
+	
+	/** The identities persisted by previous runs. */
+	private final Collection<Identity>      knownIdentities       = new LinkedList<>();
+	
+	/** The heads mined by previous runs. Their history is excluded from git log. */
+	private final Collection<ObjectId>      excludedHeads         = new LinkedList<>();
+	
+	/** The number of skipped change sets that have been persisted by previous runs. */
+	private long                            skipped               = 0;
+	
+	/** The number of concurrent git log processes. */
+	private int                             shards                = 1;
+	
+	/** The directory the output of the shards is staged in. */
+	private File                            shardDirectory        = new File(System.getProperty("java.io.tmpdir"));
+	
+	/** The rename mode. */
+	private RenameMode                      renameMode            = RenameMode.INLINE;
+	
+	/** The change sets that may contain renames or copies; only collected in deferred rename mode. */
+	private final List<Candidate>           candidates            = new ArrayList<>();
+	
 	/**
 	 * Instantiates a new change set miner.
 	 *
@@ -118,8 +204,8 @@ public class ChangeSetMiner implements Runnable {
 	 *            the handle dumper
 	 */
 	public ChangeSetMiner(final File cloneDir, final Depot depot, final Graph graph,
-	        final DatabaseDumper<Identity> identityDumper, final DatabaseDumper<ChangeSet> changeSetDumper,
-	        final DatabaseDumper<Revision> revisionDumper, final DatabaseDumper<Handle> handleDumper) {
+	                      final DatabaseDumper<Identity> identityDumper, final DatabaseDumper<ChangeSet> changeSetDumper,
+	                      final IDatabaseDumper<Revision> revisionDumper, final DatabaseDumper<Handle> handleDumper) {
 		
 		this.cloneDir = cloneDir;
 		this.depot = depot;
@@ -133,12 +219,396 @@ public class ChangeSetMiner implements Runnable {
 	}
 	
 	/**
-	 * Gets the change sets.
+	 * Adds the arguments excluding the history of the heads mined by previous runs.
+	 *
+	 * @param arguments
+	 *            the arguments
+	 */
+	private void addExclusionArguments(final List<String> arguments) {
+		if (!this.excludedHeads.isEmpty()) {
+			// heads that have been removed from the depot in the meantime must not fail the log
+			arguments.add("--ignore-missing");
+			arguments.add("--not");
+			for (final ObjectId head : this.excludedHeads) {
+				arguments.add(head.toHex());
+			}
+		}
+	}
+	
+	/**
+	 * Adds the arguments determining the output format of git log.
+	 *
+	 * @param arguments
+	 *            the arguments
+	 */
+	private void addFormatArguments(final List<String> arguments) {
+		/*
+		 * hash tree author name author email author timestamp committer name committer email committer timestamp
+		 * subject body
+		 */
+		if (this.renameMode == RenameMode.DEFERRED) {
+			arguments.add("--no-renames");
+		} else {
+			arguments.add("--find-copies");
+		}
+		arguments.add("--raw");
+		arguments.add("--numstat");
+		arguments.add("--no-abbrev");
+		arguments.add("--encoding=" + GIT_CHARSET.name());
+		arguments.add("--format=" + START_TAG + "%n%H%n%T%n%an%n%ae%n%at%n%cn%n%ce%n%ct%n%s%n%b%n" + END_TAG);
+	}
+	
+	/**
+	 * Adds a raw entry for the current change set. Looks up the handles for source and target path and creates/dumps
+	 * them if they are unknown so far.
+	 *
+	 * @param changeType
+	 *            the change type
+	 * @param source
+	 *            the path node of the source
+	 * @param target
+	 *            the path node of the target
+	 * @param confidence
+	 *            the confidence
+	 * @param oldMode
+	 *            the old mode
+	 * @param newMode
+	 *            the new mode
+	 * @param oldHash
+	 *            the old hash
+	 * @param newHash
+	 *            the new hash
+	 * @param revisions
+	 *            the revision buffer
+	 */
+	private void addRevision(final ChangeType changeType,
+	                         final int source,
+	                         final int target,
+	                         final short confidence,
+	                         final int oldMode,
+	                         final int newMode,
+	                         final ObjectId oldHash,
+	                         final ObjectId newHash,
+	                         final RevisionBuffer revisions) {
+		revisions.add(changeType, handleId(source), handleId(target), confidence, oldMode, newMode, oldHash, newHash);
+	}
+	
+	/**
+	 * Creates the revision buffer. In deferred rename mode, the buffer collects the candidates for the rename miner.
+	 *
+	 * @return the revision buffer
+	 */
+	private RevisionBuffer createRevisionBuffer() {
+		final RevisionBuffer revisions = new RevisionBuffer(this.depot, this.revisionDumper,
+		                                                    RevisionBuffer.DEFAULT_CHUNK_SIZE);
+		if (this.renameMode == RenameMode.DEFERRED) {
+			revisions.setCandidates(this.candidates);
+		}
+		return revisions;
+	}
+	
+	/**
+	 * Decodes the object id at the given offset of the current line without materializing its hex string. The zero id
+	 * (used by git for added and deleted files) is shared.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @param from
+	 *            the offset of the hash
+	 * @return the object id
+	 */
+	private ObjectId decodeHash(final ByteLineReader reader,
+	                            final int from) {
+		return ObjectId.fromHex(reader.buffer(), reader.start() + from);
+	}
+	
+	/**
+	 * Gets the parser mode.
+	 *
+	 * @return the parser mode
+	 */
+	public ParserMode getParserMode() {
+		return this.parserMode;
+	}
+	
+	/**
+	 * Gets the id of the handle of the given path node. Creates/dumps the handle if it is unknown so far.
+	 *
+	 * @param node
+	 *            the path node
+	 * @return the handle id
+	 */
+	private long handleId(final int node) {
+		long id = this.paths.getValue(node);
+		if (id == 0) {
+			final Handle handle = new Handle(this.depot, this.paths, node);
+			this.handleDumper.saveLater(handle);
+			id = handle.id();
+			Asserts.positive(id);
+			this.paths.setValue(node, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Interns the path in the given range of the current line without materializing it. Leading and trailing whitespace
+	 * is skipped like {@link String#trim()} does.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @param from
+	 *            the offset of the path
+	 * @param to
+	 *            the offset after the path
+	 * @return the path node
+	 */
+	private int internPath(final ByteLineReader reader,
+	                       final int from,
+	                       final int to) {
+		final byte[] buffer = reader.buffer();
+		int start = reader.start() + from;
+		int end = reader.start() + to;
+		// bytes of multi byte characters are negative, hence only ASCII whitespace and control characters are skipped
+		while (start < end && buffer[start] >= 0 && buffer[start] <= ' ') {
+			++start;
+		}
+		while (end > start && buffer[end - 1] >= 0 && buffer[end - 1] <= ' ') {
+			--end;
+		}
+		return this.paths.intern(buffer, start, end);
+	}
+	
+	/**
+	 * Starts git log for the given commits. The process writes its output to the given file itself, i.e. the shards
+	 * run concurrently without a thread per shard.
+	 *
+	 * @param hashes
+	 *            the commit hashes in the order of the sequential log
+	 * @param file
+	 *            the file the output is written to
+	 * @return the future exit value of git log
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private CompletableFuture<Integer> mineShard(final List<ObjectId> hashes,
+	                                             final File file) throws IOException {
+		final List<String> arguments = new ArrayList<>();
+		arguments.add("log");
+		// keeps the order of the input, i.e. the topological order of the rev-list
+		arguments.add("--no-walk=unsorted");
+		arguments.add("--stdin");
+		addFormatArguments(arguments);
+		
+		final Command command = new Command("git", arguments.toArray(new String[0]), this.cloneDir);
+		command.redirectOutput(file);
+		command.logStdErr();
+		command.run();
+		
+		// git reads all revisions from stdin before producing any output
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(command.getInput(),
+		                                                                     StandardCharsets.US_ASCII))) {
+			for (final ObjectId hash : hashes) {
+				writer.write(hash.toHex());
+				writer.write('\n');
+			}
+		}
+		
+		return command.onExit();
+	}
+	
+	/**
+	 * Advances the reader to the next line.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @param expected
+	 *            the description of the expected line
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void nextLine(final ByteLineReader reader,
+	                      final String expected) throws IOException {
+		if (!reader.next()) {
+			throw new RuntimeException("Unexpected end of git log output. " + expected);
+		}
+	}
+	
+	/**
+	 * Parses the git log output using the configured parser.
+	 *
+	 * @param in
+	 *            the output of git log
+	 * @param identityCache
+	 *            the identity cache
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void parse(final InputStream in,
+	                   final IdentityCache identityCache) throws IOException {
+		switch (this.parserMode) {
+			case BYTES:
+				parseBytes(in, identityCache);
+				break;
+			default:
+				parseText(new BufferedReader(new InputStreamReader(in, GIT_CHARSET)), identityCache);
+				break;
+		}
+	}
+	
+	/**
+	 * Parses the git log output on byte level. Numbers, file modes and change types are decoded in place from the
+	 * reused line buffer; strings are only created for identities and messages.
+	 *
+	 * @param in
+	 *            the output of git log
+	 * @param identityCache
+	 *            the identity cache
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void parseBytes(final InputStream in,
+	                        final IdentityCache identityCache) throws IOException {
+		final RevisionBuffer revisions = createRevisionBuffer();
+		final StringBuilder bodyBuilder = new StringBuilder();
+		
+		ChangeSetBuilder changeSetBuilder;
+		ChangeSet changeSet;
+		Identity identity;
+		String idName, idEmail;
+		ObjectId commitHash;
+		
+		// the output is read as raw bytes from the process respectively the shard file
+		try (final ByteLineReader reader = new ByteLineReader(in, GIT_CHARSET)) {
+			boolean hasNext = reader.next();
+			
+			while (hasNext) {
+				if (reader.equalTo(START_TAG_BYTES)) {
+					nextLine(reader, "Awaiting commit hash.");
+				}
+				commitHash = decodeHash(reader, 0);
+				if (this.graph.getVertex(commitHash) != null) {
+					// persisted by a previous run; stops at the start tag of the next change set
+					++this.skipped;
+					hasNext = false;
+					while (!hasNext && reader.next()) {
+						hasNext = reader.equalTo(START_TAG_BYTES);
+					}
+					continue;
+				}
+				++this.counter;
+				changeSetBuilder = new ChangeSetBuilder(this.depot.id());
+				changeSetBuilder.commitHash(commitHash);
+				
+				nextLine(reader, "Awaiting tree hash.");
+				changeSetBuilder.treeHash(decodeHash(reader, 0));
+				
+				nextLine(reader, "Awaiting author name.");
+				idName = reader.isEmpty()
+				                         ? null
+				                         : reader.toString();
+				nextLine(reader, "Awaiting author email.");
+				idEmail = reader.isEmpty()
+				                          ? null
+				                          : reader.toString();
+				identity = identityCache.request(null, idName, idEmail);
+				if (identity.id() <= 0) {
+					this.identityDumper.saveLater(identity);
+				}
+				Asserts.positive(identity.id());
+				changeSetBuilder.authorId(identity);
+				
+				nextLine(reader, "Awaiting authored timestamp.");
+				if (!reader.isEmpty()) {
+					changeSetBuilder.authoredOn(Instant.ofEpochSecond(reader.parseLong(0, reader.length())));
+				}
+				
+				nextLine(reader, "Awaiting committer name.");
+				idName = reader.toString();
+				nextLine(reader, "Awaiting committer email.");
+				idEmail = reader.toString();
+				identity = identityCache.request(null, idName, idEmail);
+				if (identity.id() <= 0) {
+					this.identityDumper.saveLater(identity);
+				}
+				Asserts.positive(identity.id());
+				changeSetBuilder.committerId(identity);
+				
+				nextLine(reader, "Awaiting commit timestamp.");
+				if (!reader.isEmpty()) {
+					changeSetBuilder.committedOn(Instant.ofEpochSecond(reader.parseLong(0, reader.length())));
+				}
+				
+				nextLine(reader, "Awaiting subject.");
+				changeSetBuilder.subject(reader.toString().trim());
+				
+				bodyBuilder.setLength(0);
+				BODY: while (reader.next()) {
+					if (reader.equalTo(END_TAG_BYTES)) {
+						break BODY;
+					} else {
+						bodyBuilder.append(reader.toString().trim()).append(System.lineSeparator());
+					}
+				}
+				changeSetBuilder.body(bodyBuilder.toString().trim());
+				
+				changeSet = changeSetBuilder.create();
+				Asserts.notNull(changeSet);
+				
+				this.changeSetDumper.saveLater(changeSet);
+				revisions.begin(changeSet);
+				
+				hasNext = false;
+				REVISIONS: while (reader.next()) {
+					if (reader.equalTo(START_TAG_BYTES)) {
+						hasNext = true;
+						break REVISIONS;
+					} else if (reader.startsWith(RAW_INDICATOR)) {
+						parseRawRevision(changeSet, reader, revisions);
+					} else if (!reader.isEmpty()) {
+						parseInOutRevision(reader, revisions);
+					}
+				}
+				
+				revisions.finish();
+				
+				this.graph.addVertex(new Commit(changeSet));
+			}
+		}
+	}
+	
+	/**
+	 * Parses a numstat line from the current line of the reader.
 	 *
-	 * @return the change sets
+	 * @param reader
+	 *            the reader
+	 * @param revisions
+	 *            the revision buffer
 	 */
-	public Map<String, ChangeSet> getChangeSets() {
-		return UnmodifiableMap.unmodifiableMap(this.changeSets);
+	private void parseInOutRevision(final ByteLineReader reader,
+	                                final RevisionBuffer revisions) {
+		// format: ([1-9][0-9]*|-)\t([1-9][0-9]*|-)\tPATH_NAME
+		final int linesOutOffset = reader.indexOf(TAB, 0) + 1;
+		final int nameOffset = reader.indexOf(TAB, linesOutOffset) + 1;
+		Asserts.positive(linesOutOffset);
+		Asserts.greater(nameOffset, linesOutOffset, "Numstat line must provide lines out.");
+		
+		int lineIn, lineOut;
+		
+		if (reader.byteAt(0) == BIN_CHANGE_INDICATOR) {
+			lineIn = -1;
+		} else {
+			lineIn = reader.parseInt(0, linesOutOffset - 1);
+		}
+		
+		if (reader.byteAt(linesOutOffset) == BIN_CHANGE_INDICATOR) {
+			// binary files should not be shown as line based edited at some point
+			Asserts.equalTo(-1, lineIn);
+			lineOut = -1;
+		} else {
+			lineOut = reader.parseInt(linesOutOffset, nameOffset - 1);
+		}
+		
+		revisions.pair(lineIn, lineOut);
 	}
 	
 	/**
@@ -149,14 +619,11 @@ public class ChangeSetMiner implements Runnable {
 	 * @param line
 	 *            the line
 	 * @param revisions
-	 *            the revisions
-	 * @param i
-	 *            the i
+	 *            the revision buffer
 	 */
 	private void parseInOutRevision(final ChangeSet changeSet,
 	                                final String line,
-	                                final List<Revision> revisions,
-	                                final int i) {
+	                                final RevisionBuffer revisions) {
 		Requires.notNull(changeSet);
 		Requires.notNull(line);
 		Requires.notEmpty(line);
@@ -186,13 +653,7 @@ public class ChangeSetMiner implements Runnable {
 			lineOut = Integer.parseInt(lineOutString);
 		}
 		
-		final Revision revision = revisions.get(i);
-		
-		// the revision has to be created in the previous step
-		Asserts.notNull(revision);
-		
-		revision.setLinesIn(lineIn);
-		revision.setLinesOut(lineOut);
+		revisions.pair(lineIn, lineOut);
 	}
 	
 	/**
@@ -203,12 +664,11 @@ public class ChangeSetMiner implements Runnable {
 	 * @param line
 	 *            the line
 	 * @param revisions
-	 *            the revisions
-	 * @return the revision
+	 *            the revision buffer
 	 */
-	private Revision parseRawRevision(final ChangeSet changeSet,
-	                                  final String line,
-	                                  final List<Revision> revisions) {
+	private void parseRawRevision(final ChangeSet changeSet,
+	                              final String line,
+	                              final RevisionBuffer revisions) {
 		Requires.notNull(changeSet);
 		Requires.notNull(line);
 		Requires.notEmpty(line);
@@ -218,7 +678,7 @@ public class ChangeSetMiner implements Runnable {
 		final ChangeType changeType = ChangeType.from(line.charAt(RAW_CHANGETYPE_OFFSET));
 		Asserts.notNull(changeType, "Character '%s' does not represent a valid change type. Line: %s",
 		                String.valueOf(line.charAt(0)), line);
-		String source, target;
+		int source, target;
 		
 		short confidence = 100;
 		
@@ -232,75 +692,87 @@ public class ChangeSetMiner implements Runnable {
 			Asserts.greater(split, oldNameOffset, "Renames/Copies must provide a target.");
 			Asserts.greater(line.length(), split + 1, "Renames/Copies must provide a target.");
 			
-			source = line.substring(oldNameOffset, split).trim();
-			target = line.substring(split + 1).trim();
+			source = this.paths.intern(line.substring(oldNameOffset, split).trim());
+			target = this.paths.intern(line.substring(split + 1).trim());
 		} else {
 			final int nameOffSet = RAW_CHANGETYPE_OFFSET + 2;
-			source = line.substring(nameOffSet).trim();
+			source = this.paths.intern(line.substring(nameOffSet).trim());
 			target = source;
 		}
 		
 		final int oldMode = Integer.parseInt(line.substring(RAW_OLD_MODE_OFFSET, RAW_NEW_MODE_OFFSET - 1));
 		final int newMode = Integer.parseInt(line.substring(RAW_NEW_MODE_OFFSET, RAW_OLD_HASH_OFFSET - 1));
-		final String oldHash = line.substring(RAW_OLD_HASH_OFFSET, RAW_NEW_HASH_OFFSET - 1);
-		final String newHash = line.substring(RAW_NEW_HASH_OFFSET, RAW_CHANGETYPE_OFFSET - 1);
-		
-		if (!this.fileCache.containsKey(source)) {
-			final Handle handle = new Handle(this.depot, source);
-			this.handleDumper.saveLater(handle);
-			Asserts.positive(handle.id());
-			this.fileCache.put(source, handle);
-		}
-		
-		if (!this.fileCache.containsKey(target)) {
-			final Handle handle = new Handle(this.depot, target);
-			this.handleDumper.saveLater(handle);
-			Asserts.positive(handle.id());
-			this.fileCache.put(target, handle);
-		}
-		
-		final Revision revision = new Revision(this.depot, changeSet, changeType, this.fileCache.get(source),
-		                                       this.fileCache.get(target), confidence, oldMode, newMode, oldHash,
-		                                       newHash);
-		
-		Asserts.positive(revision.getSourceId());
-		Asserts.positive(revision.getTargetId());
-		Asserts.equalTo(revision.getSourceId(), this.fileCache.get(source).id(),
-		                "Current value '%s' vs stored in revision '%s'", revision.getSourceId(),
-		                this.fileCache.get(source).id());
-		Asserts.equalTo(revision.getTargetId(), this.fileCache.get(target).id(),
-		                "Current value '%s' vs stored in revision '%s'", revision.getSourceId(),
-		                this.fileCache.get(source).id());
+		final ObjectId oldHash = ObjectId.fromHex(line, RAW_OLD_HASH_OFFSET);
+		final ObjectId newHash = ObjectId.fromHex(line, RAW_NEW_HASH_OFFSET);
 		
-		revisions.add(revision);
-		
-		return revision;
+		addRevision(changeType, source, target, confidence, oldMode, newMode, oldHash, newHash, revisions);
 	}
 	
 	/**
-	 * {@inheritDoc}
-	 * 
-	 * @see java.lang.Runnable#run()
+	 * Parses a raw revision line from the current line of the reader.
+	 *
+	 * @param changeSet
+	 *            the change set
+	 * @param reader
+	 *            the reader
+	 * @param revisions
+	 *            the revision buffer
 	 */
-	public void run() {
-		Asserts.positive(this.depot.id());
+	private void parseRawRevision(final ChangeSet changeSet,
+	                              final ByteLineReader reader,
+	                              final RevisionBuffer revisions) {
+		Requires.notNull(changeSet);
+		Requires.notNull(reader);
+		Requires.notNull(revisions);
 		
-		final IdentityCache identityCache = new IdentityCache();
+		final ChangeType changeType = ChangeType.from((char) reader.byteAt(RAW_CHANGETYPE_OFFSET));
+		Asserts.notNull(changeType, "Character '%s' does not represent a valid change type. Line: %s",
+		                String.valueOf((char) reader.byteAt(RAW_CHANGETYPE_OFFSET)), reader);
+		int source, target;
 		
-		/*
-		 * hash tree author name author email author timestamp committer name committer email committer timestamp
-		 * subject body
-		 */
+		short confidence = 100;
 		
-		Command.execute("git", new String[] { "config", "diff.renameLimit", "999999" }, this.cloneDir).waitFor();
+		if (ChangeType.RENAMED.equals(changeType) || ChangeType.COPIED.equals(changeType)) {
+			confidence = (short) reader.parseInt(RAW_CHANGETYPE_OFFSET + 1, RAW_CHANGETYPE_OFFSET + 4);
+			// determine offset of the old file name
+			// i.e. skip 'R100\t'.length() chars from the RXXX/CXXX change type indicator
+			final int oldNameOffset = RAW_CHANGETYPE_OFFSET + 5;
+			final int split = reader.indexOf(TAB, oldNameOffset);
+			Asserts.greater(confidence, 49, "Confidence has to be at least 50%.");
+			Asserts.greater(split, oldNameOffset, "Renames/Copies must provide a target.");
+			Asserts.greater(reader.length(), split + 1, "Renames/Copies must provide a target.");
+			
+			source = internPath(reader, oldNameOffset, split);
+			target = internPath(reader, split + 1, reader.length());
+		} else {
+			source = internPath(reader, RAW_CHANGETYPE_OFFSET + 2, reader.length());
+			target = source;
+		}
 		
-		final Command command = Command.execute("git", new String[] { "log", "--branches", "--remotes", "--topo-order",
-		        "--find-copies", "--raw", "--numstat", "--no-abbrev",
-		        "--format=" + START_TAG + "%n%H%n%T%n%an%n%ae%n%at%n%cn%n%ce%n%ct%n%s%n%b%n" + END_TAG }, this.cloneDir);
+		// modes are stored with their octal digits read as decimal, like the text parser does
+		final int oldMode = reader.parseInt(RAW_OLD_MODE_OFFSET, RAW_NEW_MODE_OFFSET - 1);
+		final int newMode = reader.parseInt(RAW_NEW_MODE_OFFSET, RAW_OLD_HASH_OFFSET - 1);
+		final ObjectId oldHash = decodeHash(reader, RAW_OLD_HASH_OFFSET);
+		final ObjectId newHash = decodeHash(reader, RAW_NEW_HASH_OFFSET);
 		
+		addRevision(changeType, source, target, confidence, oldMode, newMode, oldHash, newHash, revisions);
+	}
+	
+	/**
+	 * Parses the git log output line by line.
+	 *
+	 * @param reader
+	 *            the output of git log
+	 * @param identityCache
+	 *            the identity cache
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void parseText(final BufferedReader reader,
+	                       final IdentityCache identityCache) throws IOException {
 		ChangeSetBuilder changeSetBuilder = null;
 		ChangeSet changeSet = null;
-		final List<Revision> revisions = new LinkedList<>();
+		final RevisionBuffer revisions = createRevisionBuffer();
 		
 		StringBuilder bodyBuilder = new StringBuilder();
 		
@@ -309,25 +781,32 @@ public class ChangeSetMiner implements Runnable {
 		
 		this.line = null;
 		
-		int i = 0;
-		
-		while ((this.line = command.nextOutput()) != null) {
+		while ((this.line = reader.readLine()) != null) {
 			if (START_TAG.equalsIgnoreCase(this.line)) {
-				this.line = command.nextOutput();
+				this.line = reader.readLine();
 			}
-			++this.counter;
 			Asserts.notNull(this.line, "Awaiting commit hash.");
+			final ObjectId commitHash = ObjectId.fromHex(this.line);
+			if (this.graph.getVertex(commitHash) != null) {
+				// persisted by a previous run; consumes the start tag of the next change set
+				++this.skipped;
+				while ((this.line = reader.readLine()) != null && !START_TAG.equals(this.line)) {
+					// skip
+				}
+				continue;
+			}
+			++this.counter;
 			changeSetBuilder = new ChangeSetBuilder(this.depot.id());
-			changeSetBuilder.commitHash(this.line);
+			changeSetBuilder.commitHash(commitHash);
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting tree hash.");
-			changeSetBuilder.treeHash(this.line);
+			changeSetBuilder.treeHash(ObjectId.fromHex(this.line));
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting author name.");
 			idName = this.line;
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting author email.");
 			idEmail = this.line;
 			identity = identityCache.request(null, idName.isEmpty()
@@ -342,16 +821,16 @@ public class ChangeSetMiner implements Runnable {
 			Asserts.positive(identity.id());
 			changeSetBuilder.authorId(identity);
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting authored timestamp.");
 			if (!this.line.isEmpty()) {
 				changeSetBuilder.authoredOn(Instant.ofEpochSecond(Long.parseLong(this.line)));
 			}
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting committer name.");
 			idName = this.line;
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting committer email.");
 			idEmail = this.line;
 			identity = identityCache.request(null, idName, idEmail);
@@ -361,19 +840,19 @@ public class ChangeSetMiner implements Runnable {
 			Asserts.positive(identity.id());
 			changeSetBuilder.committerId(identity);
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting commit timestamp.");
 			if (!this.line.isEmpty()) {
 				changeSetBuilder.committedOn(Instant.ofEpochSecond(Long.parseLong(this.line)));
 			}
 			
-			this.line = command.nextOutput();
+			this.line = reader.readLine();
 			Asserts.notNull(this.line, "Awaiting subject.");
 			changeSetBuilder.subject(this.line.trim());
 			
 			bodyBuilder = new StringBuilder();
 			
-			BODY: while ((this.line = command.nextOutput()) != null) {
+			BODY: while ((this.line = reader.readLine()) != null) {
 				this.line = this.line.trim();
 				if (END_TAG.equals(this.line)) {
 					break BODY;
@@ -389,42 +868,232 @@ public class ChangeSetMiner implements Runnable {
 			Asserts.notNull(changeSet);
 			
 			this.changeSetDumper.saveLater(changeSet);
+			revisions.begin(changeSet);
 			
 			// raw format (which gives us file mode before after and hash before/after) and numstat (which give us lines
 			// in/lines out) are separate blocsk
-			REVISIONS: while ((this.line = command.nextOutput()) != null) {
+			REVISIONS: while ((this.line = reader.readLine()) != null) {
 				if (START_TAG.equals(this.line)) {
 					break REVISIONS;
 				} else if (this.line.startsWith(":")) {
-					final Revision revision = parseRawRevision(changeSet, this.line, revisions);
-					Asserts.notNull(revision);
+					parseRawRevision(changeSet, this.line, revisions);
 				} else {
 					if (this.line.isEmpty()) {
 						continue REVISIONS;
 					} else {
-						parseInOutRevision(changeSet, this.line, revisions, i);
-						++i;
+						parseInOutRevision(changeSet, this.line, revisions);
 					}
 				}
 			}
 			
-			for (final Revision revision : revisions) {
-				this.revisionDumper.saveLater(revision);
-			}
-			
-			revisions.clear();
-			i = 0;
+			revisions.finish();
 			
 			assert changeSet != null; // stupid eclipse warning workaround
-			this.changeSets.put(changeSet.getCommitHash(), changeSet);
-			
-			this.graph.addVertex(changeSet);
+			this.graph.addVertex(new Commit(changeSet));
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		Asserts.positive(this.depot.id());
+		
+		final IdentityCache identityCache = new IdentityCache();
+		for (final Identity identity : this.knownIdentities) {
+			identityCache.add(identity);
+		}
+		
+		Command.execute("git", new String[] { "config", "diff.renameLimit", "999999" }, this.cloneDir).waitFor();
+		
+		try {
+			if (this.shards > 1) {
+				runSharded(identityCache);
+			} else {
+				final List<String> arguments = new ArrayList<>();
+				arguments.add("log");
+				arguments.add("--branches");
+				arguments.add("--remotes");
+				arguments.add("--topo-order");
+				addFormatArguments(arguments);
+				addExclusionArguments(arguments);
+				
+				final Command command = Command.execute("git", arguments.toArray(new String[0]), this.cloneDir,
+				                                        OutputMode.DIRECT);
+				parse(command.getStdOut(), identityCache);
+				command.waitFor();
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if (Logger.logInfo()) {
+			Logger.info("Processed '%s' changesets. Skipped '%s' known changesets.", this.counter, this.skipped);
+		}
+		
+		if (this.renameMode == RenameMode.DEFERRED) {
+			Logger.info("Spawning RenameMiner.");
+			new RenameMiner(this.cloneDir, this.depot, this.paths, this.revisionDumper, this.candidates).run();
+			this.candidates.clear();
+		}
+	}
+	
+	/**
+	 * Splits the commits of the depot into contiguous ranges of the topological order and runs one git log process per
+	 * range concurrently. The outputs are parsed in the order of the ranges, i.e. the change sets and revisions are
+	 * persisted in the same order (and with the same ids) as by a sequential run. Each range is parsed as soon as its
+	 * process and those of all preceding ranges have exited, while the following processes keep running. The outputs
+	 * are staged in the shard directory (see {@link #setShardDirectory(File)}), which has to provide room for the
+	 * complete log of the depot; each file is deleted as soon as it has been parsed.
+	 *
+	 * @param identityCache
+	 *            the identity cache
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void runSharded(final IdentityCache identityCache) throws IOException {
+		final List<String> arguments = new ArrayList<>();
+		arguments.add("rev-list");
+		arguments.add("--branches");
+		arguments.add("--remotes");
+		arguments.add("--topo-order");
+		addExclusionArguments(arguments);
+		
+		final Command revList = Command.execute("git", arguments.toArray(new String[0]), this.cloneDir,
+		                                        OutputMode.DIRECT);
+		final List<ObjectId> hashes = new ArrayList<>();
+		String output;
+		while ((output = revList.nextOutput()) != null) {
+			final ObjectId hash = ObjectId.fromHex(output);
+			if (this.graph.getVertex(hash) != null) {
+				++this.skipped;
+			} else {
+				hashes.add(hash);
+			}
 		}
+		revList.waitFor();
 		
-		command.waitFor();
+		if (hashes.isEmpty()) {
+			return;
+		}
+		
+		final int shardSize = (hashes.size() + this.shards - 1) / this.shards;
+		final List<File> files = new ArrayList<>(this.shards);
+		final List<CompletableFuture<Integer>> exits = new ArrayList<>(this.shards);
+		
+		for (int i = 0; i * shardSize < hashes.size(); ++i) {
+			final List<ObjectId> shard = hashes.subList(i * shardSize, Math.min((i + 1) * shardSize, hashes.size()));
+			// not within the clone, where a crashed run would leave untracked files behind
+			final File file = Files.createTempFile(this.shardDirectory.toPath(), "shard-" + i + "-", ".log").toFile();
+			file.deleteOnExit();
+			files.add(file);
+			exits.add(mineShard(shard, file));
+		}
 		
 		if (Logger.logInfo()) {
-			Logger.info("Processed '%s' changesets.", this.counter);
+			Logger.info("Mining '%s' changesets in '%s' shards.", hashes.size(), files.size());
+		}
+		
+		try {
+			for (int i = 0; i < files.size(); ++i) {
+				if (exits.get(i).get() != 0) {
+					throw new RuntimeException(String.format("git log failed for shard %s of depot '%s'.", i,
+					                                         this.depot.getName()));
+				}
+				try (final InputStream in = new FileInputStream(files.get(i))) {
+					parse(in, identityCache);
+				}
+				files.get(i).delete();
+			}
+		} catch (final InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Sets the heads mined by previous runs. The history of these heads is excluded from git log.
+	 *
+	 * @param excludedHeads
+	 *            the commit hashes of the heads
+	 */
+	public void setExcludedHeads(final Collection<ObjectId> excludedHeads) {
+		Requires.notNull(excludedHeads);
+		this.excludedHeads.clear();
+		this.excludedHeads.addAll(excludedHeads);
+	}
+	
+	/**
+	 * Sets the handles persisted by previous runs.
+	 *
+	 * @param handles
+	 *            the handles
+	 */
+	public void setKnownHandles(final Collection<Handle> handles) {
+		Requires.notNull(handles);
+		for (final Handle handle : handles) {
+			this.paths.setValue(this.paths.intern(handle.getPath()), handle.id());
 		}
 	}
-}
+	
+	/**
+	 * Sets the identities persisted by previous runs.
+	 *
+	 * @param identities
+	 *            the identities
+	 */
+	public void setKnownIdentities(final Collection<Identity> identities) {
+		Requires.notNull(identities);
+		this.knownIdentities.clear();
+		this.knownIdentities.addAll(identities);
+	}
+	
+	/**
+	 * Sets the parser mode.
+	 *
+	 * @param parserMode
+	 *            the new parser mode
+	 */
+	public void setParserMode(final ParserMode parserMode) {
+		Requires.notNull(parserMode);
+		this.parserMode = parserMode;
+	}
+	
+	/**
+	 * Sets the rename mode.
+	 *
+	 * @param renameMode
+	 *            the new rename mode
+	 */
+	public void setRenameMode(final RenameMode renameMode) {
+		Requires.notNull(renameMode);
+		this.renameMode = renameMode;
+	}
+	
+	/**
+	 * Sets the directory the output of the shards is staged in. Defaults to <code>java.io.tmpdir</code>.
+	 *
+	 * @param shardDirectory
+	 *            the shard directory
+	 */
+	public void setShardDirectory(final File shardDirectory) {
+		Requires.notNull(shardDirectory);
+		this.shardDirectory = shardDirectory;
+	}
+	
+	/**
+	 * Sets the number of concurrent git log processes used to mine the depot.
+	 *
+	 * @param shards
+	 *            the number of shards
+	 */
+	public void setShards(final int shards) {
+		Requires.positive(shards);
+		this.shards = shards;
+	}
+}
\ No newline at end of file
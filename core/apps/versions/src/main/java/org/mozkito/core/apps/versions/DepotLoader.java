@@ -0,0 +1,201 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.apps.versions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.commons.collections4.map.UnmodifiableMap;
+
+import org.mozkito.core.libs.users.adapters.IdentityAdapter;
+import org.mozkito.core.libs.users.model.Identity;
+import org.mozkito.core.libs.versions.Commit;
+import org.mozkito.core.libs.versions.Graph;
+import org.mozkito.core.libs.versions.ObjectIdMap;
+import org.mozkito.core.libs.versions.adapters.BranchAdapter;
+import org.mozkito.core.libs.versions.adapters.ChangeSetAdapter;
+import org.mozkito.core.libs.versions.adapters.DepotAdapter;
+import org.mozkito.core.libs.versions.adapters.GraphAdapter;
+import org.mozkito.core.libs.versions.adapters.HandleAdapter;
+import org.mozkito.core.libs.versions.model.Branch;
+import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.core.libs.versions.model.Depot;
+import org.mozkito.core.libs.versions.model.Endpoint;
+import org.mozkito.core.libs.versions.model.Handle;
+import org.mozkito.libraries.logging.Logger;
+import org.mozkito.skeleton.contracts.Asserts;
+import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.sequel.SequelDatabase;
+
+/**
+ * The DepotLoader restores the state of a depot that has been mined by a previous run: the depot itself, its branches,
+ * handles and graph (including the commits of all change sets) as well as all known identities. The miners use this
+ * state to process only commits that are not yet in the database.
+ *
+ * @author Sascha Just
+ */
+public class DepotLoader implements Runnable {
+	
+	/** The database. */
+	private final SequelDatabase       database;
+	
+	/** The depot name. */
+	private final String               depotName;
+	
+	/** The depot. */
+	private Depot                      depot;
+	
+	/** The graph. */
+	private Graph                      graph;
+	
+	/** The branches by id. */
+	private final Map<Long, Branch>    branches   = new HashMap<>();
+	
+	/** The branch heads by commit hash. */
+	private final ObjectIdMap<Branch>  heads      = new ObjectIdMap<>();
+	
+	/** The handles. */
+	private final Collection<Handle>   handles    = new LinkedList<>();
+	
+	/** The identities. */
+	private final Collection<Identity> identities = new LinkedList<>();
+	
+	/**
+	 * Instantiates a new depot loader.
+	 *
+	 * @param database
+	 *            the database
+	 * @param depotName
+	 *            the depot name
+	 */
+	public DepotLoader(final SequelDatabase database, final String depotName) {
+		Requires.notNull(database);
+		Requires.notNull(depotName);
+		
+		this.database = database;
+		this.depotName = depotName;
+	}
+	
+	/**
+	 * Gets the branches by id.
+	 *
+	 * @return the branches
+	 */
+	public Map<Long, Branch> getBranches() {
+		return UnmodifiableMap.unmodifiableMap(this.branches);
+	}
+	
+	/**
+	 * Gets the depot.
+	 *
+	 * @return the depot or null if the depot has not been mined before
+	 */
+	public Depot getDepot() {
+		return this.depot;
+	}
+	
+	/**
+	 * Gets the graph.
+	 *
+	 * @return the graph or null if the depot has not been mined before
+	 */
+	public Graph getGraph() {
+		return this.graph;
+	}
+	
+	/**
+	 * Gets the handles.
+	 *
+	 * @return the handles
+	 */
+	public Collection<Handle> getHandles() {
+		return this.handles;
+	}
+	
+	/**
+	 * Gets the branch heads of the persisted endpoints by commit hash.
+	 *
+	 * @return the heads
+	 */
+	public ObjectIdMap<Branch> getHeads() {
+		return this.heads;
+	}
+	
+	/**
+	 * Gets the identities.
+	 *
+	 * @return the identities
+	 */
+	public Collection<Identity> getIdentities() {
+		return this.identities;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		this.depot = ((DepotAdapter) this.database.getAdapter(Depot.class)).load(this.depotName);
+		
+		if (this.depot == null) {
+			Logger.info("Depot '%s' has not been mined before.", this.depotName);
+			return;
+		}
+		
+		final BranchAdapter branchAdapter = (BranchAdapter) this.database.getAdapter(Branch.class);
+		final Iterator<Branch> branchIterator = branchAdapter.load(this.depot);
+		while (branchIterator.hasNext()) {
+			final Branch branch = branchIterator.next();
+			this.branches.put(branch.id(), branch);
+		}
+		
+		this.graph = new Graph(this.depot);
+		
+		final Map<Long, Commit> commits = new HashMap<>();
+		final ChangeSetAdapter changeSetAdapter = (ChangeSetAdapter) this.database.getAdapter(ChangeSet.class);
+		for (final Commit commit : changeSetAdapter.loadCommits(this.depot)) {
+			commits.put(commit.id(), commit);
+			this.graph.addVertex(commit);
+		}
+		
+		final HandleAdapter handleAdapter = (HandleAdapter) this.database.getAdapter(Handle.class);
+		final Iterator<Handle> handleIterator = handleAdapter.load(this.depot);
+		while (handleIterator.hasNext()) {
+			this.handles.add(handleIterator.next());
+		}
+		
+		final IdentityAdapter identityAdapter = (IdentityAdapter) this.database.getAdapter(Identity.class);
+		final Iterator<Identity> identityIterator = identityAdapter.load();
+		while (identityIterator.hasNext()) {
+			this.identities.add(identityIterator.next());
+		}
+		
+		((GraphAdapter) this.database.getAdapter(Graph.class)).load(this.graph, commits, this.branches);
+		
+		for (final Endpoint endpoint : this.graph.getEndPoints()) {
+			final Commit head = commits.get(endpoint.getHeadId());
+			Asserts.notNull(head);
+			this.heads.put(head.getHash(), this.branches.get(endpoint.getBranchId()));
+		}
+		
+		if (Logger.logInfo()) {
+			Logger.info("Loaded depot '%s' with '%s' branches, '%s' changesets and '%s' handles.", this.depotName,
+			            this.branches.size(), commits.size(), this.handles.size());
+		}
+	}
+}
@@ -14,16 +14,21 @@
 package org.mozkito.core.apps.versions;
 
 import java.io.File;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import org.mozkito.core.libs.versions.Commit;
 import org.mozkito.core.libs.versions.Graph;
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.ObjectIdMap;
 import org.mozkito.core.libs.versions.model.Branch;
-import org.mozkito.core.libs.versions.model.ChangeSet;
 import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Endpoint;
+import org.mozkito.core.libs.versions.repositories.CatFileSession;
+import org.mozkito.core.libs.versions.repositories.ObjectInfo;
 import org.mozkito.skeleton.contracts.Asserts;
-import org.mozkito.skeleton.exec.Command;
 
 /**
  * The Class EndPointMiner.
@@ -33,18 +38,15 @@ import org.mozkito.skeleton.exec.Command;
 public class EndPointMiner implements Runnable {
 	
 	/** The clone dir. */
-	private final File                   cloneDir;
+	private final File                cloneDir;
 	
 	/** The branch heads. */
-	private final Map<String, Branch>    branchHeads;
-	
-	/** The change sets. */
-	private final Map<String, ChangeSet> changeSets;
+	private final ObjectIdMap<Branch> branchHeads;
 	
 	/** The depot. */
-	private final Depot                  depot;
+	private final Depot               depot;
 	
-	private final Graph                  graph;
+	private final Graph               graph;
 	
 	/**
 	 * Instantiates a new end point miner.
@@ -55,16 +57,12 @@ public class EndPointMiner implements Runnable {
 	 *            the depot
 	 * @param heads
 	 *            the heads
-	 * @param changeSets
-	 *            the change sets
 	 * @param graph
 	 *            the graph
 	 */
-	public EndPointMiner(final File cloneDir, final Depot depot, final Map<String, Branch> heads,
-	        final Map<String, ChangeSet> changeSets, final Graph graph) {
+	public EndPointMiner(final File cloneDir, final Depot depot, final ObjectIdMap<Branch> heads, final Graph graph) {
 		this.cloneDir = cloneDir;
 		this.branchHeads = heads;
-		this.changeSets = changeSets;
 		this.depot = depot;
 		this.graph = graph;
 	}
@@ -75,16 +73,29 @@ public class EndPointMiner implements Runnable {
 	 * @see java.lang.Runnable#run()
 	 */
 	public void run() {
-		for (final Entry<String, Branch> entry : this.branchHeads.entrySet()) {
-			final Command command = Command.execute("git", new String[] { "log", "--reverse", "--format=%H", "-1",
-			        GraphMiner.ORIGIN + entry.getValue().getName() }, this.cloneDir);
-			final String root = command.nextOutput();
-			
-			Asserts.containsKey(this.changeSets, root);
+		final List<ObjectId> heads = this.branchHeads.keys();
+		final List<CompletableFuture<ObjectInfo>> roots = new ArrayList<>(heads.size());
+		
+		try (final CatFileSession session = new CatFileSession(this.cloneDir, 0)) {
+			// all branches are resolved by a single cat-file process
+			for (final ObjectId head : heads) {
+				roots.add(session.info(GraphMiner.ORIGIN + this.branchHeads.get(head).getName()));
+			}
 			
-			this.graph.addEndPoint(entry.getValue(),
-			                       new Endpoint(this.depot, entry.getValue(), this.changeSets.get(entry.getKey()),
-			                                    this.changeSets.get(root)));
+			for (int i = 0; i < heads.size(); ++i) {
+				final ObjectId head = heads.get(i);
+				final Branch branch = this.branchHeads.get(head);
+				final ObjectInfo info = roots.get(i).get();
+				Asserts.notNull(info);
+				
+				final Commit root = this.graph.getVertex(info.getId());
+				
+				Asserts.notNull(root);
+				
+				this.graph.addEndPoint(branch, new Endpoint(this.depot, branch, this.graph.getVertex(head), root));
+			}
+		} catch (final InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
 		}
 	}
 	
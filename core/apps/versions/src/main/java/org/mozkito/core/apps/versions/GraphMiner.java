@@ -14,14 +14,23 @@
 package org.mozkito.core.apps.versions;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import org.mozkito.core.libs.versions.Commit;
 import org.mozkito.core.libs.versions.Graph;
 import org.mozkito.core.libs.versions.Graph.EdgeType;
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.ObjectIdMap;
 import org.mozkito.core.libs.versions.model.Branch;
-import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.core.libs.versions.repositories.CommitGraph;
+import org.mozkito.core.libs.versions.repositories.GitRepository;
+import org.mozkito.core.libs.versions.repositories.ObjectDatabase;
 import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.exec.ProcessScheduler.Priority;
 
 /**
  * The Class GraphMiner.
@@ -30,16 +39,19 @@ import org.mozkito.skeleton.exec.Command;
  */
 public class GraphMiner implements Runnable {
 	
-	static final String                  ORIGIN = "origin/";
+	static final String   ORIGIN      = "origin/";
+	
+	/** The Constant REMOTE_REFS. The prefix of the remote tracking branches. */
+	static final String   REMOTE_REFS = "refs/remotes/" + ORIGIN;
 	
 	/** The clone dir. */
-	private final File                   cloneDir;
+	private final File    cloneDir;
 	
 	/** The graph. */
-	private final Graph                  graph;
+	private final Graph   graph;
 	
-	/** The change sets. */
-	private final Map<String, ChangeSet> changeSets;
+	/** The repository used to walk the history in process; null if git is used. */
+	private GitRepository repository;
 	
 	/**
 	 * Instantiates a new graph miner.
@@ -48,13 +60,102 @@ public class GraphMiner implements Runnable {
 	 *            the clone dir
 	 * @param graph
 	 *            the graph
-	 * @param changeSets
-	 *            the change sets
 	 */
-	public GraphMiner(final File cloneDir, final Graph graph, final Map<String, ChangeSet> changeSets) {
+	public GraphMiner(final File cloneDir, final Graph graph) {
 		this.cloneDir = cloneDir;
 		this.graph = graph;
-		this.changeSets = changeSets;
+	}
+	
+	/**
+	 * Gets the commit of the hash with the given index within the line.
+	 *
+	 * @param line
+	 *            the line
+	 * @param index
+	 *            the index of the hash
+	 * @return the commit
+	 */
+	private Commit commit(final String line,
+	                      final int index) {
+		return commit(ObjectId.fromHex(line, index * (ObjectId.HEX_LENGTH + 1)));
+	}
+	
+	/**
+	 * Gets the commit of the given hash.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @return the commit
+	 */
+	private Commit commit(final ObjectId hash) {
+		final Commit commit = this.graph.getVertex(hash);
+		Asserts.notNull(commit, "ChangeSet '%s' is not known to the graph and hasn't been seen during mining.", hash);
+		return commit;
+	}
+	
+	/**
+	 * Adds the edges between the given commit and its parents to the graph.
+	 *
+	 * @param branch
+	 *            the branch
+	 * @param hash
+	 *            the hash of the commit
+	 * @param parents
+	 *            the parents of the commit
+	 * @return the commit
+	 */
+	private Commit link(final Branch branch,
+	                    final ObjectId hash,
+	                    final ObjectId[] parents) {
+		final Commit child = commit(hash);
+		
+		child.addBranchId(branch.id());
+		
+		if (parents.length > 0) {
+			this.graph.addEdge(commit(parents[0]), child, parents.length == 1
+			                                                                 ? EdgeType.FORWARD
+			                                                                 : EdgeType.BRANCH, branch);
+			
+			for (int i = 1; i < parents.length; ++i) {
+				this.graph.addEdge(commit(parents[i]), child, EdgeType.MERGE, branch);
+			}
+		}
+		
+		return child;
+	}
+	
+	/**
+	 * Adds the edges of the given branch as reported by git log.
+	 *
+	 * @param branch
+	 *            the branch
+	 */
+	private void mineLog(final Branch branch) {
+		final Command command = Command.execute("git", new String[] { "log", "--no-abbrev", "--format=%H %P",
+		        ORIGIN + branch.getName() }, this.cloneDir, OutputMode.DIRECT, Priority.HIGH);
+		
+		String line;
+		while ((line = command.nextOutput()) != null) {
+			// the hashes are separated by single spaces; they are decoded in place instead of splitting the line
+			final int hashes = (line.length() + 1) / (ObjectId.HEX_LENGTH + 1);
+			final Commit child = commit(line, 0);
+			
+			child.addBranchId(branch.id());
+			
+			if (hashes == 1) {
+				// found root
+			} else {
+				Asserts.greater(hashes, 1, "There has to be a parent at this point.");
+				
+				this.graph.addEdge(commit(line, 1), child, hashes == 2
+				                                                      ? EdgeType.FORWARD
+				                                                      : EdgeType.BRANCH, branch);
+				
+				for (int i = 2; i < hashes; ++i) {
+					this.graph.addEdge(commit(line, i), child, EdgeType.MERGE, branch);
+				}
+			}
+		}
 	}
 	
 	/**
@@ -63,38 +164,69 @@ public class GraphMiner implements Runnable {
 	 * @see java.lang.Runnable#run()
 	 */
 	public void run() {
+		final Map<String, ObjectId> heads = this.repository != null
+		                                                           ? this.repository.getRefs(REMOTE_REFS)
+		                                                           : null;
+		
 		for (final Branch branch : this.graph.getBranches()) {
+			if (heads != null) {
+				final ObjectId head = heads.get(branch.getName());
+				Asserts.notNull(head, "Branch '%s' is not known to the repository.", branch.getName());
+				walk(branch, head);
+			} else {
+				mineLog(branch);
+			}
+		}
+	}
+	
+	/**
+	 * Walks the history in the given repository instead of running git log.
+	 *
+	 * @param repository
+	 *            the repository
+	 */
+	public void setRepository(final GitRepository repository) {
+		this.repository = repository;
+	}
+	
+	/**
+	 * Adds the edges of the given branch by walking the history in process. Parents and generation numbers are looked
+	 * up in the commit-graph of the repository; commits that are not covered by the commit-graph (e.g. fetched after it
+	 * has been written) are read from the object database.
+	 *
+	 * @param branch
+	 *            the branch
+	 * @param head
+	 *            the head of the branch
+	 */
+	private void walk(final Branch branch,
+	                  final ObjectId head) {
+		final ObjectDatabase objectDatabase = this.repository.getObjectDatabase();
+		final CommitGraph commitGraph = objectDatabase.getCommitGraph();
+		
+		final ObjectIdMap<Boolean> seen = new ObjectIdMap<>();
+		final List<ObjectId> stack = new ArrayList<>();
+		stack.add(head);
+		seen.put(head, Boolean.TRUE);
+		
+		while (!stack.isEmpty()) {
+			final ObjectId hash = stack.remove(stack.size() - 1);
+			final int position = commitGraph != null
+			                                        ? commitGraph.find(hash)
+			                                        : -1;
+			final ObjectId[] parents;
 			
-			final Command command = Command.execute("git", new String[] { "log", "--no-abbrev", "--format=%H %P",
-			        ORIGIN + branch.getName() }, this.cloneDir);
+			if (position >= 0) {
+				parents = commitGraph.getParents(position);
+				link(branch, hash, parents).setGeneration(commitGraph.getGeneration(position));
+			} else {
+				parents = objectDatabase.readCommit(hash).getParents();
+				link(branch, hash, parents);
+			}
 			
-			String line;
-			while ((line = command.nextOutput()) != null) {
-				final String[] split = line.trim().split("\\s+");
-				
-				this.changeSets.get(split[0]).addBranchId(branch.id());
-				
-				if (split.length == 1) {
-					// found root
-				} else {
-					Asserts.greater(split.length, 1, "There has to be a parent at this point.");
-					
-					Asserts.containsKey(this.changeSets, split[0],
-					                    "ChangeSet '%s' is not known to the graph and hasn't been seen during mining.",
-					                    split[0]);
-					Asserts.containsKey(this.changeSets, split[1],
-					                    "ChangeSet '%s' is not known to the graph and hasn't been seen during mining.",
-					                    split[1]);
-					
-					this.graph.addEdge(this.changeSets.get(split[1]), this.changeSets.get(split[0]),
-					                   split.length == 2
-					                                    ? EdgeType.FORWARD
-					                                    : EdgeType.BRANCH, branch);
-					
-					for (int i = 2; i < split.length; ++i) {
-						this.graph.addEdge(this.changeSets.get(split[i]), this.changeSets.get(split[0]),
-						                   EdgeType.MERGE, branch);
-					}
+			for (final ObjectId parent : parents) {
+				if (seen.put(parent, Boolean.TRUE) == null) {
+					stack.add(parent);
 				}
 			}
 		}
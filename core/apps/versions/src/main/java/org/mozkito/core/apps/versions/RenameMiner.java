@@ -0,0 +1,432 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.apps.versions;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.mozkito.core.libs.versions.ChangeType;
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.ObjectIdMap;
+import org.mozkito.core.libs.versions.PathDictionary;
+import org.mozkito.core.libs.versions.model.Depot;
+import org.mozkito.core.libs.versions.model.Revision;
+import org.mozkito.libraries.logging.Logger;
+import org.mozkito.skeleton.contracts.Asserts;
+import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.sequel.IDatabaseDumper;
+
+/**
+ * The second phase of the deferred rename detection. The change sets are mined without rename and copy detection
+ * first, i.e. renames show up as a deleted and an added file and copies as an added file. Only the change sets that
+ * add files and delete or modify others (the possible sources) can contain renames or copies; these candidates are
+ * diffed again with <code>--find-copies</code> by concurrent git processes. The added revisions are upgraded to
+ * {@link ChangeType#RENAMED} and {@link ChangeType#COPIED} in place and the deleted revisions of renamed files are
+ * removed, i.e. the result matches a single pass with copy detection.
+ *
+ * @author Sascha Just
+ */
+public class RenameMiner implements Runnable {
+	
+	/**
+	 * A change set that may contain renames or copies along with the ids of its added and deleted revisions. The
+	 * revisions are kept as pairs of the id of the target handle and the id of the revision, i.e. the candidates of the
+	 * whole history hold neither the change sets nor the revisions.
+	 */
+	static class Candidate {
+		
+		/** The commit hash. */
+		private final ObjectId hash;
+		
+		/** The change set id. */
+		private final long     changeSetId;
+		
+		/** The handle ids and revision ids of the added revisions, alternately; the handle id is 0 once upgraded. */
+		private final long[]   added;
+		
+		/** The handle ids and revision ids of the deleted revisions, alternately; the handle id is 0 once removed. */
+		private final long[]   deleted;
+		
+		/**
+		 * Instantiates a new candidate.
+		 *
+		 * @param hash
+		 *            the commit hash
+		 * @param changeSetId
+		 *            the change set id
+		 * @param added
+		 *            the handle ids and revision ids of the added revisions, alternately
+		 * @param deleted
+		 *            the handle ids and revision ids of the deleted revisions, alternately
+		 */
+		Candidate(final ObjectId hash, final long changeSetId, final long[] added, final long[] deleted) {
+			Requires.notNull(hash);
+			Requires.positive(changeSetId);
+			Requires.notNull(added);
+			Requires.notNull(deleted);
+			
+			this.hash = hash;
+			this.changeSetId = changeSetId;
+			this.added = added;
+			this.deleted = deleted;
+		}
+	}
+	
+	/**
+	 * A rename or copy reported by git.
+	 */
+	private static class Detection {
+		
+		/** The commit hash. */
+		private final ObjectId   hash;
+		
+		/** The change type. */
+		private final ChangeType changeType;
+		
+		/** The confidence. */
+		private final short      confidence;
+		
+		/** The source path. */
+		private final String     source;
+		
+		/** The target path. */
+		private final String     target;
+		
+		/** The old mode. */
+		private final int        oldMode;
+		
+		/** The new mode. */
+		private final int        newMode;
+		
+		/** The old hash. */
+		private final ObjectId   oldHash;
+		
+		/** The new hash. */
+		private final ObjectId   newHash;
+		
+		/** The lines in. */
+		private int              linesIn;
+		
+		/** The lines out. */
+		private int              linesOut;
+		
+		/**
+		 * Parses the given raw line of a rename or copy.
+		 *
+		 * @param hash
+		 *            the commit hash
+		 * @param changeType
+		 *            the change type
+		 * @param line
+		 *            the line
+		 */
+		private Detection(final ObjectId hash, final ChangeType changeType, final String line) {
+			final int offset = ChangeSetMiner.RAW_CHANGETYPE_OFFSET;
+			// i.e. skip 'R100\t'.length() chars from the RXXX/CXXX change type indicator
+			final int split = line.indexOf('\t', offset + 5);
+			Asserts.greater(split, offset + 5, "Renames/Copies must provide a target.");
+			
+			this.hash = hash;
+			this.changeType = changeType;
+			this.confidence = Short.parseShort(line.substring(offset + 1, offset + 4));
+			this.source = line.substring(offset + 5, split).trim();
+			this.target = line.substring(split + 1).trim();
+			this.oldMode = Integer.parseInt(line.substring(ChangeSetMiner.RAW_OLD_MODE_OFFSET,
+			                                               ChangeSetMiner.RAW_NEW_MODE_OFFSET - 1));
+			this.newMode = Integer.parseInt(line.substring(ChangeSetMiner.RAW_NEW_MODE_OFFSET,
+			                                               ChangeSetMiner.RAW_OLD_HASH_OFFSET - 1));
+			this.oldHash = ObjectId.fromHex(line, ChangeSetMiner.RAW_OLD_HASH_OFFSET);
+			this.newHash = ObjectId.fromHex(line, ChangeSetMiner.RAW_NEW_HASH_OFFSET);
+		}
+	}
+	
+	/**
+	 * Finds the revision with the given handle and removes it from the pairs.
+	 *
+	 * @param revisions
+	 *            the handle ids and revision ids, alternately
+	 * @param handleId
+	 *            the id of the handle
+	 * @return the index of the id of the revision or -1 if there is none
+	 */
+	private static int remove(final long[] revisions,
+	                          final long handleId) {
+		for (int i = 0; i < revisions.length; i += 2) {
+			if (revisions[i] == handleId) {
+				revisions[i] = 0;
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+	
+	/** The clone dir. */
+	private final File                      cloneDir;
+	
+	/** The depot. */
+	private final Depot                     depot;
+	
+	/** The paths and the ids of their handles. */
+	private final PathDictionary            paths;
+	
+	/** The revision dumper. */
+	private final IDatabaseDumper<Revision> revisionDumper;
+	
+	/** The candidates. */
+	private final Collection<Candidate>     candidates;
+	
+	/** The number of concurrent git processes. */
+	private int                             workers = Runtime.getRuntime().availableProcessors();
+	
+	/** The number of upgraded revisions. */
+	private long                            counter = 0;
+	
+	/**
+	 * Instantiates a new rename miner.
+	 *
+	 * @param cloneDir
+	 *            the clone dir
+	 * @param depot
+	 *            the depot
+	 * @param paths
+	 *            the paths and the ids of their handles
+	 * @param revisionDumper
+	 *            the revision dumper
+	 * @param candidates
+	 *            the candidates
+	 */
+	public RenameMiner(final File cloneDir, final Depot depot, final PathDictionary paths,
+	                   final IDatabaseDumper<Revision> revisionDumper, final Collection<Candidate> candidates) {
+		Requires.notNull(cloneDir);
+		Requires.notNull(depot);
+		Requires.notNull(paths);
+		Requires.notNull(revisionDumper);
+		Requires.notNull(candidates);
+		
+		this.cloneDir = cloneDir;
+		this.depot = depot;
+		this.paths = paths;
+		this.revisionDumper = revisionDumper;
+		this.candidates = candidates;
+	}
+	
+	/**
+	 * Runs git log with copy detection for the given commits.
+	 *
+	 * @param hashes
+	 *            the commit hashes
+	 * @return the renames and copies
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private List<Detection> detect(final List<ObjectId> hashes) throws IOException {
+		final Command command = new Command("git", new String[] { "log", "--no-walk=unsorted", "--stdin",
+		        "--find-copies", "--raw", "--numstat", "--no-abbrev", "--format=%H" }, this.cloneDir);
+		command.setOutputMode(OutputMode.DIRECT);
+		// the paths are looked up in the dictionary of the change set miner, i.e. have to be decoded alike
+		command.setCharset(ChangeSetMiner.GIT_CHARSET);
+		command.run();
+		
+		// git reads all revisions from stdin before producing any output
+		try (final Writer writer = new BufferedWriter(new OutputStreamWriter(command.getInput(),
+		                                                                     StandardCharsets.US_ASCII))) {
+			for (final ObjectId hash : hashes) {
+				writer.write(hash.toHex());
+				writer.write('\n');
+			}
+		}
+		
+		final List<Detection> detections = new ArrayList<>();
+		// the raw lines of the current commit; null for the ones that are neither renames nor copies
+		final List<Detection> raws = new ArrayList<>();
+		ObjectId hash = null;
+		int cursor = 0;
+		
+		String line;
+		while ((line = command.nextOutput()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			} else if (line.charAt(0) == ':') {
+				final ChangeType changeType = ChangeType.from(line.charAt(ChangeSetMiner.RAW_CHANGETYPE_OFFSET));
+				if (ChangeType.RENAMED.equals(changeType) || ChangeType.COPIED.equals(changeType)) {
+					final Detection detection = new Detection(hash, changeType, line);
+					detections.add(detection);
+					raws.add(detection);
+				} else {
+					raws.add(null);
+				}
+			} else if (line.indexOf('\t') >= 0) {
+				// numstat lines are emitted in the order of the raw lines
+				Asserts.less(cursor, raws.size(), "Numstat line without corresponding raw entry.");
+				final Detection detection = raws.get(cursor++);
+				if (detection != null) {
+					final String[] counts = line.split("\t", 3);
+					// binary files have no line counts
+					detection.linesIn = counts[0].equals("-")
+					                                         ? -1
+					                                         : Integer.parseInt(counts[0]);
+					detection.linesOut = counts[1].equals("-")
+					                                          ? -1
+					                                          : Integer.parseInt(counts[1]);
+				}
+			} else {
+				hash = ObjectId.fromHex(line);
+				raws.clear();
+				cursor = 0;
+			}
+		}
+		command.waitFor();
+		
+		if (command.exitValue() != 0) {
+			throw new RuntimeException(String.format("git log failed to detect renames of depot '%s'.",
+			                                         this.depot.getName()));
+		}
+		
+		return detections;
+	}
+	
+	/**
+	 * Gets the number of revisions upgraded to renames or copies.
+	 *
+	 * @return the counter
+	 */
+	public long getCounter() {
+		return this.counter;
+	}
+	
+	/**
+	 * Gets the id of the handle of the given path.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the handle id
+	 */
+	private long handleId(final String path) {
+		final long id = this.paths.getValue(this.paths.intern(path));
+		Asserts.positive(id);
+		return id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		if (this.candidates.isEmpty()) {
+			return;
+		}
+		
+		final ObjectIdMap<Candidate> byHash = new ObjectIdMap<>();
+		final List<ObjectId> hashes = new ArrayList<>(this.candidates.size());
+		for (final Candidate candidate : this.candidates) {
+			byHash.put(candidate.hash, candidate);
+			hashes.add(candidate.hash);
+		}
+		
+		final int shardSize = (hashes.size() + this.workers - 1) / this.workers;
+		final ExecutorService executor = Executors.newFixedThreadPool(this.workers);
+		final List<Future<List<Detection>>> results = new ArrayList<>(this.workers);
+		
+		for (int i = 0; i * shardSize < hashes.size(); ++i) {
+			final List<ObjectId> shard = hashes.subList(i * shardSize, Math.min((i + 1) * shardSize, hashes.size()));
+			results.add(executor.submit(() -> detect(shard)));
+		}
+		executor.shutdown();
+		
+		if (Logger.logInfo()) {
+			Logger.info("Detecting renames and copies in '%s' candidate changesets with '%s' workers.", hashes.size(),
+			            results.size());
+		}
+		
+		try {
+			for (final Future<List<Detection>> result : results) {
+				for (final Detection detection : result.get()) {
+					upgrade(byHash.get(detection.hash), detection);
+				}
+			}
+		} catch (final InterruptedException | ExecutionException e) {
+			executor.shutdownNow();
+			throw new RuntimeException(e);
+		}
+		
+		if (Logger.logInfo()) {
+			Logger.info("Upgraded '%s' revisions to renames and copies.", this.counter);
+		}
+	}
+	
+	/**
+	 * Sets the number of concurrent git processes.
+	 *
+	 * @param workers
+	 *            the number of workers
+	 */
+	public void setWorkers(final int workers) {
+		Requires.positive(workers);
+		this.workers = workers;
+	}
+	
+	/**
+	 * Replaces the added revision of the target by the rename or copy. The deleted revision of a renamed source is
+	 * removed.
+	 *
+	 * @param candidate
+	 *            the candidate
+	 * @param detection
+	 *            the detection
+	 */
+	private void upgrade(final Candidate candidate,
+	                     final Detection detection) {
+		Asserts.notNull(candidate, "Change set '%s' is not a candidate.", detection.hash);
+		
+		final long sourceId = handleId(detection.source);
+		final long targetId = handleId(detection.target);
+		
+		final int added = remove(candidate.added, targetId);
+		Asserts.notNegative(added, "Change set '%s' does not add '%s'.", detection.hash, detection.target);
+		
+		final Revision revision = new Revision(this.depot, candidate.changeSetId, detection.changeType, sourceId,
+		                                       targetId, detection.confidence, detection.oldMode, detection.newMode,
+		                                       detection.oldHash, detection.newHash);
+		revision.setLinesIn(detection.linesIn);
+		revision.setLinesOut(detection.linesOut);
+		revision.id(candidate.added[added]);
+		this.revisionDumper.updateLater(revision);
+		++this.counter;
+		
+		if (ChangeType.RENAMED.equals(detection.changeType)) {
+			final int deleted = remove(candidate.deleted, sourceId);
+			Asserts.notNegative(deleted, "Change set '%s' does not delete '%s'.", detection.hash, detection.source);
+			// only the id of a revision is needed to delete it
+			final Revision source = new Revision(this.depot, candidate.changeSetId, ChangeType.DELETED, sourceId,
+			                                     sourceId, (short) 100, detection.oldMode, 0, detection.oldHash,
+			                                     ObjectId.ZERO);
+			source.id(candidate.deleted[deleted]);
+			this.revisionDumper.deleteLater(source);
+		}
+	}
+}
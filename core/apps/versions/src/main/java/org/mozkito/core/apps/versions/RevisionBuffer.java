@@ -0,0 +1,359 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.apps.versions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.mozkito.core.apps.versions.RenameMiner.Candidate;
+import org.mozkito.core.libs.versions.ChangeType;
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.core.libs.versions.model.Depot;
+import org.mozkito.core.libs.versions.model.Revision;
+import org.mozkito.skeleton.contracts.Asserts;
+import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.sequel.IDatabaseDumper;
+
+/**
+ * Assembles the revisions of a single change set from the <code>--raw</code> and <code>--numstat</code> blocks of git
+ * log. Git emits both blocks in the same order, so the n-th numstat line belongs to the n-th raw line. Raw entries are
+ * kept in parallel arrays until their numstat line arrives; the completed revisions are handed to the revision dumper
+ * in chunks of bounded size.
+ *
+ * @author Sascha Just
+ */
+public class RevisionBuffer {
+	
+	/** The Constant DEFAULT_CHUNK_SIZE. */
+	public static final int                 DEFAULT_CHUNK_SIZE = 1000;
+	
+	/** The Constant INITIAL_CAPACITY. */
+	private static final int                INITIAL_CAPACITY   = 64;
+	
+	/** The mask of added revisions. */
+	private static final short              ADDED              = ChangeType.ADDED.toMask();
+	
+	/** The mask of deleted revisions. */
+	private static final short              DELETED            = ChangeType.DELETED.toMask();
+	
+	/** The depot. */
+	private final Depot                     depot;
+	
+	/** The revision dumper. */
+	private final IDatabaseDumper<Revision> revisionDumper;
+	
+	/** The chunk size. */
+	private final int                       chunkSize;
+	
+	/** The completed revisions not yet handed to the dumper. */
+	private final List<Revision>            chunk;
+	
+	/** The change set. */
+	private ChangeSet                       changeSet;
+	
+	/** The change types. */
+	private ChangeType[]                    changeTypes        = new ChangeType[INITIAL_CAPACITY];
+	
+	/** The source handle ids. */
+	private long[]                          sourceIds          = new long[INITIAL_CAPACITY];
+	
+	/** The target handle ids. */
+	private long[]                          targetIds          = new long[INITIAL_CAPACITY];
+	
+	/** The confidences. */
+	private short[]                         confidences        = new short[INITIAL_CAPACITY];
+	
+	/** The old modes. */
+	private int[]                           oldModes           = new int[INITIAL_CAPACITY];
+	
+	/** The new modes. */
+	private int[]                           newModes           = new int[INITIAL_CAPACITY];
+	
+	/** The old hashes. */
+	private ObjectId[]                      oldHashes          = new ObjectId[INITIAL_CAPACITY];
+	
+	/** The new hashes. */
+	private ObjectId[]                      newHashes          = new ObjectId[INITIAL_CAPACITY];
+	
+	/** The number of raw entries of the current change set. */
+	private int                             size               = 0;
+	
+	/** The index of the next raw entry to be paired with a numstat line. */
+	private int                             cursor             = 0;
+	
+	/** The number of revisions handed to the dumper. */
+	private long                            counter            = 0;
+	
+	/** The collected rename candidates; null if candidates are not collected. */
+	private Collection<Candidate>           candidates;
+	
+	/** The target handle ids and revision ids of the added revisions of the current change set, alternately. */
+	private long[]                          added              = new long[2 * INITIAL_CAPACITY];
+	
+	/** The number of used elements of {@link #added}. */
+	private int                             addedSize          = 0;
+	
+	/** The target handle ids and revision ids of the deleted revisions of the current change set, alternately. */
+	private long[]                          deleted            = new long[2 * INITIAL_CAPACITY];
+	
+	/** The number of used elements of {@link #deleted}. */
+	private int                             deletedSize        = 0;
+	
+	/** Whether the current change set modifies files, i.e. has possible sources of copies. */
+	private boolean                         modified           = false;
+	
+	/**
+	 * Instantiates a new revision buffer.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @param revisionDumper
+	 *            the revision dumper
+	 * @param chunkSize
+	 *            the number of revisions handed to the dumper at once
+	 */
+	public RevisionBuffer(final Depot depot, final IDatabaseDumper<Revision> revisionDumper, final int chunkSize) {
+		Requires.notNull(depot);
+		Requires.notNull(revisionDumper);
+		Requires.positive(chunkSize);
+		
+		this.depot = depot;
+		this.revisionDumper = revisionDumper;
+		this.chunkSize = chunkSize;
+		this.chunk = new ArrayList<>(chunkSize);
+	}
+	
+	/**
+	 * Adds a raw entry.
+	 *
+	 * @param changeType
+	 *            the change type
+	 * @param sourceId
+	 *            the source handle id
+	 * @param targetId
+	 *            the target handle id
+	 * @param confidence
+	 *            the confidence
+	 * @param oldMode
+	 *            the old mode
+	 * @param newMode
+	 *            the new mode
+	 * @param oldHash
+	 *            the old hash
+	 * @param newHash
+	 *            the new hash
+	 */
+	public void add(final ChangeType changeType,
+	                final long sourceId,
+	                final long targetId,
+	                final short confidence,
+	                final int oldMode,
+	                final int newMode,
+	                final ObjectId oldHash,
+	                final ObjectId newHash) {
+		Requires.notNull(this.changeSet, "No change set has been started.");
+		
+		if (this.size == this.changeTypes.length) {
+			grow();
+		}
+		
+		this.changeTypes[this.size] = changeType;
+		this.sourceIds[this.size] = sourceId;
+		this.targetIds[this.size] = targetId;
+		this.confidences[this.size] = confidence;
+		this.oldModes[this.size] = oldMode;
+		this.newModes[this.size] = newMode;
+		this.oldHashes[this.size] = oldHash;
+		this.newHashes[this.size] = newHash;
+		++this.size;
+	}
+	
+	/**
+	 * Starts the assembly of the revisions of the given change set.
+	 *
+	 * @param changeSet
+	 *            the change set
+	 */
+	public void begin(final ChangeSet changeSet) {
+		Requires.notNull(changeSet);
+		Requires.positive(changeSet.id());
+		Asserts.isNull(this.changeSet, "The previous change set has not been finished.");
+		
+		this.changeSet = changeSet;
+	}
+	
+	/**
+	 * Creates the revision for the raw entry with the given index and queues it for the dumper.
+	 *
+	 * @param index
+	 *            the index
+	 * @param linesIn
+	 *            the lines in
+	 * @param linesOut
+	 *            the lines out
+	 */
+	private void complete(final int index,
+	                      final int linesIn,
+	                      final int linesOut) {
+		final Revision revision = new Revision(this.depot, this.changeSet.id(), this.changeTypes[index],
+		                                       this.sourceIds[index], this.targetIds[index], this.confidences[index],
+		                                       this.oldModes[index], this.newModes[index], this.oldHashes[index],
+		                                       this.newHashes[index]);
+		revision.setLinesIn(linesIn);
+		revision.setLinesOut(linesOut);
+		
+		if (this.candidates != null && !ChangeType.ADDED.equals(this.changeTypes[index])
+		        && !ChangeType.DELETED.equals(this.changeTypes[index])) {
+			this.modified = true;
+		}
+		
+		// release the references early, giant commits keep the arrays alive until the next change set
+		this.oldHashes[index] = null;
+		this.newHashes[index] = null;
+		this.changeTypes[index] = null;
+		
+		this.chunk.add(revision);
+		if (this.chunk.size() >= this.chunkSize) {
+			flush();
+		}
+	}
+	
+	/**
+	 * Finishes the current change set. Raw entries without a numstat line are persisted without line counts.
+	 */
+	public void finish() {
+		Requires.notNull(this.changeSet, "No change set has been started.");
+		
+		while (this.cursor < this.size) {
+			complete(this.cursor++, 0, 0);
+		}
+		flush();
+		
+		if (this.candidates != null) {
+			// renames need a deleted source, copies a deleted or modified one
+			if (this.addedSize > 0 && (this.deletedSize > 0 || this.modified)) {
+				this.candidates.add(new Candidate(this.changeSet.getCommitHash(), this.changeSet.id(),
+				                                  Arrays.copyOf(this.added, this.addedSize),
+				                                  Arrays.copyOf(this.deleted, this.deletedSize)));
+			}
+			this.addedSize = 0;
+			this.deletedSize = 0;
+			this.modified = false;
+		}
+		
+		this.size = 0;
+		this.cursor = 0;
+		this.changeSet = null;
+	}
+	
+	/**
+	 * Hands the completed revisions to the dumper. The dumper assigns the ids, i.e. the added and deleted revisions of
+	 * rename candidates are recorded afterwards.
+	 */
+	private void flush() {
+		if (!this.chunk.isEmpty()) {
+			this.revisionDumper.saveLater(this.chunk);
+			this.counter += this.chunk.size();
+			
+			if (this.candidates != null) {
+				for (final Revision revision : this.chunk) {
+					if (revision.getChangeType() == ADDED) {
+						this.added = record(this.added, this.addedSize, revision);
+						this.addedSize += 2;
+					} else if (revision.getChangeType() == DELETED) {
+						this.deleted = record(this.deleted, this.deletedSize, revision);
+						this.deletedSize += 2;
+					}
+				}
+			}
+			this.chunk.clear();
+		}
+	}
+	
+	/**
+	 * Gets the number of revisions handed to the dumper so far.
+	 *
+	 * @return the counter
+	 */
+	public long getCounter() {
+		return this.counter;
+	}
+	
+	/**
+	 * Grows the arrays.
+	 */
+	private void grow() {
+		final int capacity = this.changeTypes.length * 2;
+		this.changeTypes = Arrays.copyOf(this.changeTypes, capacity);
+		this.sourceIds = Arrays.copyOf(this.sourceIds, capacity);
+		this.targetIds = Arrays.copyOf(this.targetIds, capacity);
+		this.confidences = Arrays.copyOf(this.confidences, capacity);
+		this.oldModes = Arrays.copyOf(this.oldModes, capacity);
+		this.newModes = Arrays.copyOf(this.newModes, capacity);
+		this.oldHashes = Arrays.copyOf(this.oldHashes, capacity);
+		this.newHashes = Arrays.copyOf(this.newHashes, capacity);
+	}
+	
+	/**
+	 * Pairs the next numstat line with its raw entry.
+	 *
+	 * @param linesIn
+	 *            the lines in
+	 * @param linesOut
+	 *            the lines out
+	 */
+	public void pair(final int linesIn,
+	                 final int linesOut) {
+		// the raw entry has to be created in the previous step
+		Asserts.less(this.cursor, this.size, "Numstat line without corresponding raw entry.");
+		complete(this.cursor++, linesIn, linesOut);
+	}
+	
+	/**
+	 * Appends the target handle id and the id of the given revision to the given pairs.
+	 *
+	 * @param pairs
+	 *            the target handle ids and revision ids, alternately
+	 * @param size
+	 *            the number of used elements of the pairs
+	 * @param revision
+	 *            the revision
+	 * @return the pairs; a grown copy if they were full
+	 */
+	private long[] record(final long[] pairs,
+	                      final int size,
+	                      final Revision revision) {
+		final long[] result = size + 2 > pairs.length
+		                                             ? Arrays.copyOf(pairs, 2 * pairs.length)
+		                                             : pairs;
+		result[size] = revision.getTargetId();
+		result[size + 1] = revision.id();
+		return result;
+	}
+	
+	/**
+	 * Collects the change sets that may contain renames or copies into the given collection. The candidates keep the
+	 * commit hash, the change set id and the ids of the added and deleted revisions only, which get their ids when they
+	 * are handed to the dumper.
+	 *
+	 * @param candidates
+	 *            the candidates
+	 */
+	public void setCandidates(final Collection<Candidate> candidates) {
+		this.candidates = candidates;
+	}
+}
@@ -16,22 +16,30 @@ package org.mozkito.core.apps.versions;
 import java.io.File;
 import java.net.URI;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.commons.lang3.ArrayUtils;
 
+import org.mozkito.core.apps.versions.ChangeSetMiner.ParserMode;
+import org.mozkito.core.apps.versions.ChangeSetMiner.RenameMode;
 import org.mozkito.core.libs.users.model.Identity;
 import org.mozkito.core.libs.versions.Graph;
+import org.mozkito.core.libs.versions.ObjectIdMap;
 import org.mozkito.core.libs.versions.model.Branch;
 import org.mozkito.core.libs.versions.model.ChangeSet;
 import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Handle;
 import org.mozkito.core.libs.versions.model.Revision;
+import org.mozkito.core.libs.versions.repositories.GitRepository;
 import org.mozkito.libraries.logging.Logger;
 import org.mozkito.skeleton.commons.URIUtils;
 import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.exec.CommandStatistics;
+import org.mozkito.skeleton.exec.ProcessScheduler;
+import org.mozkito.skeleton.exec.ProcessScheduler.Priority;
 import org.mozkito.skeleton.sequel.DatabaseDumper;
+import org.mozkito.skeleton.sequel.IDatabaseDumper;
+import org.mozkito.skeleton.sequel.SequelDatabase;
 
 /**
  * The Class TaskRunner.
@@ -40,6 +48,17 @@ import org.mozkito.skeleton.sequel.DatabaseDumper;
  */
 public class TaskRunner implements Runnable {
 	
+	/**
+	 * The backend used to read branches and the commit graph of a depot.
+	 */
+	public static enum Backend {
+		
+		/** Runs git processes and parses their output. */
+		PROCESS,
+		/** Reads the references and the object database of the clone in process. */
+		IN_PROCESS;
+	}
+	
 	/**
 	 * The Enum Task.
 	 */
@@ -76,7 +95,7 @@ public class TaskRunner implements Runnable {
 	private final File                      cloneDir;
 	
 	/** The graph. */
-	private final Graph                     graph;
+	private Graph                           graph;
 	
 	/** The uri. */
 	private final URI                       uri;
@@ -85,7 +104,7 @@ public class TaskRunner implements Runnable {
 	private final Task[]                    tasks;
 	
 	/** The depot. */
-	private final Depot                     depot;
+	private Depot                           depot;
 	
 	/** The clone name. */
 	private final String                    cloneName;
@@ -97,7 +116,7 @@ public class TaskRunner implements Runnable {
 	private final DatabaseDumper<Identity>  identityDumper;
 	
 	/** The revision dumper. */
-	private final DatabaseDumper<Revision>  revisionDumper;
+	private final IDatabaseDumper<Revision> revisionDumper;
 	
 	/** The branch dumper. */
 	private final DatabaseDumper<Branch>    branchDumper;
@@ -111,6 +130,24 @@ public class TaskRunner implements Runnable {
 	/** The depot dumper. */
 	private final DatabaseDumper<Depot>     depotDumper;
 	
+	/** The parser mode used by the change set miner. */
+	private ParserMode                      parserMode = ParserMode.TEXT;
+	
+	/** The database the state of previous runs is loaded from; null if incremental mining is disabled. */
+	private SequelDatabase                  database;
+	
+	/** The number of concurrent git log processes used by the change set miner. */
+	private int                             shards     = 1;
+	
+	/** The directory the output of the shards is staged in; null to use the default of the change set miner. */
+	private File                            shardDirectory;
+	
+	/** The backend used by the branch and graph miners. */
+	private Backend                         backend    = Backend.PROCESS;
+	
+	/** The rename mode used by the change set miner. */
+	private RenameMode                      renameMode = RenameMode.INLINE;
+	
 	/**
 	 * Instantiates a new task runner.
 	 *
@@ -138,10 +175,10 @@ public class TaskRunner implements Runnable {
 	 *            the depot dumper
 	 */
 	public TaskRunner(final File baseDir, final File workDir, final URI depotURI, final Task[] tasks,
-	        final DatabaseDumper<Identity> identityDumper, final DatabaseDumper<ChangeSet> changeSetDumper,
-	        final DatabaseDumper<Revision> revisionDumper, final DatabaseDumper<Branch> branchDumper,
-	        final DatabaseDumper<Handle> handleDumper, final DatabaseDumper<Graph> graphDumper,
-	        final DatabaseDumper<Depot> depotDumper) {
+	                  final DatabaseDumper<Identity> identityDumper, final DatabaseDumper<ChangeSet> changeSetDumper,
+	                  final IDatabaseDumper<Revision> revisionDumper, final DatabaseDumper<Branch> branchDumper,
+	                  final DatabaseDumper<Handle> handleDumper, final DatabaseDumper<Graph> graphDumper,
+	                  final DatabaseDumper<Depot> depotDumper) {
 		Thread.setDefaultUncaughtExceptionHandler(new MozkitoHandler());
 		
 		this.identityDumper = identityDumper;
@@ -163,23 +200,29 @@ public class TaskRunner implements Runnable {
 			this.cloneName = sanitize(baseURI.relativize(depotURI).getPath());
 		}
 		this.cloneDir = new File(workDir, this.cloneName);
-		this.depot = new Depot(this.cloneName, depotURI, Instant.now());
-		this.depotDumper.saveLater(this.depot);
-		this.graph = new Graph(this.depot);
 	}
 	
 	/**
-	 * {@inheritDoc}
-	 * 
-	 * @see java.lang.Runnable#run()
+	 * Clones the depot or, in incremental mode, fetches the changes into an existing clone.
+	 *
+	 * @return true, if successful
 	 */
-	public void run() {
-		Thread.currentThread().setName("Runner:" + this.depot.getName());
-		
-		Logger.info("Cloning depot '%s'.", this.cloneName);
-		final Command command = Command.execute("git",
-		                                        new String[] { "clone", "-n", "-q", URIUtils.uri2String(this.uri),
-		                                                this.cloneDir.getAbsolutePath() }, this.workDir);
+	private boolean cloneDepot() {
+		Command command;
+		if (this.database != null && new File(this.cloneDir, ".git").isDirectory()) {
+			Logger.info("Fetching depot '%s'.", this.cloneName);
+			command = Command.execute("git", new String[] { "fetch", "-q", "--prune", "origin" }, this.cloneDir,
+			                          OutputMode.BUFFERED, Priority.LOW);
+		} else {
+			Logger.info("Cloning depot '%s'.", this.cloneName);
+			command = new Command("git", new String[] { "clone", "-n", "-q", URIUtils.uri2String(this.uri),
+			        this.cloneDir.getAbsolutePath() }, this.workDir);
+			// accounted to the depot rather than to the shared working directory
+			command.setGroup(this.cloneDir.getAbsolutePath());
+			command.setPriority(Priority.LOW);
+			command.logStdErr();
+			command.run();
+		}
 		command.waitFor();
 		
 		if (command.exitValue() != 0) {
@@ -189,46 +232,101 @@ public class TaskRunner implements Runnable {
 					Logger.error.println(resLine);
 				}
 			}
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		Thread.currentThread().setName("Runner:" + this.cloneName);
+		
+		if (!cloneDepot()) {
 			return;
 		}
 		
-		Map<String, Branch> branchHeads;
+		final boolean commitGraph = writeCommitGraph();
+		
+		DepotLoader loader = null;
+		if (this.database != null) {
+			Logger.info("Loading state of depot '%s'.", this.cloneName);
+			loader = new DepotLoader(this.database, this.cloneName);
+			loader.run();
+			
+			if (loader.getDepot() == null) {
+				loader = null;
+			}
+		}
+		
+		if (loader != null) {
+			this.depot = loader.getDepot();
+			this.graph = loader.getGraph();
+		} else {
+			this.depot = new Depot(this.cloneName, this.uri, Instant.now());
+			this.depotDumper.saveLater(this.depot);
+			this.graph = new Graph(this.depot);
+		}
+		
+		final GitRepository repository = this.backend == Backend.IN_PROCESS
+		                                                                   ? GitRepository.open(this.cloneDir)
+		                                                                   : null;
+		
+		ObjectIdMap<Branch> branchHeads;
 		if (ArrayUtils.contains(this.tasks, Task.BRANCHES)) {
 			Logger.info("Spawning BranchMiner.");
 			
 			final BranchMiner branchMiner = new BranchMiner(this.cloneDir, this.depot, this.branchDumper);
+			if (loader != null) {
+				branchMiner.setKnownBranches(loader.getBranches().values());
+			}
+			branchMiner.setRepository(repository);
 			branchMiner.run();
 			branchHeads = branchMiner.getBranchHeads();
 			this.graph.setBranchHeads(branchHeads);
+		} else if (loader != null) {
+			branchHeads = loader.getHeads();
+			this.graph.setBranchHeads(branchHeads);
 		} else {
-			// TODO load from DB
-			branchHeads = new HashMap<String, Branch>();
+			branchHeads = new ObjectIdMap<>();
 		}
 		
-		Map<String, ChangeSet> changeSets = new HashMap<String, ChangeSet>();
-		
 		if (ArrayUtils.contains(this.tasks, Task.CHANGESETS)) {
 			Logger.info("Spawning ChangeSetMiner.");
 			final ChangeSetMiner changeSetMiner = new ChangeSetMiner(this.cloneDir, this.depot, this.graph,
 			                                                         this.identityDumper, this.changeSetDumper,
 			                                                         this.revisionDumper, this.handleDumper);
+			changeSetMiner.setParserMode(this.parserMode);
+			changeSetMiner.setRenameMode(this.renameMode);
+			changeSetMiner.setShards(this.shards);
+			if (this.shardDirectory != null) {
+				changeSetMiner.setShardDirectory(this.shardDirectory);
+			}
+			if (loader != null) {
+				changeSetMiner.setKnownHandles(loader.getHandles());
+				changeSetMiner.setKnownIdentities(loader.getIdentities());
+				changeSetMiner.setExcludedHeads(loader.getHeads().keys());
+			}
 			changeSetMiner.run();
-			changeSets = changeSetMiner.getChangeSets();
-			this.graph.setChangeSets(changeSets);
-		} else {
-			// TODO load changesets and add to graph and the hashmap
 		}
 		
 		if (ArrayUtils.contains(this.tasks, Task.ENDPOINTS)) {
 			Logger.info("Spawning EndPointMiner.");
-			final EndPointMiner endPointMiner = new EndPointMiner(this.cloneDir, this.depot, branchHeads, changeSets,
-			                                                      this.graph);
+			final EndPointMiner endPointMiner = new EndPointMiner(this.cloneDir, this.depot, branchHeads, this.graph);
 			endPointMiner.run();
 		}
 		
 		if (ArrayUtils.contains(this.tasks, Task.GRAPH)) {
 			Logger.info("Spawning GraphBuilder.");
-			final GraphMiner graphMiner = new GraphMiner(this.cloneDir, this.graph, changeSets);
+			final GraphMiner graphMiner = new GraphMiner(this.cloneDir, this.graph);
+			// the commit-graph replaces the git log processes regardless of the backend
+			graphMiner.setRepository(repository == null && commitGraph
+			                                                          ? GitRepository.open(this.cloneDir)
+			                                                          : repository);
 			graphMiner.run();
 		}
 		
@@ -237,10 +335,110 @@ public class TaskRunner implements Runnable {
 			
 			final IntegrationMiner integrationMiner = new IntegrationMiner(this.graph);
 			integrationMiner.run();
-			this.graphDumper.saveLater(this.graph);
+			if (this.graph.id() > 0) {
+				this.graphDumper.updateLater(this.graph);
+			} else {
+				this.graphDumper.saveLater(this.graph);
+			}
 			
 		}
 		
+		if (Logger.logInfo()) {
+			final String group = this.cloneDir.getAbsolutePath();
+			Logger.info("Waited %s ms for the admission of %s git processes of depot '%s'.",
+			            ProcessScheduler.getDefault().getWaitTime(group),
+			            ProcessScheduler.getDefault().getAdmissions(group), this.cloneName);
+			Logger.info("Git processes of depot '%s': %s", this.cloneName,
+			            CommandStatistics.getDefault().getGroup(group));
+		}
+	
+	}
+	
+	/**
+	 * Sets the backend used by the branch and graph miners.
+	 *
+	 * @param backend
+	 *            the new backend
+	 */
+	public void setBackend(final Backend backend) {
+		this.backend = backend;
+	}
+	
+	/**
+	 * Enables incremental mining. The state of previous runs is loaded from the given database and only commits that
+	 * are not yet in the database are processed. Existing clones in the working directory are updated instead of being
+	 * cloned again.
+	 *
+	 * @param database
+	 *            the database
+	 */
+	public void setIncremental(final SequelDatabase database) {
+		this.database = database;
+	}
+	
+	/**
+	 * Sets the parser mode used by the change set miner.
+	 *
+	 * @param parserMode
+	 *            the new parser mode
+	 */
+	public void setParserMode(final ParserMode parserMode) {
+		this.parserMode = parserMode;
+	}
+	
+	/**
+	 * Sets the rename mode used by the change set miner.
+	 *
+	 * @param renameMode
+	 *            the new rename mode
+	 */
+	public void setRenameMode(final RenameMode renameMode) {
+		this.renameMode = renameMode;
+	}
+	
+	/**
+	 * Sets the directory the output of the shards is staged in.
+	 *
+	 * @param shardDirectory
+	 *            the shard directory
+	 */
+	public void setShardDirectory(final File shardDirectory) {
+		this.shardDirectory = shardDirectory;
+	}
+	
+	/**
+	 * Sets the number of concurrent git log processes used by the change set miner.
+	 *
+	 * @param shards
+	 *            the number of shards
+	 */
+	public void setShards(final int shards) {
+		this.shards = shards;
+	}
+	
+	/**
+	 * Writes the commit-graph of the clone, which provides the parents and generation numbers of all reachable commits
+	 * to the graph miner. Failures are logged only, since the graph can be mined without it.
+	 *
+	 * @return true, if successful
+	 */
+	private boolean writeCommitGraph() {
+		final Command command = Command.execute("git", new String[] { "commit-graph", "write", "--reachable" },
+		                                        this.cloneDir);
+		command.waitFor();
+		
+		if (command.exitValue() != 0) {
+			String resLine;
+			if (Logger.logWarn()) {
+				Logger.warn("Could not write the commit-graph of depot '%s'.", this.cloneName);
+				while ((resLine = command.nextErrput()) != null) {
+					Logger.warn.println(resLine);
+				}
+			}
+			return false;
+		}
+		
+		return true;
 	}
 	
 }
@@ -21,6 +21,7 @@ import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -36,8 +37,11 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FalseFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
 
+import org.mozkito.core.apps.versions.ChangeSetMiner.ParserMode;
+import org.mozkito.core.apps.versions.ChangeSetMiner.RenameMode;
 import org.mozkito.core.apps.versions.MozkitoHandler;
 import org.mozkito.core.apps.versions.TaskRunner;
+import org.mozkito.core.apps.versions.TaskRunner.Backend;
 import org.mozkito.core.apps.versions.TaskRunner.Task;
 import org.mozkito.core.libs.users.adapters.IdentityAdapter;
 import org.mozkito.core.libs.users.model.Identity;
@@ -50,14 +54,24 @@ import org.mozkito.core.libs.versions.adapters.HandleAdapter;
 import org.mozkito.core.libs.versions.adapters.RevisionAdapter;
 import org.mozkito.core.libs.versions.model.Branch;
 import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.core.libs.versions.model.ChangeSetCodec;
 import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Handle;
+import org.mozkito.core.libs.versions.model.HandleCodec;
 import org.mozkito.core.libs.versions.model.Revision;
+import org.mozkito.core.libs.versions.model.RevisionCodec;
 import org.mozkito.libraries.logging.Level;
 import org.mozkito.libraries.logging.Logger;
+import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.CommandStatistics;
+import org.mozkito.skeleton.exec.CommandStatistics.Summary;
+import org.mozkito.skeleton.exec.ProcessScheduler;
 import org.mozkito.skeleton.sequel.DatabaseDumper;
+import org.mozkito.skeleton.sequel.IDatabaseDumper;
 import org.mozkito.skeleton.sequel.SequelDatabase;
+import org.mozkito.skeleton.sequel.SequelDatabase.LoadMode;
 import org.mozkito.skeleton.sequel.SequelDatabase.Type;
+import org.mozkito.skeleton.sequel.ShardedDatabaseDumper;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -137,6 +151,89 @@ public class Main {
 		option = new Option("ti", "mine-integration", false, "Mine integration.");
 		options.addOption(option);
 		
+		option = new Option(null, "parser", true, "The parser used for the git log output. Default: TEXT.");
+		option.setArgName("TEXT,BYTES");
+		options.addOption(option);
+		
+		option = new Option(null, "incremental", false,
+		                    "Only mine commits that are not yet in the database. Keeps the clones in the working "
+		                            + "directory to update them on subsequent runs.");
+		options.addOption(option);
+		
+		option = new Option(null, "shards", true,
+		                    "The number of concurrent git log processes per depot used to mine changesets. Default: 1.");
+		option.setArgName("N");
+		options.addOption(option);
+		
+		option = new Option(null, "shard-directory", true,
+		                    "The directory the git log output of the shards is staged in until it is parsed. Needs "
+		                            + "room for the complete log of a depot. Default: java.io.tmpdir.");
+		option.setArgName("DIR");
+		options.addOption(option);
+		
+		option = new Option(null, "backend", true,
+		                    "The backend used to read branches and the graph. IN_PROCESS reads the object database "
+		                            + "of the clone directly instead of running git. Default: PROCESS.");
+		option.setArgName("PROCESS,IN_PROCESS");
+		options.addOption(option);
+		
+		option = new Option(null, "renames", true,
+		                    "When renames and copies are detected. DEFERRED mines changesets without rename detection "
+		                            + "and diffs the candidates again concurrently afterwards. Default: INLINE.");
+		option.setArgName("INLINE,DEFERRED");
+		options.addOption(option);
+		
+		option = new Option(null, "max-processes", true,
+		                    "The max number of concurrent git processes. Default: 4 times the number of processors.");
+		option.setArgName("N");
+		options.addOption(option);
+		
+		option = new Option(null, "max-depot-processes", true,
+		                    "The max number of concurrent git processes per depot. Default: the number of processors.");
+		option.setArgName("N");
+		options.addOption(option);
+		
+		option = new Option(null, "command-timeout", true,
+		                    "The number of minutes after which a git process is killed and its depot fails. "
+		                            + "Default: 0, i.e. no timeout.");
+		option.setArgName("MINUTES");
+		options.addOption(option);
+		
+		option = new Option(null, "batch-size", true,
+		                    "The number of rows sent to the database at once. Revisions are sent in batches ten times "
+		                            + "as large, graphs and depots one at a time. Default: 100.");
+		option.setArgName("N");
+		options.addOption(option);
+		
+		option = new Option(null, "revision-writers", true,
+		                    "The number of concurrent writers, each with a connection of its own, used to save "
+		                            + "revisions. Default: 1.");
+		option.setArgName("N");
+		options.addOption(option);
+		
+		option = new Option(null, "load-mode", true,
+		                    "How changesets, revisions, handles and edges are loaded into the database. COPY streams "
+		                            + "them through the COPY protocol and requires POSTGRES. Default: INSERT.");
+		option.setArgName("INSERT,COPY");
+		options.addOption(option);
+		
+		option = new Option(null, "bulk-load", false,
+		                    "Creates the constraints and indexes of a new database after all depots have been mined, "
+		                            + "concurrently for all tables, instead of maintaining them while loading.");
+		options.addOption(option);
+		
+		option = new Option(null, "unlogged", false,
+		                    "Loads into unlogged tables, which are logged once the load has finished. Their contents "
+		                            + "are lost if the server crashes during the load. Requires --bulk-load and "
+		                            + "POSTGRES.");
+		options.addOption(option);
+		
+		option = new Option(null, "spill-directory", true,
+		                    "Spills the changesets, revisions and handles that cannot be queued for the database to "
+		                            + "files in the given directory instead of waiting for the database.");
+		option.setArgName("DIR");
+		options.addOption(option);
+		
 		option = new Option(null, "skip", true, "Skip depots.");
 		option.setArgName("repo/manifests");
 		options.addOption(option);
@@ -178,6 +275,168 @@ public class Main {
 				System.exit(EXIT_ERR_DB_TYPE);
 			}
 			
+			ParserMode parserMode = ParserMode.TEXT;
+			
+			if (line.hasOption("parser")) {
+				try {
+					parserMode = ParserMode.valueOf(line.getOptionValue("parser").trim().toUpperCase());
+				} catch (final IllegalArgumentException e) {
+					Logger.error("Parser mode '%s' is invalid.", line.getOptionValue("parser"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			int shards = 1;
+			
+			if (line.hasOption("shards")) {
+				try {
+					shards = Integer.parseInt(line.getOptionValue("shards").trim());
+				} catch (final NumberFormatException e) {
+					shards = 0;
+				}
+				if (shards < 1) {
+					Logger.error("Number of shards '%s' is invalid.", line.getOptionValue("shards"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			File shardDir = null;
+			
+			if (line.hasOption("shard-directory")) {
+				shardDir = new File(line.getOptionValue("shard-directory"));
+				shardDir.mkdirs();
+			}
+			
+			final int processors = Runtime.getRuntime().availableProcessors();
+			int maxProcesses = 4 * processors;
+			
+			if (line.hasOption("max-processes")) {
+				try {
+					maxProcesses = Integer.parseInt(line.getOptionValue("max-processes").trim());
+				} catch (final NumberFormatException e) {
+					maxProcesses = 0;
+				}
+				if (maxProcesses < 1) {
+					Logger.error("Max number of processes '%s' is invalid.", line.getOptionValue("max-processes"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			int maxProcessesPerDepot = processors;
+			
+			if (line.hasOption("max-depot-processes")) {
+				try {
+					maxProcessesPerDepot = Integer.parseInt(line.getOptionValue("max-depot-processes").trim());
+				} catch (final NumberFormatException e) {
+					maxProcessesPerDepot = 0;
+				}
+				if (maxProcessesPerDepot < 1) {
+					Logger.error("Max number of processes per depot '%s' is invalid.",
+					             line.getOptionValue("max-depot-processes"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			ProcessScheduler.setDefault(new ProcessScheduler(maxProcesses, maxProcessesPerDepot));
+			
+			if (line.hasOption("command-timeout")) {
+				long timeout;
+				try {
+					timeout = Long.parseLong(line.getOptionValue("command-timeout").trim());
+				} catch (final NumberFormatException e) {
+					timeout = -1;
+				}
+				if (timeout < 0) {
+					Logger.error("Command timeout '%s' is invalid.", line.getOptionValue("command-timeout"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+				Command.setDefaultTimeout(timeout, TimeUnit.MINUTES);
+			}
+			
+			if (line.hasOption("batch-size")) {
+				int batchSize;
+				try {
+					batchSize = Integer.parseInt(line.getOptionValue("batch-size").trim());
+				} catch (final NumberFormatException e) {
+					batchSize = 0;
+				}
+				if (batchSize < 1) {
+					Logger.error("Batch size '%s' is invalid.", line.getOptionValue("batch-size"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+				DatabaseDumper.setDefaultBatchSize(batchSize);
+			}
+			
+			int revisionWriters = 1;
+			
+			if (line.hasOption("revision-writers")) {
+				try {
+					revisionWriters = Integer.parseInt(line.getOptionValue("revision-writers").trim());
+				} catch (final NumberFormatException e) {
+					revisionWriters = 0;
+				}
+				if (revisionWriters < 1) {
+					Logger.error("Number of revision writers '%s' is invalid.",
+					             line.getOptionValue("revision-writers"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			LoadMode loadMode = LoadMode.INSERT;
+			
+			if (line.hasOption("load-mode")) {
+				try {
+					loadMode = LoadMode.valueOf(line.getOptionValue("load-mode").trim().toUpperCase());
+				} catch (final IllegalArgumentException e) {
+					loadMode = null;
+				}
+				if (loadMode == null || (loadMode == LoadMode.COPY && databaseType != Type.POSTGRES)) {
+					Logger.error("Load mode '%s' is invalid.", line.getOptionValue("load-mode"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			boolean bulkLoad = line.hasOption("bulk-load");
+			final boolean unlogged = line.hasOption("unlogged");
+			
+			if (unlogged && (!bulkLoad || databaseType != Type.POSTGRES)) {
+				Logger.error("Unlogged tables require --bulk-load and POSTGRES.");
+				printHelp(options);
+				System.exit(EXIT_ERR_SETTINGS);
+			}
+			
+			Backend backend = Backend.PROCESS;
+			
+			if (line.hasOption("backend")) {
+				try {
+					backend = Backend.valueOf(line.getOptionValue("backend").trim().toUpperCase());
+				} catch (final IllegalArgumentException e) {
+					Logger.error("Backend '%s' is invalid.", line.getOptionValue("backend"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
+			RenameMode renameMode = RenameMode.INLINE;
+			
+			if (line.hasOption("renames")) {
+				try {
+					renameMode = RenameMode.valueOf(line.getOptionValue("renames").trim().toUpperCase());
+				} catch (final IllegalArgumentException e) {
+					Logger.error("Rename mode '%s' is invalid.", line.getOptionValue("renames"));
+					printHelp(options);
+					System.exit(EXIT_ERR_SETTINGS);
+				}
+			}
+			
 			final List<Task> tasks = new LinkedList<TaskRunner.Task>();
 			
 			if (line.hasOption("mine-branches")) {
@@ -208,10 +467,17 @@ public class Main {
 				System.exit(EXIT_ERR_TASKS);
 			}
 			
+			final boolean incremental = line.hasOption("incremental");
+			
 			File workDir = new File(line.hasOption("working-directory")
 			                                                           ? line.getOptionValue("working-directory")
 			                                                           : System.getProperty("java.io.tmpdir"));
-			workDir = Files.createTempDirectory(workDir.toPath(), "mozkito2-").toFile();
+			if (incremental) {
+				// the clones are updated by subsequent runs
+				workDir.mkdirs();
+			} else {
+				workDir = Files.createTempDirectory(workDir.toPath(), "mozkito2-").toFile();
+			}
 			final URI uri = new URI(line.hasOption("repository")
 			                                                    ? line.getOptionValue("repository")
 			                                                    : "file:///tmp/mozkito_bare.git");
@@ -234,6 +500,7 @@ public class Main {
 			                                                   line.hasOption("database-password")
 			                                                                                      ? line.getOptionValue("database-password")
 			                                                                                      : null, null);
+			database.setLoadMode(loadMode);
 			
 			final File baseDir = new File(uri);
 			final List<File> skips = new LinkedList<>();
@@ -290,16 +557,42 @@ public class Main {
 			database.register(Graph.class, new GraphAdapter(database));
 			database.register(Branch.class, new BranchAdapter(database));
 			database.register(Handle.class, new HandleAdapter(database));
-			database.createScheme();
+			if (incremental && database.hasTable("depots")) {
+				Logger.info("Resuming on existing database.");
+				database.resumeIds();
+				if (bulkLoad) {
+					Logger.warn("Ignoring --bulk-load, since the database exists already.");
+					bulkLoad = false;
+				}
+			} else if (bulkLoad) {
+				database.beginBulkLoad(unlogged);
+			} else {
+				database.createScheme();
+			}
 			
 			final DatabaseDumper<Identity> identityDumper = new DatabaseDumper<>(database.getAdapter(Identity.class));
 			final DatabaseDumper<ChangeSet> changeSetDumper = new DatabaseDumper<>(database.getAdapter(ChangeSet.class));
-			final DatabaseDumper<Revision> revisionDumper = new DatabaseDumper<>(database.getAdapter(Revision.class));
+			final ShardedDatabaseDumper<Revision> revisionDumper = new ShardedDatabaseDumper<>(
+			        database.getAdapter(Revision.class), revisionWriters);
 			final DatabaseDumper<Branch> branchDumper = new DatabaseDumper<>(database.getAdapter(Branch.class));
 			final DatabaseDumper<Handle> handleDumper = new DatabaseDumper<>(database.getAdapter(Handle.class));
 			final DatabaseDumper<Graph> graphDumper = new DatabaseDumper<>(database.getAdapter(Graph.class));
 			final DatabaseDumper<Depot> depotDumper = new DatabaseDumper<>(database.getAdapter(Depot.class));
 			
+			if (line.hasOption("spill-directory")) {
+				final File spillDir = new File(line.getOptionValue("spill-directory"));
+				spillDir.mkdirs();
+				changeSetDumper.setSpill(new ChangeSetCodec(), spillDir);
+				revisionDumper.setSpill(new RevisionCodec(), spillDir);
+				handleDumper.setSpill(new HandleCodec(), spillDir);
+			}
+			
+			// revisions are small and by far the most frequent rows; graphs cascade to their edges, which are batched
+			// by the adapter, and depots are saved once per depot
+			revisionDumper.setBatchSize(10 * DatabaseDumper.getDefaultBatchSize());
+			graphDumper.setBatchSize(1);
+			depotDumper.setBatchSize(1);
+			
 			identityDumper.start();
 			changeSetDumper.start();
 			revisionDumper.start();
@@ -318,6 +611,16 @@ public class Main {
 				final TaskRunner runner = new TaskRunner(baseDir, workDir, depotURI, tasks.toArray(new Task[0]),
 				                                         identityDumper, changeSetDumper, revisionDumper, branchDumper,
 				                                         handleDumper, graphDumper, depotDumper);
+				runner.setParserMode(parserMode);
+				runner.setShards(shards);
+				if (shardDir != null) {
+					runner.setShardDirectory(shardDir);
+				}
+				runner.setBackend(backend);
+				runner.setRenameMode(renameMode);
+				if (incremental) {
+					runner.setIncremental(database);
+				}
 				es.execute(runner);
 			}
 			
@@ -343,8 +646,27 @@ public class Main {
 			graphDumper.join();
 			depotDumper.join();
 			
+			if (bulkLoad) {
+				System.out.println("Building constraints and indexes.");
+				database.endBulkLoad();
+			}
+			
 			database.close();
 			
+			if (Logger.logInfo()) {
+				Logger.info("Waited %s ms for the admission of %s git processes.",
+				            ProcessScheduler.getDefault().getWaitTime(), ProcessScheduler.getDefault().getAdmissions());
+				for (final Entry<String, Summary> entry : CommandStatistics.getDefault().getKinds().entrySet()) {
+					Logger.info("%s: %s", entry.getKey(), entry.getValue());
+				}
+				for (final IDatabaseDumper<?> dumper : new IDatabaseDumper<?>[] { identityDumper, changeSetDumper,
+				        revisionDumper, branchDumper, handleDumper, graphDumper, depotDumper }) {
+					Logger.info("%s: %s rows at %.1f rows/s, producers waited %s ms, %s operations spilled.",
+					            dumper.getName(), dumper.getRows(), dumper.getRowsPerSecond(),
+					            dumper.getProducerWaitTime(), dumper.getSpilled());
+				}
+			}
+			
 			System.out.println("All tasks are finished! Timeout: " + !ret);
 		} catch (final URISyntaxException | SQLException | InterruptedException | IOException e) {
 			Logger.error(e);
@@ -18,6 +18,7 @@ import java.util.Map;
 
 import org.mozkito.core.libs.users.model.Identity;
 import org.mozkito.skeleton.contracts.Asserts;
+import org.mozkito.skeleton.contracts.Requires;
 
 /**
  * The Class IdentityCache.
@@ -39,6 +40,26 @@ public class IdentityCache {
 		request(UNKNOWN_IDENTITY, null, null);
 	}
 	
+	/**
+	 * Adds an identity that has already been persisted. Subsequent requests for an equal identity return the given
+	 * instance. Known identities that have not been persisted yet are replaced.
+	 *
+	 * @param identity
+	 *            the identity
+	 * @return true, if the identity has been added
+	 */
+	public boolean add(final Identity identity) {
+		Requires.notNull(identity);
+		Requires.positive(identity.id());
+		
+		final Identity known = this.identities.get(identity);
+		if (known == null || known.id() <= 0) {
+			this.identities.put(identity, identity);
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Exists.
 	 *
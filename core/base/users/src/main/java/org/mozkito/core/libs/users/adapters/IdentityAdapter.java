@@ -176,7 +176,7 @@ public class IdentityAdapter extends AbstractSequelAdapter<Identity> {
 			statement.setString(++index, identity.getEmail());
 			statement.setString(++index, identity.getFullName());
 			
-			statement.executeUpdate();
+			statement.addBatch();
 			
 			identity.id(id);
 			Asserts.positive(identity.id());
@@ -196,19 +196,13 @@ public class IdentityAdapter extends AbstractSequelAdapter<Identity> {
 		
 		try {
 			final Connection connection = this.database.getConnection();
-			final PreparedStatement idStatement = prepareNextIdStatement();
 			
 			for (final Identity identity : identities) {
 				
-				long id = nextId(idStatement);
+				final long id = nextId();
 				
 				PreparedStatement statement = null;
 				if (id <= 0) {
-					final ResultSet idResult = idStatement.executeQuery();
-					final boolean result = idResult.next();
-					Contract.asserts(result);
-					id = idResult.getInt(1);
-					
 					statement = connection.prepareStatement("INSERT INTO " + "identities"
 					        + " (id, username, email, fullname) VALUES (?, ?, ?, ?)");
 					statement.setLong(1, id);
@@ -258,11 +258,9 @@ public class UserAdapter extends AbstractSequelAdapter<User> {
 				int index = 0;
 				statement.setLong(++index, id);
 				statement.setLong(++index, identity.id());
-				index = 0;
+				statement.addBatch();
 			}
 			
-			statement.executeUpdate();
-			
 			user.id(id);
 			Asserts.positive(user.id());
 		} catch (final SQLException e) {
@@ -0,0 +1,222 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * The slim record of a change set that is kept as vertex of the {@link Graph}: the id of the persisted change set, the
+ * commit hash, the timestamps and the branches the commit belongs to. Subjects, bodies and all other details of the
+ * change set stay in the database, i.e. the full {@link ChangeSet} can be released as soon as it has been persisted.
+ * The parents of a commit are the sources of the incoming edges of its vertex.
+ *
+ * @author Sascha Just
+ */
+public class Commit {
+	
+	/** The Constant NO_BRANCHES. */
+	private static final long[] NO_BRANCHES = new long[0];
+	
+	/** The id of the change set. */
+	private final long          id;
+	
+	/** The commit hash. */
+	private final ObjectId      hash;
+	
+	/** The authored time in seconds since the epoch. */
+	private final long          authoredTime;
+	
+	/** The commit time in seconds since the epoch. */
+	private final long          commitTime;
+	
+	/** The sorted branch ids. */
+	private long[]              branchIds   = NO_BRANCHES;
+	
+	/** The generation number as reported by the commit-graph; 0 if unknown. */
+	private int                 generation;
+	
+	/**
+	 * Instantiates a new commit from a persisted change set.
+	 *
+	 * @param changeSet
+	 *            the change set
+	 */
+	public Commit(final ChangeSet changeSet) {
+		this(changeSet.id(), changeSet.getCommitHash(), changeSet.getAuthoredTime().getEpochSecond(),
+		     changeSet.getCommitTime().getEpochSecond());
+	}
+	
+	/**
+	 * Instantiates a new commit.
+	 *
+	 * @param id
+	 *            the id of the change set
+	 * @param hash
+	 *            the commit hash
+	 * @param authoredTime
+	 *            the authored time in seconds since the epoch
+	 * @param commitTime
+	 *            the commit time in seconds since the epoch
+	 */
+	public Commit(final long id, final ObjectId hash, final long authoredTime, final long commitTime) {
+		Requires.positive(id);
+		Requires.notNull(hash);
+		
+		this.id = id;
+		this.hash = hash;
+		this.authoredTime = authoredTime;
+		this.commitTime = commitTime;
+	}
+	
+	/**
+	 * Adds the branch id.
+	 *
+	 * @param branchId
+	 *            the branch id
+	 * @return true, if the commit did not belong to the branch before
+	 */
+	public boolean addBranchId(final long branchId) {
+		Requires.positive(branchId);
+		
+		final int index = Arrays.binarySearch(this.branchIds, branchId);
+		if (index >= 0) {
+			return false;
+		}
+		
+		final int insertion = -index - 1;
+		final long[] branchIds = new long[this.branchIds.length + 1];
+		System.arraycopy(this.branchIds, 0, branchIds, 0, insertion);
+		branchIds[insertion] = branchId;
+		System.arraycopy(this.branchIds, insertion, branchIds, insertion + 1, this.branchIds.length - insertion);
+		this.branchIds = branchIds;
+		return true;
+	}
+	
+	/**
+	 * Checks if the commit belongs to the given branch.
+	 *
+	 * @param branchId
+	 *            the branch id
+	 * @return true, if successful
+	 */
+	public boolean belongsTo(final long branchId) {
+		return Arrays.binarySearch(this.branchIds, branchId) >= 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		return this.hash.equalTo(((Commit) obj).hash);
+	}
+	
+	/**
+	 * Gets the authored time.
+	 *
+	 * @return the authored time
+	 */
+	public Instant getAuthoredTime() {
+		return Instant.ofEpochSecond(this.authoredTime);
+	}
+	
+	/**
+	 * Gets the commit time.
+	 *
+	 * @return the commit time
+	 */
+	public Instant getCommitTime() {
+		return Instant.ofEpochSecond(this.commitTime);
+	}
+	
+	/**
+	 * Gets the generation number, i.e. the topological level of the commit. Every ancestor of a commit has a lower
+	 * generation, which allows to rule out paths between commits without searching the graph.
+	 *
+	 * @return the generation or 0 if unknown
+	 */
+	public int getGeneration() {
+		return this.generation;
+	}
+	
+	/**
+	 * Gets the commit hash.
+	 *
+	 * @return the hash
+	 */
+	public ObjectId getHash() {
+		return this.hash;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return this.hash.hashCode();
+	}
+	
+	/**
+	 * Gets the id of the change set.
+	 *
+	 * @return the id
+	 */
+	public long id() {
+		return this.id;
+	}
+	
+	/**
+	 * Sets the generation number.
+	 *
+	 * @param generation
+	 *            the new generation
+	 */
+	public void setGeneration(final int generation) {
+		Requires.notNegative(generation);
+		this.generation = generation;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("Commit [id=");
+		builder.append(this.id);
+		builder.append(", hash=");
+		builder.append(this.hash);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
@@ -41,7 +42,6 @@ import org.jgrapht.traverse.DepthFirstIterator;
 import org.jgrapht.traverse.GraphIterator;
 
 import org.mozkito.core.libs.versions.model.Branch;
-import org.mozkito.core.libs.versions.model.ChangeSet;
 import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Endpoint;
 import org.mozkito.libraries.logging.Logger;
@@ -59,22 +59,22 @@ import org.mozkito.skeleton.sequel.SequelDatabase;
 public class Graph extends DirectedGraph implements ISequelEntity {
 	
 	/**
-	 * The Class ChangeSetIterator.
+	 * The Class CommitIterator.
 	 *
 	 * @author Sascha Just
 	 */
-	public class ChangeSetIterator implements Iterator<ChangeSet> {
+	public class CommitIterator implements Iterator<Commit> {
 		
 		/** The iterator. */
-		private final GraphIterator<ChangeSet, Edge> iterator;
+		private final GraphIterator<Commit, Edge> iterator;
 		
 		/**
-		 * Instantiates a new change set iterator.
+		 * Instantiates a new commit iterator.
 		 *
 		 * @param graphIterator
 		 *            the graph iterator
 		 */
-		public ChangeSetIterator(final GraphIterator<ChangeSet, Edge> graphIterator) {
+		public CommitIterator(final GraphIterator<Commit, Edge> graphIterator) {
 			this.iterator = graphIterator;
 		}
 		
@@ -92,7 +92,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		 * 
 		 * @see java.util.Iterator#next()
 		 */
-		public ChangeSet next() {
+		public Commit next() {
 			return this.iterator.next();
 		}
 		
@@ -104,19 +104,28 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	public class Edge {
 		
 		/** The integration path. */
-		final Set<Branch> integrationPath = new HashSet<Branch>();
+		final Set<Branch> integrationPath          = new HashSet<Branch>();
 		
 		/** The branches. */
-		final Set<Branch> branches        = new HashSet<Branch>();
+		final Set<Branch> branches                 = new HashSet<Branch>();
+		
+		/** The part of the integration path that has already been persisted. */
+		final Set<Branch> persistedIntegrationPath = new HashSet<Branch>();
+		
+		/** The branches that have already been persisted. */
+		final Set<Branch> persistedBranches        = new HashSet<Branch>();
 		
 		/** The type. */
 		final EdgeType    type;
 		
 		/** The child. */
-		final ChangeSet   child;
+		final Commit      child;
 		
 		/** The parent. */
-		final ChangeSet   parent;
+		final Commit      parent;
+		
+		/** The id of the persisted edge, 0 if the edge has not been persisted yet. */
+		long              id;
 		
 		/**
 		 * Instantiates a new edge.
@@ -130,7 +139,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		 * @param branch
 		 *            the branch
 		 */
-		public Edge(final ChangeSet parent, final ChangeSet child, final EdgeType type, final Branch branch) {
+		public Edge(final Commit parent, final Commit child, final EdgeType type, final Branch branch) {
 			this.parent = parent;
 			this.child = child;
 			this.type = type;
@@ -138,6 +147,25 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 			
 		}
 		
+		/**
+		 * Instantiates a new edge that has already been persisted.
+		 *
+		 * @param parent
+		 *            the parent
+		 * @param child
+		 *            the child
+		 * @param type
+		 *            the type
+		 * @param id
+		 *            the id of the persisted edge
+		 */
+		Edge(final Commit parent, final Commit child, final EdgeType type, final long id) {
+			this.parent = parent;
+			this.child = child;
+			this.type = type;
+			this.id = id;
+		}
+		
 		/**
 		 * Adds the branch.
 		 *
@@ -204,6 +232,35 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 			return this.integrationPath.stream().map(x -> x.id()).collect(Collectors.toList());
 		}
 		
+		/**
+		 * Gets the id of the persisted edge.
+		 *
+		 * @return the id, 0 if the edge has not been persisted yet
+		 */
+		public long getId() {
+			return this.id;
+		}
+		
+		/**
+		 * Gets the ids of the branches that have not been persisted yet.
+		 *
+		 * @return the new branch ids
+		 */
+		public Collection<Long> getNewBranchIds() {
+			return this.branches.stream().filter(x -> !this.persistedBranches.contains(x)).map(x -> x.id())
+			                    .collect(Collectors.toList());
+		}
+		
+		/**
+		 * Gets the ids of the integration path branches that have not been persisted yet.
+		 *
+		 * @return the new integration path ids
+		 */
+		public Collection<Long> getNewIntegrationPathIds() {
+			return this.integrationPath.stream().filter(x -> !this.persistedIntegrationPath.contains(x))
+			                           .map(x -> x.id()).collect(Collectors.toList());
+		}
+		
 		private Graph getOuterType() {
 			return Graph.this;
 		}
@@ -254,6 +311,55 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 			return result;
 		}
 		
+		/**
+		 * Checks if the edge has been persisted.
+		 *
+		 * @return true, if is persisted
+		 */
+		public boolean isPersisted() {
+			return this.id > 0;
+		}
+		
+		/**
+		 * Marks the edge, its branches and integration path as persisted.
+		 *
+		 * @param id
+		 *            the id of the persisted edge
+		 */
+		public void persisted(final long id) {
+			Requires.positive(id);
+			
+			this.id = id;
+			this.persistedBranches.addAll(this.branches);
+			this.persistedIntegrationPath.addAll(this.integrationPath);
+		}
+		
+		/**
+		 * Restores a persisted branch of this edge.
+		 *
+		 * @param branch
+		 *            the branch
+		 */
+		public void restoreBranch(final Branch branch) {
+			Requires.notNull(branch);
+			
+			this.branches.add(branch);
+			this.persistedBranches.add(branch);
+		}
+		
+		/**
+		 * Restores a persisted integration path entry of this edge.
+		 *
+		 * @param branch
+		 *            the branch
+		 */
+		public void restoreIntegrationPath(final Branch branch) {
+			Requires.notNull(branch);
+			
+			this.integrationPath.add(branch);
+			this.persistedIntegrationPath.add(branch);
+		}
+		
 	}
 	
 	/**
@@ -271,9 +377,9 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	
 	static class Pointer {
 		
-		ChangeSet        head;
-		ChangeSet        parent;
-		Stack<ChangeSet> merges = new Stack<>();
+		Commit        head;
+		Commit        parent;
+		Stack<Commit> merges = new Stack<>();
 		
 		/**
 		 * Instantiates a new pointer.
@@ -285,7 +391,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		 * @param graph
 		 *            the graph
 		 */
-		public Pointer(final ChangeSet head, final MaskSubgraph<ChangeSet, Edge> subGraph, final Graph graph) {
+		public Pointer(final Commit head, final MaskSubgraph<Commit, Edge> subGraph, final Graph graph) {
 			Requires.notNull(head);
 			Requires.notNull(subGraph);
 			Requires.notNull(graph);
@@ -304,13 +410,13 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		public String toString() {
 			final StringBuilder builder = new StringBuilder();
 			builder.append("head=");
-			builder.append(this.head.getCommitHash());
+			builder.append(this.head.getHash());
 			builder.append(", parent=");
 			builder.append(this.parent != null
-			                                  ? this.parent.getCommitHash()
+			                                  ? this.parent.getHash()
 			                                  : "");
 			builder.append(", mergeParents=");
-			builder.append(this.merges.stream().map(c -> c.getCommitHash()).collect(Collectors.joining(",")));
+			builder.append(this.merges.stream().map(c -> c.getHash().toHex()).collect(Collectors.joining(",")));
 			return builder.toString();
 		}
 		
@@ -334,24 +440,28 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	}
 	
 	/** The graph. */
-	private final org.jgrapht.DirectedGraph<ChangeSet, Edge> graph;
+	private final org.jgrapht.DirectedGraph<Commit, Edge> graph;
 	
 	/** The depot. */
-	private final Depot                                      depot;
+	private final Depot                                   depot;
 	
 	/** The id. */
-	private long                                             id;
+	private long                                          id;
 	
 	/** The endpoints. */
-	private final Map<Branch, Endpoint>                      endpoints = new HashMap<>();
+	private final Map<Branch, Endpoint>                   endpoints        = new HashMap<>();
+	
+	/** The persisted endpoints whose head or root moved. */
+	private final Set<Endpoint>                           updatedEndpoints = new HashSet<>();
 	
 	/** The edges. */
-	private final Collection<Edge>                           edges     = new LinkedList<>();
+	private final Collection<Edge>                        edges            = new LinkedList<>();
 	
-	/** The vertices. */
-	private Map<String, ChangeSet>                           vertices  = new HashMap<>();
+	/** The vertices by commit hash. */
+	private final ObjectIdMap<Commit>                     vertices         = new ObjectIdMap<>();
 	
-	private Map<String, Branch>                              branchHeads;
+	/** The branches by the commit hash of their head. */
+	private ObjectIdMap<Branch>                           branchHeads      = new ObjectIdMap<>();
 	
 	/**
 	 * Instantiates a new depot graph.
@@ -363,7 +473,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		Requires.notNull(depot);
 		
 		this.depot = depot;
-		this.graph = new DefaultDirectedGraph<ChangeSet, Edge>(Edge.class);
+		this.graph = new DefaultDirectedGraph<Commit, Edge>(Edge.class);
 	}
 	
 	/**
@@ -379,8 +489,8 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the branch
 	 * @return true, if successful
 	 */
-	public boolean addEdge(final ChangeSet parent,
-	                       final ChangeSet child,
+	public boolean addEdge(final Commit parent,
+	                       final Commit child,
 	                       final EdgeType type,
 	                       final Branch branch) {
 		Requires.notNull(parent);
@@ -399,7 +509,8 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	}
 	
 	/**
-	 * Adds the end point.
+	 * Adds the end point. If a persisted endpoint of the branch is known and the branch moved, the endpoint replaces it
+	 * and takes over its id.
 	 *
 	 * @param branch
 	 *            the branch
@@ -409,9 +520,17 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 */
 	public boolean addEndPoint(final Branch branch,
 	                           final Endpoint endpoint) {
-		if (!this.endpoints.containsKey(branch)) {
+		final Endpoint known = this.endpoints.get(branch);
+		
+		if (known == null) {
 			this.endpoints.put(branch, endpoint);
 			return true;
+		} else if (known.id() > 0
+		        && (known.getHeadId() != endpoint.getHeadId() || known.getRootId() != endpoint.getRootId())) {
+			endpoint.id(known.id());
+			this.endpoints.put(branch, endpoint);
+			this.updatedEndpoints.add(endpoint);
+			return true;
 		} else {
 			return false;
 		}
@@ -420,15 +539,18 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	/**
 	 * Adds the vertex.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @return true, if successful
 	 */
-	public boolean addVertex(final ChangeSet changeSet) {
-		Requires.notNull(changeSet);
+	public boolean addVertex(final Commit commit) {
+		Requires.notNull(commit);
 		Asserts.notNull(this.graph);
 		
-		return this.graph.addVertex(changeSet);
+		if (this.vertices.put(commit.getHash(), commit) != null) {
+			return false;
+		}
+		return this.graph.addVertex(commit);
 	}
 	
 	/**
@@ -444,14 +566,14 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 */
 	private boolean checkPath(final Stack<Pointer> pointers,
 	                          final Pointer current,
-	                          final ChangeSet delegate) {
+	                          final Commit delegate) {
 		for (final Pointer pointer : pointers) {
 			if (!pointer.equals(current)) {
-				if (DijkstraShortestPath.findPathBetween(this.graph, delegate, pointer.parent) != null) {
+				if (isAncestor(delegate, pointer.parent)) {
 					// found earlier integration
 					// next delegate
-					// System.err.println("Found earlier path " + delegate.getCommitHash() + " -> "
-					// + pointer.parent.getCommitHash());
+					// System.err.println("Found earlier path " + delegate.getHash() + " -> "
+					// + pointer.parent.getHash());
 					return true;
 				}
 			}
@@ -469,9 +591,9 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	public void computeIntegrationGraph(final Branch branch) {
 		// fetch the tier1 graph for that branch (a projection of all vertices and edges in the particular branch
 		// space).
-		final DirectedMaskSubgraph<ChangeSet, Edge> branchGraph = subGraph(branch);
+		final DirectedMaskSubgraph<Commit, Edge> branchGraph = subGraph(branch);
 		// fetch all roots of this branch to check if we find them all
-		final Collection<ChangeSet> roots = getRoots(branch);
+		final Collection<Commit> roots = getRoots(branch);
 		// used to store the pointers
 		final Stack<Pointer> pointers = new Stack<>();
 		
@@ -523,15 +645,15 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	/**
 	 * Gets the branch parent.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @param graph
 	 *            the graph
 	 * @return the branch parent
 	 */
-	public ChangeSet getBranchParent(final ChangeSet changeSet,
-	                                 final MaskSubgraph<ChangeSet, Edge> graph) {
-		final Optional<Edge> edge = graph.incomingEdgesOf(changeSet)
+	public Commit getBranchParent(final Commit commit,
+	                              final MaskSubgraph<Commit, Edge> graph) {
+		final Optional<Edge> edge = graph.incomingEdgesOf(commit)
 		                                 .stream()
 		                                 .filter(x -> EdgeType.BRANCH.equals(x.type) || EdgeType.FORWARD.equals(x.type))
 		                                 .findFirst();
@@ -543,20 +665,20 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	}
 	
 	/**
-	 * Gets the change sets.
+	 * Gets the commits.
 	 *
 	 * @param branch
 	 *            the branch
-	 * @return the change sets
+	 * @return the commits
 	 */
-	public Iterator<ChangeSet> getChangeSets(final Branch branch) {
-		final DirectedMaskSubgraph<ChangeSet, Edge> branchGraph = subGraph(branch);
-		final EdgeReversedGraph<ChangeSet, Edge> reversedGraph = new EdgeReversedGraph<ChangeSet, Edge>(branchGraph);
+	public Iterator<Commit> getCommits(final Branch branch) {
+		final DirectedMaskSubgraph<Commit, Edge> branchGraph = subGraph(branch);
+		final EdgeReversedGraph<Commit, Edge> reversedGraph = new EdgeReversedGraph<Commit, Edge>(branchGraph);
 		
-		final ChangeSet head = getHead(branch);
-		final DepthFirstIterator<ChangeSet, Edge> iterator = new DepthFirstIterator<ChangeSet, Edge>(reversedGraph,
+		final Commit head = getHead(branch);
+		final DepthFirstIterator<Commit, Edge> iterator = new DepthFirstIterator<Commit, Edge>(reversedGraph,
 		                                                                                             head);
-		return UnmodifiableIterator.unmodifiableIterator(new ChangeSetIterator(iterator));
+		return UnmodifiableIterator.unmodifiableIterator(new CommitIterator(iterator));
 		
 	}
 	
@@ -620,7 +742,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the branch
 	 * @return the first commit to branch
 	 */
-	public ChangeSet getFirstCommitToBranch(final Branch branch) {
+	public Commit getFirstCommitToBranch(final Branch branch) {
 		Requires.notNull(branch);
 		Asserts.notNull(this.endpoints);
 		
@@ -628,25 +750,25 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 			throw new IllegalArgumentException(String.format("Branch '%s' not known to graph.", branch));
 		}
 		
-		// final DirectedMaskSubgraph<ChangeSet, Edge> branchGraph = new DirectedMaskSubgraph<ChangeSet, Edge>(
+		// final DirectedMaskSubgraph<Commit, Edge> branchGraph = new DirectedMaskSubgraph<Commit, Edge>(
 		// this.graph,
-		// new MaskFunctor<ChangeSet, Edge>() {
+		// new MaskFunctor<Commit, Edge>() {
 		//
 		// public boolean isEdgeMasked(final Edge arg0) {
 		// return arg0.branches.contains(branch);
 		// }
 		//
-		// public boolean isVertexMasked(final ChangeSet arg0) {
+		// public boolean isVertexMasked(final Commit arg0) {
 		// return arg0.getBranchIds()
 		// .contains(branch.id());
 		// }
 		// });
 		//
-		// final ChangeSet head = getHead(branch);
+		// final Commit head = getHead(branch);
 		// TODO
-		// final DepthFirstIterator<ChangeSet, Edge> iterator = new DepthFirstIterator<ChangeSet, Edge>(branchGraph,
+		// final DepthFirstIterator<Commit, Edge> iterator = new DepthFirstIterator<Commit, Edge>(branchGraph,
 		// head);
-		// ChangeSet commit = null;
+		// Commit commit = null;
 		//
 		// while (iterator.hasNext()) {
 		// commit = iterator.next();
@@ -667,29 +789,33 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the branch
 	 * @return the head
 	 */
-	public ChangeSet getHead(final Branch branch) {
+	public Commit getHead(final Branch branch) {
 		Requires.notNull(branch);
 		
-		return this.vertices.get(this.branchHeads.entrySet().stream().filter(es -> es.getValue().equals(branch))
-		                                         .findAny().get().getKey());
+		for (final ObjectId head : this.branchHeads.keys()) {
+			if (branch.equals(this.branchHeads.get(head))) {
+				return this.vertices.get(head);
+			}
+		}
 		
+		throw new NoSuchElementException(String.format("Branch '%s' has no head.", branch));
 	}
 	
 	/**
 	 * Gets the integration path.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @param branch
 	 *            the branch
 	 * @return the integration path
 	 */
-	public List<ChangeSet> getIntegrationPath(final ChangeSet changeSet,
-	                                          final Branch branch) {
-		final DirectedMaskSubgraph<ChangeSet, Edge> integrationGraph = integrationGraph(branch);
+	public List<Commit> getIntegrationPath(final Commit commit,
+	                                       final Branch branch) {
+		final DirectedMaskSubgraph<Commit, Edge> integrationGraph = integrationGraph(branch);
 		
-		final List<Edge> path = DijkstraShortestPath.findPathBetween(integrationGraph, changeSet, getHead(branch));
-		final List<ChangeSet> entries = new ArrayList<ChangeSet>(path.size() + 1);
+		final List<Edge> path = DijkstraShortestPath.findPathBetween(integrationGraph, commit, getHead(branch));
+		final List<Commit> entries = new ArrayList<Commit>(path.size() + 1);
 		
 		if (!path.isEmpty()) {
 			entries.add(path.iterator().next().child);
@@ -702,30 +828,30 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	/**
 	 * Gets the merge parents.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @param graph
 	 *            the graph
 	 * @return the merge parents
 	 */
-	public List<ChangeSet> getMergeParents(final ChangeSet changeSet,
-	                                       final MaskSubgraph<ChangeSet, Edge> graph) {
-		return graph.incomingEdgesOf(changeSet).stream().filter(x -> EdgeType.MERGE.equals(x.type)).map(x -> x.parent)
+	public List<Commit> getMergeParents(final Commit commit,
+	                                    final MaskSubgraph<Commit, Edge> graph) {
+		return graph.incomingEdgesOf(commit).stream().filter(x -> EdgeType.MERGE.equals(x.type)).map(x -> x.parent)
 		            .collect(Collectors.toList());
 	}
 	
 	/**
 	 * Gets the parents.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @param graph
 	 *            the graph
 	 * @return the parents
 	 */
-	public Set<Edge> getParents(final ChangeSet changeSet,
-	                            final MaskSubgraph<ChangeSet, Edge> graph) {
-		return graph.incomingEdgesOf(changeSet);
+	public Set<Edge> getParents(final Commit commit,
+	                            final MaskSubgraph<Commit, Edge> graph) {
+		return graph.incomingEdgesOf(commit);
 	}
 	
 	/**
@@ -735,7 +861,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the branch
 	 * @return the root commit
 	 */
-	public Collection<ChangeSet> getRoots(final Branch branch) {
+	public Collection<Commit> getRoots(final Branch branch) {
 		Requires.notNull(branch);
 		Asserts.notNull(this.endpoints);
 		
@@ -743,19 +869,19 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 			throw new IllegalArgumentException(String.format("Branch '%s' not known to graph.", branch));
 		}
 		
-		final DirectedMaskSubgraph<ChangeSet, Edge> branchGraph = subGraph(branch);
+		final DirectedMaskSubgraph<Commit, Edge> branchGraph = subGraph(branch);
 		
-		final EdgeReversedGraph<ChangeSet, Edge> reversedGraph = new EdgeReversedGraph<ChangeSet, Edge>(branchGraph);
+		final EdgeReversedGraph<Commit, Edge> reversedGraph = new EdgeReversedGraph<Commit, Edge>(branchGraph);
 		
-		final ChangeSet head = getHead(branch);
+		final Commit head = getHead(branch);
 		
 		Logger.info("Fetching reversed tier1 graph for branch '%s' starting at HEAD '%s'", branch.getName(),
-		            head.getCommitHash());
+		            head.getHash());
 		
-		final DepthFirstIterator<ChangeSet, Edge> iterator = new DepthFirstIterator<ChangeSet, Edge>(reversedGraph,
+		final DepthFirstIterator<Commit, Edge> iterator = new DepthFirstIterator<Commit, Edge>(reversedGraph,
 		                                                                                             head);
-		final List<ChangeSet> roots = new LinkedList<>();
-		ChangeSet current = null;
+		final List<Commit> roots = new LinkedList<>();
+		Commit current = null;
 		
 		while (iterator.hasNext()) {
 			current = iterator.next();
@@ -770,15 +896,24 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	/**
 	 * Gets the spin offs.
 	 *
-	 * @param changeSet
-	 *            the change set
+	 * @param commit
+	 *            the commit
 	 * @return the spin offs
 	 */
-	public List<ChangeSet> getSpinOffs(final ChangeSet changeSet) {
-		return this.graph.outgoingEdgesOf(changeSet).stream().filter(x -> EdgeType.BRANCH.equals(x.type))
+	public List<Commit> getSpinOffs(final Commit commit) {
+		return this.graph.outgoingEdgesOf(commit).stream().filter(x -> EdgeType.BRANCH.equals(x.type))
 		                 .map(x -> x.parent).collect(Collectors.toList());
 	}
 	
+	/**
+	 * Gets the persisted end points whose head or root moved.
+	 *
+	 * @return the updated end points
+	 */
+	public Collection<Endpoint> getUpdatedEndPoints() {
+		return UnmodifiableCollection.unmodifiableCollection(this.updatedEndpoints);
+	}
+	
 	/**
 	 * Gets the vertex.
 	 *
@@ -786,7 +921,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the id
 	 * @return the vertex
 	 */
-	public ChangeSet getVertex(final long id) {
+	public Commit getVertex(final long id) {
 		return this.graph.vertexSet().stream().filter(x -> x.id() == id).findAny().get();
 	}
 	
@@ -797,7 +932,7 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the hash
 	 * @return the vertex
 	 */
-	public ChangeSet getVertex(final String hash) {
+	public Commit getVertex(final ObjectId hash) {
 		return this.vertices.get(hash);
 	}
 	
@@ -819,42 +954,106 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 		this.id = id;
 	}
 	
-	private DirectedMaskSubgraph<ChangeSet, Edge> integrationGraph(final Branch branch) {
-		return new DirectedMaskSubgraph<ChangeSet, Edge>(this.graph, new MaskFunctor<ChangeSet, Edge>() {
+	private DirectedMaskSubgraph<Commit, Edge> integrationGraph(final Branch branch) {
+		return new DirectedMaskSubgraph<Commit, Edge>(this.graph, new MaskFunctor<Commit, Edge>() {
 			
 			public boolean isEdgeMasked(final Edge arg0) {
 				return !arg0.integrationPath.contains(branch);
 			}
 			
-			public boolean isVertexMasked(final ChangeSet arg0) {
-				return !arg0.getBranchIds().contains(branch.id());
+			public boolean isVertexMasked(final Commit arg0) {
+				return !arg0.belongsTo(branch.id());
 			}
 		});
 	}
 	
 	/**
-	 * @param branchHeads
+	 * Checks if there is a path from the given ancestor to the given commit. A commit is its own ancestor. If the
+	 * generation numbers of both commits are known, other ancestors that are not older than the commit are rejected
+	 * without searching the graph.
+	 *
+	 * @param ancestor
+	 *            the ancestor
+	 * @param commit
+	 *            the commit
+	 * @return true, if the ancestor reaches the commit
 	 */
-	public void setBranchHeads(final Map<String, Branch> branchHeads) {
-		this.branchHeads = branchHeads;
+	private boolean isAncestor(final Commit ancestor,
+	                           final Commit commit) {
+		if (ancestor == commit) {
+			// the search finds the empty path
+			return true;
+		}
+		if (commit != null && ancestor.getGeneration() > 0 && commit.getGeneration() > 0
+		        && ancestor.getGeneration() >= commit.getGeneration()) {
+			return false;
+		}
+		return DijkstraShortestPath.findPathBetween(this.graph, ancestor, commit) != null;
 	}
 	
 	/**
-	 * @param changeSets
+	 * Restores an edge that has already been persisted.
+	 *
+	 * @param parent
+	 *            the parent
+	 * @param child
+	 *            the child
+	 * @param type
+	 *            the type
+	 * @param edgeId
+	 *            the id of the persisted edge
+	 * @return the edge
 	 */
-	public void setChangeSets(final Map<String, ChangeSet> changeSets) {
-		this.vertices = changeSets;
+	public Edge restoreEdge(final Commit parent,
+	                        final Commit child,
+	                        final EdgeType type,
+	                        final long edgeId) {
+		Requires.notNull(parent);
+		Requires.notNull(child);
+		Requires.notNull(type);
+		Requires.positive(edgeId);
+		
+		final Edge edge = new Edge(parent, child, type, edgeId);
+		Asserts.isNull(this.graph.getEdge(parent, child), "Edge has already been restored.");
+		
+		this.edges.add(edge);
+		this.graph.addEdge(parent, child, edge);
+		return edge;
+	}
+	
+	/**
+	 * Restores an endpoint that has already been persisted.
+	 *
+	 * @param branch
+	 *            the branch
+	 * @param endpoint
+	 *            the endpoint
+	 */
+	public void restoreEndPoint(final Branch branch,
+	                            final Endpoint endpoint) {
+		Requires.notNull(branch);
+		Requires.notNull(endpoint);
+		Requires.positive(endpoint.id());
+		
+		this.endpoints.put(branch, endpoint);
+	}
+	
+	/**
+	 * @param branchHeads
+	 */
+	public void setBranchHeads(final ObjectIdMap<Branch> branchHeads) {
+		this.branchHeads = branchHeads;
 	}
 	
 	/**
 	 * Skip forwards.
 	 *
-	 * @param changeSet
-	 *            the change set
-	 * @return the change set
+	 * @param commit
+	 *            the commit
+	 * @return the commit
 	 */
-	public ChangeSet skipForwards(final ChangeSet changeSet) {
-		Set<Edge> incomingEdges = this.graph.incomingEdgesOf(changeSet);
+	public Commit skipForwards(final Commit commit) {
+		Set<Edge> incomingEdges = this.graph.incomingEdgesOf(commit);
 		
 		while (incomingEdges.size() == 1) {
 			incomingEdges = this.graph.incomingEdgesOf(incomingEdges.iterator().next().parent);
@@ -870,15 +1069,15 @@ public class Graph extends DirectedGraph implements ISequelEntity {
 	 *            the branch
 	 * @return the branch graph
 	 */
-	private DirectedMaskSubgraph<ChangeSet, Edge> subGraph(final Branch branch) {
-		return new DirectedMaskSubgraph<ChangeSet, Edge>(this.graph, new MaskFunctor<ChangeSet, Edge>() {
+	private DirectedMaskSubgraph<Commit, Edge> subGraph(final Branch branch) {
+		return new DirectedMaskSubgraph<Commit, Edge>(this.graph, new MaskFunctor<Commit, Edge>() {
 			
 			public boolean isEdgeMasked(final Edge arg0) {
 				return !arg0.branches.contains(branch);
 			}
 			
-			public boolean isVertexMasked(final ChangeSet arg0) {
-				return !arg0.getBranchIds().contains(branch.id());
+			public boolean isVertexMasked(final Commit arg0) {
+				return !arg0.belongsTo(branch.id());
 			}
 		});
 	}
@@ -0,0 +1,397 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * The binary representation of a 20 byte git object id (e.g. a commit or tree hash). The id is kept in two longs and an
+ * int, which takes less than half the memory of the 40 character hex string and compares without touching characters.
+ * Hex strings are only created at the boundaries, i.e. when talking to git or the database.
+ *
+ * @author Sascha Just
+ */
+public final class ObjectId implements Comparable<ObjectId>, Serializable {
+	
+	/** The Constant serialVersionUID. */
+	private static final long    serialVersionUID = -4392318845474937460L;
+	
+	/** The Constant HEX_LENGTH. */
+	public static final int      HEX_LENGTH       = 40;
+	
+	/** The Constant RAW_LENGTH. */
+	public static final int      RAW_LENGTH       = 20;
+	
+	/** The Constant ZERO. Used by git for the missing side of added and deleted files. */
+	public static final ObjectId ZERO             = new ObjectId(0, 0, 0);
+	
+	/** The Constant HEX_DIGITS. */
+	private static final char[]  HEX_DIGITS       = "0123456789abcdef".toCharArray();
+	
+	/** The Constant NO_DIGIT. */
+	private static final byte    NO_DIGIT         = -1;
+	
+	/** The values of the hex digits by character. */
+	private static final byte[]  DIGIT_VALUES     = new byte[128];
+	
+	static {
+		for (int i = 0; i < DIGIT_VALUES.length; ++i) {
+			DIGIT_VALUES[i] = NO_DIGIT;
+		}
+		for (int i = 0; i < 10; ++i) {
+			DIGIT_VALUES['0' + i] = (byte) i;
+		}
+		for (int i = 0; i < 6; ++i) {
+			DIGIT_VALUES['a' + i] = (byte) (10 + i);
+			DIGIT_VALUES['A' + i] = (byte) (10 + i);
+		}
+	}
+	
+	/**
+	 * Decodes a single hex digit.
+	 *
+	 * @param c
+	 *            the character
+	 * @return the value
+	 */
+	private static int digit(final int c) {
+		final int value = c >= 0 && c < DIGIT_VALUES.length
+		                                                   ? DIGIT_VALUES[c]
+		                                                   : NO_DIGIT;
+		if (value == NO_DIGIT) {
+			throw new IllegalArgumentException(String.format("Character '%s' is not a hex digit.", (char) c));
+		}
+		return value;
+	}
+	
+	/**
+	 * Reads the object id from the next 20 raw bytes of the given buffer and advances its position.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the object id
+	 * @see #toBytes(ByteBuffer)
+	 */
+	public static ObjectId fromBytes(final ByteBuffer buffer) {
+		Requires.notNull(buffer);
+		
+		return of(buffer.getLong(), buffer.getLong(), buffer.getInt());
+	}
+	
+	/**
+	 * Reads the object id from 20 raw bytes in the given buffer, e.g. a tree entry.
+	 *
+	 * @param bytes
+	 *            the buffer
+	 * @param offset
+	 *            the offset of the first byte
+	 * @return the object id
+	 */
+	public static ObjectId fromBytes(final byte[] bytes,
+	                                 final int offset) {
+		Requires.notNull(bytes);
+		Requires.less(offset + RAW_LENGTH - 1, bytes.length, "Object ids consist of 20 bytes.");
+		
+		return fromBytes(ByteBuffer.wrap(bytes), offset);
+	}
+	
+	/**
+	 * Reads the object id from 20 raw bytes at the given index of the buffer, e.g. an entry of a pack index. The
+	 * position of the buffer is not changed.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param index
+	 *            the index of the first byte
+	 * @return the object id
+	 */
+	public static ObjectId fromBytes(final ByteBuffer buffer,
+	                                 final int index) {
+		Requires.notNull(buffer);
+		
+		return of(buffer.getLong(index), buffer.getLong(index + 8), buffer.getInt(index + 16));
+	}
+	
+	/**
+	 * Decodes the object id from 40 hex digits in the given buffer, e.g. a line of git output.
+	 *
+	 * @param bytes
+	 *            the buffer
+	 * @param offset
+	 *            the offset of the first digit
+	 * @return the object id
+	 */
+	public static ObjectId fromHex(final byte[] bytes,
+	                               final int offset) {
+		Requires.notNull(bytes);
+		Requires.less(offset + HEX_LENGTH - 1, bytes.length, "Object ids consist of 40 hex digits.");
+		
+		long first = 0, second = 0;
+		int third = 0;
+		for (int i = 0; i < 16; ++i) {
+			first = first << 4 | digit(bytes[offset + i]);
+		}
+		for (int i = 16; i < 32; ++i) {
+			second = second << 4 | digit(bytes[offset + i]);
+		}
+		for (int i = 32; i < HEX_LENGTH; ++i) {
+			third = third << 4 | digit(bytes[offset + i]);
+		}
+		return of(first, second, third);
+	}
+	
+	/**
+	 * Decodes the object id from 40 hex digits within the given characters, e.g. a line of git output.
+	 *
+	 * @param chars
+	 *            the characters
+	 * @param offset
+	 *            the offset of the first digit
+	 * @return the object id
+	 */
+	public static ObjectId fromHex(final CharSequence chars,
+	                               final int offset) {
+		Requires.notNull(chars);
+		Requires.less(offset + HEX_LENGTH - 1, chars.length(), "Object ids consist of 40 hex digits.");
+		
+		long first = 0, second = 0;
+		int third = 0;
+		for (int i = 0; i < 16; ++i) {
+			first = first << 4 | digit(chars.charAt(offset + i));
+		}
+		for (int i = 16; i < 32; ++i) {
+			second = second << 4 | digit(chars.charAt(offset + i));
+		}
+		for (int i = 32; i < HEX_LENGTH; ++i) {
+			third = third << 4 | digit(chars.charAt(offset + i));
+		}
+		return of(first, second, third);
+	}
+	
+	/**
+	 * Decodes the object id from its hex representation.
+	 *
+	 * @param hex
+	 *            the 40 hex digits
+	 * @return the object id
+	 */
+	public static ObjectId fromHex(final String hex) {
+		Requires.notNull(hex);
+		Requires.length(hex, HEX_LENGTH);
+		
+		return fromHex(hex, 0);
+	}
+	
+	/**
+	 * Creates the object id from its parts. The zero id is shared.
+	 *
+	 * @param first
+	 *            the first 8 bytes
+	 * @param second
+	 *            the second 8 bytes
+	 * @param third
+	 *            the last 4 bytes
+	 * @return the object id
+	 */
+	private static ObjectId of(final long first,
+	                           final long second,
+	                           final int third) {
+		return first == 0 && second == 0 && third == 0
+		                                               ? ZERO
+		                                               : new ObjectId(first, second, third);
+	}
+	
+	/** The first 8 bytes. */
+	private final long first;
+	
+	/** The second 8 bytes. */
+	private final long second;
+	
+	/** The last 4 bytes. */
+	private final int  third;
+	
+	/**
+	 * Instantiates a new object id.
+	 *
+	 * @param first
+	 *            the first 8 bytes
+	 * @param second
+	 *            the second 8 bytes
+	 * @param third
+	 *            the last 4 bytes
+	 */
+	private ObjectId(final long first, final long second, final int third) {
+		this.first = first;
+		this.second = second;
+		this.third = third;
+	}
+	
+	/**
+	 * Appends the hex digits of the given value.
+	 *
+	 * @param chars
+	 *            the target
+	 * @param offset
+	 *            the offset of the first digit
+	 * @param value
+	 *            the value
+	 * @param digits
+	 *            the number of digits
+	 */
+	private void appendHex(final char[] chars,
+	                       final int offset,
+	                       final long value,
+	                       final int digits) {
+		for (int i = 0; i < digits; ++i) {
+			chars[offset + i] = HEX_DIGITS[(int) (value >>> (digits - 1 - i) * 4) & 0xf];
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(final ObjectId other) {
+		int result = Long.compareUnsigned(this.first, other.first);
+		if (result == 0) {
+			result = Long.compareUnsigned(this.second, other.second);
+		}
+		if (result == 0) {
+			result = Integer.compareUnsigned(this.third, other.third);
+		}
+		return result;
+	}
+	
+	/**
+	 * Compares the object id to the 20 raw bytes at the given index of the buffer without creating an object id. The
+	 * position of the buffer is not changed.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param index
+	 *            the index of the first byte
+	 * @return a negative integer, zero, or a positive integer as this object id is less than, equal to, or greater than
+	 *         the stored one
+	 */
+	public int compareTo(final ByteBuffer buffer,
+	                     final int index) {
+		int result = Long.compareUnsigned(this.first, buffer.getLong(index));
+		if (result == 0) {
+			result = Long.compareUnsigned(this.second, buffer.getLong(index + 8));
+		}
+		if (result == 0) {
+			result = Integer.compareUnsigned(this.third, buffer.getInt(index + 16));
+		}
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		return equalTo((ObjectId) obj);
+	}
+	
+	/**
+	 * Compares the object id to another one without the type checks of {@link #equals(Object)}.
+	 *
+	 * @param other
+	 *            the other object id
+	 * @return true, if the ids are equal
+	 */
+	public boolean equalTo(final ObjectId other) {
+		return this.first == other.first && this.second == other.second && this.third == other.third;
+	}
+	
+	/**
+	 * Gets the first byte of the object id, e.g. to look up the fan-out table of a pack index.
+	 *
+	 * @return the first byte as unsigned value
+	 */
+	public int getFirstByte() {
+		return (int) (this.first >>> 56);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		// object ids are SHA-1 hashes, i.e. the bits are uniformly distributed already
+		return (int) (this.first >>> 32);
+	}
+	
+	/**
+	 * Checks if this is the zero id.
+	 *
+	 * @return true, if is zero
+	 */
+	public boolean isZero() {
+		return this.first == 0 && this.second == 0 && this.third == 0;
+	}
+	
+	/**
+	 * Writes the 20 raw bytes of the object id to the given buffer and advances its position.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void toBytes(final ByteBuffer buffer) {
+		buffer.putLong(this.first);
+		buffer.putLong(this.second);
+		buffer.putInt(this.third);
+	}
+	
+	/**
+	 * Gets the 40 hex digits of the object id.
+	 *
+	 * @return the hex string
+	 */
+	public String toHex() {
+		final char[] chars = new char[HEX_LENGTH];
+		appendHex(chars, 0, this.first, 16);
+		appendHex(chars, 16, this.second, 16);
+		appendHex(chars, 32, this.third & 0xffffffffL, 8);
+		return new String(chars);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return toHex();
+	}
+}
@@ -0,0 +1,240 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A map keyed by {@link ObjectId}s. Keys and values are kept in two arrays using open addressing with linear probing,
+ * i.e. there are no entry objects and lookups compare the binary ids directly. Entries cannot be removed.
+ *
+ * The map is not thread safe.
+ *
+ * @author Sascha Just
+ * @param <V>
+ *            the value type
+ */
+public class ObjectIdMap<V> {
+	
+	/** The Constant INITIAL_CAPACITY. */
+	private static final int INITIAL_CAPACITY = 64;
+	
+	/** The keys. */
+	private ObjectId[]       keys;
+	
+	/** The values. */
+	private Object[]         values;
+	
+	/** The number of entries. */
+	private int              size             = 0;
+	
+	/**
+	 * Instantiates a new object id map.
+	 */
+	public ObjectIdMap() {
+		this(INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Instantiates a new object id map that holds the given number of entries without growing.
+	 *
+	 * @param expectedSize
+	 *            the expected size
+	 */
+	public ObjectIdMap(final int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		this.keys = new ObjectId[capacity];
+		this.values = new Object[capacity];
+	}
+	
+	/**
+	 * Checks if the map contains the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return true, if successful
+	 */
+	public boolean containsKey(final ObjectId key) {
+		return this.keys[slot(this.keys, key)] != null;
+	}
+	
+	/**
+	 * Performs the given action for each entry.
+	 *
+	 * @param action
+	 *            the action
+	 */
+	@SuppressWarnings ("unchecked")
+	public void forEach(final BiConsumer<ObjectId, ? super V> action) {
+		Requires.notNull(action);
+		
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.keys[i] != null) {
+				action.accept(this.keys[i], (V) this.values[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the value of the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value or null if the key is unknown
+	 */
+	@SuppressWarnings ("unchecked")
+	public V get(final ObjectId key) {
+		return (V) this.values[slot(this.keys, key)];
+	}
+	
+	/**
+	 * Doubles the capacity.
+	 */
+	private void grow() {
+		final ObjectId[] keys = new ObjectId[this.keys.length * 2];
+		final Object[] values = new Object[this.values.length * 2];
+		
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.keys[i] != null) {
+				final int slot = slot(keys, this.keys[i]);
+				keys[slot] = this.keys[i];
+				values[slot] = this.values[i];
+			}
+		}
+		
+		this.keys = keys;
+		this.values = values;
+	}
+	
+	/**
+	 * Checks if the map is empty.
+	 *
+	 * @return true, if is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	/**
+	 * Gets a snapshot of the keys.
+	 *
+	 * @return the keys
+	 */
+	public List<ObjectId> keys() {
+		final List<ObjectId> list = new ArrayList<>(this.size);
+		for (final ObjectId key : this.keys) {
+			if (key != null) {
+				list.add(key);
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * Associates the value with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return the previous value or null if the key was unknown
+	 */
+	@SuppressWarnings ("unchecked")
+	public V put(final ObjectId key,
+	             final V value) {
+		Requires.notNull(key);
+		Requires.notNull(value);
+		
+		int slot = slot(this.keys, key);
+		if (this.keys[slot] != null) {
+			final V previous = (V) this.values[slot];
+			this.values[slot] = value;
+			return previous;
+		}
+		
+		if ((this.size + 1) * 2 > this.keys.length) {
+			grow();
+			slot = slot(this.keys, key);
+		}
+		
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		++this.size;
+		return null;
+	}
+	
+	/**
+	 * Copies all entries of the given map.
+	 *
+	 * @param map
+	 *            the map
+	 */
+	public void putAll(final ObjectIdMap<? extends V> map) {
+		Requires.notNull(map);
+		
+		map.forEach(this::put);
+	}
+	
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Finds the slot of the given key, i.e. the slot holding the key or the free slot the key would be stored in.
+	 *
+	 * @param table
+	 *            the key table
+	 * @param key
+	 *            the key
+	 * @return the slot
+	 */
+	private int slot(final ObjectId[] table,
+	                 final ObjectId key) {
+		final int mask = table.length - 1;
+		int slot = key.hashCode() & mask;
+		ObjectId current;
+		while ((current = table[slot]) != null && !current.equalTo(key)) {
+			slot = slot + 1 & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Gets a snapshot of the values.
+	 *
+	 * @return the values
+	 */
+	@SuppressWarnings ("unchecked")
+	public List<V> values() {
+		final List<V> list = new ArrayList<>(this.size);
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.keys[i] != null) {
+				list.add((V) this.values[i]);
+			}
+		}
+		return list;
+	}
+}
@@ -0,0 +1,359 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.mozkito.skeleton.contracts.Asserts;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A prefix sharing dictionary of file paths. Paths are split at '/' into components; every distinct component name is
+ * stored once and every path is a node of a component trie, i.e. paths sharing a directory share the nodes of that
+ * directory. Each node carries a long value (e.g. the id of the corresponding handle).
+ *
+ * All data is kept in primitive arrays. Paths can be interned directly from a byte buffer without creating a
+ * {@link String}; strings are only created if a path is requested by {@link #path(int)}.
+ *
+ * Interning and rebuilding paths is synchronized, since handles rebuild their path on the thread that persists them.
+ * Node values are not synchronized and must be accessed by a single thread.
+ *
+ * @author Sascha Just
+ */
+public class PathDictionary {
+	
+	/** The Constant ROOT. */
+	public static final int   ROOT             = 0;
+	
+	/** The Constant SEPARATOR. */
+	private static final byte SEPARATOR        = '/';
+	
+	/** The Constant INITIAL_CAPACITY. */
+	private static final int  INITIAL_CAPACITY = 1024;
+	
+	/** The charset used to encode and decode paths. */
+	private final Charset     charset;
+	
+	/** The bytes of all component names. */
+	private byte[]            pool             = new byte[INITIAL_CAPACITY * 8];
+	
+	/** The number of used bytes in the pool. */
+	private int               poolSize         = 0;
+	
+	/** The offsets of the component names in the pool. */
+	private int[]             componentOffsets = new int[INITIAL_CAPACITY];
+	
+	/** The lengths of the component names. */
+	private int[]             componentLengths = new int[INITIAL_CAPACITY];
+	
+	/** The number of components. */
+	private int               components       = 0;
+	
+	/** Open addressing table of component index + 1 by hash of the name. */
+	private int[]             componentTable   = new int[INITIAL_CAPACITY * 2];
+	
+	/** The parent node of each node. */
+	private int[]             parents          = new int[INITIAL_CAPACITY];
+	
+	/** The component of each node. */
+	private int[]             nodeComponents   = new int[INITIAL_CAPACITY];
+	
+	/** The value of each node. */
+	private long[]            values           = new long[INITIAL_CAPACITY];
+	
+	/** The number of nodes including the root. */
+	private int               nodes            = 1;
+	
+	/** Open addressing table of node index by hash of parent and component. */
+	private int[]             childTable       = new int[INITIAL_CAPACITY * 2];
+	
+	/**
+	 * Instantiates a new path dictionary.
+	 *
+	 * @param charset
+	 *            the charset used to encode and decode paths
+	 */
+	public PathDictionary(final Charset charset) {
+		Requires.notNull(charset);
+		this.charset = charset;
+	}
+	
+	/**
+	 * Returns the child of the given node with the given component, creating it if absent.
+	 *
+	 * @param parent
+	 *            the parent
+	 * @param component
+	 *            the component
+	 * @return the node
+	 */
+	private int child(final int parent,
+	                  final int component) {
+		int mask = this.childTable.length - 1;
+		int slot = mix(parent * 31 + component) & mask;
+		
+		int node;
+		while ((node = this.childTable[slot]) != 0) {
+			if (this.parents[node] == parent && this.nodeComponents[node] == component) {
+				return node;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		if (this.nodes == this.parents.length) {
+			final int capacity = this.parents.length * 2;
+			this.parents = Arrays.copyOf(this.parents, capacity);
+			this.nodeComponents = Arrays.copyOf(this.nodeComponents, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+		
+		node = this.nodes++;
+		this.parents[node] = parent;
+		this.nodeComponents[node] = component;
+		
+		if (this.nodes * 2 > this.childTable.length) {
+			rehashChildren();
+		} else {
+			this.childTable[slot] = node;
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Returns the index of the component with the given name, interning the name if absent.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param from
+	 *            the offset of the first byte
+	 * @param to
+	 *            the offset after the last byte
+	 * @return the component index
+	 */
+	private int component(final byte[] bytes,
+	                      final int from,
+	                      final int to) {
+		final int length = to - from;
+		final int hash = hash(bytes, from, to);
+		int mask = this.componentTable.length - 1;
+		int slot = mix(hash) & mask;
+		
+		int entry;
+		TABLE: while ((entry = this.componentTable[slot]) != 0) {
+			final int component = entry - 1;
+			if (this.componentLengths[component] == length) {
+				final int offset = this.componentOffsets[component];
+				for (int i = 0; i < length; ++i) {
+					if (this.pool[offset + i] != bytes[from + i]) {
+						slot = (slot + 1) & mask;
+						continue TABLE;
+					}
+				}
+				return component;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		if (this.poolSize + length > this.pool.length) {
+			this.pool = Arrays.copyOf(this.pool, Math.max(this.pool.length * 2, this.poolSize + length));
+		}
+		if (this.components == this.componentOffsets.length) {
+			final int capacity = this.componentOffsets.length * 2;
+			this.componentOffsets = Arrays.copyOf(this.componentOffsets, capacity);
+			this.componentLengths = Arrays.copyOf(this.componentLengths, capacity);
+		}
+		
+		final int component = this.components++;
+		System.arraycopy(bytes, from, this.pool, this.poolSize, length);
+		this.componentOffsets[component] = this.poolSize;
+		this.componentLengths[component] = length;
+		this.poolSize += length;
+		
+		if (this.components * 2 > this.componentTable.length) {
+			final int[] table = new int[this.componentTable.length * 2];
+			mask = table.length - 1;
+			for (int i = 0; i < this.components; ++i) {
+				final int offset = this.componentOffsets[i];
+				slot = mix(hash(this.pool, offset, offset + this.componentLengths[i])) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = i + 1;
+			}
+			this.componentTable = table;
+		} else {
+			this.componentTable[slot] = component + 1;
+		}
+		
+		return component;
+	}
+	
+	/**
+	 * Gets the value of the given node.
+	 *
+	 * @param node
+	 *            the node
+	 * @return the value; 0 if no value has been set
+	 */
+	public long getValue(final int node) {
+		return this.values[node];
+	}
+	
+	/**
+	 * Computes the hash of the given bytes.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param from
+	 *            the offset of the first byte
+	 * @param to
+	 *            the offset after the last byte
+	 * @return the hash
+	 */
+	private int hash(final byte[] bytes,
+	                 final int from,
+	                 final int to) {
+		int hash = 1;
+		for (int i = from; i < to; ++i) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the node of the given path, creating it (and the nodes of its directories) if absent.
+	 *
+	 * @param bytes
+	 *            the buffer containing the path
+	 * @param from
+	 *            the offset of the first byte of the path
+	 * @param to
+	 *            the offset after the last byte of the path
+	 * @return the node
+	 */
+	public synchronized int intern(final byte[] bytes,
+	                               final int from,
+	                               final int to) {
+		Requires.notNull(bytes);
+		Requires.less(from, to, "Paths must not be empty.");
+		
+		int node = ROOT;
+		int start = from;
+		for (int i = from; i <= to; ++i) {
+			if (i == to || bytes[i] == SEPARATOR) {
+				// empty components (leading, trailing or double separators) are kept to retain the path as is
+				node = child(node, component(bytes, start, i));
+				start = i + 1;
+			}
+		}
+		return node;
+	}
+	
+	/**
+	 * Returns the node of the given path, creating it (and the nodes of its directories) if absent.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the node
+	 */
+	public int intern(final String path) {
+		Requires.notNull(path);
+		final byte[] bytes = path.getBytes(this.charset);
+		return intern(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Spreads the bits of the given hash.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @return the int
+	 */
+	private int mix(final int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ h >>> 16;
+	}
+	
+	/**
+	 * Rebuilds the path of the given node.
+	 *
+	 * @param node
+	 *            the node
+	 * @return the path
+	 */
+	public synchronized String path(final int node) {
+		Requires.positive(node, "The root has no path.");
+		Requires.less(node, this.nodes, "Unknown node.");
+		
+		int length = -1;
+		for (int current = node; current != ROOT; current = this.parents[current]) {
+			length += this.componentLengths[this.nodeComponents[current]] + 1;
+		}
+		
+		final byte[] bytes = new byte[length];
+		int end = length;
+		for (int current = node; current != ROOT; current = this.parents[current]) {
+			final int component = this.nodeComponents[current];
+			final int componentLength = this.componentLengths[component];
+			end -= componentLength;
+			System.arraycopy(this.pool, this.componentOffsets[component], bytes, end, componentLength);
+			if (end > 0) {
+				bytes[--end] = SEPARATOR;
+			}
+		}
+		Asserts.equalTo(0, end);
+		
+		return new String(bytes, this.charset);
+	}
+	
+	/**
+	 * Rebuilds the child table with twice the capacity.
+	 */
+	private void rehashChildren() {
+		final int[] table = new int[this.childTable.length * 2];
+		final int mask = table.length - 1;
+		for (int node = 1; node < this.nodes; ++node) {
+			int slot = mix(this.parents[node] * 31 + this.nodeComponents[node]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = node;
+		}
+		this.childTable = table;
+	}
+	
+	/**
+	 * Sets the value of the given node.
+	 *
+	 * @param node
+	 *            the node
+	 * @param value
+	 *            the value
+	 */
+	public void setValue(final int node,
+	                     final long value) {
+		this.values[node] = value;
+	}
+	
+	/**
+	 * The number of nodes, i.e. the number of distinct paths and directories.
+	 *
+	 * @return the size
+	 */
+	public synchronized int size() {
+		return this.nodes - 1;
+	}
+}
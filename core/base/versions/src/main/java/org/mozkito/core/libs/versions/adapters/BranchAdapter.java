@@ -13,6 +13,7 @@
 
 package org.mozkito.core.libs.versions.adapters;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,8 +21,10 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.mozkito.core.libs.versions.model.Branch;
+import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
+import org.mozkito.skeleton.sequel.ResultIterator;
 import org.mozkito.skeleton.sequel.SequelDatabase;
 
 /**
@@ -47,10 +50,13 @@ public class BranchAdapter extends AbstractSequelAdapter<Branch> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
 	 */
 	public Branch create(final ResultSet result) {
-		// TODO Auto-generated method stub
-		// return null;
-		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
+		try {
+			final Branch branch = new Branch(result.getLong(2), result.getString(3));
+			branch.id(result.getLong(1));
+			return branch;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -77,6 +83,28 @@ public class BranchAdapter extends AbstractSequelAdapter<Branch> {
 		
 	}
 	
+	/**
+	 * Loads all branches of the given depot.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @return the iterator
+	 */
+	public Iterator<Branch> load(final Depot depot) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			final PreparedStatement statement = connection.prepareStatement("SELECT id, depot_id, name FROM "
+			        + "branches WHERE depot_id = ?");
+			statement.setLong(1, depot.id());
+			return new ResultIterator<Branch>(this, statement.executeQuery());
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -119,7 +147,7 @@ public class BranchAdapter extends AbstractSequelAdapter<Branch> {
 			statement.setLong(++index, branch.getDepotId());
 			statement.setString(++index, branch.getName());
 			
-			statement.executeUpdate();
+			statement.addBatch();
 			
 			branch.id(id);
 		} catch (final SQLException e) {
@@ -38,7 +38,7 @@ public class BranchEdgeAdapter extends AbstractSequelAdapter<BranchEdge> {
 	 *            the database
 	 */
 	public BranchEdgeAdapter(final SequelDatabase database) {
-		super(database, "branch_edge");
+		super(database, "branch_edge", true);
 	}
 	
 	/**
@@ -120,7 +120,7 @@ public class BranchEdgeAdapter extends AbstractSequelAdapter<BranchEdge> {
 			saveStatement.setLong(++index, edge.edgeId);
 			saveStatement.setLong(++index, edge.branchId);
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			edge.id(id);
 		} catch (final SQLException e) {
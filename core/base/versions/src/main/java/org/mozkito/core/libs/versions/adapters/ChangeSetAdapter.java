@@ -13,16 +13,22 @@
 
 package org.mozkito.core.libs.versions.adapters;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.mozkito.core.libs.versions.Commit;
+import org.mozkito.core.libs.versions.ObjectId;
 import org.mozkito.core.libs.versions.model.ChangeSet;
+import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
+import org.mozkito.skeleton.sequel.ResultIterator;
 import org.mozkito.skeleton.sequel.SequelDatabase;
 
 /**
@@ -39,7 +45,7 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 	 *            the database
 	 */
 	public ChangeSetAdapter(final SequelDatabase database) {
-		super(database, "changeset");
+		super(database, "changeset", true);
 	}
 	
 	/**
@@ -48,10 +54,22 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
 	 */
 	public ChangeSet create(final ResultSet result) {
-		// TODO Auto-generated method stub
-		// return null;
-		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
+		try {
+			int index = 0;
+			final long id = result.getLong(++index);
+			final ChangeSet changeSet = new ChangeSet(result.getLong(++index),
+			                                          ObjectId.fromHex(result.getString(++index).trim()),
+			                                          ObjectId.fromHex(result.getString(++index).trim()),
+			                                          result.getTimestamp(++index).toInstant(),
+			                                          result.getLong(++index),
+			                                          result.getTimestamp(++index).toInstant(),
+			                                          result.getLong(++index), result.getString(++index),
+			                                          result.getString(++index));
+			changeSet.id(id);
+			return changeSet;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -78,6 +96,29 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 		
 	}
 	
+	/**
+	 * Loads all change sets of the given depot.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @return the iterator
+	 */
+	public Iterator<ChangeSet> load(final Depot depot) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			final PreparedStatement statement = connection.prepareStatement("SELECT id, depot_id, commit_hash, "
+			        + "tree_hash, authored_time, author_id, commit_time, committer_id, subject, body FROM "
+			        + "changesets WHERE depot_id = ?");
+			statement.setLong(1, depot.id());
+			return new ResultIterator<ChangeSet>(this, statement.executeQuery());
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -102,6 +143,38 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 		
 	}
 	
+	/**
+	 * Loads the commits of the given depot, i.e. only the columns of the change sets that are kept in the graph.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @return the commits
+	 */
+	public List<Commit> loadCommits(final Depot depot) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT id, commit_hash, "
+			        + "authored_time, commit_time FROM changesets WHERE depot_id = ?")) {
+				statement.setLong(1, depot.id());
+				
+				final List<Commit> commits = new ArrayList<>();
+				try (final ResultSet result = statement.executeQuery()) {
+					while (result.next()) {
+						commits.add(new Commit(result.getLong(1), ObjectId.fromHex(result.getString(2).trim()),
+						                       result.getTimestamp(3).toInstant().getEpochSecond(),
+						                       result.getTimestamp(4).toInstant().getEpochSecond()));
+					}
+				}
+				return commits;
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -120,9 +193,9 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 			
 			saveStatement.setLong(++index, changeSet.getDepotId());
 			
-			saveStatement.setString(++index, changeSet.getCommitHash());
+			saveStatement.setString(++index, changeSet.getCommitHash().toHex());
 			
-			saveStatement.setString(++index, changeSet.getTreeHash());
+			saveStatement.setString(++index, changeSet.getTreeHash().toHex());
 			
 			saveStatement.setTimestamp(++index, Timestamp.from(changeSet.getAuthoredTime()));
 			saveStatement.setLong(++index, changeSet.getAuthorId());
@@ -133,7 +206,7 @@ public class ChangeSetAdapter extends AbstractSequelAdapter<ChangeSet> {
 			saveStatement.setString(++index, changeSet.getSubject());
 			saveStatement.setString(++index, changeSet.getBody());
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			changeSet.id(id);
 		} catch (final SQLException e) {
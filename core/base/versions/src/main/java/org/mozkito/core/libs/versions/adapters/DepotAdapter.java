@@ -14,6 +14,9 @@
 package org.mozkito.core.libs.versions.adapters;
 
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -22,6 +25,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.mozkito.core.libs.versions.model.Depot;
+import org.mozkito.skeleton.contracts.Contract;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
 import org.mozkito.skeleton.sequel.SequelDatabase;
@@ -48,10 +52,14 @@ public class DepotAdapter extends AbstractSequelAdapter<Depot> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
 	 */
 	public Depot create(final ResultSet result) {
-		// TODO Auto-generated method stub
-		// return null;
-		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
+		try {
+			final Depot depot = new Depot(result.getString(2), new URI(result.getString(3)),
+			                              result.getTimestamp(4).toInstant());
+			depot.id(result.getLong(1));
+			return depot;
+		} catch (final SQLException | URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -102,6 +110,37 @@ public class DepotAdapter extends AbstractSequelAdapter<Depot> {
 		
 	}
 	
+	/**
+	 * Loads the depot with the given name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the depot or null if there is no depot with the given name
+	 */
+	public Depot load(final String name) {
+		Requires.notNull(name);
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT id, name, origin, mined "
+			        + "FROM depots WHERE name = ?")) {
+				statement.setString(1, name);
+				
+				try (final ResultSet result = statement.executeQuery()) {
+					if (result.next()) {
+						final Depot depot = create(result);
+						Contract.asserts(!result.next());
+						return depot;
+					} else {
+						return null;
+					}
+				}
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -111,11 +150,15 @@ public class DepotAdapter extends AbstractSequelAdapter<Depot> {
 	public void save(final Depot... depots) {
 		Requires.notNull(depots);
 		
-		final PreparedStatement idStatement = prepareNextIdStatement();
 		final PreparedStatement statement = prepareSaveStatement();
 		
-		for (final Depot depot : depots) {
-			save(statement, idStatement, depot);
+		try {
+			for (final Depot depot : depots) {
+				save(statement, depot);
+			}
+			statement.executeBatch();
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
 		}
 	}
 	
@@ -134,7 +177,7 @@ public class DepotAdapter extends AbstractSequelAdapter<Depot> {
 			saveStatement.setString(++index, depot.getName());
 			saveStatement.setString(++index, depot.getOrigin().toURL().toString());
 			saveStatement.setTimestamp(++index, Timestamp.from(depot.getMined()));
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			depot.id(id);
 		} catch (SQLException | MalformedURLException e) {
 			throw new RuntimeException(e);
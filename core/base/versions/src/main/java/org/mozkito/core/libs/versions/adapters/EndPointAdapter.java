@@ -13,15 +13,19 @@
 
 package org.mozkito.core.libs.versions.adapters;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
 import java.util.List;
 
+import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Endpoint;
+import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
+import org.mozkito.skeleton.sequel.ResultIterator;
 import org.mozkito.skeleton.sequel.SequelDatabase;
 
 /**
@@ -47,10 +51,14 @@ public class EndPointAdapter extends AbstractSequelAdapter<Endpoint> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
 	 */
 	public Endpoint create(final ResultSet result) {
-		// TODO Auto-generated method stub
-		// return null;
-		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
+		try {
+			final Endpoint endpoint = new Endpoint(result.getLong(2), result.getLong(3), result.getLong(4),
+			                                       result.getLong(5));
+			endpoint.id(result.getLong(1));
+			return endpoint;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -77,6 +85,28 @@ public class EndPointAdapter extends AbstractSequelAdapter<Endpoint> {
 		
 	}
 	
+	/**
+	 * Loads all endpoints of the given depot.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @return the iterator
+	 */
+	public Iterator<Endpoint> load(final Depot depot) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			final PreparedStatement statement = connection.prepareStatement("SELECT id, depot_id, branch_id, head_id, "
+			        + "root_id FROM endpoints WHERE depot_id = ?");
+			statement.setLong(1, depot.id());
+			return new ResultIterator<Endpoint>(this, statement.executeQuery());
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -119,7 +149,7 @@ public class EndPointAdapter extends AbstractSequelAdapter<Endpoint> {
 			statement.setLong(++index, entity.getBranchId());
 			statement.setLong(++index, entity.getHeadId());
 			statement.setLong(++index, entity.getRootId());
-			statement.executeUpdate();
+			statement.addBatch();
 			
 			entity.id(id);
 		} catch (final SQLException e) {
@@ -132,11 +162,28 @@ public class EndPointAdapter extends AbstractSequelAdapter<Endpoint> {
 	 * 
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#update(java.lang.Object[])
 	 */
-	public void update(final Endpoint... objects) {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'update' has not yet been implemented."); //$NON-NLS-1$
+	public void update(final Endpoint... endpoints) {
+		Requires.notNull(endpoints);
 		
+		try {
+			final Connection connection = this.database.getConnection();
+			try (final PreparedStatement statement = connection.prepareStatement("UPDATE endpoints SET head_id = ?, "
+			        + "root_id = ? WHERE id = ?")) {
+				for (final Endpoint endpoint : endpoints) {
+					Requires.positive(endpoint.id());
+					
+					int index = 0;
+					statement.setLong(++index, endpoint.getHeadId());
+					statement.setLong(++index, endpoint.getRootId());
+					statement.setLong(++index, endpoint.id());
+					
+					final int updates = statement.executeUpdate();
+					Asserts.equalTo(1, updates);
+				}
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 }
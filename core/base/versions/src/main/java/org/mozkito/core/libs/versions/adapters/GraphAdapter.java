@@ -13,19 +13,26 @@
 
 package org.mozkito.core.libs.versions.adapters;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import org.mozkito.core.libs.versions.Commit;
 import org.mozkito.core.libs.versions.Graph;
 import org.mozkito.core.libs.versions.Graph.Edge;
+import org.mozkito.core.libs.versions.Graph.EdgeType;
+import org.mozkito.core.libs.versions.model.Branch;
 import org.mozkito.core.libs.versions.model.BranchEdge;
 import org.mozkito.core.libs.versions.model.Endpoint;
 import org.mozkito.core.libs.versions.model.GraphEdge;
 import org.mozkito.core.libs.versions.model.IntegrationEdge;
+import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
 import org.mozkito.skeleton.sequel.ISequelAdapter;
@@ -108,6 +115,86 @@ public class GraphAdapter extends AbstractSequelAdapter<Graph> {
 		
 	}
 	
+	/**
+	 * Restores the persisted state of the given graph: the graph id, the edges including their branches and integration
+	 * paths, and the endpoints. All commits and branches referenced by the persisted graph have to be provided.
+	 *
+	 * @param graph
+	 *            the graph
+	 * @param commits
+	 *            the commits of the depot by id
+	 * @param branches
+	 *            the branches of the depot by id
+	 */
+	public void load(final Graph graph,
+	                 final Map<Long, Commit> commits,
+	                 final Map<Long, Branch> branches) {
+		Requires.notNull(graph);
+		Requires.notNull(commits);
+		Requires.notNull(branches);
+		
+		final long depotId = graph.getDepot().id();
+		Requires.positive(depotId);
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT id FROM graphs "
+			        + "WHERE depot_id = ?")) {
+				statement.setLong(1, depotId);
+				try (final ResultSet result = statement.executeQuery()) {
+					if (result.next()) {
+						graph.id(result.getLong(1));
+					}
+				}
+			}
+			
+			final Map<Long, Edge> edges = new HashMap<>();
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT id, source_id, target_id, "
+			        + "type FROM edges WHERE depot_id = ?")) {
+				statement.setLong(1, depotId);
+				try (final ResultSet result = statement.executeQuery()) {
+					while (result.next()) {
+						final Commit parent = commits.get(result.getLong(2));
+						final Commit child = commits.get(result.getLong(3));
+						Asserts.notNull(parent);
+						Asserts.notNull(child);
+						edges.put(result.getLong(1),
+						          graph.restoreEdge(parent, child, EdgeType.values()[result.getShort(4)],
+						                            result.getLong(1)));
+					}
+				}
+			}
+			
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT edge_id, branch_id FROM "
+			        + "branch_edges WHERE depot_id = ?")) {
+				statement.setLong(1, depotId);
+				try (final ResultSet result = statement.executeQuery()) {
+					while (result.next()) {
+						edges.get(result.getLong(1)).restoreBranch(branches.get(result.getLong(2)));
+					}
+				}
+			}
+			
+			try (final PreparedStatement statement = connection.prepareStatement("SELECT edge_id, branch_id FROM "
+			        + "integration_edges WHERE depot_id = ?")) {
+				statement.setLong(1, depotId);
+				try (final ResultSet result = statement.executeQuery()) {
+					while (result.next()) {
+						edges.get(result.getLong(1)).restoreIntegrationPath(branches.get(result.getLong(2)));
+					}
+				}
+			}
+			
+			final Iterator<Endpoint> endpoints = ((EndPointAdapter) this.endPointAdapter).load(graph.getDepot());
+			while (endpoints.hasNext()) {
+				final Endpoint endpoint = endpoints.next();
+				graph.restoreEndPoint(branches.get(endpoint.getBranchId()), endpoint);
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -147,80 +234,115 @@ public class GraphAdapter extends AbstractSequelAdapter<Graph> {
 			
 			int index = 0;
 			
-			final PreparedStatement edgeStmt = this.edgeAdapter.prepareSaveStatement();
-			final PreparedStatement edgeNextIdStmt = this.edgeAdapter.prepareNextIdStatement();
-			final PreparedStatement branchStmt = this.branchAdapter.prepareSaveStatement();
-			final PreparedStatement branchNextIdStmt = this.branchAdapter.prepareNextIdStatement();
-			final PreparedStatement integrationStmt = this.integrationAdapter.prepareSaveStatement();
-			final PreparedStatement integrationNextIdStmt = this.integrationAdapter.prepareNextIdStatement();
-			final PreparedStatement endPointStmt = this.endPointAdapter.prepareSaveStatement();
-			final PreparedStatement endPointNextIdStmt = this.endPointAdapter.prepareNextIdStatement();
-			
 			saveStatement.setLong(++index, id);
 			saveStatement.setLong(++index, entity.getDepot().id());
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			entity.id(id);
 			
-			GraphEdge gEdge;
-			BranchEdge bEdge;
-			IntegrationEdge iEdge;
-			
-			final Collection<Edge> edges = entity.getEdges();
-			int batchCounter = 0;
-			final int batchSize = 10000;
-			
-			for (final Edge edge : edges) {
+			saveChanges(entity);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Persists all edges, branch edges, integration edges and endpoints of the graph that have not been persisted yet
+	 * and updates the endpoints that moved. Large graphs are sent in several batches; committing is left to the
+	 * caller, i.e. the dumper, such that the graph is saved within a single transaction.
+	 *
+	 * @param entity
+	 *            the entity
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void saveChanges(final Graph entity) throws SQLException {
+		final PreparedStatement edgeStmt = this.edgeAdapter.prepareSaveStatement();
+		final PreparedStatement branchStmt = this.branchAdapter.prepareSaveStatement();
+		final PreparedStatement integrationStmt = this.integrationAdapter.prepareSaveStatement();
+		final PreparedStatement endPointStmt = this.endPointAdapter.prepareSaveStatement();
+		
+		GraphEdge gEdge;
+		BranchEdge bEdge;
+		IntegrationEdge iEdge;
+		long edgeId;
+		
+		final Collection<Edge> edges = entity.getEdges();
+		int batchCounter = 0;
+		final int batchSize = 10000;
+		
+		for (final Edge edge : edges) {
+			if (edge.isPersisted()) {
+				edgeId = edge.getId();
+			} else {
 				++batchCounter;
 				gEdge = new GraphEdge(entity.getDepot().id(), edge.getSourceId(), edge.getTargetId(), edge.getType());
-				this.edgeAdapter.save(edgeStmt, edgeNextIdStmt, gEdge);
-				
-				for (final long branchId : edge.getBranchIds()) {
-					++batchCounter;
-					bEdge = new BranchEdge(entity.getDepot().id(), gEdge.id(), branchId);
-					this.branchAdapter.save(branchStmt, branchNextIdStmt, bEdge);
-					if (batchCounter >= batchSize) {
-						this.database.commit();
-						batchCounter = 0;
-					}
-				}
-				
-				for (final long branchId : edge.getIntegrationPathIds()) {
-					++batchCounter;
-					iEdge = new IntegrationEdge(entity.getDepot().id(), gEdge.id(), branchId);
-					this.integrationAdapter.save(integrationStmt, integrationNextIdStmt, iEdge);
-					if (batchCounter >= batchSize) {
-						this.database.commit();
-						batchCounter = 0;
-					}
-				}
-				
+				this.edgeAdapter.save(edgeStmt, gEdge);
+				edgeId = gEdge.id();
+			}
+			
+			for (final long branchId : edge.getNewBranchIds()) {
+				++batchCounter;
+				bEdge = new BranchEdge(entity.getDepot().id(), edgeId, branchId);
+				this.branchAdapter.save(branchStmt, bEdge);
 				if (batchCounter >= batchSize) {
-					this.database.commit();
+					executeBatches(edgeStmt, branchStmt, integrationStmt);
 					batchCounter = 0;
 				}
 			}
 			
-			for (final Endpoint endPoint : entity.getEndPoints()) {
-				this.endPointAdapter.save(endPointStmt, endPointNextIdStmt, endPoint);
+			for (final long branchId : edge.getNewIntegrationPathIds()) {
+				++batchCounter;
+				iEdge = new IntegrationEdge(entity.getDepot().id(), edgeId, branchId);
+				this.integrationAdapter.save(integrationStmt, iEdge);
+				if (batchCounter >= batchSize) {
+					executeBatches(edgeStmt, branchStmt, integrationStmt);
+					batchCounter = 0;
+				}
 			}
 			
-		} catch (final SQLException e) {
-			throw new RuntimeException(e);
+			edge.persisted(edgeId);
+			
+			if (batchCounter >= batchSize) {
+				executeBatches(edgeStmt, branchStmt, integrationStmt);
+				batchCounter = 0;
+			}
+		}
+		
+		for (final Endpoint endPoint : entity.getEndPoints()) {
+			if (endPoint.id() <= 0) {
+				this.endPointAdapter.save(endPointStmt, endPoint);
+			}
+		}
+		
+		// the moved endpoints may have been inserted above
+		executeBatches(edgeStmt, branchStmt, integrationStmt, endPointStmt);
+		
+		for (final Endpoint endPoint : entity.getUpdatedEndPoints()) {
+			this.endPointAdapter.update(endPoint);
 		}
 	}
 	
 	/**
-	 * {@inheritDoc}
-	 * 
+	 * Persists the changes of already persisted graphs, i.e. new edges, new branch and integration edges, new and moved
+	 * endpoints. The graph rows themselves are kept.
+	 *
+	 * @param graphs
+	 *            the graphs
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#update(java.lang.Object[])
 	 */
-	public void update(final Graph... objects) {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'update' has not yet been implemented."); //$NON-NLS-1$
+	public void update(final Graph... graphs) {
+		Requires.notNull(graphs);
 		
+		try {
+			for (final Graph graph : graphs) {
+				Requires.positive(graph.id());
+				saveChanges(graph);
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 }
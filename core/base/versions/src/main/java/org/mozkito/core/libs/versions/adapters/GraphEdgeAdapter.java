@@ -34,7 +34,7 @@ public class GraphEdgeAdapter extends AbstractSequelAdapter<GraphEdge> {
 	 * @param database
 	 */
 	public GraphEdgeAdapter(final SequelDatabase database) {
-		super(database, "graph_edge");
+		super(database, "graph_edge", true);
 	}
 	
 	/**
@@ -118,7 +118,7 @@ public class GraphEdgeAdapter extends AbstractSequelAdapter<GraphEdge> {
 			saveStatement.setLong(++index, edge.targetId);
 			saveStatement.setShort(++index, edge.type);
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			edge.id(id);
 		} catch (final SQLException e) {
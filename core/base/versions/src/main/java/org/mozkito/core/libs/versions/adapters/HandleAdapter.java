@@ -14,15 +14,18 @@
 package org.mozkito.core.libs.versions.adapters;
 
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
 import java.util.List;
 
+import org.mozkito.core.libs.versions.model.Depot;
 import org.mozkito.core.libs.versions.model.Handle;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
+import org.mozkito.skeleton.sequel.ResultIterator;
 import org.mozkito.skeleton.sequel.SequelDatabase;
 import org.mozkito.skeleton.sequel.SequelManager;
 
@@ -36,7 +39,7 @@ public class HandleAdapter extends AbstractSequelAdapter<Handle> {
 	 * @param database
 	 */
 	public HandleAdapter(final SequelDatabase database) {
-		super(database, "handle");
+		super(database, "handle", true);
 	}
 	
 	/**
@@ -45,36 +48,13 @@ public class HandleAdapter extends AbstractSequelAdapter<Handle> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
 	 */
 	public Handle create(final ResultSet result) {
-		// TODO Auto-generated method stub
-		// return null;
-		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#createConstraints()
-	 */
-	@Override
-	public void createConstraints() {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'createConstraints' has not yet been implemented."); //$NON-NLS-1$
-		
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#createIndexes()
-	 */
-	@Override
-	public void createIndexes() {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'createIndexes' has not yet been implemented."); //$NON-NLS-1$
-		
+		try {
+			final Handle handle = new Handle(result.getLong(2), result.getString(3));
+			handle.id(result.getLong(1));
+			return handle;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -117,6 +97,28 @@ public class HandleAdapter extends AbstractSequelAdapter<Handle> {
 		
 	}
 	
+	/**
+	 * Loads all handles of the given depot.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @return the iterator
+	 */
+	public Iterator<Handle> load(final Depot depot) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		
+		try {
+			final Connection connection = this.database.getConnection();
+			final PreparedStatement statement = connection.prepareStatement("SELECT id, depot_id, path FROM "
+			        + "handles WHERE depot_id = ?");
+			statement.setLong(1, depot.id());
+			return new ResultIterator<Handle>(this, statement.executeQuery());
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -157,7 +159,7 @@ public class HandleAdapter extends AbstractSequelAdapter<Handle> {
 			saveStatement.setLong(++index, id);
 			saveStatement.setLong(++index, handle.getDepotId());
 			saveStatement.setString(++index, handle.getPath());
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			handle.id(id);
 		} catch (final SQLException e) {
@@ -38,7 +38,7 @@ public class IntegrationEdgeAdapter extends AbstractSequelAdapter<IntegrationEdg
 	 *            the database
 	 */
 	public IntegrationEdgeAdapter(final SequelDatabase database) {
-		super(database, "integration_edge");
+		super(database, "integration_edge", true);
 	}
 	
 	/**
@@ -120,7 +120,7 @@ public class IntegrationEdgeAdapter extends AbstractSequelAdapter<IntegrationEdg
 			saveStatement.setLong(++index, edge.edgeId);
 			saveStatement.setLong(++index, edge.branchId);
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			edge.id(id);
 		} catch (final SQLException e) {
@@ -20,6 +20,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.mozkito.core.libs.versions.model.Revision;
+import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.AbstractSequelAdapter;
 import org.mozkito.skeleton.sequel.SequelDatabase;
@@ -34,7 +35,7 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 	 * @param database
 	 */
 	public RevisionAdapter(final SequelDatabase database) {
-		super(database, "revision");
+		super(database, "revision", true);
 	}
 	
 	/**
@@ -46,7 +47,7 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 		// TODO Auto-generated method stub
 		// return null;
 		throw new RuntimeException("Method 'create' has not yet been implemented."); //$NON-NLS-1$
-		
+	
 	}
 	
 	/**
@@ -54,11 +55,19 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 	 * 
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#delete(java.lang.Object)
 	 */
-	public void delete(final Revision object) {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'delete' has not yet been implemented."); //$NON-NLS-1$
+	public void delete(final Revision revision) {
+		Requires.notNull(revision);
+		Requires.positive(revision.id());
 		
+		try (final PreparedStatement statement = this.database.getConnection()
+		                                                      .prepareStatement("DELETE FROM revisions WHERE id = ?")) {
+			statement.setLong(1, revision.id());
+			
+			final int updates = statement.executeUpdate();
+			Asserts.equalTo(1, updates);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -70,7 +79,7 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 		// TODO Auto-generated method stub
 		// return null;
 		throw new RuntimeException("Method 'load' has not yet been implemented."); //$NON-NLS-1$
-		
+	
 	}
 	
 	/**
@@ -82,7 +91,7 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 		// TODO Auto-generated method stub
 		// return null;
 		throw new RuntimeException("Method 'load' has not yet been implemented."); //$NON-NLS-1$
-		
+	
 	}
 	
 	/**
@@ -94,7 +103,7 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 		// TODO Auto-generated method stub
 		// return null;
 		throw new RuntimeException("Method 'load' has not yet been implemented."); //$NON-NLS-1$
-		
+	
 	}
 	
 	/**
@@ -120,12 +129,12 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 			saveStatement.setShort(++index, revision.getConfidence());
 			saveStatement.setInt(++index, revision.getOldMode());
 			saveStatement.setInt(++index, revision.getNewMode());
-			saveStatement.setString(++index, revision.getOldHash());
-			saveStatement.setString(++index, revision.getNewHash());
+			saveStatement.setString(++index, revision.getOldHash().toHex());
+			saveStatement.setString(++index, revision.getNewHash().toHex());
 			saveStatement.setInt(++index, revision.getLinesIn());
 			saveStatement.setInt(++index, revision.getLinesOut());
 			
-			saveStatement.executeUpdate();
+			saveStatement.addBatch();
 			
 			revision.id(id);
 		} catch (final SQLException e) {
@@ -143,10 +152,14 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 		Requires.notNull(revisions);
 		
 		final PreparedStatement statement = prepareSaveStatement();
-		final PreparedStatement idStatement = prepareNextIdStatement();
 		
-		for (final Revision revision : revisions) {
-			save(statement, idStatement, revision);
+		try {
+			for (final Revision revision : revisions) {
+				save(statement, revision);
+			}
+			statement.executeBatch();
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
 		}
 	}
 	
@@ -155,11 +168,37 @@ public class RevisionAdapter extends AbstractSequelAdapter<Revision> {
 	 * 
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#update(java.lang.Object[])
 	 */
-	public void update(final Revision... objects) {
-		// TODO Auto-generated method stub
-		//
-		throw new RuntimeException("Method 'update' has not yet been implemented."); //$NON-NLS-1$
+	public void update(final Revision... revisions) {
+		Requires.notNull(revisions);
 		
+		try (final PreparedStatement statement = this.database.getConnection()
+		                                                      .prepareStatement("UPDATE revisions SET change_type = ?, "
+		                                                              + "source_id = ?, target_id = ?, confidence = ?, "
+		                                                              + "old_mode = ?, new_mode = ?, old_hash = ?, "
+		                                                              + "new_hash = ?, lines_in = ?, lines_out = ? "
+		                                                              + "WHERE id = ?")) {
+			for (final Revision revision : revisions) {
+				Requires.positive(revision.id());
+				
+				int index = 0;
+				statement.setShort(++index, revision.getChangeType());
+				statement.setLong(++index, revision.getSourceId());
+				statement.setLong(++index, revision.getTargetId());
+				statement.setShort(++index, revision.getConfidence());
+				statement.setInt(++index, revision.getOldMode());
+				statement.setInt(++index, revision.getNewMode());
+				statement.setString(++index, revision.getOldHash().toHex());
+				statement.setString(++index, revision.getNewHash().toHex());
+				statement.setInt(++index, revision.getLinesIn());
+				statement.setInt(++index, revision.getLinesOut());
+				statement.setLong(++index, revision.id());
+				
+				final int updates = statement.executeUpdate();
+				Asserts.equalTo(1, updates);
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 }
@@ -16,6 +16,7 @@ package org.mozkito.core.libs.versions.builders;
 import java.time.Instant;
 
 import org.mozkito.core.libs.users.model.Identity;
+import org.mozkito.core.libs.versions.ObjectId;
 import org.mozkito.core.libs.versions.model.ChangeSet;
 import org.mozkito.skeleton.sequel.IBuilder;
 
@@ -33,7 +34,7 @@ public class ChangeSetBuilder implements IBuilder<ChangeSet> {
 	private long       authorId;
 	
 	/** The commit hash. */
-	private String     commitHash;
+	private ObjectId   commitHash;
 	
 	/** The committer id. */
 	private long       committerId;
@@ -45,7 +46,7 @@ public class ChangeSetBuilder implements IBuilder<ChangeSet> {
 	private final long depotId;
 	
 	/** The tree hash. */
-	private String     treeHash;
+	private ObjectId   treeHash;
 	
 	/** The subject. */
 	private String     subject;
@@ -104,7 +105,7 @@ public class ChangeSetBuilder implements IBuilder<ChangeSet> {
 	 *            the commit hash
 	 * @return the change set builder
 	 */
-	public ChangeSetBuilder commitHash(final String commitHash) {
+	public ChangeSetBuilder commitHash(final ObjectId commitHash) {
 		this.commitHash = commitHash;
 		return this;
 	}
@@ -168,7 +169,7 @@ public class ChangeSetBuilder implements IBuilder<ChangeSet> {
 	 *            the tree hash
 	 * @return the change set builder
 	 */
-	public ChangeSetBuilder treeHash(final String treeHash) {
+	public ChangeSetBuilder treeHash(final ObjectId treeHash) {
 		this.treeHash = treeHash;
 		return this;
 	}
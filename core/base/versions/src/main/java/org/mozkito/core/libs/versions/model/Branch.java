@@ -42,6 +42,19 @@ public class Branch implements ISequelEntity {
 	 * */
 	private long              rootId;
 	
+	/**
+	 * Instantiates a new branch for an already persisted depot.
+	 *
+	 * @param depotId
+	 *            the depot id
+	 * @param name
+	 *            the name
+	 */
+	public Branch(final long depotId, final String name) {
+		this.depotId = depotId;
+		this.name = name;
+	}
+	
 	/**
 	 * Instantiates a new branch.
 	 *
@@ -14,13 +14,9 @@
 package org.mozkito.core.libs.versions.model;
 
 import java.time.Instant;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
-import org.apache.commons.collections4.collection.UnmodifiableCollection;
+import org.mozkito.core.libs.versions.ObjectId;
 
-import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.ISequelEntity;
 
@@ -41,7 +37,7 @@ public class ChangeSet implements ISequelEntity {
 	private final long        authorId;
 	
 	/** The commit hash. */
-	private final String      commitHash;
+	private final ObjectId    commitHash;
 	
 	/**
 	 * The committer id.
@@ -61,14 +57,11 @@ public class ChangeSet implements ISequelEntity {
 	/** The depot id. */
 	private final long        depotId;
 	
-	/** The branch ids. */
-	private final Set<Long>   branchIds        = new HashSet<>();
-	
 	/** The id. */
 	private long              id;
 	
 	/** The tree hash. */
-	private final String      treeHash;
+	private final ObjectId    treeHash;
 	
 	/** The subject. */
 	private final String      subject;
@@ -98,15 +91,13 @@ public class ChangeSet implements ISequelEntity {
 	 * @param body
 	 *            the body
 	 */
-	public ChangeSet(final long depotId, final String commitHash, final String treeHash, final Instant authoredTime,
+	public ChangeSet(final long depotId, final ObjectId commitHash, final ObjectId treeHash, final Instant authoredTime,
 	        final long authorId, final Instant commitTime, final long committerId, final String subject,
 	        final String body) {
 		super();
 		Requires.positive(depotId);
 		Requires.notNull(commitHash);
-		Requires.length(commitHash, 40);
 		Requires.notNull(treeHash);
-		Requires.length(treeHash, 40);
 		Requires.notNull(authoredTime);
 		Requires.positive(authorId);
 		Requires.notNull(commitTime);
@@ -123,21 +114,6 @@ public class ChangeSet implements ISequelEntity {
 		this.committerId = committerId;
 		this.subject = subject;
 		this.body = body;
-		
-		Asserts.notNull(this.branchIds);
-	}
-	
-	/**
-	 * Adds the branch id.
-	 *
-	 * @param branchId
-	 *            the branch id
-	 * @return true, if successful
-	 */
-	public boolean addBranchId(final long branchId) {
-		Requires.positive(branchId);
-		
-		return this.branchIds.add(branchId);
 	}
 	
 	/**
@@ -195,21 +171,12 @@ public class ChangeSet implements ISequelEntity {
 		return this.body;
 	}
 	
-	/**
-	 * Gets the branch ids.
-	 *
-	 * @return the branch ids
-	 */
-	public Collection<Long> getBranchIds() {
-		return UnmodifiableCollection.unmodifiableCollection(this.branchIds);
-	}
-	
 	/**
 	 * Gets the commit hash.
 	 *
 	 * @return the commitHash
 	 */
-	public final String getCommitHash() {
+	public final ObjectId getCommitHash() {
 		return this.commitHash;
 	}
 	
@@ -252,7 +219,7 @@ public class ChangeSet implements ISequelEntity {
 	 *
 	 * @return the treeHash
 	 */
-	public final String getTreeHash() {
+	public final ObjectId getTreeHash() {
 		return this.treeHash;
 	}
 	
@@ -0,0 +1,100 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.model;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.sequel.AbstractEntityCodec;
+
+/**
+ * The Class ChangeSetCodec. Encodes the ids and times of a change set in fixed width, the hashes raw, and the message
+ * as UTF-8.
+ *
+ * @author Sascha Just
+ */
+public class ChangeSetCodec extends AbstractEntityCodec<ChangeSet> {
+	
+	/**
+	 * Reads an instant.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the instant
+	 */
+	private static Instant getInstant(final ByteBuffer buffer) {
+		final long seconds = buffer.getLong();
+		return Instant.ofEpochSecond(seconds, buffer.getInt());
+	}
+	
+	/**
+	 * Writes the given instant.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param instant
+	 *            the instant
+	 */
+	private static void putInstant(final ByteBuffer buffer,
+	                               final Instant instant) {
+		buffer.putLong(instant.getEpochSecond());
+		buffer.putInt(instant.getNano());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#decode(java.nio.ByteBuffer)
+	 */
+	@Override
+	public ChangeSet decode(final ByteBuffer buffer) {
+		final long id = buffer.getLong();
+		final long depotId = buffer.getLong();
+		final ObjectId commitHash = ObjectId.fromBytes(buffer);
+		final ObjectId treeHash = ObjectId.fromBytes(buffer);
+		final Instant authoredTime = getInstant(buffer);
+		final long authorId = buffer.getLong();
+		final Instant commitTime = getInstant(buffer);
+		final long committerId = buffer.getLong();
+		final String subject = getString(buffer);
+		final String body = getString(buffer);
+		
+		final ChangeSet changeSet = new ChangeSet(depotId, commitHash, treeHash, authoredTime, authorId, commitTime,
+		                                          committerId, subject, body);
+		changeSet.id(id);
+		return changeSet;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#encode(org.mozkito.skeleton.sequel.ISequelEntity,
+	 *      java.nio.ByteBuffer)
+	 */
+	@Override
+	public void encode(final ChangeSet changeSet,
+	                   final ByteBuffer buffer) {
+		buffer.putLong(changeSet.id());
+		buffer.putLong(changeSet.getDepotId());
+		changeSet.getCommitHash().toBytes(buffer);
+		changeSet.getTreeHash().toBytes(buffer);
+		putInstant(buffer, changeSet.getAuthoredTime());
+		buffer.putLong(changeSet.getAuthorId());
+		putInstant(buffer, changeSet.getCommitTime());
+		buffer.putLong(changeSet.getCommitterId());
+		putString(buffer, changeSet.getSubject());
+		putString(buffer, changeSet.getBody());
+	}
+}
@@ -13,6 +13,7 @@
 
 package org.mozkito.core.libs.versions.model;
 
+import org.mozkito.core.libs.versions.Commit;
 import org.mozkito.skeleton.sequel.ISequelEntity;
 
 /**
@@ -40,6 +41,26 @@ public class Endpoint implements ISequelEntity {
 	/** The branch id. */
 	private final long        branchId;
 	
+	/**
+	 * Instantiates a new endpoint from persisted ids.
+	 *
+	 * @param depotId
+	 *            the depot id
+	 * @param branchId
+	 *            the branch id
+	 * @param headId
+	 *            the head id
+	 * @param rootId
+	 *            the root id
+	 */
+	public Endpoint(final long depotId, final long branchId, final long headId, final long rootId) {
+		super();
+		this.depotId = depotId;
+		this.branchId = branchId;
+		this.headId = headId;
+		this.rootId = rootId;
+	}
+	
 	/**
 	 * Instantiates a new branch head.
 	 *
@@ -52,7 +73,7 @@ public class Endpoint implements ISequelEntity {
 	 * @param root
 	 *            the root
 	 */
-	public Endpoint(final Depot depot, final Branch branch, final ChangeSet head, final ChangeSet root) {
+	public Endpoint(final Depot depot, final Branch branch, final Commit head, final Commit root) {
 		super();
 		this.depotId = depot.id();
 		this.branchId = branch.id();
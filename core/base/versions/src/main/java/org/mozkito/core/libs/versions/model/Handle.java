@@ -13,6 +13,7 @@
 
 package org.mozkito.core.libs.versions.model;
 
+import org.mozkito.core.libs.versions.PathDictionary;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.ISequelEntity;
 
@@ -24,16 +25,41 @@ import org.mozkito.skeleton.sequel.ISequelEntity;
 public class Handle implements ISequelEntity {
 	
 	/** The Constant serialVersionUID. */
-	private static final long serialVersionUID = 8059281977354410692L;
+	private static final long              serialVersionUID = 8059281977354410692L;
 	
 	/** The id. */
-	private long              id;
+	private long                           id;
 	
-	/** The path. */
-	private final String      path;
+	/** The path; null if the path is kept by the dictionary. */
+	private final String                   path;
+	
+	/** The dictionary the path can be rebuilt from. */
+	private final transient PathDictionary dictionary;
+	
+	/** The node of the path within the dictionary. */
+	private final int                      node;
 	
 	/** The depot id. */
-	private final long        depotId;
+	private final long                     depotId;
+	
+	/**
+	 * Instantiates a new handle for an already persisted depot.
+	 *
+	 * @param depotId
+	 *            the depot id
+	 * @param path
+	 *            the path
+	 */
+	public Handle(final long depotId, final String path) {
+		Requires.positive(depotId);
+		Requires.notNull(path);
+		Requires.notEmpty(path);
+		
+		this.path = path;
+		this.dictionary = null;
+		this.node = PathDictionary.ROOT;
+		this.depotId = depotId;
+	}
 	
 	/**
 	 * Instantiates a new handle.
@@ -50,6 +76,30 @@ public class Handle implements ISequelEntity {
 		Requires.notEmpty(path);
 		
 		this.path = path;
+		this.dictionary = null;
+		this.node = PathDictionary.ROOT;
+		this.depotId = depot.id();
+	}
+	
+	/**
+	 * Instantiates a new handle whose path is kept by the given dictionary. The path is rebuilt on request.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @param dictionary
+	 *            the dictionary
+	 * @param node
+	 *            the node of the path within the dictionary
+	 */
+	public Handle(final Depot depot, final PathDictionary dictionary, final int node) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		Requires.notNull(dictionary);
+		Requires.positive(node);
+		
+		this.path = null;
+		this.dictionary = dictionary;
+		this.node = node;
 		this.depotId = depot.id();
 	}
 	
@@ -68,7 +118,9 @@ public class Handle implements ISequelEntity {
 	 * @return the path
 	 */
 	public final String getPath() {
-		return this.path;
+		return this.path != null
+		                        ? this.path
+		                        : this.dictionary.path(this.node);
 	}
 	
 	/**
@@ -0,0 +1,55 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.model;
+
+import java.nio.ByteBuffer;
+
+import org.mozkito.skeleton.sequel.AbstractEntityCodec;
+
+/**
+ * The Class HandleCodec. Encodes the ids of a handle and its path; the decoded handle keeps the path itself instead of
+ * referring to a dictionary.
+ *
+ * @author Sascha Just
+ */
+public class HandleCodec extends AbstractEntityCodec<Handle> {
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#decode(java.nio.ByteBuffer)
+	 */
+	@Override
+	public Handle decode(final ByteBuffer buffer) {
+		final long id = buffer.getLong();
+		final long depotId = buffer.getLong();
+		final Handle handle = new Handle(depotId, getString(buffer));
+		handle.id(id);
+		return handle;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#encode(org.mozkito.skeleton.sequel.ISequelEntity,
+	 *      java.nio.ByteBuffer)
+	 */
+	@Override
+	public void encode(final Handle handle,
+	                   final ByteBuffer buffer) {
+		buffer.putLong(handle.id());
+		buffer.putLong(handle.getDepotId());
+		putString(buffer, handle.getPath());
+	}
+}
@@ -14,6 +14,7 @@
 package org.mozkito.core.libs.versions.model;
 
 import org.mozkito.core.libs.versions.ChangeType;
+import org.mozkito.core.libs.versions.ObjectId;
 import org.mozkito.skeleton.contracts.Requires;
 import org.mozkito.skeleton.sequel.ISequelEntity;
 
@@ -55,10 +56,10 @@ public class Revision implements ISequelEntity {
 	private final int         newMode;
 	
 	/** The old hash. */
-	private final String      oldHash;
+	private final ObjectId    oldHash;
 	
 	/** The new hash. */
-	private final String      newHash;
+	private final ObjectId    newHash;
 	
 	/** The lines in. */
 	private int               linesIn;
@@ -91,8 +92,8 @@ public class Revision implements ISequelEntity {
 	 *            the new hash
 	 */
 	public Revision(final Depot depot, final ChangeSet changeSet, final ChangeType changeType, final Handle source,
-	        final Handle target, final short confidence, final int oldMode, final int newMode, final String oldHash,
-	        final String newHash) {
+	        final Handle target, final short confidence, final int oldMode, final int newMode, final ObjectId oldHash,
+	        final ObjectId newHash) {
 		Requires.notNull(depot);
 		Requires.positive(depot.id());
 		Requires.notNull(changeType);
@@ -120,6 +121,105 @@ public class Revision implements ISequelEntity {
 		this.newHash = newHash;
 	}
 	
+	/**
+	 * Instantiates a new revision referring to the change set and the source and target handles by id.
+	 *
+	 * @param depot
+	 *            the depot
+	 * @param changeSetId
+	 *            the id of the change set
+	 * @param changeType
+	 *            the change type
+	 * @param sourceId
+	 *            the id of the source handle
+	 * @param targetId
+	 *            the id of the target handle
+	 * @param confidence
+	 *            the confidence
+	 * @param oldMode
+	 *            the old mode
+	 * @param newMode
+	 *            the new mode
+	 * @param oldHash
+	 *            the old hash
+	 * @param newHash
+	 *            the new hash
+	 */
+	public Revision(final Depot depot, final long changeSetId, final ChangeType changeType, final long sourceId,
+	        final long targetId, final short confidence, final int oldMode, final int newMode, final ObjectId oldHash,
+	        final ObjectId newHash) {
+		Requires.notNull(depot);
+		Requires.positive(depot.id());
+		Requires.positive(changeSetId);
+		Requires.notNull(changeType);
+		Requires.positive(sourceId);
+		Requires.positive(targetId);
+		Requires.greaterOrEqual(confidence, 50);
+		Requires.notNegative(oldMode);
+		Requires.notNegative(newMode);
+		Requires.notNull(oldHash);
+		Requires.notNull(newHash);
+		
+		this.depotId = depot.id();
+		this.changeSetId = changeSetId;
+		this.changeType = changeType.toMask();
+		this.sourceId = sourceId;
+		this.targetId = targetId;
+		this.confidence = confidence;
+		this.oldMode = oldMode;
+		this.newMode = newMode;
+		this.oldHash = oldHash;
+		this.newHash = newHash;
+	}
+	
+	/**
+	 * Instantiates a revision that has been encoded by the {@link RevisionCodec}.
+	 *
+	 * @param id
+	 *            the id
+	 * @param depotId
+	 *            the depot id
+	 * @param changeSetId
+	 *            the change set id
+	 * @param changeType
+	 *            the mask of the change type
+	 * @param sourceId
+	 *            the id of the source handle
+	 * @param targetId
+	 *            the id of the target handle
+	 * @param confidence
+	 *            the confidence
+	 * @param oldMode
+	 *            the old mode
+	 * @param newMode
+	 *            the new mode
+	 * @param oldHash
+	 *            the old hash
+	 * @param newHash
+	 *            the new hash
+	 * @param linesIn
+	 *            the lines in
+	 * @param linesOut
+	 *            the lines out
+	 */
+	Revision(final long id, final long depotId, final long changeSetId, final short changeType, final long sourceId,
+	        final long targetId, final short confidence, final int oldMode, final int newMode, final ObjectId oldHash,
+	        final ObjectId newHash, final int linesIn, final int linesOut) {
+		this.id = id;
+		this.depotId = depotId;
+		this.changeSetId = changeSetId;
+		this.changeType = changeType;
+		this.sourceId = sourceId;
+		this.targetId = targetId;
+		this.confidence = confidence;
+		this.oldMode = oldMode;
+		this.newMode = newMode;
+		this.oldHash = oldHash;
+		this.newHash = newHash;
+		this.linesIn = linesIn;
+		this.linesOut = linesOut;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -202,7 +302,7 @@ public class Revision implements ISequelEntity {
 	/**
 	 * @return the newHash
 	 */
-	public final String getNewHash() {
+	public final ObjectId getNewHash() {
 		return this.newHash;
 	}
 	
@@ -216,7 +316,7 @@ public class Revision implements ISequelEntity {
 	/**
 	 * @return the oldHash
 	 */
-	public final String getOldHash() {
+	public final ObjectId getOldHash() {
 		return this.oldHash;
 	}
 	
@@ -0,0 +1,76 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.model;
+
+import java.nio.ByteBuffer;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.sequel.AbstractEntityCodec;
+
+/**
+ * The Class RevisionCodec. Encodes a revision in 100 bytes: the ids, the change, and the raw hashes.
+ *
+ * @author Sascha Just
+ */
+public class RevisionCodec extends AbstractEntityCodec<Revision> {
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#decode(java.nio.ByteBuffer)
+	 */
+	@Override
+	public Revision decode(final ByteBuffer buffer) {
+		final long id = buffer.getLong();
+		final long depotId = buffer.getLong();
+		final long changeSetId = buffer.getLong();
+		final long sourceId = buffer.getLong();
+		final long targetId = buffer.getLong();
+		final short changeType = buffer.getShort();
+		final short confidence = buffer.getShort();
+		final int oldMode = buffer.getInt();
+		final int newMode = buffer.getInt();
+		final ObjectId oldHash = ObjectId.fromBytes(buffer);
+		final ObjectId newHash = ObjectId.fromBytes(buffer);
+		final int linesIn = buffer.getInt();
+		final int linesOut = buffer.getInt();
+		
+		return new Revision(id, depotId, changeSetId, changeType, sourceId, targetId, confidence, oldMode, newMode,
+		                    oldHash, newHash, linesIn, linesOut);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#encode(org.mozkito.skeleton.sequel.ISequelEntity,
+	 *      java.nio.ByteBuffer)
+	 */
+	@Override
+	public void encode(final Revision revision,
+	                   final ByteBuffer buffer) {
+		buffer.putLong(revision.id());
+		buffer.putLong(revision.getDepotId());
+		buffer.putLong(revision.getChangeSetId());
+		buffer.putLong(revision.getSourceId());
+		buffer.putLong(revision.getTargetId());
+		buffer.putShort(revision.getChangeType());
+		buffer.putShort(revision.getConfidence());
+		buffer.putInt(revision.getOldMode());
+		buffer.putInt(revision.getNewMode());
+		revision.getOldHash().toBytes(buffer);
+		revision.getNewHash().toBytes(buffer);
+		buffer.putInt(revision.getLinesIn());
+		buffer.putInt(revision.getLinesOut());
+	}
+}
@@ -0,0 +1,490 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.exec.Command;
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.exec.ProcessScheduler.Priority;
+
+/**
+ * A long-lived <code>git cat-file</code> session. Requests are pipelined to a single <code>--batch</code> (contents)
+ * respectively <code>--batch-check</code> (type and size) process, which is started on first use; the responses are
+ * parsed by a reader thread and handed out as futures in the order of the requests. Requests may be issued from any
+ * thread. The reader never waits for a request that blocks on a full input of git, i.e. any number of requests may be
+ * pipelined before the results are consumed.
+ *
+ * Objects requested by id are kept in a LRU cache, i.e. repeated lookups do not reach git. Revisions (e.g.
+ * <code>origin/master</code>) are resolved by git on every request.
+ *
+ * Every started process holds a slot of the {@link org.mozkito.skeleton.exec.ProcessScheduler} until the session is
+ * closed.
+ *
+ * @author Sascha Just
+ */
+public class CatFileSession implements Closeable {
+	
+	/**
+	 * A <code>git cat-file</code> process together with the requests that have not been answered yet.
+	 *
+	 * @param <T>
+	 *            the type of the results
+	 */
+	private abstract class Channel<T> implements Runnable {
+		
+		/** The command. */
+		private final Command                     command;
+		
+		/** The input of the process. */
+		private final OutputStream                input;
+		
+		/** The output of the process. */
+		protected final InputStream               output;
+		
+		/** The pending requests in the order they have been sent; polled by the reader without the write lock. */
+		private final Queue<CompletableFuture<T>> pending = new ConcurrentLinkedQueue<>();
+		
+		/** The header line buffer. */
+		private final ByteArrayOutputStream       header  = new ByteArrayOutputStream(128);
+		
+		/** The reader thread. */
+		private final Thread                      reader;
+		
+		/** Set as soon as the process has closed its output. */
+		private volatile IOException              failure;
+		
+		/**
+		 * Starts the process.
+		 *
+		 * @param mode
+		 *            the cat-file mode, i.e. <code>--batch</code> or <code>--batch-check</code>
+		 */
+		public Channel(final String mode) {
+			this.command = new Command("git", new String[] { "cat-file", mode }, CatFileSession.this.directory);
+			this.command.setOutputMode(OutputMode.DIRECT);
+			this.command.setPriority(Priority.HIGH);
+			this.command.logStdErr();
+			this.command.run();
+			
+			this.input = new BufferedOutputStream(this.command.getInput());
+			this.output = new BufferedInputStream(this.command.getStdOut(), 1 << 16);
+			
+			this.reader = new Thread(this, Thread.currentThread().getName() + "[CatFile" + mode + "]");
+			this.reader.setDaemon(true);
+			this.reader.start();
+		}
+		
+		/**
+		 * Fails the pending requests.
+		 *
+		 * @param failure
+		 *            the failure
+		 */
+		private void abort(final IOException failure) {
+			CompletableFuture<T> future;
+			while ((future = this.pending.poll()) != null) {
+				future.completeExceptionally(failure);
+			}
+		}
+		
+		/**
+		 * Closes the input of the process and waits for the reader to answer the pending requests.
+		 */
+		public void close() {
+			try {
+				synchronized (this) {
+					this.input.close();
+				}
+				this.reader.join();
+			} catch (final IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.command.waitFor();
+		}
+		
+		/**
+		 * Checks if the given header line answers a request for an object that does not exist, i.e. is the request
+		 * followed by <code>missing</code> or <code>ambiguous</code>. The request may contain spaces itself.
+		 *
+		 * @param fields
+		 *            the header fields
+		 * @return true, if the object does not exist
+		 */
+		private boolean isMissing(final String[] fields) {
+			final String last = fields[fields.length - 1];
+			return fields.length < 3 || "missing".equals(last) || "ambiguous".equals(last);
+		}
+		
+		/**
+		 * Parses the response to a request for an object that exists and whose header line has been read.
+		 *
+		 * @param fields
+		 *            the header fields; the id, the type and the size
+		 * @return the result
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		protected abstract T parse(String[] fields) throws IOException;
+		
+		/**
+		 * Reads the header line of the next response.
+		 *
+		 * @return the header fields, or null at the end of the output
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private String[] readHeader() throws IOException {
+			this.header.reset();
+			int b;
+			while ((b = this.output.read()) != '\n') {
+				if (b < 0) {
+					return null;
+				}
+				this.header.write(b);
+			}
+			return new String(this.header.toByteArray(), StandardCharsets.UTF_8).split(" ");
+		}
+		
+		/**
+		 * Sends a request. Requests are written under the lock of the channel, which keeps them in the order of the
+		 * pending futures; the reader does not take the lock.
+		 *
+		 * @param revision
+		 *            the revision or hex id
+		 * @return the future result
+		 */
+		public CompletableFuture<T> request(final String revision) {
+			final CompletableFuture<T> future = new CompletableFuture<>();
+			synchronized (this) {
+				if (this.failure != null) {
+					future.completeExceptionally(this.failure);
+					return future;
+				}
+				
+				// requests and responses are matched by order
+				this.pending.add(future);
+				try {
+					this.input.write(revision.getBytes(StandardCharsets.UTF_8));
+					this.input.write('\n');
+					this.input.flush();
+				} catch (final IOException e) {
+					this.pending.remove(future);
+					future.completeExceptionally(e);
+				}
+			}
+			
+			// the reader sets the failure before it fails the pending requests, i.e. either of both fails the future
+			if (this.failure != null) {
+				abort(this.failure);
+			}
+			return future;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			IOException failure = null;
+			try {
+				String[] fields;
+				while ((fields = readHeader()) != null) {
+					final T result = isMissing(fields)
+					                                  ? null
+					                                  : parse(fields);
+					final CompletableFuture<T> future = this.pending.poll();
+					if (future == null) {
+						throw new IOException("Response without request: " + String.join(" ", fields));
+					}
+					future.complete(result);
+				}
+				failure = new EOFException("git cat-file terminated.");
+			} catch (final IOException e) {
+				failure = e;
+			} catch (final RuntimeException e) {
+				// e.g. an unexpected header; the pending requests must not wait forever
+				failure = new IOException(e);
+			}
+			
+			this.failure = failure;
+			abort(failure);
+		}
+	}
+	
+	/** The Constant DEFAULT_CACHE_SIZE. */
+	public static final int                DEFAULT_CACHE_SIZE = 1024;
+	
+	/** The repository directory. */
+	private final File                     directory;
+	
+	/** The objects by id, in the order of their last access. */
+	private final Map<ObjectId, RawObject> cache;
+	
+	/** The contents channel; started on first use. */
+	private Channel<RawObject>             contents;
+	
+	/** The info channel; started on first use. */
+	private Channel<ObjectInfo>            infos;
+	
+	/** The cache hits. */
+	private long                           hits               = 0;
+	
+	/** The cache misses. */
+	private long                           misses             = 0;
+	
+	/**
+	 * Instantiates a new session using the {@link #DEFAULT_CACHE_SIZE}.
+	 *
+	 * @param directory
+	 *            the work tree of a clone or a bare repository
+	 */
+	public CatFileSession(final File directory) {
+		this(directory, DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Instantiates a new session.
+	 *
+	 * @param directory
+	 *            the work tree of a clone or a bare repository
+	 * @param cacheSize
+	 *            the max number of cached objects; 0 disables the cache
+	 */
+	public CatFileSession(final File directory, final int cacheSize) {
+		Requires.notNull(directory);
+		Requires.notNegative(cacheSize);
+		
+		this.directory = directory;
+		this.cache = new LinkedHashMap<ObjectId, RawObject>(16, 0.75f, true) {
+			
+			/** The Constant serialVersionUID. */
+			private static final long serialVersionUID = 1L;
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+			 */
+			@Override
+			protected boolean removeEldestEntry(final Entry<ObjectId, RawObject> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+	
+	/**
+	 * Closes the processes. Pending requests are answered before.
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.contents != null) {
+			this.contents.close();
+			this.contents = null;
+		}
+		if (this.infos != null) {
+			this.infos.close();
+			this.infos = null;
+		}
+	}
+	
+	/**
+	 * Gets the contents channel and starts it if necessary.
+	 *
+	 * @return the contents channel
+	 */
+	private synchronized Channel<RawObject> contents() {
+		if (this.contents == null) {
+			this.contents = new Channel<RawObject>("--batch") {
+				
+				/**
+				 * {@inheritDoc}
+				 *
+				 * @see org.mozkito.core.libs.versions.repositories.CatFileSession.Channel#parse(java.lang.String[])
+				 */
+				@Override
+				protected RawObject parse(final String[] fields) throws IOException {
+					final byte[] data = new byte[Integer.parseInt(fields[2])];
+					int offset = 0;
+					while (offset < data.length) {
+						final int read = this.output.read(data, offset, data.length - offset);
+						if (read < 0) {
+							throw new EOFException("Truncated content of object " + fields[0]);
+						}
+						offset += read;
+					}
+					// the content is terminated by a line feed
+					this.output.read();
+					
+					final RawObject object = new RawObject(ObjectType.fromName(fields[1]), data);
+					cache(ObjectId.fromHex(fields[0]), object);
+					return object;
+				}
+			};
+		}
+		return this.contents;
+	}
+	
+	/**
+	 * Gets the number of requests answered from the cache.
+	 *
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+	
+	/**
+	 * Gets the number of requests by id that had to be sent to git.
+	 *
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+	
+	/**
+	 * Gets the type and size of the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the future info; completed with null if the object does not exist
+	 */
+	public CompletableFuture<ObjectInfo> info(final ObjectId id) {
+		Requires.notNull(id);
+		
+		final RawObject object = cached(id);
+		if (object != null) {
+			return CompletableFuture.completedFuture(new ObjectInfo(id, object.getType(), object.getData().length));
+		}
+		return infos().request(id.toHex());
+	}
+	
+	/**
+	 * Resolves the given revision (e.g. <code>origin/master</code> or <code>HEAD~2</code>) and gets the type and size
+	 * of the object.
+	 *
+	 * @param revision
+	 *            the revision
+	 * @return the future info; completed with null if the revision cannot be resolved
+	 */
+	public CompletableFuture<ObjectInfo> info(final String revision) {
+		Requires.notNull(revision);
+		return infos().request(revision);
+	}
+	
+	/**
+	 * Gets the info channel and starts it if necessary.
+	 *
+	 * @return the info channel
+	 */
+	private synchronized Channel<ObjectInfo> infos() {
+		if (this.infos == null) {
+			this.infos = new Channel<ObjectInfo>("--batch-check") {
+				
+				/**
+				 * {@inheritDoc}
+				 *
+				 * @see org.mozkito.core.libs.versions.repositories.CatFileSession.Channel#parse(java.lang.String[])
+				 */
+				@Override
+				protected ObjectInfo parse(final String[] fields) {
+					return new ObjectInfo(ObjectId.fromHex(fields[0]), ObjectType.fromName(fields[1]),
+					                      Long.parseLong(fields[2]));
+				}
+			};
+		}
+		return this.infos;
+	}
+	
+	/**
+	 * Reads the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the future object; completed with null if the object does not exist
+	 */
+	public CompletableFuture<RawObject> read(final ObjectId id) {
+		Requires.notNull(id);
+		
+		final RawObject object = cached(id);
+		if (object != null) {
+			return CompletableFuture.completedFuture(object);
+		}
+		return contents().request(id.toHex());
+	}
+	
+	/**
+	 * Resolves the given revision (e.g. <code>origin/master:README</code>) and reads the object.
+	 *
+	 * @param revision
+	 *            the revision
+	 * @return the future object; completed with null if the revision cannot be resolved
+	 */
+	public CompletableFuture<RawObject> read(final String revision) {
+		Requires.notNull(revision);
+		return contents().request(revision);
+	}
+	
+	/**
+	 * Adds an object to the cache.
+	 *
+	 * @param id
+	 *            the id
+	 * @param object
+	 *            the object
+	 */
+	private synchronized void cache(final ObjectId id,
+	                                final RawObject object) {
+		this.cache.put(id, object);
+	}
+	
+	/**
+	 * Looks up an object in the cache and counts the hit or miss.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the object, or null if it is not cached
+	 */
+	private synchronized RawObject cached(final ObjectId id) {
+		final RawObject object = this.cache.get(id);
+		if (object != null) {
+			++this.hits;
+		} else {
+			++this.misses;
+		}
+		return object;
+	}
+}
@@ -0,0 +1,264 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A memory mapped commit-graph file (<code>objects/info/commit-graph</code>) as written by
+ * <code>git commit-graph write</code>. The file holds the sorted ids of the commits together with the tree, the
+ * parents, the generation number and the commit time of each commit, i.e. the history can be walked without inflating
+ * a single commit object. Commits are addressed by their position within the file.
+ *
+ * @author Sascha Just
+ */
+public class CommitGraph {
+	
+	/** The Constant SIGNATURE. <code>CGPH</code> */
+	private static final int        SIGNATURE    = 0x43475048;
+	
+	/** The Constant CHUNK_FANOUT. <code>OIDF</code> */
+	private static final int        CHUNK_FANOUT = 0x4f494446;
+	
+	/** The Constant CHUNK_IDS. <code>OIDL</code> */
+	private static final int        CHUNK_IDS    = 0x4f49444c;
+	
+	/** The Constant CHUNK_DATA. <code>CDAT</code> */
+	private static final int        CHUNK_DATA   = 0x43444154;
+	
+	/** The Constant CHUNK_EDGES. <code>EDGE</code> */
+	private static final int        CHUNK_EDGES  = 0x45444745;
+	
+	/** The Constant DATA_WIDTH. The tree id, two parent positions, the generation and the commit time. */
+	private static final int        DATA_WIDTH   = ObjectId.RAW_LENGTH + 16;
+	
+	/** The Constant NO_PARENT. */
+	private static final int        NO_PARENT    = 0x70000000;
+	
+	/** The Constant EXTRA_EDGES. Marks a second parent that points into the list of octopus parents. */
+	private static final int        EXTRA_EDGES  = 0x80000000;
+	
+	/** The Constant NO_PARENTS. */
+	private static final ObjectId[] NO_PARENTS   = new ObjectId[0];
+	
+	/** The mapped file. */
+	private final ByteBuffer        buffer;
+	
+	/** The number of commits. */
+	private final int               size;
+	
+	/** The position of the fan-out table. */
+	private int                     fanoutOffset = -1;
+	
+	/** The position of the commit ids. */
+	private int                     idsOffset    = -1;
+	
+	/** The position of the commit data. */
+	private int                     dataOffset   = -1;
+	
+	/** The position of the octopus parents; -1 if there are no octopus merges. */
+	private int                     edgesOffset  = -1;
+	
+	/**
+	 * Maps the given commit-graph file.
+	 *
+	 * @param file
+	 *            the commit-graph file
+	 */
+	public CommitGraph(final File file) {
+		Requires.notNull(file);
+		
+		try (final RandomAccessFile graph = new RandomAccessFile(file, "r")) {
+			this.buffer = graph.getChannel().map(MapMode.READ_ONLY, 0, graph.length());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		// signature, version 1, hash version 1 (SHA-1), number of chunks, number of base graphs
+		if (this.buffer.getInt(0) != SIGNATURE || this.buffer.get(4) != 1 || this.buffer.get(5) != 1
+		        || this.buffer.get(7) != 0) {
+			throw new RuntimeException(String.format("Unsupported commit-graph '%s'. Only version 1 files without "
+			        + "base graphs are supported.", file));
+		}
+		
+		final int chunks = this.buffer.get(6) & 0xff;
+		for (int i = 0; i < chunks; ++i) {
+			final int chunk = this.buffer.getInt(8 + i * 12);
+			final int offset = (int) this.buffer.getLong(8 + i * 12 + 4);
+			switch (chunk) {
+				case CHUNK_FANOUT:
+					this.fanoutOffset = offset;
+					break;
+				case CHUNK_IDS:
+					this.idsOffset = offset;
+					break;
+				case CHUNK_DATA:
+					this.dataOffset = offset;
+					break;
+				case CHUNK_EDGES:
+					this.edgesOffset = offset;
+					break;
+				default:
+					// generation data and bloom filters are not used
+					break;
+			}
+		}
+		
+		if (this.fanoutOffset < 0 || this.idsOffset < 0 || this.dataOffset < 0) {
+			throw new RuntimeException(String.format("Commit-graph '%s' lacks required chunks.", file));
+		}
+		
+		this.size = this.buffer.getInt(this.fanoutOffset + 255 * 4);
+	}
+	
+	/**
+	 * Finds the position of the commit with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the position or -1 if the commit-graph does not contain the commit
+	 */
+	public int find(final ObjectId id) {
+		Requires.notNull(id);
+		
+		final int firstByte = id.getFirstByte();
+		int low = firstByte == 0
+		                        ? 0
+		                        : this.buffer.getInt(this.fanoutOffset + (firstByte - 1) * 4);
+		int high = this.buffer.getInt(this.fanoutOffset + firstByte * 4) - 1;
+		
+		while (low <= high) {
+			final int middle = low + high >>> 1;
+			final int result = id.compareTo(this.buffer, this.idsOffset + middle * ObjectId.RAW_LENGTH);
+			if (result < 0) {
+				high = middle - 1;
+			} else if (result > 0) {
+				low = middle + 1;
+			} else {
+				return middle;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Gets the commit time of the commit with the given position.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the commit time in seconds since the epoch
+	 */
+	public long getCommitTime(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		// the lowest two bits of the generation word are the 33rd and 34th bit of the time
+		final long word = this.buffer.getLong(this.dataOffset + position * DATA_WIDTH + ObjectId.RAW_LENGTH + 8);
+		return word & 0x3ffffffffL;
+	}
+	
+	/**
+	 * Gets the generation number of the commit with the given position, i.e. its topological level: roots have the
+	 * generation 1 and every other commit has a generation greater than all of its parents. Thus, a commit can only be
+	 * an ancestor of commits with a greater generation.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the generation
+	 */
+	public int getGeneration(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		return this.buffer.getInt(this.dataOffset + position * DATA_WIDTH + ObjectId.RAW_LENGTH + 8) >>> 2;
+	}
+	
+	/**
+	 * Gets the id of the commit with the given position.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the id
+	 */
+	public ObjectId getId(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		return ObjectId.fromBytes(this.buffer, this.idsOffset + position * ObjectId.RAW_LENGTH);
+	}
+	
+	/**
+	 * Gets the parents of the commit with the given position in the order they are recorded in the commit.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the parents
+	 */
+	public ObjectId[] getParents(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		
+		final int offset = this.dataOffset + position * DATA_WIDTH + ObjectId.RAW_LENGTH;
+		final int first = this.buffer.getInt(offset);
+		final int second = this.buffer.getInt(offset + 4);
+		
+		if (first == NO_PARENT) {
+			return NO_PARENTS;
+		}
+		if (second == NO_PARENT) {
+			return new ObjectId[] { getId(first) };
+		}
+		if ((second & EXTRA_EDGES) == 0) {
+			return new ObjectId[] { getId(first), getId(second) };
+		}
+		
+		// octopus merge: the second word points to the list of the remaining parents; the last one is marked
+		int edge = this.edgesOffset + (second & ~EXTRA_EDGES) * 4;
+		int count = 2;
+		while ((this.buffer.getInt(edge) & EXTRA_EDGES) == 0) {
+			edge += 4;
+			++count;
+		}
+		
+		final ObjectId[] parents = new ObjectId[count];
+		parents[0] = getId(first);
+		edge = this.edgesOffset + (second & ~EXTRA_EDGES) * 4;
+		for (int i = 1; i < count; ++i, edge += 4) {
+			parents[i] = getId(this.buffer.getInt(edge) & ~EXTRA_EDGES);
+		}
+		return parents;
+	}
+	
+	/**
+	 * Gets the tree of the commit with the given position.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the tree
+	 */
+	public ObjectId getTree(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		return ObjectId.fromBytes(this.buffer, this.dataOffset + position * DATA_WIDTH);
+	}
+	
+	/**
+	 * Gets the number of commits.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return this.size;
+	}
+}
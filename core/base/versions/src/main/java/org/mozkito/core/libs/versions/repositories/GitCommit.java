@@ -0,0 +1,202 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A commit object as stored in the object database. The headers needed to walk the history (tree and parents) are
+ * parsed eagerly; identities and the message are decoded on demand.
+ *
+ * @author Sascha Just
+ */
+public class GitCommit {
+	
+	/** The Constant NO_PARENTS. */
+	private static final ObjectId[] NO_PARENTS = new ObjectId[0];
+	
+	/** The id. */
+	private final ObjectId          id;
+	
+	/** The raw commit. */
+	private final byte[]            data;
+	
+	/** The tree. */
+	private ObjectId                tree;
+	
+	/** The parents. */
+	private ObjectId[]              parents    = NO_PARENTS;
+	
+	/** The offset of the author line. */
+	private int                     author     = -1;
+	
+	/** The offset of the committer line. */
+	private int                     committer  = -1;
+	
+	/** The offset of the message. */
+	private int                     message;
+	
+	/** The charset of identities and message. */
+	private Charset                 charset    = StandardCharsets.UTF_8;
+	
+	/**
+	 * Parses the given commit.
+	 *
+	 * @param id
+	 *            the id
+	 * @param data
+	 *            the raw commit
+	 */
+	public GitCommit(final ObjectId id, final byte[] data) {
+		Requires.notNull(id);
+		Requires.notNull(data);
+		
+		this.id = id;
+		this.data = data;
+		
+		final List<ObjectId> parents = new ArrayList<>(2);
+		int position = 0;
+		while (position < data.length && data[position] != '\n') {
+			final int end = lineEnd(position);
+			if (startsWith(position, "tree ")) {
+				this.tree = ObjectId.fromHex(data, position + 5);
+			} else if (startsWith(position, "parent ")) {
+				parents.add(ObjectId.fromHex(data, position + 7));
+			} else if (startsWith(position, "author ")) {
+				this.author = position + 7;
+			} else if (startsWith(position, "committer ")) {
+				this.committer = position + 10;
+			} else if (startsWith(position, "encoding ")) {
+				try {
+					this.charset = Charset.forName(new String(data, position + 9, end - position - 9,
+					                                          StandardCharsets.US_ASCII));
+				} catch (final IllegalArgumentException e) {
+					// unknown encodings are read as UTF-8 like git does
+				}
+			}
+			// continuation lines of multi-line headers (e.g. gpgsig) start with a space and are skipped as well
+			position = end + 1;
+		}
+		this.message = Math.min(position + 1, data.length);
+		
+		if (this.tree == null) {
+			throw new RuntimeException(String.format("Commit '%s' has no tree.", id));
+		}
+		if (!parents.isEmpty()) {
+			this.parents = parents.toArray(new ObjectId[parents.size()]);
+		}
+	}
+	
+	/**
+	 * Gets the author.
+	 *
+	 * @return the author or null if the commit has no author
+	 */
+	public PersonIdent getAuthor() {
+		return this.author < 0
+		                      ? null
+		                      : PersonIdent.parse(this.data, this.author, lineEnd(this.author), this.charset);
+	}
+	
+	/**
+	 * Gets the committer.
+	 *
+	 * @return the committer or null if the commit has no committer
+	 */
+	public PersonIdent getCommitter() {
+		return this.committer < 0
+		                         ? null
+		                         : PersonIdent.parse(this.data, this.committer, lineEnd(this.committer),
+		                                             this.charset);
+	}
+	
+	/**
+	 * Gets the id.
+	 *
+	 * @return the id
+	 */
+	public ObjectId getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Gets the message.
+	 *
+	 * @return the message
+	 */
+	public String getMessage() {
+		return new String(this.data, this.message, this.data.length - this.message, this.charset);
+	}
+	
+	/**
+	 * Gets the parents.
+	 *
+	 * @return the parents; the array is shared and must not be modified
+	 */
+	public ObjectId[] getParents() {
+		return this.parents;
+	}
+	
+	/**
+	 * Gets the tree.
+	 *
+	 * @return the tree
+	 */
+	public ObjectId getTree() {
+		return this.tree;
+	}
+	
+	/**
+	 * Finds the end of the line starting at the given position.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the position of the line feed or the end of the data
+	 */
+	private int lineEnd(final int position) {
+		int end = position;
+		while (end < this.data.length && this.data[end] != '\n') {
+			++end;
+		}
+		return end;
+	}
+	
+	/**
+	 * Checks if the line at the given position starts with the given prefix.
+	 *
+	 * @param position
+	 *            the position
+	 * @param prefix
+	 *            the prefix
+	 * @return true, if successful
+	 */
+	private boolean startsWith(final int position,
+	                           final String prefix) {
+		if (position + prefix.length() > this.data.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); ++i) {
+			if (this.data[position + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,185 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * Read-only in-process access to a local git repository, i.e. a clone or a bare repository. The repository provides the
+ * references and the {@link ObjectDatabase}, which replace the corresponding <code>git</code> processes.
+ *
+ * @author Sascha Just
+ */
+public class GitRepository {
+	
+	/** The Constant GIT_DIR. */
+	private static final String GIT_DIR      = ".git";
+	
+	/** The Constant GIT_DIR_LINK. */
+	private static final String GIT_DIR_LINK = "gitdir: ";
+	
+	/** The Constant SYMBOLIC_REF. */
+	private static final String SYMBOLIC_REF = "ref: ";
+	
+	/**
+	 * Opens the repository in the given directory. The directory is either the work tree of a clone or a bare
+	 * repository.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @return the git repository
+	 */
+	public static GitRepository open(final File directory) {
+		Requires.notNull(directory);
+		
+		File gitDir = new File(directory, GIT_DIR);
+		try {
+			if (gitDir.isFile()) {
+				// linked work trees and submodules point to the actual git dir
+				final String link = new String(Files.readAllBytes(gitDir.toPath()), StandardCharsets.UTF_8).trim();
+				if (link.startsWith(GIT_DIR_LINK)) {
+					gitDir = new File(link.substring(GIT_DIR_LINK.length()));
+					if (!gitDir.isAbsolute()) {
+						gitDir = new File(directory, gitDir.getPath());
+					}
+				}
+			} else if (!gitDir.isDirectory()) {
+				gitDir = directory;
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if (!new File(gitDir, "objects").isDirectory()) {
+			throw new IllegalArgumentException(String.format("'%s' is not a git repository.", directory));
+		}
+		
+		return new GitRepository(gitDir);
+	}
+	
+	/** The git dir. */
+	private final File           gitDir;
+	
+	/** The object database. */
+	private final ObjectDatabase objectDatabase;
+	
+	/**
+	 * Instantiates a new git repository.
+	 *
+	 * @param gitDir
+	 *            the git dir
+	 */
+	private GitRepository(final File gitDir) {
+		this.gitDir = gitDir;
+		this.objectDatabase = new ObjectDatabase(new File(gitDir, "objects"));
+	}
+	
+	/**
+	 * Gets the git dir, i.e. the <code>.git</code> directory of a clone or the bare repository itself.
+	 *
+	 * @return the git dir
+	 */
+	public File getGitDir() {
+		return this.gitDir;
+	}
+	
+	/**
+	 * Gets the object database.
+	 *
+	 * @return the object database
+	 */
+	public ObjectDatabase getObjectDatabase() {
+		return this.objectDatabase;
+	}
+	
+	/**
+	 * Gets the references with the given prefix, e.g. <code>refs/remotes/origin/</code>. Loose references take
+	 * precedence over packed ones; symbolic references (e.g. <code>refs/remotes/origin/HEAD</code>) are skipped.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @return the object ids by reference name without the prefix
+	 */
+	public Map<String, ObjectId> getRefs(final String prefix) {
+		Requires.notNull(prefix);
+		
+		final Map<String, ObjectId> refs = new TreeMap<>();
+		
+		try {
+			final File packedRefs = new File(this.gitDir, "packed-refs");
+			if (packedRefs.isFile()) {
+				final List<String> lines = Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8);
+				for (final String line : lines) {
+					// comments and the peeled ids of annotated tags ('^') are skipped
+					if (line.length() > ObjectId.HEX_LENGTH && line.charAt(0) != '#' && line.charAt(0) != '^') {
+						final String name = line.substring(ObjectId.HEX_LENGTH + 1).trim();
+						if (name.startsWith(prefix)) {
+							refs.put(name.substring(prefix.length()), ObjectId.fromHex(line, 0));
+						}
+					}
+				}
+			}
+			
+			readLooseRefs(new File(this.gitDir, prefix), prefix, "", refs);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		return refs;
+	}
+	
+	/**
+	 * Reads the loose references in the given directory recursively.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param prefix
+	 *            the prefix of the references
+	 * @param path
+	 *            the path of the directory relative to the prefix
+	 * @param refs
+	 *            the references
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readLooseRefs(final File directory,
+	                           final String prefix,
+	                           final String path,
+	                           final Map<String, ObjectId> refs) throws IOException {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		
+		for (final File file : files) {
+			if (file.isDirectory()) {
+				readLooseRefs(file, prefix, path + file.getName() + "/", refs);
+			} else if (!file.getName().endsWith(".lock")) {
+				final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+				if (!content.startsWith(SYMBOLIC_REF) && content.length() >= ObjectId.HEX_LENGTH) {
+					refs.put(path + file.getName(), ObjectId.fromHex(content, 0));
+				}
+			}
+		}
+	}
+}
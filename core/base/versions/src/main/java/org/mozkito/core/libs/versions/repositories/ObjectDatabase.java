@@ -0,0 +1,261 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.zip.InflaterInputStream;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.core.libs.versions.ObjectIdMap;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A read-only view on the object database of a git repository (the <code>objects</code> directory). Objects are read
+ * from the memory mapped pack files or, if they are not packed, from the loose object files. The set of packs is
+ * determined when the database is opened, i.e. the database has to be reopened after a fetch or repack.
+ *
+ * @author Sascha Just
+ */
+public class ObjectDatabase {
+	
+	/** The Constant PACK_DIR. */
+	private static final String  PACK_DIR     = "pack";
+	
+	/** The Constant COMMIT_GRAPH. */
+	private static final String  COMMIT_GRAPH = "info/commit-graph";
+	
+	/** The objects directory. */
+	private final File           directory;
+	
+	/** The packs. */
+	private final List<PackFile> packs        = new ArrayList<>();
+	
+	/** The commit-graph; null if the repository has none. */
+	private final CommitGraph    commitGraph;
+	
+	/**
+	 * Opens the object database in the given <code>objects</code> directory.
+	 *
+	 * @param directory
+	 *            the objects directory
+	 */
+	public ObjectDatabase(final File directory) {
+		Requires.notNull(directory);
+		if (!directory.isDirectory()) {
+			throw new IllegalArgumentException(String.format("'%s' is not a directory.", directory));
+		}
+		
+		this.directory = directory;
+		
+		final File[] indexes = new File(directory, PACK_DIR).listFiles((dir, name) -> name.endsWith(".idx"));
+		if (indexes != null) {
+			for (final File index : indexes) {
+				final File pack = new File(index.getParentFile(), index.getName().replaceFirst("\\.idx$", ".pack"));
+				if (pack.isFile()) {
+					this.packs.add(new PackFile(pack, new PackIndex(index)));
+				}
+			}
+		}
+		
+		final File commitGraph = new File(directory, COMMIT_GRAPH);
+		this.commitGraph = commitGraph.isFile()
+		                                       ? new CommitGraph(commitGraph)
+		                                       : null;
+	}
+	
+	/**
+	 * Checks if the database contains the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return true, if successful
+	 */
+	public boolean contains(final ObjectId id) {
+		Requires.notNull(id);
+		
+		for (final PackFile pack : this.packs) {
+			if (pack.getIndex().find(id) >= 0) {
+				return true;
+			}
+		}
+		return looseFile(id).isFile();
+	}
+	
+	/**
+	 * Gets the commit-graph, which covers the commits that were reachable when it was written.
+	 *
+	 * @return the commit-graph or null if the repository has none
+	 */
+	public CommitGraph getCommitGraph() {
+		return this.commitGraph;
+	}
+	
+	/**
+	 * Gets the number of packed objects.
+	 *
+	 * @return the number of objects in all packs
+	 */
+	public long getPackedCount() {
+		long count = 0;
+		for (final PackFile pack : this.packs) {
+			count += pack.getIndex().size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Gets the file of the loose object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the file
+	 */
+	private File looseFile(final ObjectId id) {
+		final String hex = id.toHex();
+		return new File(new File(this.directory, hex.substring(0, 2)), hex.substring(2));
+	}
+	
+	/**
+	 * Reads the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the object
+	 * @throws NoSuchElementException
+	 *             if the database does not contain the object
+	 */
+	public RawObject open(final ObjectId id) {
+		Requires.notNull(id);
+		
+		for (final PackFile pack : this.packs) {
+			final long offset = pack.getIndex().find(id);
+			if (offset >= 0) {
+				return pack.read(offset, this);
+			}
+		}
+		
+		final File file = looseFile(id);
+		if (!file.isFile()) {
+			throw new NoSuchElementException(String.format("Object '%s' is not known to '%s'.", id, this.directory));
+		}
+		return readLoose(file);
+	}
+	
+	/**
+	 * Reads the commit with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the commit
+	 */
+	public GitCommit readCommit(final ObjectId id) {
+		final RawObject object = open(id);
+		if (object.getType() != ObjectType.COMMIT) {
+			throw new IllegalArgumentException(String.format("Object '%s' is a %s, not a commit.", id,
+			                                                 object.getType()));
+		}
+		return new GitCommit(id, object.getData());
+	}
+	
+	/**
+	 * Reads a loose object.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the object
+	 */
+	private RawObject readLoose(final File file) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (final InputStream input = new InflaterInputStream(new FileInputStream(file))) {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				output.write(buffer, 0, read);
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		// header: type name, space, decimal size, NUL
+		final byte[] bytes = output.toByteArray();
+		int space = 0;
+		while (bytes[space] != ' ') {
+			++space;
+		}
+		int nul = space;
+		while (bytes[nul] != 0) {
+			++nul;
+		}
+		
+		final ObjectType type = ObjectType.fromName(new String(bytes, 0, space, StandardCharsets.US_ASCII));
+		final byte[] data = new byte[bytes.length - nul - 1];
+		System.arraycopy(bytes, nul + 1, data, 0, data.length);
+		return new RawObject(type, data);
+	}
+	
+	/**
+	 * Reads the tree with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the entries of the tree
+	 */
+	public List<TreeEntry> readTree(final ObjectId id) {
+		final RawObject object = open(id);
+		if (object.getType() != ObjectType.TREE) {
+			throw new IllegalArgumentException(String.format("Object '%s' is a %s, not a tree.", id,
+			                                                 object.getType()));
+		}
+		return TreeEntry.parse(object.getData());
+	}
+	
+	/**
+	 * Visits every commit reachable from the given head exactly once. The commits are visited depth first along the
+	 * parents; there is no particular order between the children of a merge.
+	 *
+	 * @param head
+	 *            the head
+	 * @param action
+	 *            the action
+	 */
+	public void walk(final ObjectId head,
+	                 final Consumer<GitCommit> action) {
+		Requires.notNull(head);
+		Requires.notNull(action);
+		
+		final ObjectIdMap<Boolean> seen = new ObjectIdMap<>();
+		final List<ObjectId> stack = new ArrayList<>();
+		stack.add(head);
+		seen.put(head, Boolean.TRUE);
+		
+		while (!stack.isEmpty()) {
+			final GitCommit commit = readCommit(stack.remove(stack.size() - 1));
+			action.accept(commit);
+			for (final ObjectId parent : commit.getParents()) {
+				if (seen.put(parent, Boolean.TRUE) == null) {
+					stack.add(parent);
+				}
+			}
+		}
+	}
+}
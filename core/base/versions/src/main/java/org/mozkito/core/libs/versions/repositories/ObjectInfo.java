@@ -0,0 +1,80 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * The id, type and size of an object without its content, as reported by <code>git cat-file --batch-check</code>.
+ *
+ * @author Sascha Just
+ */
+public class ObjectInfo {
+	
+	/** The id. */
+	private final ObjectId   id;
+	
+	/** The type. */
+	private final ObjectType type;
+	
+	/** The size in bytes. */
+	private final long       size;
+	
+	/**
+	 * Instantiates a new object info.
+	 *
+	 * @param id
+	 *            the id
+	 * @param type
+	 *            the type
+	 * @param size
+	 *            the size
+	 */
+	public ObjectInfo(final ObjectId id, final ObjectType type, final long size) {
+		Requires.notNull(id);
+		Requires.notNull(type);
+		
+		this.id = id;
+		this.type = type;
+		this.size = size;
+	}
+	
+	/**
+	 * Gets the id.
+	 *
+	 * @return the id
+	 */
+	public ObjectId getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Gets the size in bytes.
+	 *
+	 * @return the size
+	 */
+	public long getSize() {
+		return this.size;
+	}
+	
+	/**
+	 * Gets the type.
+	 *
+	 * @return the type
+	 */
+	public ObjectType getType() {
+		return this.type;
+	}
+}
@@ -0,0 +1,82 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+/**
+ * The types of git objects.
+ *
+ * @author Sascha Just
+ */
+public enum ObjectType {
+	
+	/** The commit. */
+	COMMIT(1, "commit"),
+	/** The tree. */
+	TREE(2, "tree"),
+	/** The blob. */
+	BLOB(3, "blob"),
+	/** The annotated tag. */
+	TAG(4, "tag");
+	
+	/**
+	 * Gets the type of the given name as used in the header of loose objects.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the object type
+	 */
+	public static ObjectType fromName(final String name) {
+		for (final ObjectType type : values()) {
+			if (type.name.equals(name)) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException(String.format("Unknown object type '%s'.", name));
+	}
+	
+	/**
+	 * Gets the type of the given code as used in the object headers of pack files.
+	 *
+	 * @param code
+	 *            the code
+	 * @return the object type
+	 */
+	public static ObjectType fromPackCode(final int code) {
+		for (final ObjectType type : values()) {
+			if (type.packCode == code) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException(String.format("Unknown object type code '%s'.", code));
+	}
+	
+	/** The pack code. */
+	private final int    packCode;
+	
+	/** The name. */
+	private final String name;
+	
+	/**
+	 * Instantiates a new object type.
+	 *
+	 * @param packCode
+	 *            the code used in pack files
+	 * @param name
+	 *            the name used in loose objects
+	 */
+	private ObjectType(final int packCode, final String name) {
+		this.packCode = packCode;
+		this.name = name;
+	}
+}
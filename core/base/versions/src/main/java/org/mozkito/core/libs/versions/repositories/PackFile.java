@@ -0,0 +1,382 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A memory mapped pack file (<code>.pack</code>) together with its index. Objects are inflated directly from the mapped
+ * windows; deltas are resolved iteratively against their base, which may live in another pack or be a loose object
+ * (thin packs). Recently resolved delta bases are cached, since long delta chains share their bases.
+ *
+ * The mapped data is read with absolute accessors only, i.e. objects can be read from several threads concurrently.
+ *
+ * @author Sascha Just
+ */
+class PackFile {
+	
+	/** The Constant MAGIC. */
+	private static final int                   MAGIC       = 0x5041434b;
+	
+	/** The Constant WINDOW_BITS. Packs are mapped in windows of 1 GiB. */
+	private static final int                   WINDOW_BITS = 30;
+	
+	/** The Constant WINDOW_MASK. */
+	private static final long                  WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+	
+	/** The Constant INPUT_SIZE. */
+	private static final int                   INPUT_SIZE  = 8192;
+	
+	/** The Constant CACHE_SIZE. The number of bytes of delta bases kept in the cache. */
+	private static final long                  CACHE_SIZE  = 16L << 20;
+	
+	/** The Constant OFS_DELTA. */
+	private static final int                   OFS_DELTA   = 6;
+	
+	/** The Constant REF_DELTA. */
+	private static final int                   REF_DELTA   = 7;
+	
+	/** The inflaters, one per thread. */
+	private static final ThreadLocal<Inflater> INFLATERS   = ThreadLocal.withInitial(Inflater::new);
+	
+	/**
+	 * Applies the given delta to the base.
+	 *
+	 * @param base
+	 *            the base
+	 * @param delta
+	 *            the delta
+	 * @return the result
+	 */
+	static byte[] applyDelta(final byte[] base,
+	                         final byte[] delta) {
+		int position = 0;
+		long baseSize = 0;
+		int shift = 0;
+		int c;
+		do {
+			c = delta[position++] & 0xff;
+			baseSize |= (long) (c & 0x7f) << shift;
+			shift += 7;
+		} while ((c & 0x80) != 0);
+		
+		if (baseSize != base.length) {
+			throw new RuntimeException(String.format("Delta base has '%s' bytes instead of '%s'.", base.length,
+			                                         baseSize));
+		}
+		
+		long resultSize = 0;
+		shift = 0;
+		do {
+			c = delta[position++] & 0xff;
+			resultSize |= (long) (c & 0x7f) << shift;
+			shift += 7;
+		} while ((c & 0x80) != 0);
+		
+		final byte[] result = new byte[(int) resultSize];
+		int resultPosition = 0;
+		
+		while (position < delta.length) {
+			final int command = delta[position++] & 0xff;
+			if ((command & 0x80) != 0) {
+				// copy from base: the bits 0-3 select the offset bytes, the bits 4-6 select the size bytes
+				int offset = 0;
+				int size = 0;
+				for (int i = 0; i < 4; ++i) {
+					if ((command & 1 << i) != 0) {
+						offset |= (delta[position++] & 0xff) << 8 * i;
+					}
+				}
+				for (int i = 0; i < 3; ++i) {
+					if ((command & 1 << 4 + i) != 0) {
+						size |= (delta[position++] & 0xff) << 8 * i;
+					}
+				}
+				if (size == 0) {
+					size = 0x10000;
+				}
+				System.arraycopy(base, offset, result, resultPosition, size);
+				resultPosition += size;
+			} else if (command != 0) {
+				// insert the next bytes of the delta
+				System.arraycopy(delta, position, result, resultPosition, command);
+				position += command;
+				resultPosition += command;
+			} else {
+				throw new RuntimeException("Delta contains reserved command 0.");
+			}
+		}
+		
+		if (resultPosition != result.length) {
+			throw new RuntimeException(String.format("Delta produced '%s' bytes instead of '%s'.", resultPosition,
+			                                         result.length));
+		}
+		
+		return result;
+	}
+	
+	/** The file. */
+	private final File                           file;
+	
+	/** The index. */
+	private final PackIndex                      index;
+	
+	/** The mapped windows of the pack. */
+	private final ByteBuffer[]                   windows;
+	
+	/** The length of the pack. */
+	private final long                           length;
+	
+	/** The resolved delta bases by offset in access order. */
+	private final LinkedHashMap<Long, RawObject> cache       = new LinkedHashMap<>(64, 0.75f, true);
+	
+	/** The number of bytes in the cache. */
+	private long                                 cachedBytes = 0;
+	
+	/**
+	 * Maps the given pack file.
+	 *
+	 * @param file
+	 *            the pack file
+	 * @param index
+	 *            the index of the pack
+	 */
+	PackFile(final File file, final PackIndex index) {
+		Requires.notNull(file);
+		Requires.notNull(index);
+		
+		this.file = file;
+		this.index = index;
+		
+		try (final RandomAccessFile pack = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = pack.getChannel();
+			this.length = channel.size();
+			this.windows = new ByteBuffer[(int) ((this.length + WINDOW_MASK) >>> WINDOW_BITS)];
+			for (int i = 0; i < this.windows.length; ++i) {
+				final long start = (long) i << WINDOW_BITS;
+				this.windows[i] = channel.map(MapMode.READ_ONLY, start, Math.min(1L << WINDOW_BITS, this.length - start));
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if (this.windows.length == 0 || this.windows[0].getInt(0) != MAGIC) {
+			throw new RuntimeException(String.format("File '%s' is not a pack file.", file));
+		}
+	}
+	
+	/**
+	 * Caches the given delta base.
+	 *
+	 * @param offset
+	 *            the offset of the base
+	 * @param object
+	 *            the base
+	 */
+	private synchronized void cache(final long offset,
+	                                final RawObject object) {
+		if (object.getData().length > CACHE_SIZE / 4 || this.cache.containsKey(offset)) {
+			return;
+		}
+		
+		this.cache.put(offset, object);
+		this.cachedBytes += object.getData().length;
+		
+		while (this.cachedBytes > CACHE_SIZE) {
+			final Entry<Long, RawObject> eldest = this.cache.entrySet().iterator().next();
+			this.cachedBytes -= eldest.getValue().getData().length;
+			this.cache.remove(eldest.getKey());
+		}
+	}
+	
+	/**
+	 * Gets the cached delta base at the given offset.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return the base or null if it is not cached
+	 */
+	private synchronized RawObject cached(final long offset) {
+		return this.cache.get(offset);
+	}
+	
+	/**
+	 * Reads a single byte.
+	 *
+	 * @param position
+	 *            the position within the pack
+	 * @return the byte as unsigned value
+	 */
+	private int get(final long position) {
+		return this.windows[(int) (position >>> WINDOW_BITS)].get((int) (position & WINDOW_MASK)) & 0xff;
+	}
+	
+	/**
+	 * Gets the index of the pack.
+	 *
+	 * @return the index
+	 */
+	PackIndex getIndex() {
+		return this.index;
+	}
+	
+	/**
+	 * Inflates the zlib stream at the given position.
+	 *
+	 * @param position
+	 *            the position of the stream within the pack
+	 * @param size
+	 *            the size of the inflated data
+	 * @return the inflated data
+	 */
+	private byte[] inflate(final long position,
+	                       final long size) {
+		if (size > Integer.MAX_VALUE) {
+			throw new RuntimeException(String.format("Object at offset '%s' in pack '%s' exceeds 2 GiB.", position,
+			                                         this.file));
+		}
+		
+		final byte[] data = new byte[(int) size];
+		final byte[] input = new byte[INPUT_SIZE];
+		final Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		
+		long current = position;
+		int count = 0;
+		try {
+			// the size is known upfront, i.e. the end of the stream does not need to be consumed
+			while (count < data.length) {
+				if (inflater.needsInput()) {
+					final ByteBuffer window = this.windows[(int) (current >>> WINDOW_BITS)].duplicate();
+					window.position((int) (current & WINDOW_MASK));
+					final int length = Math.min(INPUT_SIZE, window.remaining());
+					window.get(input, 0, length);
+					inflater.setInput(input, 0, length);
+					current += length;
+				}
+				
+				final int inflated = inflater.inflate(data, count, data.length - count);
+				if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+					throw new RuntimeException(String.format("Truncated object at offset '%s' in pack '%s'.",
+					                                         position, this.file));
+				}
+				count += inflated;
+			}
+		} catch (final DataFormatException e) {
+			throw new RuntimeException(String.format("Corrupt object at offset '%s' in pack '%s'.", position,
+			                                         this.file), e);
+		}
+		
+		return data;
+	}
+	
+	/**
+	 * Reads the object at the given offset and resolves its deltas.
+	 *
+	 * @param offset
+	 *            the offset of the object
+	 * @param database
+	 *            the database used to resolve deltas against objects of other packs
+	 * @return the object
+	 */
+	RawObject read(final long offset,
+	               final ObjectDatabase database) {
+		final Deque<byte[]> deltas = new ArrayDeque<>();
+		final Deque<Long> offsets = new ArrayDeque<>();
+		RawObject base = null;
+		long current = offset;
+		
+		while (base == null) {
+			base = cached(current);
+			if (base != null) {
+				break;
+			}
+			
+			long position = current;
+			int c = get(position++);
+			final int type = c >> 4 & 7;
+			long size = c & 0x0f;
+			int shift = 4;
+			while ((c & 0x80) != 0) {
+				c = get(position++);
+				size |= (long) (c & 0x7f) << shift;
+				shift += 7;
+			}
+			
+			switch (type) {
+				case OFS_DELTA:
+					// the offset of the base is encoded relative to the delta with an offset added per extra byte
+					c = get(position++);
+					long distance = c & 0x7f;
+					while ((c & 0x80) != 0) {
+						c = get(position++);
+						distance = (distance + 1) << 7 | c & 0x7f;
+					}
+					deltas.push(inflate(position, size));
+					offsets.push(current);
+					current -= distance;
+					break;
+				case REF_DELTA:
+					final byte[] id = new byte[ObjectId.RAW_LENGTH];
+					for (int i = 0; i < id.length; ++i) {
+						id[i] = (byte) get(position++);
+					}
+					deltas.push(inflate(position, size));
+					offsets.push(current);
+					base = database.open(ObjectId.fromBytes(id, 0));
+					break;
+				default:
+					base = new RawObject(ObjectType.fromPackCode(type), inflate(position, size));
+					if (!deltas.isEmpty()) {
+						cache(current, base);
+					}
+					break;
+			}
+		}
+		
+		while (!deltas.isEmpty()) {
+			base = new RawObject(base.getType(), applyDelta(base.getData(), deltas.pop()));
+			final long resolved = offsets.pop();
+			if (!deltas.isEmpty()) {
+				cache(resolved, base);
+			}
+		}
+		
+		return base;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.file.getPath();
+	}
+}
@@ -0,0 +1,148 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.mozkito.core.libs.versions.ObjectId;
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A memory mapped version 2 pack index (<code>.idx</code>), which maps the object ids of a pack file to the offsets of
+ * the objects within the pack. The ids are sorted, i.e. lookups are binary searches within the range of the fan-out
+ * table.
+ *
+ * @author Sascha Just
+ */
+class PackIndex {
+	
+	/** The Constant MAGIC. */
+	private static final int MAGIC         = 0xff744f63;
+	
+	/** The Constant FANOUT_OFFSET. */
+	private static final int FANOUT_OFFSET = 8;
+	
+	/** The Constant IDS_OFFSET. */
+	private static final int IDS_OFFSET    = FANOUT_OFFSET + 256 * 4;
+	
+	/** The Constant LARGE_OFFSET. Marks offsets that are stored in the table of 8 byte offsets. */
+	private static final int LARGE_OFFSET  = 0x80000000;
+	
+	/** The index. */
+	private final ByteBuffer buffer;
+	
+	/** The number of objects. */
+	private final int        size;
+	
+	/** The position of the 4 byte offsets. */
+	private final int        offsetsOffset;
+	
+	/** The position of the 8 byte offsets. */
+	private final int        largeOffsetsOffset;
+	
+	/**
+	 * Maps the given pack index.
+	 *
+	 * @param file
+	 *            the index file
+	 */
+	PackIndex(final File file) {
+		Requires.notNull(file);
+		
+		try (final RandomAccessFile index = new RandomAccessFile(file, "r")) {
+			this.buffer = index.getChannel().map(MapMode.READ_ONLY, 0, index.length());
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != 2) {
+			throw new RuntimeException(String.format("Unsupported pack index '%s'. Only version 2 is supported.",
+			                                         file));
+		}
+		
+		this.size = this.buffer.getInt(FANOUT_OFFSET + 255 * 4);
+		// ids, followed by the CRC32 checksums and the 4 byte offsets of all objects
+		this.offsetsOffset = IDS_OFFSET + this.size * (ObjectId.RAW_LENGTH + 4);
+		this.largeOffsetsOffset = this.offsetsOffset + this.size * 4;
+	}
+	
+	/**
+	 * Finds the offset of the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the offset within the pack or -1 if the pack does not contain the object
+	 */
+	long find(final ObjectId id) {
+		final int firstByte = id.getFirstByte();
+		int low = firstByte == 0
+		                        ? 0
+		                        : this.buffer.getInt(FANOUT_OFFSET + (firstByte - 1) * 4);
+		int high = this.buffer.getInt(FANOUT_OFFSET + firstByte * 4) - 1;
+		
+		while (low <= high) {
+			final int middle = low + high >>> 1;
+			final int result = id.compareTo(this.buffer, IDS_OFFSET + middle * ObjectId.RAW_LENGTH);
+			if (result < 0) {
+				high = middle - 1;
+			} else if (result > 0) {
+				low = middle + 1;
+			} else {
+				return offset(middle);
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Gets the id of the object with the given position in the index.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the id
+	 */
+	ObjectId getId(final int position) {
+		Requires.less(position, this.size, "Position out of range.");
+		return ObjectId.fromBytes(this.buffer, IDS_OFFSET + position * ObjectId.RAW_LENGTH);
+	}
+	
+	/**
+	 * Gets the offset of the object with the given position in the index.
+	 *
+	 * @param position
+	 *            the position
+	 * @return the offset within the pack
+	 */
+	private long offset(final int position) {
+		final int offset = this.buffer.getInt(this.offsetsOffset + position * 4);
+		if ((offset & LARGE_OFFSET) == 0) {
+			return offset;
+		}
+		return this.buffer.getLong(this.largeOffsetsOffset + (offset & ~LARGE_OFFSET) * 8);
+	}
+	
+	/**
+	 * Gets the number of objects in the pack.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return this.size;
+	}
+}
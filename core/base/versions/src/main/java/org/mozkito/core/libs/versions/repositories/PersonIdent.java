@@ -0,0 +1,122 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.nio.charset.Charset;
+import java.time.Instant;
+
+/**
+ * The author or committer of a commit, i.e. a header of the form <code>Name &lt;email&gt; seconds +hhmm</code>.
+ *
+ * @author Sascha Just
+ */
+public class PersonIdent {
+	
+	/**
+	 * Parses the identity in the given range of the raw commit.
+	 *
+	 * @param data
+	 *            the raw commit
+	 * @param from
+	 *            the offset of the identity
+	 * @param to
+	 *            the offset after the identity
+	 * @param charset
+	 *            the charset of the commit
+	 * @return the person ident
+	 */
+	static PersonIdent parse(final byte[] data,
+	                         final int from,
+	                         final int to,
+	                         final Charset charset) {
+		int open = from;
+		while (open < to && data[open] != '<') {
+			++open;
+		}
+		int close = to - 1;
+		while (close > open && data[close] != '>') {
+			--close;
+		}
+		if (open == to || close == open) {
+			throw new RuntimeException(String.format("Malformed identity '%s'.", new String(data, from, to - from,
+			                                                                                charset)));
+		}
+		
+		final String name = new String(data, from, open - from, charset).trim();
+		final String email = new String(data, open + 1, close - open - 1, charset);
+		
+		long seconds = 0;
+		int position = close + 1;
+		while (position < to && data[position] == ' ') {
+			++position;
+		}
+		while (position < to && data[position] >= '0' && data[position] <= '9') {
+			seconds = seconds * 10 + data[position++] - '0';
+		}
+		
+		return new PersonIdent(name, email, Instant.ofEpochSecond(seconds));
+	}
+	
+	/** The name. */
+	private final String  name;
+	
+	/** The email. */
+	private final String  email;
+	
+	/** The time. */
+	private final Instant time;
+	
+	/**
+	 * Instantiates a new person ident.
+	 *
+	 * @param name
+	 *            the name
+	 * @param email
+	 *            the email
+	 * @param time
+	 *            the time
+	 */
+	public PersonIdent(final String name, final String email, final Instant time) {
+		this.name = name;
+		this.email = email;
+		this.time = time;
+	}
+	
+	/**
+	 * Gets the email.
+	 *
+	 * @return the email
+	 */
+	public String getEmail() {
+		return this.email;
+	}
+	
+	/**
+	 * Gets the name.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Gets the time.
+	 *
+	 * @return the time
+	 */
+	public Instant getTime() {
+		return this.time;
+	}
+}
@@ -0,0 +1,65 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * The inflated content of a git object, i.e. the object without the header of loose objects and with all deltas
+ * applied.
+ *
+ * @author Sascha Just
+ */
+public class RawObject {
+	
+	/** The type. */
+	private final ObjectType type;
+	
+	/** The data. */
+	private final byte[]     data;
+	
+	/**
+	 * Instantiates a new raw object.
+	 *
+	 * @param type
+	 *            the type
+	 * @param data
+	 *            the data
+	 */
+	public RawObject(final ObjectType type, final byte[] data) {
+		Requires.notNull(type);
+		Requires.notNull(data);
+		
+		this.type = type;
+		this.data = data;
+	}
+	
+	/**
+	 * Gets the data. The array is shared and must not be modified.
+	 *
+	 * @return the data
+	 */
+	public byte[] getData() {
+		return this.data;
+	}
+	
+	/**
+	 * Gets the type.
+	 *
+	 * @return the type
+	 */
+	public ObjectType getType() {
+		return this.type;
+	}
+}
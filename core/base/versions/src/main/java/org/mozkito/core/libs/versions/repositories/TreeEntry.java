@@ -0,0 +1,134 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozkito.core.libs.versions.ObjectId;
+
+/**
+ * An entry of a tree object: the mode, the name and the id of a blob, subtree or submodule commit.
+ *
+ * @author Sascha Just
+ */
+public class TreeEntry {
+	
+	/** The Constant TYPE_MASK. */
+	private static final int TYPE_MASK    = 0170000;
+	
+	/** The Constant TREE_MODE. */
+	private static final int TREE_MODE    = 0040000;
+	
+	/** The Constant GITLINK_MODE. */
+	private static final int GITLINK_MODE = 0160000;
+	
+	/**
+	 * Parses the entries of the given raw tree. Each entry consists of the octal mode, a space, the name, a NUL byte and
+	 * the 20 byte id.
+	 *
+	 * @param data
+	 *            the raw tree
+	 * @return the entries
+	 */
+	static List<TreeEntry> parse(final byte[] data) {
+		final List<TreeEntry> entries = new ArrayList<>();
+		int position = 0;
+		while (position < data.length) {
+			int mode = 0;
+			while (data[position] != ' ') {
+				mode = mode << 3 | data[position++] - '0';
+			}
+			final int start = ++position;
+			while (data[position] != 0) {
+				++position;
+			}
+			final String name = new String(data, start, position - start, StandardCharsets.UTF_8);
+			entries.add(new TreeEntry(mode, name, ObjectId.fromBytes(data, position + 1)));
+			position += 1 + ObjectId.RAW_LENGTH;
+		}
+		return entries;
+	}
+	
+	/** The mode. */
+	private final int      mode;
+	
+	/** The name. */
+	private final String   name;
+	
+	/** The id. */
+	private final ObjectId id;
+	
+	/**
+	 * Instantiates a new tree entry.
+	 *
+	 * @param mode
+	 *            the mode
+	 * @param name
+	 *            the name
+	 * @param id
+	 *            the id
+	 */
+	public TreeEntry(final int mode, final String name, final ObjectId id) {
+		this.mode = mode;
+		this.name = name;
+		this.id = id;
+	}
+	
+	/**
+	 * Gets the id.
+	 *
+	 * @return the id
+	 */
+	public ObjectId getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Gets the mode.
+	 *
+	 * @return the mode
+	 */
+	public int getMode() {
+		return this.mode;
+	}
+	
+	/**
+	 * Gets the name.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Checks if the entry is a submodule, i.e. the id refers to a commit of another repository.
+	 *
+	 * @return true, if is submodule
+	 */
+	public boolean isSubmodule() {
+		return (this.mode & TYPE_MASK) == GITLINK_MODE;
+	}
+	
+	/**
+	 * Checks if the entry is a subtree.
+	 *
+	 * @return true, if is tree
+	 */
+	public boolean isTree() {
+		return (this.mode & TYPE_MASK) == TREE_MODE;
+	}
+}
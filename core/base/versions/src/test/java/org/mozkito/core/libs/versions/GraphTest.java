@@ -0,0 +1,110 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+package org.mozkito.core.libs.versions;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.mozkito.core.libs.versions.Graph.EdgeType;
+import org.mozkito.core.libs.versions.model.Branch;
+import org.mozkito.core.libs.versions.model.Depot;
+import org.mozkito.core.libs.versions.model.Endpoint;
+
+/**
+ * The Class GraphTest.
+ *
+ * @author Sascha Just
+ */
+public class GraphTest {
+	
+	/**
+	 * Creates the commit with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @param generation
+	 *            the generation, 0 if unknown
+	 * @param branch
+	 *            the branch
+	 * @return the commit
+	 */
+	private static Commit commit(final long id,
+	                             final int generation,
+	                             final Branch branch) {
+		final Commit commit = new Commit(id, ObjectId.fromHex(String.format("%040x", id)), id, id);
+		commit.setGeneration(generation);
+		commit.addBranchId(branch.id());
+		return commit;
+	}
+	
+	/**
+	 * Computes the integration graph of a branch whose head merges a side commit that forked from the first parent of
+	 * the head, i.e. the merge parent leads back to the parent of the head pointer.
+	 *
+	 * <pre>
+	 * 1 -- 2 ------ 4
+	 *       \      /
+	 *        -- 3 -
+	 * </pre>
+	 *
+	 * @param generations
+	 *            whether the generation numbers are known
+	 * @return the graph
+	 */
+	private static Graph integrate(final boolean generations) {
+		final Depot depot = new Depot("depot", null, null);
+		final Branch branch = new Branch(depot, "master");
+		branch.id(1);
+		
+		final Graph graph = new Graph(depot);
+		final Commit[] commits = new Commit[5];
+		for (int i = 1; i < commits.length; ++i) {
+			commits[i] = commit(i, generations
+			                                  ? i
+			                                  : 0, branch);
+			graph.addVertex(commits[i]);
+		}
+		graph.addEdge(commits[1], commits[2], EdgeType.FORWARD, branch);
+		graph.addEdge(commits[2], commits[3], EdgeType.FORWARD, branch);
+		graph.addEdge(commits[2], commits[4], EdgeType.BRANCH, branch);
+		graph.addEdge(commits[3], commits[4], EdgeType.MERGE, branch);
+		
+		final ObjectIdMap<Branch> heads = new ObjectIdMap<>();
+		heads.put(commits[4].getHash(), branch);
+		graph.setBranchHeads(heads);
+		graph.addEndPoint(branch, new Endpoint(depot, branch, commits[4], commits[1]));
+		
+		graph.computeIntegrationGraph(branch);
+		return graph;
+	}
+	
+	/**
+	 * Test that the integration path does not depend on whether generation numbers are known: the side commit is
+	 * integrated through the merge, the fork point through the first parent only.
+	 */
+	@Test
+	public void testIntegrationGraph() {
+		for (final boolean generations : new boolean[] { false, true }) {
+			final Graph graph = integrate(generations);
+			
+			assertThat(graph.getEdge(1, 2).getIntegrationPathIds().size(), equalTo(1));
+			assertThat(graph.getEdge(2, 4).getIntegrationPathIds().size(), equalTo(1));
+			assertThat(graph.getEdge(3, 4).getIntegrationPathIds().size(), equalTo(1));
+			assertThat(graph.getEdge(2, 3).getIntegrationPathIds(), equalTo(Collections.emptyList()));
+		}
+	}
+}
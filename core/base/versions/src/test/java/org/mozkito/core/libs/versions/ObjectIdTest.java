@@ -0,0 +1,69 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * The Class ObjectIdTest.
+ *
+ * @author Sascha Just
+ */
+public class ObjectIdTest {
+	
+	/** The Constant HASH. */
+	private static final String HASH = "f3e2a1b0c9d8e7f60123456789abcdef00ff10ab";
+	
+	/**
+	 * Test hex conversion.
+	 */
+	@Test
+	public void testHex() {
+		final ObjectId id = ObjectId.fromHex(HASH);
+		assertThat(id.toHex(), equalTo(HASH));
+		assertThat(ObjectId.fromHex(HASH.toUpperCase()), equalTo(id));
+		
+		final byte[] line = (":100644 " + HASH + " M").getBytes(StandardCharsets.US_ASCII);
+		assertThat(ObjectId.fromHex(line, 8), equalTo(id));
+		assertThat(ObjectId.fromHex("0000000000000000000000000000000000000000"), sameInstance(ObjectId.ZERO));
+		assertTrue(ObjectId.fromHex(HASH.replace('f', '0')).compareTo(id) < 0);
+	}
+	
+	/**
+	 * Test the map beyond its initial capacity.
+	 */
+	@Test
+	public void testMap() {
+		final ObjectIdMap<Integer> map = new ObjectIdMap<>();
+		for (int i = 0; i < 1000; ++i) {
+			map.put(ObjectId.fromHex(String.format("%040x", i)), i);
+		}
+		
+		assertThat(map.size(), equalTo(1000));
+		for (int i = 0; i < 1000; ++i) {
+			assertThat(map.get(ObjectId.fromHex(String.format("%040x", i))), equalTo(i));
+		}
+		assertThat(map.get(ObjectId.fromHex(HASH)), nullValue());
+		assertThat(map.put(ObjectId.fromHex(String.format("%040x", 7)), -7), equalTo(7));
+		assertThat(map.size(), equalTo(1000));
+	}
+}
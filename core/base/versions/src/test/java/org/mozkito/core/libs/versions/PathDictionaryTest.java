@@ -0,0 +1,76 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * The Class PathDictionaryTest.
+ *
+ * @author Sascha Just
+ */
+public class PathDictionaryTest {
+	
+	/**
+	 * Test growth beyond the initial capacity.
+	 */
+	@Test
+	public void testGrow() {
+		final PathDictionary dictionary = new PathDictionary(StandardCharsets.UTF_8);
+		final int[] nodes = new int[5000];
+		for (int i = 0; i < nodes.length; ++i) {
+			nodes[i] = dictionary.intern("src/module" + (i % 7) + "/File" + i + ".java");
+			dictionary.setValue(nodes[i], i + 1);
+		}
+		
+		for (int i = 0; i < nodes.length; ++i) {
+			assertThat(dictionary.intern("src/module" + (i % 7) + "/File" + i + ".java"), equalTo(nodes[i]));
+			assertThat(dictionary.path(nodes[i]), equalTo("src/module" + (i % 7) + "/File" + i + ".java"));
+			assertThat(dictionary.getValue(nodes[i]), equalTo(i + 1L));
+		}
+		assertThat(dictionary.size(), equalTo(nodes.length + 7 + 1));
+	}
+	
+	/**
+	 * Test interning from a byte range.
+	 */
+	@Test
+	public void testIntern() {
+		final PathDictionary dictionary = new PathDictionary(StandardCharsets.UTF_8);
+		final int node = dictionary.intern("src/main/Ä.java");
+		final byte[] line = ":100644\tsrc/main/Ä.java\n".getBytes(StandardCharsets.UTF_8);
+		
+		assertThat(dictionary.intern(line, 8, line.length - 1), equalTo(node));
+		assertThat(dictionary.path(node), equalTo("src/main/Ä.java"));
+		assertThat(dictionary.getValue(node), equalTo(0L));
+		
+		// src, src/main and src/main/Ä.java
+		assertThat(dictionary.size(), equalTo(3));
+		
+		final int sibling = dictionary.intern("src/test/Ä.java");
+		assertThat(sibling, not(equalTo(node)));
+		assertThat(dictionary.path(sibling), equalTo("src/test/Ä.java"));
+		assertThat(dictionary.size(), equalTo(5));
+		
+		final int directory = dictionary.intern("src/main");
+		assertThat(dictionary.path(directory), equalTo("src/main"));
+		assertThat(dictionary.size(), equalTo(5));
+	}
+}
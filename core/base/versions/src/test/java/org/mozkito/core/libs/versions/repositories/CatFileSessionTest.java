@@ -0,0 +1,235 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mozkito.core.libs.versions.ObjectId;
+
+/**
+ * The Class CatFileSessionTest.
+ *
+ * @author Sascha Just
+ */
+public class CatFileSessionTest {
+	
+	/**
+	 * Runs git in the given directory.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param arguments
+	 *            the arguments
+	 * @return the output
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private static String git(final File directory,
+	                          final String... arguments) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<>();
+		command.addAll(Arrays.asList("git", "-c", "user.name=Mozkito", "-c", "user.email=mozkito@example.org"));
+		command.addAll(Arrays.asList(arguments));
+		
+		final Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (final InputStream input = process.getInputStream()) {
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				output.write(buffer, 0, read);
+			}
+		}
+		assertThat(process.waitFor(), equalTo(0));
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Creates a repository with two commits and a README that changes in between.
+	 *
+	 * @return the directory
+	 * @throws Exception
+	 *             the exception
+	 */
+	private File createRepository() throws Exception {
+		final File directory = this.folder.newFolder("depot");
+		git(directory, "init", "-q");
+		Files.write(new File(directory, "README").toPath(), "first\n".getBytes(StandardCharsets.UTF_8));
+		git(directory, "add", "README");
+		git(directory, "commit", "-q", "-m", "first");
+		Files.write(new File(directory, "README").toPath(), "second\n".getBytes(StandardCharsets.UTF_8));
+		git(directory, "commit", "-q", "-a", "-m", "second");
+		return directory;
+	}
+	
+	/**
+	 * Test that objects read by id are served from the cache the second time.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCache() throws Exception {
+		final File directory = createRepository();
+		final ObjectId blob = ObjectId.fromHex(git(directory, "rev-parse", "HEAD:README").trim());
+		
+		try (final CatFileSession session = new CatFileSession(directory, 1)) {
+			final RawObject first = session.read(blob).get();
+			assertThat(session.getMisses(), equalTo(1l));
+			assertThat(session.read(blob).get() == first, equalTo(true));
+			assertThat(session.getHits(), equalTo(1l));
+			
+			final ObjectInfo info = session.info(blob).get();
+			assertThat(info.getType(), equalTo(ObjectType.BLOB));
+			assertThat(info.getSize(), equalTo(7l));
+			assertThat(session.getHits(), equalTo(2l));
+			
+			// evicts the blob
+			session.read(ObjectId.fromHex(git(directory, "rev-parse", "HEAD~1:README").trim())).get();
+			session.read(blob).get();
+			assertThat(session.getMisses(), equalTo(3l));
+		}
+	}
+	
+	/**
+	 * Test that requests for objects that do not exist are answered in order within a pipelined batch, i.e. do not
+	 * shift the responses of the following requests.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 60000)
+	public void testMissing() throws Exception {
+		final File directory = createRepository();
+		final String[] revisions = new String[] { "HEAD:README", "HEAD:MISSING", "HEAD~1:README", "HEAD:no such",
+		        "no/such/branch", ObjectId.ZERO.toHex(), "HEAD" };
+		final boolean[] missing = new boolean[] { false, true, false, true, true, true, false };
+		
+		try (final CatFileSession session = new CatFileSession(directory)) {
+			final List<CompletableFuture<RawObject>> contents = new ArrayList<>();
+			final List<CompletableFuture<ObjectInfo>> infos = new ArrayList<>();
+			for (int i = 0; i < 10 * revisions.length; ++i) {
+				contents.add(session.read(revisions[i % revisions.length]));
+				infos.add(session.info(revisions[i % revisions.length]));
+			}
+			
+			for (int i = 0; i < contents.size(); ++i) {
+				final int index = i % revisions.length;
+				if (missing[index]) {
+					assertThat(contents.get(i).get(), nullValue());
+					assertThat(infos.get(i).get(), nullValue());
+				} else {
+					final RawObject object = contents.get(i).get();
+					final ObjectInfo info = infos.get(i).get();
+					assertThat(object.getType(), equalTo(info.getType()));
+					assertThat((long) object.getData().length, equalTo(info.getSize()));
+					assertThat(info.getId().toHex(), equalTo(git(directory, "rev-parse", revisions[index]).trim()));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Test that several thousand requests can be pipelined before any response is consumed, i.e. that the responses are
+	 * read while the requests block on a full input of git.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 60000)
+	public void testPipeline() throws Exception {
+		final File directory = this.folder.newFolder("depot");
+		git(directory, "init", "-q");
+		final byte[] data = new byte[16 * 1024];
+		Arrays.fill(data, (byte) 'x');
+		Files.write(new File(directory, "LARGE").toPath(), data);
+		git(directory, "add", "LARGE");
+		git(directory, "commit", "-q", "-m", "large");
+		final ObjectId blob = ObjectId.fromHex(git(directory, "rev-parse", "HEAD:LARGE").trim());
+		
+		// the responses are far larger than the requests, i.e. the output of git fills up first
+		try (final CatFileSession session = new CatFileSession(directory, 0)) {
+			final List<CompletableFuture<RawObject>> contents = new ArrayList<>();
+			for (int i = 0; i < 5000; ++i) {
+				contents.add(session.read(blob));
+			}
+			
+			for (final CompletableFuture<RawObject> future : contents) {
+				assertThat(future.get().getData().length, equalTo(data.length));
+			}
+		}
+	}
+	
+	/**
+	 * Test pipelined reads and lookups, including objects that do not exist.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRead() throws Exception {
+		final File directory = createRepository();
+		final String head = git(directory, "rev-parse", "HEAD").trim();
+		
+		try (final CatFileSession session = new CatFileSession(directory)) {
+			final List<CompletableFuture<RawObject>> contents = new ArrayList<>();
+			final List<CompletableFuture<ObjectInfo>> infos = new ArrayList<>();
+			for (int i = 0; i < 100; ++i) {
+				contents.add(session.read(i % 2 == 0
+				                                    ? "HEAD:README"
+				                                    : "HEAD~1:README"));
+				infos.add(session.info("HEAD"));
+			}
+			
+			for (int i = 0; i < 100; ++i) {
+				final RawObject object = contents.get(i).get();
+				assertThat(object.getType(), equalTo(ObjectType.BLOB));
+				assertThat(new String(object.getData(), StandardCharsets.UTF_8), equalTo(i % 2 == 0
+				                                                                                    ? "second\n"
+				                                                                                    : "first\n"));
+				
+				final ObjectInfo info = infos.get(i).get();
+				assertThat(info.getId().toHex(), equalTo(head));
+				assertThat(info.getType(), equalTo(ObjectType.COMMIT));
+			}
+			
+			assertThat(session.read("HEAD:MISSING").get(), nullValue());
+			assertThat(session.info("origin/master").get(), nullValue());
+			assertThat(session.read(ObjectId.ZERO).get(), nullValue());
+			assertThat(session.info("HEAD^{tree}").get().getType(), equalTo(ObjectType.TREE));
+		}
+	}
+}
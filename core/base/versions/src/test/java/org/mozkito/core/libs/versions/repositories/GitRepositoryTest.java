@@ -0,0 +1,223 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.core.libs.versions.repositories;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mozkito.core.libs.versions.ObjectId;
+
+/**
+ * The Class GitRepositoryTest.
+ *
+ * @author Sascha Just
+ */
+public class GitRepositoryTest {
+	
+	/**
+	 * Runs git in the given directory.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param arguments
+	 *            the arguments
+	 * @return the output
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private static String git(final File directory,
+	                          final String... arguments) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<>();
+		command.addAll(Arrays.asList("git", "-c", "user.name=Mozkito", "-c", "user.email=mozkito@example.org"));
+		command.addAll(Arrays.asList(arguments));
+		
+		final Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (final InputStream input = process.getInputStream()) {
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				output.write(buffer, 0, read);
+			}
+		}
+		assertThat(process.waitFor(), equalTo(0));
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Writes the given file.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param name
+	 *            the name
+	 * @param content
+	 *            the content
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void write(final File directory,
+	                   final String name,
+	                   final String content) throws IOException {
+		Files.write(new File(directory, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Test reading the parents and generations of the commit-graph, including an octopus merge.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testCommitGraph() throws Exception {
+		final File directory = this.folder.newFolder("graph");
+		git(directory, "init", "-q");
+		git(directory, "commit", "-q", "--allow-empty", "-m", "root");
+		for (final String branch : new String[] { "a", "b", "c" }) {
+			git(directory, "checkout", "-q", "-b", branch, "HEAD");
+			git(directory, "commit", "-q", "--allow-empty", "-m", branch);
+			git(directory, "checkout", "-q", "-");
+		}
+		git(directory, "merge", "-q", "--no-ff", "--no-edit", "a", "b", "c");
+		git(directory, "commit-graph", "write", "--reachable");
+		
+		final CommitGraph commitGraph = GitRepository.open(directory).getObjectDatabase().getCommitGraph();
+		assertThat(commitGraph == null, equalTo(false));
+		assertThat(commitGraph.size(), equalTo(5));
+		
+		for (final String line : git(directory, "rev-list", "--parents", "--all").split("\n")) {
+			final String[] hashes = line.split(" ");
+			final int position = commitGraph.find(ObjectId.fromHex(hashes[0]));
+			assertThat(commitGraph.getId(position).toHex(), equalTo(hashes[0]));
+			
+			final ObjectId[] parents = commitGraph.getParents(position);
+			assertThat(parents.length, equalTo(hashes.length - 1));
+			int generation = 0;
+			for (int i = 0; i < parents.length; ++i) {
+				assertThat(parents[i].toHex(), equalTo(hashes[i + 1]));
+				generation = Math.max(generation, commitGraph.getGeneration(commitGraph.find(parents[i])));
+			}
+			assertThat(commitGraph.getGeneration(position), equalTo(generation + 1));
+			assertThat(commitGraph.getTree(position).toHex(),
+			           equalTo(git(directory, "rev-parse", hashes[0] + "^{tree}").trim()));
+			assertThat(commitGraph.getCommitTime(position),
+			           equalTo(Long.parseLong(git(directory, "log", "-1", "--format=%ct", hashes[0]).trim())));
+		}
+		
+		assertThat(commitGraph.find(ObjectId.ZERO), equalTo(-1));
+	}
+	
+	/**
+	 * Test reading a history with deltas, merges and loose objects.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testHistory() throws Exception {
+		final File directory = this.folder.newFolder("depot");
+		git(directory, "init", "-q");
+		
+		final StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 2000; ++i) {
+			content.append("line ").append(i).append('\n');
+		}
+		write(directory, "file.txt", content.toString());
+		git(directory, "add", ".");
+		git(directory, "commit", "-q", "-m", "root");
+		git(directory, "branch", "side");
+		
+		for (int i = 0; i < 5; ++i) {
+			content.append("appended ").append(i).append('\n');
+			write(directory, "file.txt", content.toString());
+			git(directory, "commit", "-q", "-a", "-m", "change " + i);
+		}
+		
+		git(directory, "checkout", "-q", "side");
+		new File(directory, "dir").mkdir();
+		write(directory, "dir/other.txt", "other\n");
+		git(directory, "add", ".");
+		git(directory, "commit", "-q", "-m", "side");
+		git(directory, "checkout", "-q", "-");
+		git(directory, "merge", "-q", "--no-edit", "side");
+		
+		// packs everything with deltas; the last commit stays a loose object
+		git(directory, "repack", "-a", "-d", "-f", "--window=50");
+		write(directory, "file.txt", content.append("loose\n").toString());
+		git(directory, "commit", "-q", "-a", "-m", "loose");
+		
+		final GitRepository repository = GitRepository.open(directory);
+		final Map<String, ObjectId> heads = repository.getRefs("refs/heads/");
+		assertThat(heads.size(), equalTo(2));
+		assertThat(heads.get("side").toHex(), equalTo(git(directory, "rev-parse", "side").trim()));
+		
+		final ObjectId head = ObjectId.fromHex(git(directory, "rev-parse", "HEAD").trim());
+		final Map<String, String> expected = new HashMap<>();
+		for (final String line : git(directory, "rev-list", "--parents", "HEAD").split("\n")) {
+			expected.put(line.substring(0, ObjectId.HEX_LENGTH), line);
+		}
+		
+		final Map<String, String> actual = new HashMap<>();
+		repository.getObjectDatabase().walk(head, commit -> {
+			final StringBuilder line = new StringBuilder(commit.getId().toHex());
+			for (final ObjectId parent : commit.getParents()) {
+				line.append(' ').append(parent.toHex());
+			}
+			actual.put(commit.getId().toHex(), line.toString());
+		});
+		assertThat(actual, equalTo(expected));
+		
+		final GitCommit commit = repository.getObjectDatabase().readCommit(head);
+		assertThat(commit.getMessage(), equalTo("loose\n"));
+		assertThat(commit.getAuthor().getEmail(), equalTo("mozkito@example.org"));
+		
+		final ObjectId parent = commit.getParents()[0];
+		final List<String> names = new ArrayList<>();
+		ObjectId blob = null;
+		for (final TreeEntry entry : repository.getObjectDatabase()
+		                                       .readTree(repository.getObjectDatabase().readCommit(parent).getTree())) {
+			names.add(entry.getName());
+			if (entry.getName().equals("file.txt")) {
+				blob = entry.getId();
+			}
+		}
+		Collections.sort(names);
+		assertThat(names, equalTo(Arrays.asList("dir", "file.txt")));
+		assertThat(new String(repository.getObjectDatabase().open(blob).getData(), StandardCharsets.UTF_8),
+		           equalTo(git(directory, "cat-file", "blob", parent.toHex() + ":file.txt")));
+	}
+}
@@ -0,0 +1,423 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.datastructures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A lock-free ring buffer for exactly one producer and one consumer thread with the same stream facade as
+ * {@link CircularByteBuffer}. The producer owns the write cursor and the consumer owns the read cursor; both cursors
+ * only grow and are published through volatile writes, i.e. neither side ever takes a lock. A side that has to wait for
+ * data (or space) parks and is unparked by the other side as soon as the cursor moves.
+ * <p>
+ * In contrast to {@link CircularByteBuffer}, the buffer neither grows nor supports marks, and writes always block if
+ * the buffer is full.
+ * <p>
+ * This class is <b>not</b> safe for more than one reading or more than one writing thread.
+ *
+ * @author Sascha Just
+ */
+public class SpscByteBuffer {
+	
+	/**
+	 * The stream the consumer reads from.
+	 */
+	private class SpscInputStream extends InputStream {
+		
+		/** The view on the buffer that is used by the consumer only. */
+		private final ByteBuffer view = SpscByteBuffer.this.buffer.duplicate();
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.InputStream#available()
+		 */
+		@Override
+		public int available() throws IOException {
+			if (SpscByteBuffer.this.inputClosed) {
+				throw new IOException("InputStream has been closed, it is not ready.");
+			}
+			return getAvailable();
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.InputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			SpscByteBuffer.this.inputClosed = true;
+			LockSupport.unpark(SpscByteBuffer.this.waitingWriter);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			final long read = SpscByteBuffer.this.readCursor;
+			if (awaitData(read) == 0) {
+				return -1;
+			}
+			
+			final int result = this.view.get((int) (read & SpscByteBuffer.this.mask)) & 0xff;
+			SpscByteBuffer.this.readCursor = read + 1;
+			LockSupport.unpark(SpscByteBuffer.this.waitingWriter);
+			return result;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte[] b,
+		                final int off,
+		                final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			
+			final long read = SpscByteBuffer.this.readCursor;
+			final int available = awaitData(read);
+			if (available == 0) {
+				return -1;
+			}
+			
+			final int length = Math.min(len, available);
+			final int index = (int) (read & SpscByteBuffer.this.mask);
+			final int first = Math.min(length, SpscByteBuffer.this.capacity - index);
+			this.view.position(index);
+			this.view.get(b, off, first);
+			if (first < length) {
+				this.view.position(0);
+				this.view.get(b, off + first, length - first);
+			}
+			
+			SpscByteBuffer.this.readCursor = read + length;
+			LockSupport.unpark(SpscByteBuffer.this.waitingWriter);
+			return length;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.InputStream#skip(long)
+		 */
+		@Override
+		public long skip(final long n) throws IOException {
+			if (n <= 0) {
+				return 0;
+			}
+			
+			final long read = SpscByteBuffer.this.readCursor;
+			final int length = (int) Math.min(n, awaitData(read));
+			SpscByteBuffer.this.readCursor = read + length;
+			LockSupport.unpark(SpscByteBuffer.this.waitingWriter);
+			return length;
+		}
+	}
+	
+	/**
+	 * The stream the producer writes to.
+	 */
+	private class SpscOutputStream extends OutputStream {
+		
+		/** The view on the buffer that is used by the producer only. */
+		private final ByteBuffer view = SpscByteBuffer.this.buffer.duplicate();
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.OutputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			SpscByteBuffer.this.outputClosed = true;
+			LockSupport.unpark(SpscByteBuffer.this.waitingReader);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.OutputStream#flush()
+		 */
+		@Override
+		public void flush() throws IOException {
+			if (SpscByteBuffer.this.outputClosed) {
+				throw new IOException("OutputStream has been closed; cannot flush a closed OutputStream.");
+			}
+			if (SpscByteBuffer.this.inputClosed) {
+				throw new IOException("Buffer closed by InputStream; cannot flush.");
+			}
+			// written bytes are visible to the consumer immediately
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(final byte[] b,
+		                  final int off,
+		                  final int len) throws IOException {
+			int offset = off;
+			int remaining = len;
+			while (remaining > 0) {
+				final long write = SpscByteBuffer.this.writeCursor;
+				final int length = Math.min(remaining, awaitSpace(write));
+				final int index = (int) (write & SpscByteBuffer.this.mask);
+				final int first = Math.min(length, SpscByteBuffer.this.capacity - index);
+				this.view.position(index);
+				this.view.put(b, offset, first);
+				if (first < length) {
+					this.view.position(0);
+					this.view.put(b, offset + first, length - first);
+				}
+				
+				SpscByteBuffer.this.writeCursor = write + length;
+				LockSupport.unpark(SpscByteBuffer.this.waitingReader);
+				offset += length;
+				remaining -= length;
+			}
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.io.OutputStream#write(int)
+		 */
+		@Override
+		public void write(final int b) throws IOException {
+			final long write = SpscByteBuffer.this.writeCursor;
+			awaitSpace(write);
+			this.view.put((int) (write & SpscByteBuffer.this.mask), (byte) b);
+			SpscByteBuffer.this.writeCursor = write + 1;
+			LockSupport.unpark(SpscByteBuffer.this.waitingReader);
+		}
+	}
+	
+	/** The Constant DEFAULT_SIZE. */
+	private static final int       DEFAULT_SIZE = 1 << 16;
+	
+	/** The buffer. */
+	private final ByteBuffer       buffer;
+	
+	/** The capacity, a power of two. */
+	private final int              capacity;
+	
+	/** The mask to map a cursor to an index of the buffer. */
+	private final int              mask;
+	
+	/** The number of bytes read so far. Written by the consumer only. */
+	private volatile long          readCursor;
+	
+	/** The number of bytes written so far. Written by the producer only. */
+	private volatile long          writeCursor;
+	
+	/** The consumer while it waits for data; null otherwise. */
+	private volatile Thread        waitingReader;
+	
+	/** The producer while it waits for space; null otherwise. */
+	private volatile Thread        waitingWriter;
+	
+	/** The input stream closed. */
+	private volatile boolean       inputClosed;
+	
+	/** The output stream closed. */
+	private volatile boolean       outputClosed;
+	
+	/** The input stream. */
+	private final SpscInputStream  in;
+	
+	/** The output stream. */
+	private final SpscOutputStream out;
+	
+	/**
+	 * Instantiates a new heap backed buffer with the default size.
+	 */
+	public SpscByteBuffer() {
+		this(DEFAULT_SIZE, false);
+	}
+	
+	/**
+	 * Instantiates a new heap backed buffer.
+	 *
+	 * @param size
+	 *            the size; rounded up to the next power of two
+	 */
+	public SpscByteBuffer(final int size) {
+		this(size, false);
+	}
+	
+	/**
+	 * Instantiates a new buffer.
+	 *
+	 * @param size
+	 *            the size; rounded up to the next power of two
+	 * @param direct
+	 *            whether the buffer is allocated outside of the java heap (see {@link ByteBuffer#allocateDirect(int)})
+	 */
+	public SpscByteBuffer(final int size, final boolean direct) {
+		Requires.positive(size);
+		Requires.less(size - 1, 1 << 30, "The buffer size must not exceed 2^30 bytes.");
+		
+		this.capacity = size == 1
+		                         ? 1
+		                         : Integer.highestOneBit(size - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.buffer = direct
+		                    ? ByteBuffer.allocateDirect(this.capacity)
+		                    : ByteBuffer.allocate(this.capacity);
+		this.in = new SpscInputStream();
+		this.out = new SpscOutputStream();
+	}
+	
+	/**
+	 * Blocks the consumer until data is available or the output stream has been closed.
+	 *
+	 * @param read
+	 *            the read cursor
+	 * @return the number of bytes available; 0 if the output stream has been closed and all data has been read
+	 * @throws IOException
+	 *             if the input stream has been closed or the consumer has been interrupted
+	 */
+	private int awaitData(final long read) throws IOException {
+		while (true) {
+			if (this.inputClosed) {
+				throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
+			}
+			
+			// the flag has to be checked before the cursor: the producer closes the stream after its last write
+			final boolean closed = this.outputClosed;
+			final int available = (int) (this.writeCursor - read);
+			if (available > 0 || closed) {
+				return available;
+			}
+			
+			this.waitingReader = Thread.currentThread();
+			// re-check after announcing the wait, otherwise a wakeup could get lost
+			if (this.writeCursor == read && !this.outputClosed && !this.inputClosed) {
+				LockSupport.park(this);
+			}
+			this.waitingReader = null;
+			
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException("Blocking read operation interrupted.");
+			}
+		}
+	}
+	
+	/**
+	 * Blocks the producer until space is available.
+	 *
+	 * @param write
+	 *            the write cursor
+	 * @return the number of bytes that can be written
+	 * @throws IOException
+	 *             if one of the streams has been closed or the producer has been interrupted
+	 */
+	private int awaitSpace(final long write) throws IOException {
+		while (true) {
+			if (this.outputClosed) {
+				throw new IOException("OutputStream has been closed; cannot write to a closed OutputStream.");
+			}
+			if (this.inputClosed) {
+				throw new IOException("Buffer closed by InputStream; cannot write to a closed buffer.");
+			}
+			
+			final int space = this.capacity - (int) (write - this.readCursor);
+			if (space > 0) {
+				return space;
+			}
+			
+			this.waitingWriter = Thread.currentThread();
+			// re-check after announcing the wait, otherwise a wakeup could get lost
+			if (write - this.readCursor == this.capacity && !this.inputClosed) {
+				LockSupport.park(this);
+			}
+			this.waitingWriter = null;
+			
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException("Waiting for available space in buffer interrupted.");
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of bytes that can be read without blocking.
+	 *
+	 * @return the available bytes
+	 */
+	public int getAvailable() {
+		return (int) (this.writeCursor - this.readCursor);
+	}
+	
+	/**
+	 * Gets the input stream. Must be used by a single consumer thread only.
+	 *
+	 * @return the input stream
+	 */
+	public InputStream getInputStream() {
+		return this.in;
+	}
+	
+	/**
+	 * Gets the output stream. Must be used by a single producer thread only.
+	 *
+	 * @return the output stream
+	 */
+	public OutputStream getOutputStream() {
+		return this.out;
+	}
+	
+	/**
+	 * Gets the size.
+	 *
+	 * @return the size
+	 */
+	public int getSize() {
+		return this.capacity;
+	}
+	
+	/**
+	 * Gets the number of bytes that can be written without blocking.
+	 *
+	 * @return the space left
+	 */
+	public int getSpaceLeft() {
+		return this.capacity - getAvailable();
+	}
+	
+	/**
+	 * Checks if the buffer is allocated outside of the java heap.
+	 *
+	 * @return true, if is direct
+	 */
+	public boolean isDirect() {
+		return this.buffer.isDirect();
+	}
+}
@@ -0,0 +1,288 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.datastructures;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * The Class SpscByteBufferTest.
+ *
+ * @author Sascha Just
+ */
+public class SpscByteBufferTest {
+	
+	/** The Constant LENGTH. */
+	private static final int LENGTH = 1 << 22;
+	
+	/**
+	 * Starts the given action in a second thread and waits until the thread parks, i.e. blocks within the buffer.
+	 *
+	 * @param action
+	 *            the action
+	 * @param failure
+	 *            the failure of the action
+	 * @return the thread
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static Thread block(final Runnable action,
+	                            final AtomicReference<Throwable> failure) throws Exception {
+		final Thread thread = new Thread() {
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.lang.Thread#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					action.run();
+				} catch (final Throwable t) {
+					failure.set(t.getCause() != null
+					                                ? t.getCause()
+					                                : t);
+				}
+			}
+		};
+		thread.start();
+		while (thread.getState() != Thread.State.WAITING && thread.isAlive()) {
+			Thread.sleep(1);
+		}
+		return thread;
+	}
+	
+	/**
+	 * Writes {@link #LENGTH} pseudo random bytes in chunks of varying size from a second thread and checks that the
+	 * consumer reads exactly the same sequence.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static void transfer(final SpscByteBuffer buffer) throws Exception {
+		final byte[] data = new byte[LENGTH];
+		new Random(42).nextBytes(data);
+		
+		final Thread producer = new Thread() {
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.lang.Thread#run()
+			 */
+			@Override
+			public void run() {
+				final Random random = new Random(7);
+				try (final OutputStream out = buffer.getOutputStream()) {
+					int offset = 0;
+					while (offset < LENGTH) {
+						if (random.nextInt(10) == 0) {
+							out.write(data[offset++]);
+						} else {
+							final int length = Math.min(LENGTH - offset, random.nextInt(3000));
+							out.write(data, offset, length);
+							offset += length;
+						}
+					}
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		producer.start();
+		
+		final Random random = new Random(13);
+		final byte[] result = new byte[LENGTH];
+		int offset = 0;
+		try (final InputStream in = buffer.getInputStream()) {
+			int read;
+			do {
+				if (random.nextInt(10) == 0) {
+					read = in.read();
+					if (read >= 0) {
+						result[offset] = (byte) read;
+						read = 1;
+					}
+				} else {
+					read = in.read(result, offset, Math.min(LENGTH - offset, 1 + random.nextInt(5000)));
+				}
+				if (read > 0) {
+					offset += read;
+				}
+			} while (read >= 0 && offset < LENGTH);
+			assertThat(in.read(), equalTo(-1));
+		}
+		producer.join();
+		
+		assertThat(offset, equalTo(LENGTH));
+		assertThat(result, equalTo(data));
+	}
+	
+	/**
+	 * Test that a producer that waits for space in a full buffer fails once the consumer closes the buffer, and that
+	 * writing after that fails immediately.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 10000)
+	public void testConsumerCloses() throws Exception {
+		final SpscByteBuffer buffer = new SpscByteBuffer(8);
+		final OutputStream out = buffer.getOutputStream();
+		out.write(new byte[8]);
+		assertThat(buffer.getAvailable(), equalTo(8));
+		
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread producer = block(new Runnable() {
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					out.write(new byte[4]);
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, failure);
+		
+		buffer.getInputStream().close();
+		producer.join();
+		assertThat(failure.get() instanceof IOException, equalTo(true));
+		
+		try {
+			out.write(1);
+			fail("Writing to a buffer closed by the consumer did not fail.");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+	
+	/**
+	 * Test the transfer through a direct buffer that is much smaller than the data.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testDirect() throws Exception {
+		final SpscByteBuffer buffer = new SpscByteBuffer(1000, true);
+		assertThat(buffer.getSize(), equalTo(1024));
+		assertThat(buffer.isDirect(), equalTo(true));
+		transfer(buffer);
+	}
+	
+	/**
+	 * Test the transfer through a heap buffer.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testHeap() throws Exception {
+		final SpscByteBuffer buffer = new SpscByteBuffer(1 << 12);
+		assertThat(buffer.isDirect(), equalTo(false));
+		transfer(buffer);
+	}
+	
+	/**
+	 * Test that a blocked consumer is interrupted.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 10000)
+	public void testInterruptRead() throws Exception {
+		final SpscByteBuffer buffer = new SpscByteBuffer(8);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread consumer = block(new Runnable() {
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					buffer.getInputStream().read();
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, failure);
+		
+		consumer.interrupt();
+		consumer.join();
+		assertThat(failure.get() instanceof InterruptedIOException, equalTo(true));
+	}
+	
+	/**
+	 * Test that a consumer that waits for data sees the end of the stream once the producer closes the buffer.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 10000)
+	public void testProducerCloses() throws Exception {
+		final SpscByteBuffer buffer = new SpscByteBuffer(8);
+		buffer.getOutputStream().write(new byte[] { 1, 2, 3 });
+		
+		final InputStream in = buffer.getInputStream();
+		final byte[] result = new byte[8];
+		assertThat(in.read(result, 0, result.length), equalTo(3));
+		
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final int[] read = new int[1];
+		final Thread consumer = block(new Runnable() {
+			
+			/**
+			 * {@inheritDoc}
+			 *
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				try {
+					read[0] = in.read(result, 0, result.length);
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, failure);
+		
+		buffer.getOutputStream().close();
+		consumer.join();
+		assertThat(failure.get() == null, equalTo(true));
+		assertThat(read[0], equalTo(-1));
+		assertThat(in.read(), equalTo(-1));
+	}
+}
@@ -16,18 +16,38 @@ package org.mozkito.skeleton.exec;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.collections4.collection.UnmodifiableCollection;
 
@@ -35,7 +55,10 @@ import org.mozkito.libraries.logging.Logger;
 import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Contract;
 import org.mozkito.skeleton.contracts.Requires;
-import org.mozkito.skeleton.datastructures.CircularByteBuffer;
+import org.mozkito.skeleton.datastructures.SpscByteBuffer;
+import org.mozkito.skeleton.exec.ProcessScheduler.Priority;
+import org.mozkito.skeleton.exec.exceptions.CommandTimeoutException;
+import org.mozkito.skeleton.io.ByteLineReader;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -45,17 +68,219 @@ import org.mozkito.skeleton.datastructures.CircularByteBuffer;
  */
 public class Command {
 	
+	/**
+	 * The way the standard output of the process is handed to the consumer.
+	 */
+	public static enum OutputMode {
+		
+		/**
+		 * A pump thread copies the output line by line into an intermediate ring buffer. The process never blocks on a
+		 * slow (or absent) consumer as long as the buffer has space left.
+		 */
+		BUFFERED,
+		/**
+		 * The consumer reads the pipe of the process directly; there is no pump thread and no intermediate buffer. The
+		 * output has to be consumed entirely, otherwise the process blocks as soon as the pipe is full.
+		 */
+		DIRECT;
+	}
+	
+	/**
+	 * Counts the bytes read from an output of the process.
+	 */
+	private class MeteredInputStream extends FilterInputStream {
+		
+		/** Whether the stream is the standard output. */
+		private final boolean stdOut;
+		
+		/** Set as soon as the end of the stream has been reached or the stream has been closed. */
+		private boolean       finished = false;
+		
+		/**
+		 * Instantiates a new metered input stream.
+		 *
+		 * @param in
+		 *            the output of the process
+		 * @param stdOut
+		 *            whether the stream is the standard output
+		 */
+		public MeteredInputStream(final InputStream in, final boolean stdOut) {
+			super(in);
+			this.stdOut = stdOut;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.FilterInputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				finish();
+			}
+		}
+		
+		/**
+		 * Counts the given number of bytes. Called by the single reading thread only.
+		 *
+		 * @param bytes
+		 *            the bytes; negative at the end of the stream
+		 */
+		private void count(final long bytes) {
+			if (bytes < 0) {
+				finish();
+			}
+			if (bytes <= 0) {
+				return;
+			}
+			
+			if (this.stdOut) {
+				if (Command.this.firstByte == 0) {
+					Command.this.firstByte = System.nanoTime();
+				}
+				Command.this.stdOutBytes += bytes;
+			} else {
+				Command.this.stdErrBytes += bytes;
+			}
+		}
+		
+		/**
+		 * Signals the runner that the output has been consumed.
+		 */
+		private void finish() {
+			if (this.stdOut && !this.finished) {
+				this.finished = true;
+				Command.this.runner.finish();
+			}
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			count(b >= 0
+			            ? 1
+			            : -1);
+			return b;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte[] b,
+		                final int off,
+		                final int len) throws IOException {
+			final int read = super.read(b, off, len);
+			count(read);
+			return read;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.io.FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+	}
+	
+	/**
+	 * Iterates the lines of the output. The iterator pulls the next line only when it is asked for, i.e. a slow
+	 * consumer throttles the process through the (bounded) buffer respectively the pipe.
+	 */
+	private class OutputIterator implements Iterator<String> {
+		
+		/** The next line; null at the end of the output. */
+		private String  next;
+		
+		/** Whether {@link #next} has been read ahead. */
+		private boolean fetched = false;
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			if (!this.fetched) {
+				this.next = nextOutput();
+				this.fetched = true;
+			}
+			return this.next != null;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.fetched = false;
+			return this.next;
+		}
+	}
+	
+	/**
+	 * Creates the daemon threads of the shared pump pool.
+	 */
+	private static class PumpThreadFactory implements ThreadFactory {
+		
+		/** The counter. */
+		private final AtomicInteger counter = new AtomicInteger();
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "Command-Pump-" + this.counter.incrementAndGet());
+			// pumps must not keep the vm alive
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+	
 	/**
 	 * The Class Runner.
 	 */
-	private static class Runner extends Thread {
+	private static class Runner implements Runnable {
 		
 		/** The command. */
 		private final Command command;
 		
+		/** The name of the thread while the runner is executed. */
+		private final String  name;
+		
 		/** The process. */
 		private Process       process;
 		
+		/** The metered standard output of the process. */
+		private InputStream   output;
+		
+		/** The number of parties (process and output) that have to finish before the usage is recorded. */
+		private AtomicInteger pending;
+		
 		/**
 		 * Instantiates a new runner.
 		 *
@@ -63,16 +288,94 @@ public class Command {
 		 *            the command
 		 */
 		public Runner(final Command command) {
-			super(Thread.currentThread().getName() + "$[Command:" + command.lineElements.iterator().next()
-			        + "][Runner]");
 			Requires.notNull(command);
 			this.command = command;
+			this.name = Thread.currentThread().getName() + "$[Command:" + command.lineElements.iterator().next()
+			        + "]";
+		}
+		
+		/**
+		 * Completes the exit future of the command. Has to be called once the process has terminated (or could not be
+		 * started).
+		 */
+		private void complete() {
+			final Command command = this.command;
+			if (command.timedOut) {
+				command.exit.completeExceptionally(new CommandTimeoutException(String.join(" ", command.lineElements),
+				                                                               command.timeout));
+			} else if (command.terminated) {
+				command.exit.complete(this.process.exitValue());
+			} else {
+				final Exception error = command.errors.peek();
+				command.exit.completeExceptionally(error != null
+				                                                ? error
+				                                                : new IllegalStateException("Process failed: "
+				                                                        + command.lineElements));
+			}
+		}
+		
+		/**
+		 * Records the usage of the command as soon as both the process has terminated and its output has been read to
+		 * the end (or closed) by the pump respectively, in {@link OutputMode#DIRECT} mode, by the consumer.
+		 */
+		private void finish() {
+			if (this.pending.decrementAndGet() == 0) {
+				if (this.command.endNanos == 0) {
+					this.command.endNanos = System.nanoTime();
+				}
+				this.command.statistics.record(this.command);
+			}
+		}
+		
+		/**
+		 * Copies the error output of the process line by line into the buffer of the command or, if requested, into the
+		 * log. Returns as soon as the process closes its error output, i.e. usually when it terminates.
+		 */
+		private void pumpStdErr() {
+			final Charset charset = this.command.charset;
+			final InputStream input = this.command.new MeteredInputStream(this.process.getErrorStream(), false);
+			final OutputStream output = this.command.stdErr.getOutputStream();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset))) {
+				try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, charset))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (this.command.logStdErr) {
+							Logger.warn.println(line);
+						} else {
+							writer.write(line);
+							writer.newLine();
+						}
+					}
+				}
+			} catch (final IOException e) {
+				this.command.errors.add(e);
+			}
+		}
+		
+		/**
+		 * Copies the output of the process line by line into the buffer of the command.
+		 */
+		private void pumpStdOut() {
+			final Charset charset = this.command.charset;
+			final InputStream input = this.output;
+			final OutputStream output = this.command.stdOut.getOutputStream();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset))) {
+				try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, charset))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						writer.write(line);
+						writer.newLine();
+					}
+				}
+			} catch (final IOException e) {
+				this.command.errors.add(e);
+			}
 		}
 		
 		/**
 		 * {@inheritDoc}
 		 * 
-		 * @see java.lang.Thread#run()
+		 * @see java.lang.Runnable#run()
 		 */
 		@Override
 		public void run() {
@@ -81,6 +384,9 @@ public class Command {
 			Asserts.notNull(this.command.workingDir);
 			Asserts.notNull(this.command.environment);
 			
+			final String poolName = Thread.currentThread().getName();
+			Thread.currentThread().setName(this.name + "[Runner]");
+			
 			final ProcessBuilder processBuilder = new ProcessBuilder(this.command.lineElements);
 			
 			/*
@@ -98,73 +404,83 @@ public class Command {
 				              .put(environmentVariable, this.command.environment.get(environmentVariable));
 			}
 			
+			if (this.command.outputFile != null) {
+				processBuilder.redirectOutput(this.command.outputFile);
+			}
+			
+			// the runner is executed once the scheduler has admitted the process
+			final ProcessScheduler scheduler = this.command.scheduler;
+			final String group = this.command.getGroup();
 			try {
-				this.process = processBuilder.start();
-				final Thread outputThread = new Thread(Thread.currentThread().getName() + "[STDOUT-Buffer]") {
-					
-					/**
-					 * {@inheritDoc}
-					 * 
-					 * @see java.lang.Thread#run()
-					 */
-					@Override
-					public void run() {
-						try (BufferedReader reader = new BufferedReader(
-						                                                new InputStreamReader(
-						                                                                      Runner.this.process.getInputStream()))) {
-							try (BufferedWriter writer = new BufferedWriter(
-							                                                new OutputStreamWriter(
-							                                                                       Runner.this.command.stdOut.getOutputStream()))) {
-								String line;
-								while ((line = reader.readLine()) != null) {
-									writer.write(line);
-									writer.newLine();
-								}
-								
+				try {
+					this.process = processBuilder.start();
+					this.command.startNanos = System.nanoTime();
+					this.command.pid = CommandWatchdog.pid(this.process);
+					this.output = this.command.new MeteredInputStream(this.process.getInputStream(), true);
+					// redirected output is written by the process itself, i.e. there is nothing to consume
+					this.pending = new AtomicInteger(this.command.outputFile == null
+					                                                                ? 2
+					                                                                : 1);
+					CommandWatchdog.register(this.command);
+				} finally {
+					this.command.started.complete(null);
+				}
+				if (this.command.outputMode == OutputMode.BUFFERED) {
+					PUMPS.execute(new Runnable() {
+						
+						/**
+						 * {@inheritDoc}
+						 * 
+						 * @see java.lang.Runnable#run()
+						 */
+						@Override
+						public void run() {
+							final String poolName = Thread.currentThread().getName();
+							Thread.currentThread().setName(Runner.this.name + "[STDOUT-Buffer]");
+							try {
+								pumpStdOut();
+							} finally {
+								Thread.currentThread().setName(poolName);
 							}
-						} catch (final IOException e2) {
-							Runner.this.command.errors.add(e2);
 						}
-					}
-				};
-				outputThread.start();
+					});
+				}
 				
-				final Thread errorThread = new Thread(Thread.currentThread().getName() + "[STDERR-Buffer]") {
-					
-					/**
-					 * {@inheritDoc}
-					 * 
-					 * @see java.lang.Thread#run()
-					 */
-					@Override
-					public void run() {
-						try (BufferedReader reader = new BufferedReader(
-						                                                new InputStreamReader(
-						                                                                      Runner.this.process.getErrorStream()))) {
-							try (BufferedWriter writer = new BufferedWriter(
-							                                                new OutputStreamWriter(
-							                                                                       Runner.this.command.stdErr.getOutputStream()))) {
-								String line;
-								while ((line = reader.readLine()) != null) {
-									writer.write(line);
-									writer.newLine();
-								}
-							}
-						} catch (final IOException e2) {
-							Runner.this.command.errors.add(e2);
-						}
-					}
-				};
-				errorThread.start();
+				// the runner itself drains the error output; it is closed when the process terminates
+				pumpStdErr();
 				
+				// the accounting of the process is discarded as soon as it has been reaped
+				CommandWatchdog.sample(this.command);
 				this.process.waitFor();
+				this.command.endNanos = System.nanoTime();
+				if (this.command.outputFile != null) {
+					this.command.stdOutBytes = this.command.outputFile.length();
+				}
 				this.command.terminated = true;
 			} catch (final IOException | InterruptedException e) {
 				this.command.errors.add(e);
+			} finally {
+				// the slot is held until the process has terminated
+				scheduler.release(group);
+				if (this.pending != null) {
+					CommandWatchdog.unregister(this.command);
+					finish();
+				}
+				complete();
+				Thread.currentThread().setName(poolName);
 			}
 		}
 	}
 	
+	/**
+	 * The shared threads that run the processes and pump their output. Idle threads are reused. The runner of a
+	 * command is submitted once its process has been admitted, i.e. the threads are bounded by the admitted processes.
+	 */
+	private static final ExecutorService PUMPS          = Executors.newCachedThreadPool(new PumpThreadFactory());
+	
+	/** The default timeout in milliseconds; 0 if commands may run forever. */
+	private static volatile long         defaultTimeout = 0;
+	
 	/**
 	 * Execute.
 	 *
@@ -179,28 +495,123 @@ public class Command {
 	public static Command execute(final String command,
 	                              final String[] arguments,
 	                              final File workingDirectory) {
+		return execute(command, arguments, workingDirectory, OutputMode.BUFFERED);
+	}
+	
+	/**
+	 * Execute using the given output mode.
+	 *
+	 * @param command
+	 *            the command
+	 * @param arguments
+	 *            the arguments
+	 * @param workingDirectory
+	 *            the working directory
+	 * @param outputMode
+	 *            the output mode
+	 * @return the command
+	 */
+	public static Command execute(final String command,
+	                              final String[] arguments,
+	                              final File workingDirectory,
+	                              final OutputMode outputMode) {
+		return execute(command, arguments, workingDirectory, outputMode, Priority.NORMAL);
+	}
+	
+	/**
+	 * Execute using the given output mode and priority.
+	 *
+	 * @param command
+	 *            the command
+	 * @param arguments
+	 *            the arguments
+	 * @param workingDirectory
+	 *            the working directory
+	 * @param outputMode
+	 *            the output mode
+	 * @param priority
+	 *            the priority used to admit the process (see {@link ProcessScheduler})
+	 * @return the command
+	 */
+	public static Command execute(final String command,
+	                              final String[] arguments,
+	                              final File workingDirectory,
+	                              final OutputMode outputMode,
+	                              final Priority priority) {
 		Requires.notNull(command);
 		Requires.notNull(arguments);
+		Requires.notNull(outputMode);
+		Requires.notNull(priority);
 		
 		final Command c = new Command(command, arguments, workingDirectory);
+		c.setOutputMode(outputMode);
+		c.setPriority(priority);
 		c.logStdErr();
 		c.run();
 		
 		return c;
 	}
 	
+	/**
+	 * Gets the timeout of commands that have not been assigned a timeout explicitly.
+	 *
+	 * @return the default timeout in milliseconds; 0 if commands may run forever
+	 */
+	public static long getDefaultTimeout() {
+		return defaultTimeout;
+	}
+	
+	/**
+	 * Sets the timeout of commands that are created afterwards and have not been assigned a timeout explicitly.
+	 *
+	 * @param timeout
+	 *            the timeout; 0 if commands may run forever
+	 * @param unit
+	 *            the unit
+	 */
+	public static void setDefaultTimeout(final long timeout,
+	                                     final TimeUnit unit) {
+		Requires.notNull(unit);
+		Contract.requires(timeout >= 0, "The timeout must not be negative.");
+		defaultTimeout = unit.toMillis(timeout);
+	}
+	
 	/** The line elements. */
 	private final List<String>                     lineElements;
 	
 	/** The std err. */
-	private final CircularByteBuffer               stdErr       = new CircularByteBuffer(100000);
+	private final SpscByteBuffer                   stdErr       = new SpscByteBuffer(1 << 17);
+	
+	/** The std out. Only used in {@link OutputMode#BUFFERED} mode. */
+	private SpscByteBuffer                         stdOut;
+	
+	/** The output mode. */
+	private OutputMode                             outputMode   = OutputMode.BUFFERED;
+	
+	/** The charset of the output. */
+	private Charset                                charset      = Charset.defaultCharset();
 	
-	/** The std out. */
-	private final CircularByteBuffer               stdOut       = new CircularByteBuffer(1000000);
+	/** The size of the buffers used to read the output. */
+	private int                                    bufferSize   = ByteLineReader.DEFAULT_BUFFER_SIZE;
+	
+	/** The scheduler that admits the process. */
+	private ProcessScheduler                       scheduler    = ProcessScheduler.getDefault();
+	
+	/** The priority. */
+	private Priority                               priority     = Priority.NORMAL;
+	
+	/** The group; null to group by working directory. */
+	private String                                 group;
+	
+	/** The time spent waiting for admission. */
+	private volatile long                          queueNanos;
 	
 	/** The errors. */
 	private final ConcurrentLinkedQueue<Exception> errors       = new ConcurrentLinkedQueue<Exception>();
 	
+	/** Completed as soon as the process has been started (or failed to start). */
+	private final CompletableFuture<Void>          started      = new CompletableFuture<>();
+	
 	/** The working dir. */
 	private File                                   workingDir   = new File(System.getProperty("java.io.tmpdir"));
 	
@@ -213,17 +624,58 @@ public class Command {
 	/** The runner. */
 	private final Runner                           runner;
 	
-	/** The std out reader. */
-	private final BufferedReader                   stdOutReader = new BufferedReader(
-	                                                                                 new InputStreamReader(
-	                                                                                                       this.stdOut.getInputStream()));
+	/** The std out reader. Created on the first call to {@link #nextOutput()}. */
+	private BufferedReader                         stdOutReader;
 	
 	/** The std err reader. */
 	private final BufferedReader                   stdErrReader = new BufferedReader(
 	                                                                                 new InputStreamReader(
 	                                                                                                       this.stdErr.getInputStream()));
 	
-	private Thread                                 logger;
+	/** Whether the error output is written to the log instead of the buffer. */
+	private volatile boolean                       logStdErr    = false;
+	
+	/** The execution of the runner; null until the command has been started. */
+	private Future<?>                              execution;
+	
+	/** The statistics the usage is recorded to. */
+	private CommandStatistics                      statistics   = CommandStatistics.getDefault();
+	
+	/** The timeout in milliseconds; 0 if the command may run forever. */
+	private long                                   timeout      = defaultTimeout;
+	
+	/** Set if the process has been killed because it exceeded the timeout. */
+	private volatile boolean                       timedOut     = false;
+	
+	/** The pid of the process; -1 if unknown. */
+	private volatile long                          pid          = -1;
+	
+	/** The start of the process; 0 until it has been started. */
+	private volatile long                          startNanos;
+	
+	/** The time the first byte of output has been read; 0 until then. */
+	private volatile long                          firstByte;
+	
+	/** The termination of the process; 0 until it has terminated. */
+	private volatile long                          endNanos;
+	
+	/** The bytes read from the output. */
+	private volatile long                          stdOutBytes;
+	
+	/** The bytes read from the error output. */
+	private volatile long                          stdErrBytes;
+	
+	/** The sampled cpu time in milliseconds; -1 if unknown. */
+	private volatile long                          cpuTime      = -1;
+	
+	/** The sampled peak resident set size in bytes; -1 if unknown. */
+	private volatile long                          peakRss      = -1;
+	
+	/** The file the output is redirected to; null if the output is read through the command. */
+	private File                                   outputFile;
+	
+	/** Completed with the exit value as soon as the process has terminated. */
+	private final CompletableFuture<Integer>       exit         = new CompletableFuture<>();
 	
 	/**
 	 * Instantiates a new command.
@@ -260,6 +712,56 @@ public class Command {
 		Asserts.notNull(this.runner);
 	}
 	
+	/**
+	 * Blocks until the process has been started.
+	 *
+	 * @return the process
+	 */
+	private Process awaitProcess() {
+		Asserts.notNull(this.runner);
+		try {
+			this.started.get();
+		} catch (final InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		Asserts.notNull(this.runner.process, "Process could not be started: %s", this.errors);
+		return this.runner.process;
+	}
+	
+	/**
+	 * Throws a {@link CommandTimeoutException} if the process has been killed because it exceeded the timeout.
+	 */
+	private void checkTimeout() {
+		if (this.timedOut) {
+			throw new CommandTimeoutException(String.join(" ", this.lineElements), this.timeout);
+		}
+	}
+	
+	/**
+	 * Consumes the output on the shared pump pool and reduces its lines with the given collector, e.g. to compose
+	 * several commands without blocking a thread per command. The output is consumed once the process has been started,
+	 * i.e. a command waiting for its admission does not occupy a thread. The result is completed as soon as the output
+	 * has been consumed and the process has terminated, irrespective of its exit value (see {@link #onExit()}). Must
+	 * not be mixed with other ways to consume the output.
+	 *
+	 * @param <R>
+	 *            the type of the result
+	 * @param collector
+	 *            the collector
+	 * @return the future result; completed exceptionally if the process has been killed or could not be started
+	 */
+	public <R> CompletableFuture<R> collectOutput(final Collector<? super String, ?, R> collector) {
+		Requires.notNull(collector);
+		Contract.requires(this.execution != null, "The command has not been started yet.");
+		Contract.requires(this.outputFile == null, "The output has been redirected to a file.");
+		
+		final CompletableFuture<R> result = this.started.thenApplyAsync(started -> {
+			final Spliterator<String> lines = Spliterators.spliteratorUnknownSize(lines(), Spliterator.ORDERED);
+			return StreamSupport.stream(lines, false).collect(collector);
+		}, PUMPS);
+		return result.thenCombine(this.exit, (output, exitValue) -> output);
+	}
+	
 	/**
 	 * Exit value.
 	 *
@@ -279,8 +781,9 @@ public class Command {
 	@Override
 	protected void finalize() throws Throwable {
 		try {
-			Asserts.notNull(this.stdOutReader);
-			this.stdOutReader.close();
+			if (this.stdOutReader != null) {
+				this.stdOutReader.close();
+			}
 		} catch (final IOException e) {
 			// ignore
 		}
@@ -292,13 +795,44 @@ public class Command {
 			// ignore
 		}
 		
-		if (this.logger != null) {
+		if (this.logStdErr) {
 			for (final Exception e : this.errors) {
 				Logger.error(e);
 			}
 		}
 	}
 	
+	/**
+	 * Passes each line of the output to the given consumer until the process closes its output. The line is exposed as
+	 * a window on a reused byte buffer (see {@link ByteLineReader}), i.e. nothing is decoded unless the consumer asks for
+	 * it. Must not be mixed with {@link #nextOutput()}.
+	 *
+	 * @param consumer
+	 *            the consumer
+	 */
+	public void forEachOutput(final Consumer<ByteLineReader> consumer) {
+		Requires.notNull(consumer);
+		
+		try (final ByteLineReader reader = new ByteLineReader(getStdOut(), this.charset, this.bufferSize)) {
+			while (reader.next()) {
+				consumer.accept(reader);
+			}
+		} catch (final IOException e) {
+			Asserts.notNull(this.errors);
+			this.errors.add(e);
+		}
+		checkTimeout();
+	}
+	
+	/**
+	 * Gets the cpu time of the process, sampled from <code>/proc</code> while it is running.
+	 *
+	 * @return the cpu time in milliseconds; -1 if unknown
+	 */
+	public long getCpuTime() {
+		return this.cpuTime;
+	}
+	
 	/**
 	 * Gets the error.
 	 *
@@ -310,14 +844,64 @@ public class Command {
 	}
 	
 	/**
-	 * Gets the input.
+	 * Gets the group the process is accounted to by the {@link ProcessScheduler}. Defaults to the working directory,
+	 * i.e. all commands running in the same clone belong to the same group.
+	 *
+	 * @return the group
+	 */
+	public String getGroup() {
+		return this.group != null
+		                         ? this.group
+		                         : this.workingDir.getAbsolutePath();
+	}
+	
+	/**
+	 * Gets the input. Blocks until the process has been started.
 	 *
 	 * @return the input
 	 */
 	public OutputStream getInput() {
-		Asserts.notNull(this.runner);
-		Asserts.notNull(this.runner.process);
-		return this.runner.process.getOutputStream();
+		return awaitProcess().getOutputStream();
+	}
+	
+	/**
+	 * Gets the kind of the command used to aggregate the {@link CommandStatistics}, i.e. the executable followed by
+	 * the first argument (e.g. <code>git log</code>).
+	 *
+	 * @return the kind
+	 */
+	public String getKind() {
+		final String executable = new File(this.lineElements.get(0)).getName();
+		return this.lineElements.size() > 1
+		                                    ? executable + " " + this.lineElements.get(1)
+		                                    : executable;
+	}
+	
+	/**
+	 * Gets the peak resident set size of the process, sampled from <code>/proc</code> while it is running.
+	 *
+	 * @return the peak rss in bytes; -1 if unknown
+	 */
+	public long getPeakRss() {
+		return this.peakRss;
+	}
+	
+	/**
+	 * Gets the pid of the process.
+	 *
+	 * @return the pid; -1 if the process has not been started yet or the pid is unknown
+	 */
+	public long getPid() {
+		return this.pid;
+	}
+	
+	/**
+	 * Gets the time the command waited for the {@link ProcessScheduler} to admit the process.
+	 *
+	 * @return the queue time in milliseconds
+	 */
+	public long getQueueTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.queueNanos);
 	}
 	
 	/**
@@ -331,15 +915,104 @@ public class Command {
 	}
 	
 	/**
-	 * Gets the std out.
+	 * Gets the number of bytes read from the error output so far.
+	 *
+	 * @return the std err bytes
+	 */
+	public long getStdErrBytes() {
+		return this.stdErrBytes;
+	}
+	
+	/**
+	 * Gets the std out. In {@link OutputMode#DIRECT} mode, this is the pipe of the process and the call blocks until
+	 * the process has been started.
 	 *
 	 * @return the std out
 	 */
 	public InputStream getStdOut() {
+		if (this.outputMode == OutputMode.DIRECT) {
+			awaitProcess();
+			return this.runner.output;
+		}
+		
 		Asserts.notNull(this.stdOut);
 		return this.stdOut.getInputStream();
 	}
 	
+	/**
+	 * Gets the number of bytes read from the output so far.
+	 *
+	 * @return the std out bytes
+	 */
+	public long getStdOutBytes() {
+		return this.stdOutBytes;
+	}
+	
+	/**
+	 * Gets the std out as a channel, e.g. to read the output into a {@link java.nio.ByteBuffer}.
+	 *
+	 * @return the std out channel
+	 */
+	public ReadableByteChannel getStdOutChannel() {
+		return Channels.newChannel(getStdOut());
+	}
+	
+	/**
+	 * Gets the time from the start of the process to its first byte of output. The first byte is noticed when it is
+	 * read, i.e. in {@link OutputMode#DIRECT} mode possibly only after the process has terminated; the time is bounded
+	 * by the wall time.
+	 *
+	 * @return the time to first byte in milliseconds; -1 if there has not been any output yet
+	 */
+	public long getTimeToFirstByte() {
+		final long firstByte = this.firstByte;
+		if (firstByte == 0) {
+			return -1;
+		}
+		final long end = this.endNanos;
+		return TimeUnit.NANOSECONDS.toMillis((end != 0
+		                                              ? Math.min(firstByte, end)
+		                                              : firstByte) - this.startNanos);
+	}
+	
+	/**
+	 * Gets the timeout.
+	 *
+	 * @return the timeout in milliseconds; 0 if the command may run forever
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+	
+	/**
+	 * Gets the wall time of the process, i.e. the time from its start to its termination (or to now, if it is still
+	 * running). The time spent in the queue of the {@link ProcessScheduler} is not included.
+	 *
+	 * @return the wall time in milliseconds; 0 if the process has not been started yet
+	 */
+	public long getWallTime() {
+		final long start = this.startNanos;
+		if (start == 0) {
+			return 0;
+		}
+		final long end = this.endNanos;
+		return TimeUnit.NANOSECONDS.toMillis((end != 0
+		                                              ? end
+		                                              : System.nanoTime()) - start);
+	}
+	
+	/**
+	 * Checks if the process is running longer than the timeout.
+	 *
+	 * @param now
+	 *            the current value of {@link System#nanoTime()}
+	 * @return true, if is overdue
+	 */
+	boolean isOverdue(final long now) {
+		return this.timeout > 0 && this.startNanos != 0 && this.endNanos == 0
+		        && now - this.startNanos > TimeUnit.MILLISECONDS.toNanos(this.timeout);
+	}
+	
 	/**
 	 * Checks if is terminated.
 	 *
@@ -350,26 +1023,38 @@ public class Command {
 	}
 	
 	/**
-     * 
-     */
+	 * Checks if the process has been killed because it exceeded the timeout.
+	 *
+	 * @return true, if is timed out
+	 */
+	public boolean isTimedOut() {
+		return this.timedOut;
+	}
+	
+	/**
+	 * Kills the process because it exceeded the timeout.
+	 */
+	void kill() {
+		this.timedOut = true;
+		this.runner.process.destroyForcibly();
+	}
+	
+	/**
+	 * Gets the lines of the output as an iterator. The next line is read only when it is asked for, i.e. the consumer
+	 * applies backpressure to the process. Must not be mixed with other ways to consume the output.
+	 *
+	 * @return the iterator
+	 */
+	public Iterator<String> lines() {
+		return new OutputIterator();
+	}
+	
+	/**
+	 * Writes the error output to the log instead of buffering it. Lines buffered before the call remain available
+	 * through {@link #nextErrput()}.
+	 */
 	public void logStdErr() {
-		this.logger = new Thread(Thread.currentThread().getName() + "[Command:" + this.lineElements.iterator().next()
-		        + "][Logger]") {
-			
-			/**
-			 * {@inheritDoc}
-			 * 
-			 * @see java.lang.Thread#run()
-			 */
-			@Override
-			public void run() {
-				String line;
-				while ((line = nextErrput()) != null) {
-					Logger.warn.println(line);
-				}
-			}
-		};
-		this.logger.start();
+		this.logStdErr = true;
 	}
 	
 	/**
@@ -394,10 +1079,16 @@ public class Command {
 	 * @return the string
 	 */
 	public String nextOutput() {
-		Asserts.notNull(this.stdOutReader);
+		if (this.stdOutReader == null) {
+			this.stdOutReader = new BufferedReader(new InputStreamReader(getStdOut(), this.charset), this.bufferSize);
+		}
 		
 		try {
-			return this.stdOutReader.readLine();
+			final String line = this.stdOutReader.readLine();
+			if (line == null) {
+				checkTimeout();
+			}
+			return line;
 		} catch (final IOException e) {
 			Asserts.notNull(this.errors);
 			this.errors.add(e);
@@ -405,26 +1096,188 @@ public class Command {
 		}
 	}
 	
+	/**
+	 * Gets the exit value without blocking. The future is completed as soon as the process has terminated, i.e. the
+	 * output may not have been consumed entirely yet.
+	 *
+	 * @return the future exit value; completed exceptionally with a {@link CommandTimeoutException} if the process has
+	 *         been killed, or with the cause if it could not be started
+	 */
+	public CompletableFuture<Integer> onExit() {
+		return this.exit;
+	}
+	
+	/**
+	 * Redirects the output of the process to the given file. The process writes the file itself, i.e. no thread is
+	 * needed to consume the output. Has to be called before {@link #run()}.
+	 *
+	 * @param file
+	 *            the file; overwritten if it exists
+	 */
+	public void redirectOutput(final File file) {
+		Requires.notNull(file);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.outputFile = file;
+		this.outputMode = OutputMode.DIRECT;
+	}
+	
 	/**
 	 * Run.
 	 */
 	public void run() {
 		Asserts.notNull(this.runner);
-		this.runner.start();
+		if (this.outputMode == OutputMode.BUFFERED) {
+			this.stdOut = new SpscByteBuffer(1 << 20);
+		}
+		
+		final FutureTask<Void> execution = new FutureTask<>(this.runner, null);
+		this.execution = execution;
+		// no thread is occupied while the process waits for its admission
+		this.scheduler.submit(getGroup(), this.priority, PUMPS, queueNanos -> {
+			this.queueNanos = queueNanos;
+			execution.run();
+		});
+	}
+	
+	/**
+	 * Sets the size of the buffers used to read the output. Has to be called before {@link #run()}.
+	 *
+	 * @param bufferSize
+	 *            the new buffer size
+	 */
+	public void setBufferSize(final int bufferSize) {
+		Requires.positive(bufferSize);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.bufferSize = bufferSize;
 	}
 	
 	/**
-	 * Wait for.
+	 * Sets the charset of the output. Defaults to the platform charset. Has to be called before {@link #run()}.
+	 *
+	 * @param charset
+	 *            the new charset
+	 */
+	public void setCharset(final Charset charset) {
+		Requires.notNull(charset);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.charset = charset;
+	}
+	
+	/**
+	 * Sets the group the process is accounted to by the {@link ProcessScheduler}. Has to be called before
+	 * {@link #run()}.
+	 *
+	 * @param group
+	 *            the new group
+	 */
+	public void setGroup(final String group) {
+		Requires.notNull(group);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.group = group;
+	}
+	
+	/**
+	 * Sets the output mode. Defaults to {@link OutputMode#BUFFERED}. Has to be called before {@link #run()}.
+	 *
+	 * @param outputMode
+	 *            the new output mode
+	 */
+	public void setOutputMode(final OutputMode outputMode) {
+		Requires.notNull(outputMode);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.outputMode = outputMode;
+	}
+	
+	/**
+	 * Sets the priority used to admit the process. Defaults to {@link Priority#NORMAL}. Has to be called before
+	 * {@link #run()}.
+	 *
+	 * @param priority
+	 *            the new priority
+	 */
+	public void setPriority(final Priority priority) {
+		Requires.notNull(priority);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.priority = priority;
+	}
+	
+	/**
+	 * Sets the scheduler that admits the process. Defaults to {@link ProcessScheduler#getDefault()}. Has to be called
+	 * before {@link #run()}.
+	 *
+	 * @param scheduler
+	 *            the new scheduler
+	 */
+	public void setScheduler(final ProcessScheduler scheduler) {
+		Requires.notNull(scheduler);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Sets the statistics the usage of the command is recorded to. Defaults to {@link CommandStatistics#getDefault()}.
+	 * Has to be called before {@link #run()}.
+	 *
+	 * @param statistics
+	 *            the new statistics
+	 */
+	public void setStatistics(final CommandStatistics statistics) {
+		Requires.notNull(statistics);
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.statistics = statistics;
+	}
+	
+	/**
+	 * Sets the timeout after which the process is killed. The timeout starts with the process, i.e. the time spent in
+	 * the queue of the {@link ProcessScheduler} does not count. Defaults to {@link #getDefaultTimeout()}. Has to be
+	 * called before {@link #run()}.
+	 *
+	 * @param timeout
+	 *            the timeout; 0 if the command may run forever
+	 * @param unit
+	 *            the unit
+	 */
+	public void setTimeout(final long timeout,
+	                       final TimeUnit unit) {
+		Requires.notNull(unit);
+		Contract.requires(timeout >= 0, "The timeout must not be negative.");
+		Contract.requires(this.execution == null, "The command has already been started.");
+		this.timeout = unit.toMillis(timeout);
+	}
+	
+	/**
+	 * Updates the sampled cpu time.
+	 *
+	 * @param cpuTime
+	 *            the cpu time in milliseconds
+	 */
+	void updateCpuTime(final long cpuTime) {
+		this.cpuTime = Math.max(this.cpuTime, cpuTime);
+	}
+	
+	/**
+	 * Updates the sampled peak resident set size.
+	 *
+	 * @param peakRss
+	 *            the peak rss in bytes
+	 */
+	void updatePeakRss(final long peakRss) {
+		this.peakRss = Math.max(this.peakRss, peakRss);
+	}
+	
+	/**
+	 * Wait for. Throws a {@link CommandTimeoutException} if the process has been killed because it exceeded the
+	 * timeout.
 	 */
 	public void waitFor() {
-		Asserts.notNull(this.runner);
-		if (this.runner.process == null) {
-			try {
-				this.runner.join();
-			} catch (final InterruptedException e) {
-				throw new RuntimeException(e);
-			}
+		Asserts.notNull(this.execution);
+		try {
+			// the runner terminates after the process
+			this.execution.get();
+		} catch (final InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
 		}
+		checkTimeout();
 	}
 	
 }
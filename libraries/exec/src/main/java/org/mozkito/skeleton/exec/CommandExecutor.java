@@ -26,6 +26,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 
@@ -242,6 +244,51 @@ public class CommandExecutor extends Thread {
 		}
 	}
 	
+	/**
+	 * Executes a command without blocking the calling thread. In contrast to
+	 * {@link #execute(String, String[], File, InputStream, Map, Charset)}, no threads are spawned per call: the process
+	 * is run by a {@link Command} on the shared pool and is subject to the {@link ProcessScheduler}. The error output
+	 * is logged rather than merged into the output.
+	 * 
+	 * @param command
+	 *            the executable
+	 * @param arguments
+	 *            optional arguments to the program
+	 * @param dir
+	 *            optional working directory.
+	 * @param environment
+	 *            additional changes to the process environment; may be null
+	 * @param charset
+	 *            the charset
+	 * @return the future tuple of the program's exit code and the lines of its output; completed exceptionally if the
+	 *         program could not be started or has been killed
+	 */
+	public static CompletableFuture<Tuple<Integer, List<String>>> executeAsync(final String command,
+	                                                                           final String[] arguments,
+	                                                                           final File dir,
+	                                                                           final Map<String, String> environment,
+	                                                                           final Charset charset) {
+		final String localCommand;
+		try {
+			localCommand = FileUtils.checkExecutable(command);
+		} catch (final ExternalExecutableException e) {
+			final CompletableFuture<Tuple<Integer, List<String>>> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException(e));
+			return future;
+		}
+		
+		final Command c = new Command(localCommand, arguments, dir);
+		if (environment != null) {
+			c.environment.putAll(environment);
+		}
+		c.setCharset(charset);
+		c.logStdErr();
+		c.run();
+		
+		return c.collectOutput(Collectors.toList()).thenCombine(c.onExit(),
+		                                                        (lines, exitValue) -> new Tuple<>(exitValue, lines));
+	}
+	
 	/**
 	 * wrapper for the simple class name.
 	 * 
@@ -0,0 +1,302 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.exec;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * Aggregates the resource usage of terminated commands per group (see {@link Command#getGroup()}, e.g. per depot) and
+ * per kind (see {@link Command#getKind()}, e.g. <code>git log</code>).
+ *
+ * @author Sascha Just
+ */
+public class CommandStatistics {
+	
+	/**
+	 * The accumulated resource usage of a set of commands.
+	 */
+	public static class Summary {
+		
+		/** The number of commands. */
+		private long commands;
+		
+		/** The number of commands that have been killed. */
+		private long timeouts;
+		
+		/** The accumulated wall time. */
+		private long wallTime;
+		
+		/** The accumulated time to the first byte of output. */
+		private long timeToFirstByte;
+		
+		/** The accumulated cpu time. */
+		private long cpuTime;
+		
+		/** The max peak resident set size. */
+		private long peakRss;
+		
+		/** The accumulated size of the output. */
+		private long stdOutBytes;
+		
+		/** The accumulated size of the error output. */
+		private long stdErrBytes;
+		
+		/**
+		 * Instantiates a new, empty summary.
+		 */
+		public Summary() {
+			// nothing to do
+		}
+		
+		/**
+		 * Instantiates a copy of the given summary.
+		 *
+		 * @param other
+		 *            the other
+		 */
+		public Summary(final Summary other) {
+			this.commands = other.commands;
+			this.timeouts = other.timeouts;
+			this.wallTime = other.wallTime;
+			this.timeToFirstByte = other.timeToFirstByte;
+			this.cpuTime = other.cpuTime;
+			this.peakRss = other.peakRss;
+			this.stdOutBytes = other.stdOutBytes;
+			this.stdErrBytes = other.stdErrBytes;
+		}
+		
+		/**
+		 * Adds the usage of a terminated command.
+		 *
+		 * @param command
+		 *            the command
+		 */
+		void add(final Command command) {
+			++this.commands;
+			if (command.isTimedOut()) {
+				++this.timeouts;
+			}
+			this.wallTime += command.getWallTime();
+			this.timeToFirstByte += Math.max(0, command.getTimeToFirstByte());
+			this.cpuTime += Math.max(0, command.getCpuTime());
+			this.peakRss = Math.max(this.peakRss, command.getPeakRss());
+			this.stdOutBytes += command.getStdOutBytes();
+			this.stdErrBytes += command.getStdErrBytes();
+		}
+		
+		/**
+		 * Gets the number of commands.
+		 *
+		 * @return the commands
+		 */
+		public long getCommands() {
+			return this.commands;
+		}
+		
+		/**
+		 * Gets the accumulated cpu time of the commands that could be sampled.
+		 *
+		 * @return the cpu time in milliseconds
+		 */
+		public long getCpuTime() {
+			return this.cpuTime;
+		}
+		
+		/**
+		 * Gets the largest peak resident set size of a single command.
+		 *
+		 * @return the peak rss in bytes
+		 */
+		public long getPeakRss() {
+			return this.peakRss;
+		}
+		
+		/**
+		 * Gets the accumulated size of the error output.
+		 *
+		 * @return the std err bytes
+		 */
+		public long getStdErrBytes() {
+			return this.stdErrBytes;
+		}
+		
+		/**
+		 * Gets the accumulated size of the output.
+		 *
+		 * @return the std out bytes
+		 */
+		public long getStdOutBytes() {
+			return this.stdOutBytes;
+		}
+		
+		/**
+		 * Gets the accumulated time to the first byte of output.
+		 *
+		 * @return the time to first byte in milliseconds
+		 */
+		public long getTimeToFirstByte() {
+			return this.timeToFirstByte;
+		}
+		
+		/**
+		 * Gets the number of commands that have been killed because they exceeded their deadline.
+		 *
+		 * @return the timeouts
+		 */
+		public long getTimeouts() {
+			return this.timeouts;
+		}
+		
+		/**
+		 * Gets the accumulated wall time.
+		 *
+		 * @return the wall time in milliseconds
+		 */
+		public long getWallTime() {
+			return this.wallTime;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%s commands (%s timeouts), wall %s ms, first byte %s ms, cpu %s ms, peak rss %s kB, "
+			        + "stdout %s bytes, stderr %s bytes", this.commands, this.timeouts, this.wallTime,
+			                     this.timeToFirstByte, this.cpuTime, this.peakRss / 1024, this.stdOutBytes,
+			                     this.stdErrBytes);
+		}
+	}
+	
+	/** The default statistics. */
+	private static volatile CommandStatistics defaultStatistics = new CommandStatistics();
+	
+	/**
+	 * Copies the given summaries.
+	 *
+	 * @param summaries
+	 *            the summaries
+	 * @return the sorted copies
+	 */
+	private static SortedMap<String, Summary> copy(final Map<String, Summary> summaries) {
+		final SortedMap<String, Summary> result = new TreeMap<>();
+		for (final Map.Entry<String, Summary> entry : summaries.entrySet()) {
+			result.put(entry.getKey(), new Summary(entry.getValue()));
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets the statistics used by all commands that have not been assigned statistics explicitly.
+	 *
+	 * @return the default statistics
+	 */
+	public static CommandStatistics getDefault() {
+		return defaultStatistics;
+	}
+	
+	/**
+	 * Sets the default statistics.
+	 *
+	 * @param statistics
+	 *            the new default statistics
+	 */
+	public static void setDefault(final CommandStatistics statistics) {
+		Requires.notNull(statistics);
+		defaultStatistics = statistics;
+	}
+	
+	/** The summaries per group. */
+	private final Map<String, Summary> groups = new HashMap<>();
+	
+	/** The summaries per kind. */
+	private final Map<String, Summary> kinds  = new HashMap<>();
+	
+	/** The summary of all commands. */
+	private final Summary              total  = new Summary();
+	
+	/**
+	 * Gets the summary of the given group.
+	 *
+	 * @param group
+	 *            the group
+	 * @return a copy of the summary; empty if no command of the group has terminated yet
+	 */
+	public synchronized Summary getGroup(final String group) {
+		final Summary summary = this.groups.get(group);
+		return summary != null
+		                      ? new Summary(summary)
+		                      : new Summary();
+	}
+	
+	/**
+	 * Gets the summaries per group.
+	 *
+	 * @return copies of the summaries, sorted by group
+	 */
+	public synchronized SortedMap<String, Summary> getGroups() {
+		return copy(this.groups);
+	}
+	
+	/**
+	 * Gets the summaries per kind.
+	 *
+	 * @return copies of the summaries, sorted by kind
+	 */
+	public synchronized SortedMap<String, Summary> getKinds() {
+		return copy(this.kinds);
+	}
+	
+	/**
+	 * Gets the summary of all commands.
+	 *
+	 * @return a copy of the summary
+	 */
+	public synchronized Summary getTotal() {
+		return new Summary(this.total);
+	}
+	
+	/**
+	 * Adds the usage of a terminated command.
+	 *
+	 * @param command
+	 *            the command
+	 */
+	public synchronized void record(final Command command) {
+		Requires.notNull(command);
+		
+		Summary summary = this.groups.get(command.getGroup());
+		if (summary == null) {
+			summary = new Summary();
+			this.groups.put(command.getGroup(), summary);
+		}
+		summary.add(command);
+		
+		summary = this.kinds.get(command.getKind());
+		if (summary == null) {
+			summary = new Summary();
+			this.kinds.put(command.getKind(), summary);
+		}
+		summary.add(command);
+		
+		this.total.add(command);
+	}
+}
@@ -0,0 +1,185 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mozkito.libraries.logging.Logger;
+
+/**
+ * Watches the processes of running commands. A single daemon thread periodically samples the cpu time and the peak
+ * resident set size of every process from <code>/proc</code> (where available) and kills processes that exceeded the
+ * deadline of their command.
+ *
+ * Sampling is best effort: the kernel discards the accounting of a process as soon as it has been reaped, i.e. the
+ * usage of the last sampling interval and of very short processes may be missing.
+ *
+ * @author Sascha Just
+ */
+class CommandWatchdog {
+	
+	/** The sampling interval in milliseconds. */
+	private static final long         INTERVAL = 100;
+	
+	/** The clock ticks per second used by <code>/proc/[pid]/stat</code> (USER_HZ). */
+	private static final long         TICKS    = 100;
+	
+	/** Whether the process accounting of the kernel can be read. */
+	private static final boolean      PROCFS   = new File("/proc/self/stat").canRead();
+	
+	/** The watched commands. */
+	private static final Set<Command> COMMANDS = ConcurrentHashMap.newKeySet();
+	
+	/** The watchdog thread; started with the first command. */
+	private static Thread             thread;
+	
+	/** Set once it has been reported that pids cannot be determined. */
+	private static volatile boolean   pidUnavailable;
+	
+	/**
+	 * Gets the id of the given process. Uses <code>Process.pid()</code> where available (Java 9 and later) and the
+	 * private field of <code>java.lang.UNIXProcess</code> otherwise.
+	 *
+	 * @param process
+	 *            the process
+	 * @return the pid, or -1 if it cannot be determined
+	 */
+	static long pid(final Process process) {
+		try {
+			return (Long) Process.class.getMethod("pid").invoke(process);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			// Java 8
+		}
+		
+		try {
+			final Field field = process.getClass().getDeclaredField("pid");
+			field.setAccessible(true);
+			return field.getLong(process);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			if (!pidUnavailable) {
+				pidUnavailable = true;
+				Logger.warn("Cannot determine the pids of processes (%s); cpu time and memory of commands are not "
+				        + "accounted.", e);
+			}
+			return -1;
+		}
+	}
+	
+	/**
+	 * Starts watching the given command. Its process has to be started already.
+	 *
+	 * @param command
+	 *            the command
+	 */
+	static void register(final Command command) {
+		synchronized (CommandWatchdog.class) {
+			if (thread == null) {
+				thread = new Thread("Command-Watchdog") {
+					
+					/**
+					 * {@inheritDoc}
+					 * 
+					 * @see java.lang.Thread#run()
+					 */
+					@Override
+					public void run() {
+						try {
+							while (true) {
+								Thread.sleep(INTERVAL);
+								tick();
+							}
+						} catch (final InterruptedException e) {
+							// vm shutdown
+						}
+					}
+				};
+				// the watchdog must not keep the vm alive
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		COMMANDS.add(command);
+	}
+	
+	/**
+	 * Samples the accounting of the process of the given command from <code>/proc</code>.
+	 *
+	 * @param command
+	 *            the command
+	 */
+	static void sample(final Command command) {
+		final long pid = command.getPid();
+		if (!PROCFS || pid < 0) {
+			return;
+		}
+		
+		try {
+			final String stat = new String(Files.readAllBytes(new File("/proc/" + pid + "/stat").toPath()),
+			                               StandardCharsets.US_ASCII);
+			// the name of the executable is in parentheses and may contain blanks; utime and stime follow as the 12th
+			// and 13th field after it
+			final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+			final long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+			command.updateCpuTime(ticks * 1000 / TICKS);
+			
+			for (final String line : Files.readAllLines(new File("/proc/" + pid + "/status").toPath(),
+			                                            StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmHWM:")) {
+					final String kb = line.substring(6).trim();
+					command.updatePeakRss(1024 * Long.parseLong(kb.substring(0, kb.indexOf(' '))));
+					break;
+				}
+			}
+		} catch (final IOException | RuntimeException e) {
+			// the process has terminated in the meantime
+		}
+	}
+	
+	/**
+	 * Samples all watched processes and kills the ones that exceeded their deadline.
+	 */
+	private static void tick() {
+		final long now = System.nanoTime();
+		for (final Command command : COMMANDS) {
+			sample(command);
+			if (command.isOverdue(now)) {
+				command.kill();
+				COMMANDS.remove(command);
+			}
+		}
+	}
+	
+	/**
+	 * Stops watching the given command.
+	 *
+	 * @param command
+	 *            the command
+	 */
+	static void unregister(final Command command) {
+		COMMANDS.remove(command);
+	}
+	
+	/**
+	 * Instantiates a new command watchdog.
+	 */
+	private CommandWatchdog() {
+		// utility class
+	}
+}
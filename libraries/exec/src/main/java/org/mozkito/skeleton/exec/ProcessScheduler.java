@@ -0,0 +1,469 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.exec;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * Admission control for external processes. Every {@link Command} acquires a slot before its process is started and
+ * releases it as soon as the process has terminated. The scheduler caps the number of concurrent processes globally and
+ * per group (e.g. per depot). Pending commands are admitted by priority and in the order of their arrival within the
+ * same priority; a command whose group is saturated does not block commands of other groups. Commands are
+ * {@link #submit(String, Priority, Executor, LongConsumer) submitted} to their executor only once they have been
+ * admitted, i.e. pending commands do not occupy a thread.
+ *
+ * @author Sascha Just
+ */
+public class ProcessScheduler {
+	
+	/**
+	 * The priority of a command. Short running queries (e.g. per branch) should overtake long running bulk operations
+	 * (e.g. clones).
+	 */
+	public static enum Priority {
+		
+		/** Bulk operations like clones and fetches. */
+		LOW,
+		/** Regular operations like mining the history. */
+		NORMAL,
+		/** Short queries, e.g. per branch. */
+		HIGH;
+	}
+	
+	/**
+	 * The bookkeeping of a group.
+	 */
+	private static class Group {
+		
+		/** The number of running processes. */
+		private int  running;
+		
+		/** The number of admissions. */
+		private long admissions;
+		
+		/** The accumulated time spent in the queue. */
+		private long waitNanos;
+	}
+	
+	/**
+	 * A pending request for a slot.
+	 */
+	private static class Ticket implements Comparable<Ticket> {
+		
+		/** The priority. */
+		private final Priority  priority;
+		
+		/** The arrival. */
+		private final long      sequence;
+		
+		/** The group. */
+		private final Group        group;
+		
+		/** Signaled when the ticket has been admitted; null if the ticket has been submitted. */
+		private final Condition    admission;
+		
+		/** The executor of the task; null if the ticket is waited for. */
+		private final Executor     executor;
+		
+		/** The task run once the ticket has been admitted; null if the ticket is waited for. */
+		private final LongConsumer task;
+		
+		/** The arrival time. */
+		private final long         start    = System.nanoTime();
+		
+		/** The time spent in the queue. */
+		private long               wait;
+		
+		/** The admitted. */
+		private boolean            admitted = false;
+		
+		/**
+		 * Instantiates a new ticket.
+		 *
+		 * @param priority
+		 *            the priority
+		 * @param sequence
+		 *            the sequence
+		 * @param group
+		 *            the group
+		 * @param admission
+		 *            the admission; null if the ticket is submitted
+		 * @param executor
+		 *            the executor of the task; null if the ticket is waited for
+		 * @param task
+		 *            the task; null if the ticket is waited for
+		 */
+		public Ticket(final Priority priority, final long sequence, final Group group, final Condition admission,
+		        final Executor executor, final LongConsumer task) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.group = group;
+			this.admission = admission;
+			this.executor = executor;
+			this.task = task;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(final Ticket other) {
+			final int result = other.priority.compareTo(this.priority);
+			return result != 0
+			                  ? result
+			                  : Long.compare(this.sequence, other.sequence);
+		}
+	}
+	
+	/** The default scheduler. */
+	private static volatile ProcessScheduler defaultScheduler = new ProcessScheduler(Integer.MAX_VALUE,
+	                                                                                 Integer.MAX_VALUE);
+	
+	/**
+	 * Gets the scheduler used by all commands that have not been assigned a scheduler explicitly. The default scheduler
+	 * does not limit the number of processes.
+	 *
+	 * @return the default scheduler
+	 */
+	public static ProcessScheduler getDefault() {
+		return defaultScheduler;
+	}
+	
+	/**
+	 * Sets the default scheduler.
+	 *
+	 * @param scheduler
+	 *            the new default scheduler
+	 */
+	public static void setDefault(final ProcessScheduler scheduler) {
+		Requires.notNull(scheduler);
+		defaultScheduler = scheduler;
+	}
+	
+	/** The max processes. */
+	private final int                maxProcesses;
+	
+	/** The max processes per group. */
+	private final int                maxProcessesPerGroup;
+	
+	/** The lock. */
+	private final ReentrantLock      lock       = new ReentrantLock();
+	
+	/** The pending tickets in the order of admission. */
+	private final TreeSet<Ticket>    queue      = new TreeSet<>();
+	
+	/** The groups. */
+	private final Map<String, Group> groups     = new HashMap<>();
+	
+	/** The number of running processes. */
+	private int                      running    = 0;
+	
+	/** The arrival counter. */
+	private long                     sequence   = 0;
+	
+	/** The number of admissions. */
+	private long                     admissions = 0;
+	
+	/** The accumulated time spent in the queue. */
+	private long                     waitNanos  = 0;
+	
+	/**
+	 * Instantiates a new process scheduler.
+	 *
+	 * @param maxProcesses
+	 *            the max number of concurrent processes
+	 * @param maxProcessesPerGroup
+	 *            the max number of concurrent processes per group
+	 */
+	public ProcessScheduler(final int maxProcesses, final int maxProcessesPerGroup) {
+		Requires.positive(maxProcesses);
+		Requires.positive(maxProcessesPerGroup);
+		
+		this.maxProcesses = maxProcesses;
+		this.maxProcessesPerGroup = maxProcessesPerGroup;
+	}
+	
+	/**
+	 * Blocks until a process of the given group may be started.
+	 *
+	 * @param group
+	 *            the group
+	 * @param priority
+	 *            the priority
+	 * @return the time spent in the queue in nanoseconds
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public long acquire(final String group,
+	                    final Priority priority) throws InterruptedException {
+		Requires.notNull(group);
+		Requires.notNull(priority);
+		
+		this.lock.lock();
+		try {
+			final Group g = group(group);
+			final Ticket ticket = new Ticket(priority, this.sequence++, g, this.lock.newCondition(), null, null);
+			this.queue.add(ticket);
+			dispatch();
+			
+			try {
+				while (!ticket.admitted) {
+					ticket.admission.await();
+				}
+			} catch (final InterruptedException e) {
+				if (ticket.admitted) {
+					release(g);
+				} else {
+					this.queue.remove(ticket);
+				}
+				throw e;
+			}
+			
+			return ticket.wait;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Admits pending tickets as long as there are free slots. Has to be called with the lock being held.
+	 */
+	private void dispatch() {
+		final Iterator<Ticket> iterator = this.queue.iterator();
+		while (this.running < this.maxProcesses && iterator.hasNext()) {
+			final Ticket ticket = iterator.next();
+			if (ticket.group.running < this.maxProcessesPerGroup) {
+				iterator.remove();
+				++this.running;
+				++this.admissions;
+				++ticket.group.running;
+				++ticket.group.admissions;
+				
+				ticket.wait = System.nanoTime() - ticket.start;
+				ticket.group.waitNanos += ticket.wait;
+				this.waitNanos += ticket.wait;
+				ticket.admitted = true;
+				if (ticket.task != null) {
+					ticket.executor.execute(() -> ticket.task.accept(ticket.wait));
+				} else {
+					ticket.admission.signal();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of processes admitted so far.
+	 *
+	 * @return the admissions
+	 */
+	public long getAdmissions() {
+		this.lock.lock();
+		try {
+			return this.admissions;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the number of processes admitted so far for the given group.
+	 *
+	 * @param group
+	 *            the group
+	 * @return the admissions
+	 */
+	public long getAdmissions(final String group) {
+		this.lock.lock();
+		try {
+			final Group g = this.groups.get(group);
+			return g != null
+			                ? g.admissions
+			                : 0;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the max number of concurrent processes.
+	 *
+	 * @return the max processes
+	 */
+	public int getMaxProcesses() {
+		return this.maxProcesses;
+	}
+	
+	/**
+	 * Gets the max number of concurrent processes per group.
+	 *
+	 * @return the max processes per group
+	 */
+	public int getMaxProcessesPerGroup() {
+		return this.maxProcessesPerGroup;
+	}
+	
+	/**
+	 * Gets the number of pending commands.
+	 *
+	 * @return the queued
+	 */
+	public int getQueued() {
+		this.lock.lock();
+		try {
+			return this.queue.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the number of running processes.
+	 *
+	 * @return the running
+	 */
+	public int getRunning() {
+		this.lock.lock();
+		try {
+			return this.running;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the time all admitted commands spent in the queue.
+	 *
+	 * @return the wait time in milliseconds
+	 */
+	public long getWaitTime() {
+		this.lock.lock();
+		try {
+			return TimeUnit.NANOSECONDS.toMillis(this.waitNanos);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the time the admitted commands of the given group spent in the queue.
+	 *
+	 * @param group
+	 *            the group
+	 * @return the wait time in milliseconds
+	 */
+	public long getWaitTime(final String group) {
+		this.lock.lock();
+		try {
+			final Group g = this.groups.get(group);
+			return g != null
+			                ? TimeUnit.NANOSECONDS.toMillis(g.waitNanos)
+			                : 0;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the bookkeeping of the given group and creates it if necessary. Has to be called with the lock being held.
+	 *
+	 * @param group
+	 *            the group
+	 * @return the bookkeeping
+	 */
+	private Group group(final String group) {
+		Group g = this.groups.get(group);
+		if (g == null) {
+			g = new Group();
+			this.groups.put(group, g);
+		}
+		return g;
+	}
+	
+	/**
+	 * Frees the slot of a group. Has to be called with the lock being held.
+	 *
+	 * @param group
+	 *            the group
+	 */
+	private void release(final Group group) {
+		--this.running;
+		--group.running;
+		dispatch();
+	}
+	
+	/**
+	 * Frees the slot acquired by {@link #acquire(String, Priority)} respectively
+	 * {@link #submit(String, Priority, Executor, LongConsumer)} as soon as the process has terminated.
+	 *
+	 * @param group
+	 *            the group
+	 */
+	public void release(final String group) {
+		Requires.notNull(group);
+		
+		this.lock.lock();
+		try {
+			final Group g = this.groups.get(group);
+			Requires.notNull(g, "Group '%s' has not acquired a slot.", group);
+			release(g);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Runs the given task on the given executor as soon as a process of the given group may be started. Unlike
+	 * {@link #acquire(String, Priority)}, no thread waits for the admission. The task has to {@link #release(String)}
+	 * the slot as soon as its process has terminated.
+	 *
+	 * @param group
+	 *            the group
+	 * @param priority
+	 *            the priority
+	 * @param executor
+	 *            the executor; must not run the task in the calling thread
+	 * @param task
+	 *            the task; receives the time spent in the queue in nanoseconds
+	 */
+	public void submit(final String group,
+	                   final Priority priority,
+	                   final Executor executor,
+	                   final LongConsumer task) {
+		Requires.notNull(group);
+		Requires.notNull(priority);
+		Requires.notNull(executor);
+		Requires.notNull(task);
+		
+		this.lock.lock();
+		try {
+			this.queue.add(new Ticket(priority, this.sequence++, group(group), null, executor, task));
+			dispatch();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+}
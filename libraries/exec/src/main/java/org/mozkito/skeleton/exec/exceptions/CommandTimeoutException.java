@@ -0,0 +1,64 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.exec.exceptions;
+
+/**
+ * Thrown when the process of a {@link org.mozkito.skeleton.exec.Command} has been killed because it exceeded its
+ * deadline. The output read so far is incomplete.
+ *
+ * @author Sascha Just
+ */
+public class CommandTimeoutException extends RuntimeException {
+	
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 4185305829761209563L;
+	
+	/** The command line. */
+	private final String      command;
+	
+	/** The timeout in milliseconds. */
+	private final long        timeout;
+	
+	/**
+	 * Instantiates a new command timeout exception.
+	 *
+	 * @param command
+	 *            the command line
+	 * @param timeout
+	 *            the timeout in milliseconds
+	 */
+	public CommandTimeoutException(final String command, final long timeout) {
+		super(String.format("Command '%s' has been killed after %s ms.", command, timeout));
+		this.command = command;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Gets the command line.
+	 *
+	 * @return the command
+	 */
+	public String getCommand() {
+		return this.command;
+	}
+	
+	/**
+	 * Gets the timeout.
+	 *
+	 * @return the timeout in milliseconds
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+}
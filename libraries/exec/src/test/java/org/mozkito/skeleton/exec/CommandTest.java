@@ -0,0 +1,218 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.exec;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mozkito.skeleton.exec.Command.OutputMode;
+import org.mozkito.skeleton.exec.CommandStatistics.Summary;
+import org.mozkito.skeleton.exec.exceptions.CommandTimeoutException;
+
+/**
+ * The Class CommandTest.
+ *
+ * @author Sascha Just
+ */
+public class CommandTest {
+	
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Test that the cpu time and the peak resident set size of a busy process are sampled. Requires the pid of the
+	 * process and <code>/proc</code>, i.e. is skipped where accounting is unavailable.
+	 */
+	@Test
+	public void testAccounting() {
+		final Command command = new Command("sh", new String[] { "-c",
+		        "i=0; while [ $i -lt 300000 ]; do i=$((i+1)); done" }, null);
+		command.run();
+		command.waitFor();
+		assertThat(command.exitValue(), equalTo(0));
+		assumeThat(command.getPid() > 0 && new File("/proc/self/stat").exists(), equalTo(true));
+		assertThat(command.getCpuTime() > 0, equalTo(true));
+		assertThat(command.getPeakRss() > 0, equalTo(true));
+	}
+	
+	/**
+	 * Test that commands waiting for their admission do not occupy a thread of the shared pool, neither to run the
+	 * process nor to collect its output.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testAdmission() throws Exception {
+		final Field field = Command.class.getDeclaredField("PUMPS");
+		field.setAccessible(true);
+		final ThreadPoolExecutor pumps = (ThreadPoolExecutor) field.get(null);
+		
+		final ProcessScheduler scheduler = new ProcessScheduler(1, 1);
+		final List<CompletableFuture<List<String>>> outputs = new ArrayList<>();
+		for (int i = 0; i < 40; ++i) {
+			final Command command = new Command("sh", new String[] { "-c", "sleep 0.01; echo " + i }, null);
+			command.setScheduler(scheduler);
+			command.run();
+			outputs.add(command.collectOutput(Collectors.toList()));
+		}
+		assertThat(scheduler.getQueued() > 30, equalTo(true));
+		
+		int threads = 0;
+		for (int i = 0; i < 40; ++i) {
+			assertThat(outputs.get(i).get(), equalTo(Arrays.asList(String.valueOf(i))));
+			threads = Math.max(threads, pumps.getActiveCount());
+		}
+		// a runner, an output pump and a collector per admitted process, plus the ones of the process just finished
+		assertThat(threads < 10, equalTo(true));
+		assertThat(scheduler.getAdmissions(), equalTo(40l));
+	}
+	
+	/**
+	 * Test composing several commands through their futures.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		final List<CompletableFuture<List<String>>> outputs = new ArrayList<>();
+		for (int i = 0; i < 10; ++i) {
+			final Command command = new Command("seq", new String[] { String.valueOf(i) }, null);
+			command.run();
+			outputs.add(command.collectOutput(Collectors.toList()));
+		}
+		for (int i = 0; i < 10; ++i) {
+			assertThat(outputs.get(i).get().size(), equalTo(i));
+		}
+		
+		final Command failing = new Command("sh", new String[] { "-c", "exit 3" }, null);
+		failing.run();
+		assertThat(failing.onExit().get(), equalTo(3));
+		
+		final File file = this.folder.newFile();
+		final Command redirected = new Command("echo", new String[] { "mozkito" }, null);
+		redirected.redirectOutput(file);
+		redirected.run();
+		assertThat(redirected.onExit().get(), equalTo(0));
+		assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), equalTo(Arrays.asList("mozkito")));
+		assertThat(redirected.getStdOutBytes(), equalTo(8l));
+		
+		assertThat(CommandExecutor.executeAsync("echo", new String[] { "mozkito" }, null, null,
+		                                        StandardCharsets.UTF_8).get().getSecond(),
+		           equalTo(Arrays.asList("mozkito")));
+	}
+	
+	/**
+	 * Test that the output is accounted to the group and the kind of the command.
+	 */
+	@Test
+	public void testStatistics() {
+		final CommandStatistics statistics = new CommandStatistics();
+		for (final OutputMode mode : OutputMode.values()) {
+			final Command command = new Command("sh", new String[] { "-c", "echo mozkito; echo error >&2" }, null);
+			command.setOutputMode(mode);
+			command.setGroup("depot");
+			command.setStatistics(statistics);
+			command.run();
+			
+			assertThat(command.nextOutput(), equalTo("mozkito"));
+			assertThat(command.nextOutput() == null, equalTo(true));
+			command.waitFor();
+			assertThat(command.nextErrput(), equalTo("error"));
+			
+			assertThat(command.getKind(), equalTo("sh -c"));
+			assertThat(command.getStdOutBytes(), equalTo(8l));
+			assertThat(command.getStdErrBytes(), equalTo(6l));
+			assertThat(command.getTimeToFirstByte() >= 0, equalTo(true));
+			assertThat(command.getTimeToFirstByte() <= command.getWallTime(), equalTo(true));
+		}
+		
+		final Summary summary = statistics.getGroup("depot");
+		assertThat(summary.getCommands(), equalTo(2l));
+		assertThat(summary.getStdOutBytes(), equalTo(16l));
+		assertThat(summary.getStdErrBytes(), equalTo(12l));
+		assertThat(statistics.getKinds().get("sh -c").getCommands(), equalTo(2l));
+	}
+	
+	/**
+	 * Test that a command exceeding its deadline is killed and reported.
+	 */
+	@Test
+	public void testTimeout() {
+		final CommandStatistics statistics = new CommandStatistics();
+		final Command command = new Command("sleep", new String[] { "30" }, null);
+		command.setTimeout(300, TimeUnit.MILLISECONDS);
+		command.setStatistics(statistics);
+		command.run();
+		
+		try {
+			command.waitFor();
+			fail();
+		} catch (final CommandTimeoutException e) {
+			assertThat(e.getTimeout(), equalTo(300l));
+		}
+		assertThat(command.isTimedOut(), equalTo(true));
+		assertThat(command.getWallTime() < 10000, equalTo(true));
+		assertThat(statistics.getTotal().getTimeouts(), equalTo(1l));
+	}
+	
+	/**
+	 * Test that the deadline of a command is enforced even if the pid of its process is unknown, i.e. the process
+	 * accounting is unavailable.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testTimeoutUnknownPid() throws Exception {
+		final Command command = new Command("sleep", new String[] { "30" }, null);
+		command.setTimeout(300, TimeUnit.MILLISECONDS);
+		command.run();
+		
+		// as if the pid could not be determined
+		final Field pid = Command.class.getDeclaredField("pid");
+		pid.setAccessible(true);
+		pid.setLong(command, -1);
+		assertThat(command.getPid(), equalTo(-1l));
+		
+		try {
+			command.waitFor();
+			fail();
+		} catch (final CommandTimeoutException e) {
+			assertThat(e.getTimeout(), equalTo(300l));
+		}
+		assertThat(command.isTimedOut(), equalTo(true));
+		assertThat(command.getWallTime() < 10000, equalTo(true));
+	}
+}
@@ -0,0 +1,355 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * Reads lines from an {@link InputStream} into a single reusable byte buffer. In contrast to
+ * {@link java.io.BufferedReader#readLine()}, no objects are created per line: the current line is exposed as a window
+ * ({@link #start()}, {@link #end()}) on {@link #buffer()} and can be decoded in place using the number parsing helpers.
+ * Strings are only created on request (see {@link #toString(int, int)}).
+ *
+ * All offsets taken by the accessor methods are relative to the start of the current line.
+ *
+ * @author Sascha Just
+ */
+public class ByteLineReader implements Closeable {
+	
+	/** The Constant DEFAULT_BUFFER_SIZE. */
+	public static final int   DEFAULT_BUFFER_SIZE = 1 << 16;
+	
+	/** The Constant LF. */
+	private static final byte LF                  = '\n';
+	
+	/** The Constant CR. */
+	private static final byte CR                  = '\r';
+	
+	/** The input stream. */
+	private final InputStream in;
+	
+	/** The charset used to materialize strings. */
+	private final Charset     charset;
+	
+	/** The buffer. */
+	private byte[]            buffer;
+	
+	/** The number of valid bytes in the buffer. */
+	private int               limit               = 0;
+	
+	/** The position in the buffer where the next line starts. */
+	private int               position            = 0;
+	
+	/** The start of the current line. */
+	private int               start               = 0;
+	
+	/** The end of the current line (exclusive, without line terminator). */
+	private int               end                 = 0;
+	
+	/** The eof. */
+	private boolean           eof                 = false;
+	
+	/**
+	 * Instantiates a new byte line reader using the {@link #DEFAULT_BUFFER_SIZE}.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param charset
+	 *            the charset used to materialize strings
+	 */
+	public ByteLineReader(final InputStream in, final Charset charset) {
+		this(in, charset, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Instantiates a new byte line reader. The buffer grows if a single line exceeds the given buffer size.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param charset
+	 *            the charset used to materialize strings
+	 * @param bufferSize
+	 *            the initial buffer size
+	 */
+	public ByteLineReader(final InputStream in, final Charset charset, final int bufferSize) {
+		Requires.notNull(in);
+		Requires.notNull(charset);
+		Requires.positive(bufferSize);
+		
+		this.in = in;
+		this.charset = charset;
+		this.buffer = new byte[bufferSize];
+	}
+	
+	/**
+	 * Gets the underlying buffer. The buffer is reused and its content is only valid until the next call to
+	 * {@link #next()}.
+	 *
+	 * @return the buffer
+	 */
+	public byte[] buffer() {
+		return this.buffer;
+	}
+	
+	/**
+	 * Returns the byte at the given offset within the current line.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return the byte
+	 */
+	public byte byteAt(final int offset) {
+		return this.buffer[this.start + offset];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+	
+	/**
+	 * The end of the current line within {@link #buffer()} (exclusive).
+	 *
+	 * @return the absolute end offset
+	 */
+	public int end() {
+		return this.end;
+	}
+	
+	/**
+	 * Checks if the current line is equal to the given bytes.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return true, if the line has exactly the given content
+	 */
+	public boolean equalTo(final byte[] bytes) {
+		if (bytes.length != length()) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; ++i) {
+			if (bytes[i] != this.buffer[this.start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Fills the buffer. Moves the unprocessed tail to the front of the buffer and grows it, if the pending line fills
+	 * the whole buffer.
+	 *
+	 * @return false if the end of the stream has been reached
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean fill() throws IOException {
+		if (this.eof) {
+			return false;
+		}
+		
+		if (this.position > 0) {
+			final int pending = this.limit - this.position;
+			System.arraycopy(this.buffer, this.position, this.buffer, 0, pending);
+			this.limit = pending;
+			this.position = 0;
+		}
+		
+		if (this.limit == this.buffer.length) {
+			final byte[] newBuffer = new byte[this.buffer.length * 2];
+			System.arraycopy(this.buffer, 0, newBuffer, 0, this.limit);
+			this.buffer = newBuffer;
+		}
+		
+		final int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (read < 0) {
+			this.eof = true;
+			return false;
+		}
+		
+		this.limit += read;
+		return true;
+	}
+	
+	/**
+	 * Returns the offset of the first occurrence of the given byte within the current line, starting at the given
+	 * offset.
+	 *
+	 * @param b
+	 *            the byte to look for
+	 * @param from
+	 *            the offset to start from
+	 * @return the offset, or -1 if the byte is not contained in the remainder of the line
+	 */
+	public int indexOf(final byte b,
+	                   final int from) {
+		for (int i = this.start + from; i < this.end; ++i) {
+			if (this.buffer[i] == b) {
+				return i - this.start;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Checks if the current line is empty.
+	 *
+	 * @return true, if is empty
+	 */
+	public boolean isEmpty() {
+		return this.end == this.start;
+	}
+	
+	/**
+	 * The length of the current line without the line terminator.
+	 *
+	 * @return the length
+	 */
+	public int length() {
+		return this.end - this.start;
+	}
+	
+	/**
+	 * Advances to the next line.
+	 *
+	 * @return true, if a line is available; false if the end of the stream has been reached
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean next() throws IOException {
+		int scan = this.position;
+		
+		while (true) {
+			for (; scan < this.limit; ++scan) {
+				if (this.buffer[scan] == LF) {
+					this.start = this.position;
+					this.end = scan > this.start && this.buffer[scan - 1] == CR
+					                                                           ? scan - 1
+					                                                           : scan;
+					this.position = scan + 1;
+					return true;
+				}
+			}
+			
+			final int scanned = scan - this.position;
+			if (!fill()) {
+				if (this.position < this.limit) {
+					// last line without trailing line feed
+					this.start = this.position;
+					this.end = this.limit;
+					this.position = this.limit;
+					return true;
+				}
+				return false;
+			}
+			// fill() moves the pending bytes to the front of the buffer
+			scan = this.position + scanned;
+		}
+	}
+	
+	/**
+	 * Parses a decimal number in the given range of the current line.
+	 *
+	 * @param from
+	 *            the offset of the first digit
+	 * @param to
+	 *            the offset after the last digit
+	 * @return the int
+	 */
+	public int parseInt(final int from,
+	                    final int to) {
+		return (int) parseLong(from, to);
+	}
+	
+	/**
+	 * Parses a decimal number in the given range of the current line.
+	 *
+	 * @param from
+	 *            the offset of the first digit
+	 * @param to
+	 *            the offset after the last digit
+	 * @return the long
+	 */
+	public long parseLong(final int from,
+	                      final int to) {
+		if (from >= to) {
+			throw new NumberFormatException("Empty number at offset " + from + ": " + toString());
+		}
+		
+		long value = 0;
+		for (int i = this.start + from; i < this.start + to; ++i) {
+			final int digit = this.buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid decimal digit at offset " + (i - this.start) + ": "
+				        + toString());
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	/**
+	 * The start of the current line within {@link #buffer()}.
+	 *
+	 * @return the absolute start offset
+	 */
+	public int start() {
+		return this.start;
+	}
+	
+	/**
+	 * Checks if the current line starts with the given byte.
+	 *
+	 * @param b
+	 *            the byte
+	 * @return true, if successful
+	 */
+	public boolean startsWith(final byte b) {
+		return this.end > this.start && this.buffer[this.start] == b;
+	}
+	
+	/**
+	 * Materializes the current line.
+	 *
+	 * @return the string
+	 */
+	@Override
+	public String toString() {
+		return new String(this.buffer, this.start, length(), this.charset);
+	}
+	
+	/**
+	 * Materializes the given range of the current line.
+	 *
+	 * @param from
+	 *            the offset of the first byte
+	 * @param to
+	 *            the offset after the last byte
+	 * @return the string
+	 */
+	public String toString(final int from,
+	                       final int to) {
+		return new String(this.buffer, this.start + from, to - from, this.charset);
+	}
+}
@@ -0,0 +1,95 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.io;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * The Class ByteLineReaderTest.
+ *
+ * @author Sascha Just
+ */
+public class ByteLineReaderTest {
+	
+	/**
+	 * Creates a reader on the given content.
+	 *
+	 * @param content
+	 *            the content
+	 * @param bufferSize
+	 *            the buffer size
+	 * @return the byte line reader
+	 */
+	private static ByteLineReader reader(final String content,
+	                                     final int bufferSize) {
+		return new ByteLineReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+		                          StandardCharsets.UTF_8, bufferSize);
+	}
+	
+	/**
+	 * Test lines exceeding the buffer size.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testGrow() throws IOException {
+		try (final ByteLineReader reader = reader("abcdefghij\nklm\r\nno", 4)) {
+			assertTrue(reader.next());
+			assertThat(reader.toString(), equalTo("abcdefghij"));
+			assertTrue(reader.next());
+			assertThat(reader.toString(), equalTo("klm"));
+			assertTrue(reader.next());
+			assertThat(reader.toString(), equalTo("no"));
+			assertFalse(reader.next());
+		}
+	}
+	
+	/**
+	 * Test in place decoding.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testParse() throws IOException {
+		try (final ByteLineReader reader = reader("12\t-\tpath/to/file\n\n:100644", 8)) {
+			assertTrue(reader.next());
+			final int tab = reader.indexOf((byte) '\t', 0);
+			assertThat(tab, equalTo(2));
+			assertThat(reader.parseInt(0, tab), equalTo(12));
+			assertThat(reader.byteAt(tab + 1), equalTo((byte) '-'));
+			assertThat(reader.indexOf((byte) '\t', tab + 1), equalTo(4));
+			assertThat(reader.toString(5, reader.length()), equalTo("path/to/file"));
+			
+			assertTrue(reader.next());
+			assertTrue(reader.isEmpty());
+			
+			assertTrue(reader.next());
+			assertTrue(reader.startsWith((byte) ':'));
+			assertTrue(reader.equalTo(":100644".getBytes(StandardCharsets.US_ASCII)));
+			assertThat(reader.parseLong(1, 7), equalTo(100644L));
+			assertFalse(reader.next());
+		}
+	}
+}
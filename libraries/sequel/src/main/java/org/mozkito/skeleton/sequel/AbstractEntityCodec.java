@@ -0,0 +1,69 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Class AbstractEntityCodec. Provides the encoding of the values that are shared by most entities.
+ *
+ * @author Sascha Just
+ * @param <T>
+ *            the generic type
+ */
+public abstract class AbstractEntityCodec<T extends ISequelEntity> implements IEntityCodec<T> {
+	
+	/**
+	 * Reads a string written by {@link #putString(ByteBuffer, String)}.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the string, may be <code>null</code>
+	 */
+	protected static String getString(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Writes the given string as UTF-8, preceded by its length in bytes.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param string
+	 *            the string, may be <code>null</code>
+	 */
+	protected static void putString(final ByteBuffer buffer,
+	                                final String string) {
+		if (string == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (buffer.remaining() < 4 + bytes.length) {
+			throw new BufferOverflowException();
+		}
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+}
@@ -14,13 +14,20 @@
 package org.mozkito.skeleton.sequel;
 
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import org.mozkito.skeleton.contracts.Asserts;
 import org.mozkito.skeleton.contracts.Contract;
 import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.sequel.SequelDatabase.LoadMode;
+import org.mozkito.skeleton.sequel.SequelDatabase.Type;
 
 /**
  * The Class AbstractSequelAdapter.
@@ -31,6 +38,39 @@ import org.mozkito.skeleton.contracts.Requires;
  */
 public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	
+	/**
+	 * A block of ids reserved from the sequence. The ids are handed out by advancing the cursor, i.e. without locking.
+	 */
+	private static final class IdBlock {
+		
+		/** The ids. */
+		private final long[]        ids;
+		
+		/** The index of the next id. */
+		private final AtomicInteger cursor = new AtomicInteger();
+		
+		/**
+		 * Instantiates a new id block.
+		 *
+		 * @param ids
+		 *            the ids
+		 */
+		IdBlock(final long[] ids) {
+			this.ids = ids;
+		}
+	}
+	
+	/** The table of the digits the rows of the queries that draw ids in Derby are generated from. */
+	private static final String    DIGITS           = "(VALUES 0, 1, 2, 3, 4, 5, 6, 7, 8, 9)";
+	
+	/** The pattern used to extract the sequence name from the next id statement of Derby and MS SQL. */
+	private static final Pattern   SEQUENCE_PATTERN = Pattern.compile("NEXT\\s+VALUE\\s+FOR\\s+(\\w+)",
+	                                                                  Pattern.CASE_INSENSITIVE);
+	
+	/** The pattern used to extract the table name from the save statement. */
+	private static final Pattern   TABLE_PATTERN    = Pattern.compile("INSERT\\s+INTO\\s+(\\w+)",
+	                                                                  Pattern.CASE_INSENSITIVE);
+	
 	/** The database. */
 	protected final SequelDatabase database;
 	
@@ -49,8 +89,28 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	/** The create constraints resource. */
 	private final String           createConstraintsResource;
 	
+	/** Whether the rows may be loaded through the COPY protocol. */
+	private final boolean          copyable;
+	
 	/** The current id. */
-	private long                   currentId = 0l;
+	private final AtomicLong       currentId        = new AtomicLong();
+	
+	/** The block of ids reserved from the sequence; empty until the first id is requested. */
+	private volatile IdBlock       idBlock          = new IdBlock(new long[0]);
+	
+	/**
+	 * Sends the pending batches of the given statements to the database, in the given order.
+	 *
+	 * @param statements
+	 *            the statements
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	protected static void executeBatches(final PreparedStatement... statements) throws SQLException {
+		for (final PreparedStatement statement : statements) {
+			statement.executeBatch();
+		}
+	}
 	
 	/**
 	 * Instantiates a new abstract sequel adapter.
@@ -61,7 +121,23 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	 *            the identifier
 	 */
 	public AbstractSequelAdapter(final SequelDatabase database, final String identifier) {
+		this(database, identifier, false);
+	}
+	
+	/**
+	 * Instantiates a new abstract sequel adapter. Adapters whose save statement is a plain insert into a single table
+	 * may allow the rows to be loaded through the COPY protocol if the database is in {@link LoadMode#COPY}.
+	 *
+	 * @param database
+	 *            the database
+	 * @param identifier
+	 *            the identifier
+	 * @param copyable
+	 *            whether the rows may be loaded through the COPY protocol
+	 */
+	public AbstractSequelAdapter(final SequelDatabase database, final String identifier, final boolean copyable) {
 		this.database = database;
+		this.copyable = copyable;
 		this.saveStatement = SequelManager.loadStatement(database, identifier + "_save");
 		this.nextIdStatement = SequelManager.loadStatement(database, identifier + "_nextid");
 		this.createSchemaResource = identifier + "_create_schema";
@@ -75,10 +151,12 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#createConstraints()
 	 */
 	public void createConstraints() {
+		if (!SequelManager.hasSQL(this.database, this.createConstraintsResource)) {
+			return;
+		}
+		
 		try {
-			synchronized (this.database) {
-				SequelManager.executeSQL(this.database, this.createConstraintsResource);
-			}
+			SequelManager.executeSQL(this.database, this.createConstraintsResource);
 		} catch (final SQLException | IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -90,10 +168,12 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#createIndexes()
 	 */
 	public void createIndexes() {
+		if (!SequelManager.hasSQL(this.database, this.createIndexesResource)) {
+			return;
+		}
+		
 		try {
-			synchronized (this.database) {
-				SequelManager.executeSQL(this.database, this.createIndexesResource);
-			}
+			SequelManager.executeSQL(this.database, this.createIndexesResource);
 		} catch (final SQLException | IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -115,57 +195,206 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	}
 	
 	/**
-	 * {@inheritDoc}
-	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#nextId(java.sql.PreparedStatement)
+	 * Draws the ids of a block from the sequence through the given query, which yields as many ids as its parameter
+	 * requests.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param sql
+	 *            the query
+	 * @param ids
+	 *            the array the ids are stored to
+	 * @throws SQLException
+	 *             the SQL exception
 	 */
-	public synchronized long nextId(final PreparedStatement nextIdStatement) {
-		try {
-			switch (this.database.getIdMode()) {
-				case SEQUENCE:
-					Asserts.notNull(nextIdStatement);
-					final ResultSet idResult = nextIdStatement.executeQuery();
+	private void drawIds(final Connection connection,
+	                     final String sql,
+	                     final long[] ids) throws SQLException {
+		try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setInt(1, ids.length);
+			try (final ResultSet idResult = statement.executeQuery()) {
+				for (int i = 0; i < ids.length; ++i) {
 					final boolean result = idResult.next();
 					Contract.asserts(result);
-					return idResult.getLong(1);
-				case LOCAL:
-					return ++this.currentId;
-				default:
-					throw new RuntimeException("Unsupported ID mode: " + this.database.getIdMode().name());
+					ids[i] = idResult.getLong(1);
+				}
 			}
-		} catch (final SQLException e) {
-			throw new RuntimeException(e);
 		}
+		// concurrent sessions may interleave, i.e. the block is not necessarily contiguous
+		Arrays.sort(ids);
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#prepareNextIdStatement()
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#getDatabase()
+	 */
+	public SequelDatabase getDatabase() {
+		return this.database;
+	}
+	
+	/**
+	 * Gets the query that draws ids from the sequence in Derby, which has no row generator: the sequence is evaluated
+	 * for the rows of a cross join of digit tables that is cut off after the requested number of rows. A single list of
+	 * values would be compiled recursively and overflow the stack for large blocks.
+	 *
+	 * @param count
+	 *            the max number of ids the query is able to draw
+	 * @return the query
 	 */
-	public final PreparedStatement prepareNextIdStatement() {
+	private String getDerbyIdsQuery(final int count) {
+		final StringBuilder sql = new StringBuilder("SELECT NEXT VALUE FOR ").append(getSequenceName());
+		sql.append(" FROM ").append(DIGITS).append(" AS d0(x)");
+		int tables = 1;
+		for (long rows = 10; rows < count; rows *= 10) {
+			sql.append(", ").append(DIGITS).append(" AS d").append(tables++).append("(x)");
+		}
+		return sql.append(" FETCH FIRST ? ROWS ONLY").toString();
+	}
+	
+	/**
+	 * Gets the name of the sequence the ids are drawn from.
+	 *
+	 * @return the sequence name
+	 */
+	private String getSequenceName() {
+		final Matcher matcher = SEQUENCE_PATTERN.matcher(this.nextIdStatement);
+		Contract.asserts(matcher.find());
+		return matcher.group(1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#getTableName()
+	 */
+	public String getTableName() {
+		final Matcher matcher = TABLE_PATTERN.matcher(this.saveStatement);
+		Contract.asserts(matcher.find());
+		return matcher.group(1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#nextId()
+	 */
+	public long nextId() {
+		switch (this.database.getIdMode()) {
+			case SEQUENCE:
+				while (true) {
+					final IdBlock block = this.idBlock;
+					final int index = block.cursor.getAndIncrement();
+					if (index < block.ids.length) {
+						return block.ids[index];
+					}
+					reserveIds(block);
+				}
+			case LOCAL:
+				return this.currentId.incrementAndGet();
+			default:
+				throw new RuntimeException("Unsupported ID mode: " + this.database.getIdMode().name());
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#prepareSaveStatement()
+	 */
+	public final PreparedStatement prepareSaveStatement() {
 		try {
-			switch (this.database.getIdMode()) {
-				case SEQUENCE:
-					return this.database.getConnection().prepareStatement(this.nextIdStatement);
-				case LOCAL:
-					return null;
+			if (this.copyable && this.database.getLoadMode() == LoadMode.COPY) {
+				return CopyStatement.prepare(this.database.getConnection(), this.saveStatement);
+			}
+			return this.database.getConnection().prepareStatement(this.saveStatement);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Replaces the given exhausted block by a new block of ids reserved from the sequence, unless another thread did so
+	 * already. The block is reserved in a single round trip: PostgreSQL and Derby draw all ids of the block in a single
+	 * query, MS SQL reserves a range of the sequence. The block is reserved on a short-lived connection that commits
+	 * right away, i.e. the reservation neither joins the transaction of the calling thread nor leaves one open.
+	 *
+	 * @param exhausted
+	 *            the exhausted block
+	 */
+	private synchronized void reserveIds(final IdBlock exhausted) {
+		if (this.idBlock != exhausted) {
+			return;
+		}
+		
+		final long[] ids = new long[this.database.getIdBlockSize()];
+		
+		try (final Connection connection = this.database.borrow()) {
+			switch (this.database.getType()) {
+				case POSTGRES:
+					drawIds(connection, this.nextIdStatement.trim() + " FROM generate_series(1, ?)", ids);
+					break;
+				case DERBY:
+					drawIds(connection, getDerbyIdsQuery(ids.length), ids);
+					break;
+				case MSSQL:
+					reserveRange(connection, ids);
+					break;
 				default:
-					throw new RuntimeException("Unsupported ID mode: " + this.database.getIdMode().name());
+					throw new RuntimeException("Unsupported database type: " + this.database.getType());
 			}
 		} catch (final SQLException e) {
 			throw new RuntimeException(e);
 		}
+		
+		this.idBlock = new IdBlock(ids);
+	}
+	
+	/**
+	 * Reserves a range of consecutive ids of the sequence in MS SQL. The sequences of the schemes increment by one.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param ids
+	 *            the array the ids are stored to
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void reserveRange(final Connection connection,
+	                          final long[] ids) throws SQLException {
+		final String sql = "SET NOCOUNT ON; DECLARE @first SQL_VARIANT; EXEC sys.sp_sequence_get_range "
+		        + "@sequence_name = ?, @range_size = ?, @range_first_value = @first OUTPUT; "
+		        + "SELECT CAST(@first AS BIGINT)";
+		try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, getSequenceName());
+			statement.setInt(2, ids.length);
+			try (final ResultSet idResult = statement.executeQuery()) {
+				final boolean result = idResult.next();
+				Contract.asserts(result);
+				final long first = idResult.getLong(1);
+				for (int i = 0; i < ids.length; ++i) {
+					ids[i] = first + i;
+				}
+			}
+		}
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#prepareSaveStatement()
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#resumeIds()
 	 */
-	public final PreparedStatement prepareSaveStatement() {
+	public synchronized void resumeIds() {
 		try {
-			return this.database.getConnection().prepareStatement(this.saveStatement);
+			synchronized (this.database) {
+				final String sql = "SELECT MAX(id) FROM " + getTableName();
+				try (final PreparedStatement statement = this.database.getConnection().prepareStatement(sql);
+				        final ResultSet result = statement.executeQuery()) {
+					if (result.next()) {
+						this.currentId.accumulateAndGet(result.getLong(1), Math::max);
+					}
+				}
+			}
 		} catch (final SQLException e) {
 			throw new RuntimeException(e);
 		}
@@ -174,15 +403,13 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#save(java.sql.PreparedStatement, java.sql.PreparedStatement,
-	 *      java.lang.Object)
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#save(java.sql.PreparedStatement, java.lang.Object)
 	 */
 	public final void save(final PreparedStatement saveStatement,
-	                       final PreparedStatement idStatement,
 	                       final T entity) {
 		Requires.notNull(saveStatement);
 		Requires.notNull(entity);
-		save(saveStatement, nextId(idStatement), entity);
+		save(saveStatement, nextId(), entity);
 	}
 	
 	/**
@@ -195,12 +422,12 @@ public abstract class AbstractSequelAdapter<T> implements ISequelAdapter<T> {
 		
 		try {
 			final PreparedStatement statement = prepareSaveStatement();
-			final PreparedStatement idStatement = prepareNextIdStatement();
 			
 			for (final T entity : entities) {
-				save(statement, idStatement, entity);
+				save(statement, entity);
 			}
 			
+			statement.executeBatch();
 			statement.getConnection().commit();
 		} catch (final SQLException e) {
 			throw new RuntimeException(e);
@@ -0,0 +1,530 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+
+package org.mozkito.skeleton.sequel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.mozkito.skeleton.contracts.Contract;
+
+/**
+ * A save statement that loads the rows of its batch through the <code>COPY ... FROM STDIN</code> protocol of
+ * PostgreSQL instead of inserting them one by one. Adapters bind the parameters and add the rows to the batch like they
+ * do with a regular statement; executing the batch streams all pending rows to the server at once.
+ *
+ * Rows are sent in the binary format if the types of all columns are supported and in the text format otherwise. The
+ * driver is accessed reflectively, since it is an optional runtime dependency of the applications.
+ *
+ * @author Sascha Just
+ */
+class CopyStatement implements InvocationHandler {
+	
+	/**
+	 * The format of the copy data.
+	 */
+	static enum Format {
+		
+		/** The binary format. */
+		BINARY,
+		/** The text format. */
+		TEXT;
+	}
+	
+	/** The signature of the binary format. */
+	private static final byte[]        SIGNATURE      = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+	
+	/** The column types that are supported by the binary format. */
+	private static final Set<String>   BINARY_TYPES   = new HashSet<>(Arrays.asList("int2", "int4", "int8", "bool",
+	                                                                                "float4", "float8", "text",
+	                                                                                "varchar", "bpchar", "timestamp"));
+	
+	/** The epoch of the binary timestamp format. */
+	private static final LocalDateTime EPOCH          = LocalDateTime.of(2000, 1, 1, 0, 0);
+	
+	/** The pattern used to extract the table and the columns from the insert statement. */
+	private static final Pattern       INSERT_PATTERN = Pattern.compile("INSERT\\s+INTO\\s+(\\w+)\\s*\\(([^)]*)\\)",
+	                                                                    Pattern.CASE_INSENSITIVE);
+	
+	/** The pattern used to extract the failed row from the error reported by the server. */
+	private static final Pattern       LINE_PATTERN   = Pattern.compile("COPY \\w+, line (\\d+)");
+	
+	/**
+	 * Prepares a copy statement that loads the rows of the given insert statement into its table. The table has to
+	 * exist already.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param insertStatement
+	 *            the insert statement
+	 * @return the prepared statement
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	static PreparedStatement prepare(final Connection connection,
+	                                 final String insertStatement) throws SQLException {
+		final Matcher matcher = INSERT_PATTERN.matcher(insertStatement);
+		Contract.requires(matcher.find(), "Not an insert statement: %s", insertStatement);
+		
+		final String table = matcher.group(1).toLowerCase();
+		final String[] columns = matcher.group(2).trim().toLowerCase().split("\\s*,\\s*");
+		
+		final Map<String, String> types = new HashMap<>();
+		try (final ResultSet result = connection.getMetaData().getColumns(null, null, table, null)) {
+			while (result.next()) {
+				types.put(result.getString("COLUMN_NAME").toLowerCase(), result.getString("TYPE_NAME").toLowerCase());
+			}
+		}
+		
+		Format format = Format.BINARY;
+		final String[] columnTypes = new String[columns.length];
+		for (int i = 0; i < columns.length; ++i) {
+			columnTypes[i] = types.get(columns[i]);
+			if (!BINARY_TYPES.contains(columnTypes[i])) {
+				format = Format.TEXT;
+			}
+		}
+		
+		if (format == Format.BINARY) {
+			// servers built with floating point timestamps use a different binary representation
+			try (final Statement statement = connection.createStatement();
+			        final ResultSet result = statement.executeQuery("SHOW integer_datetimes")) {
+				if (!result.next() || !"on".equalsIgnoreCase(result.getString(1))) {
+					format = Format.TEXT;
+				}
+			}
+		}
+		
+		return new CopyStatement(connection, table, columns, columnTypes, format).newProxy();
+	}
+	
+	/** The connection. */
+	private final Connection            connection;
+	
+	/** The table. */
+	private final String                table;
+	
+	/** The columns. */
+	private final String[]              columns;
+	
+	/** The types of the columns. */
+	private final String[]              types;
+	
+	/** The format. */
+	private final Format                format;
+	
+	/** The bound parameters. */
+	private final Object[]              values;
+	
+	/** The copy data of the pending rows. */
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	
+	/** The number of pending rows. */
+	private int                         rows;
+	
+	/**
+	 * Instantiates a new copy statement.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param table
+	 *            the table
+	 * @param columns
+	 *            the columns
+	 * @param types
+	 *            the PostgreSQL type names of the columns
+	 * @param format
+	 *            the format
+	 */
+	CopyStatement(final Connection connection, final String table, final String[] columns, final String[] types,
+	        final Format format) {
+		Contract.requires(columns.length == types.length, "There have to be as many types as columns.");
+		
+		this.connection = connection;
+		this.table = table;
+		this.columns = columns;
+		this.types = types;
+		this.format = format;
+		this.values = new Object[columns.length];
+	}
+	
+	/**
+	 * Encodes the bound parameters as a row of the pending batch.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void addBatch() throws SQLException {
+		// rows are encoded separately, i.e. a value that cannot be bound does not leave a partial row in the batch
+		final ByteArrayOutputStream row = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(row);
+		
+		try {
+			switch (this.format) {
+				case BINARY:
+					if (this.rows == 0) {
+						// the flags and the length of the header extension follow the signature
+						output.write(SIGNATURE);
+						output.writeInt(0);
+						output.writeInt(0);
+					}
+					output.writeShort(this.values.length);
+					for (int i = 0; i < this.values.length; ++i) {
+						writeBinary(output, i);
+					}
+					break;
+				case TEXT:
+					final StringBuilder builder = new StringBuilder();
+					for (int i = 0; i < this.values.length; ++i) {
+						if (i > 0) {
+							builder.append('\t');
+						}
+						appendText(builder, this.values[i]);
+					}
+					builder.append('\n');
+					output.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+					break;
+				default:
+					throw new RuntimeException("Unsupported format: " + this.format.name());
+			}
+			row.writeTo(this.buffer);
+			++this.rows;
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Appends the given value in the text format.
+	 *
+	 * @param builder
+	 *            the builder
+	 * @param value
+	 *            the value
+	 */
+	private void appendText(final StringBuilder builder,
+	                        final Object value) {
+		if (value == null) {
+			builder.append("\\N");
+		} else if (value instanceof Boolean) {
+			builder.append((Boolean) value
+			                              ? 't'
+			                              : 'f');
+		} else {
+			final String string = value.toString();
+			for (int i = 0; i < string.length(); ++i) {
+				final char c = string.charAt(i);
+				switch (c) {
+					case '\\':
+						builder.append("\\\\");
+						break;
+					case '\t':
+						builder.append("\\t");
+						break;
+					case '\n':
+						builder.append("\\n");
+						break;
+					case '\r':
+						builder.append("\\r");
+						break;
+					default:
+						builder.append(c);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Discards the pending rows.
+	 */
+	private void clearBatch() {
+		this.buffer.reset();
+		this.rows = 0;
+	}
+	
+	/**
+	 * Streams the given copy data to the server.
+	 *
+	 * @param data
+	 *            the data
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void copyIn(final byte[] data) throws SQLException {
+		try {
+			final Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+			final Class<?> copyManager = Class.forName("org.postgresql.copy.CopyManager");
+			copyManager.getMethod("copyIn", String.class, InputStream.class)
+			           .invoke(pgConnection.getMethod("getCopyAPI").invoke(this.connection.unwrap(pgConnection)),
+			                   getCommand(), new ByteArrayInputStream(data));
+		} catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException(e.getCause());
+		} catch (final ReflectiveOperationException e) {
+			throw new SQLFeatureNotSupportedException("The database driver does not support COPY.", e);
+		}
+	}
+	
+	/**
+	 * Sends the pending rows to the server. If the server rejects a row, the update counts of the thrown
+	 * {@link BatchUpdateException} cover the rows before it, i.e. they identify the offending row like a driver that
+	 * stops at the first failure does.
+	 *
+	 * @return the update counts
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private int[] executeBatch() throws SQLException {
+		final int[] counts = new int[this.rows];
+		Arrays.fill(counts, 1);
+		if (counts.length == 0) {
+			return counts;
+		}
+		
+		final byte[] data = toByteArray();
+		clearBatch();
+		
+		try {
+			copyIn(data);
+		} catch (final SQLException e) {
+			final Matcher matcher = LINE_PATTERN.matcher(String.valueOf(e.getMessage()));
+			if (!matcher.find()) {
+				throw e;
+			}
+			
+			final int line = Math.min(Integer.parseInt(matcher.group(1)), counts.length);
+			final BatchUpdateException exception = new BatchUpdateException(e.getMessage(), e.getSQLState(),
+			                                                                e.getErrorCode(),
+			                                                                Arrays.copyOf(counts, line - 1), e);
+			exception.setNextException(e);
+			throw exception;
+		}
+		return counts;
+	}
+	
+	/**
+	 * Gets the copy command.
+	 *
+	 * @return the command
+	 */
+	String getCommand() {
+		return String.format("COPY %s (%s) FROM STDIN (FORMAT %s)", this.table, String.join(", ", this.columns),
+		                     this.format.name().toLowerCase());
+	}
+	
+	/**
+	 * Gets the format.
+	 *
+	 * @return the format
+	 */
+	Format getFormat() {
+		return this.format;
+	}
+	
+	/**
+	 * Gets the number of pending rows.
+	 *
+	 * @return the rows
+	 */
+	int getRows() {
+		return this.rows;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(final Object proxy,
+	                     final Method method,
+	                     final Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			return method.invoke(this, args);
+		}
+		
+		switch (method.getName()) {
+			case "setBoolean":
+			case "setShort":
+			case "setInt":
+			case "setLong":
+			case "setFloat":
+			case "setDouble":
+			case "setString":
+			case "setTimestamp":
+			case "setObject":
+				set((Integer) args[0], args[1]);
+				return null;
+			case "setNull":
+				set((Integer) args[0], null);
+				return null;
+			case "clearParameters":
+				Arrays.fill(this.values, null);
+				return null;
+			case "addBatch":
+				addBatch();
+				return null;
+			case "clearBatch":
+				clearBatch();
+				return null;
+			case "executeBatch":
+				return executeBatch();
+			case "getConnection":
+				return this.connection;
+			case "close":
+				clearBatch();
+				return null;
+			default:
+				throw new SQLFeatureNotSupportedException("Copy statements do not support " + method.getName() + ".");
+		}
+	}
+	
+	/**
+	 * Creates a prepared statement that is backed by this copy statement.
+	 *
+	 * @return the prepared statement
+	 */
+	PreparedStatement newProxy() {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+		                                                  new Class<?>[] { PreparedStatement.class }, this);
+	}
+	
+	/**
+	 * Binds the given value to the given parameter.
+	 *
+	 * @param parameterIndex
+	 *            the parameter index, starting with 1
+	 * @param value
+	 *            the value
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void set(final int parameterIndex,
+	                 final Object value) throws SQLException {
+		if (parameterIndex < 1 || parameterIndex > this.values.length) {
+			throw new SQLException(String.format("Parameter index %s is out of range (1, %s).", parameterIndex,
+			                                     this.values.length));
+		}
+		this.values[parameterIndex - 1] = value;
+	}
+	
+	/**
+	 * Gets the copy data of the pending rows.
+	 *
+	 * @return the data
+	 */
+	byte[] toByteArray() {
+		final byte[] data = this.buffer.toByteArray();
+		if (this.format != Format.BINARY) {
+			return data;
+		}
+		
+		// the trailer is a row with -1 fields
+		final byte[] terminated = Arrays.copyOf(data, data.length + 2);
+		terminated[data.length] = (byte) 0xff;
+		terminated[data.length + 1] = (byte) 0xff;
+		return terminated;
+	}
+	
+	/**
+	 * Writes the value of the given column in the binary format.
+	 *
+	 * @param output
+	 *            the output
+	 * @param column
+	 *            the column
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void writeBinary(final DataOutputStream output,
+	                         final int column) throws IOException, SQLException {
+		final Object value = this.values[column];
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		
+		try {
+			switch (this.types[column]) {
+				case "int2":
+					output.writeInt(2);
+					output.writeShort(((Number) value).shortValue());
+					break;
+				case "int4":
+					output.writeInt(4);
+					output.writeInt(((Number) value).intValue());
+					break;
+				case "int8":
+					output.writeInt(8);
+					output.writeLong(((Number) value).longValue());
+					break;
+				case "float4":
+					output.writeInt(4);
+					output.writeFloat(((Number) value).floatValue());
+					break;
+				case "float8":
+					output.writeInt(8);
+					output.writeDouble(((Number) value).doubleValue());
+					break;
+				case "bool":
+					output.writeInt(1);
+					output.writeByte((Boolean) value
+					                                     ? 1
+					                                     : 0);
+					break;
+				case "timestamp":
+					// like the driver, timestamps without time zone are stored in the local time of the vm
+					output.writeInt(8);
+					output.writeLong(ChronoUnit.MICROS.between(EPOCH, ((Timestamp) value).toLocalDateTime()));
+					break;
+				default:
+					final byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+					output.writeInt(bytes.length);
+					output.write(bytes);
+			}
+		} catch (final ClassCastException e) {
+			throw new SQLException(String.format("Cannot bind '%s' to column %s of type %s.", value,
+			                                     this.columns[column], this.types[column]), e);
+		}
+	}
+}
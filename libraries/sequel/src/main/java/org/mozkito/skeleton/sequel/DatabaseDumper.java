@@ -13,11 +13,23 @@
 
 package org.mozkito.skeleton.sequel;
 
+import java.io.File;
+import java.lang.reflect.Array;
+import java.sql.BatchUpdateException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mozkito.libraries.logging.Logger;
+import org.mozkito.skeleton.contracts.Contract;
+import org.mozkito.skeleton.contracts.Requires;
 
 /**
  * The Class DatabaseDumper.
@@ -26,46 +38,512 @@ import org.mozkito.libraries.logging.Logger;
  * @param <T>
  *            the generic type
  */
-public class DatabaseDumper<T extends ISequelEntity> extends Thread {
+public class DatabaseDumper<T extends ISequelEntity> extends Thread implements IDatabaseDumper<T> {
 	
-	/** The batch size. */
-	private static int                     BATCH_SIZE = 100;
+	/**
+	 * The kind of a queued operation.
+	 */
+	static enum Kind {
+		
+		/** Insert the entity. */
+		SAVE,
+		/** Update the already persisted entity. */
+		UPDATE,
+		/** Delete the already persisted entity. */
+		DELETE,
+		/** Stop the writer once the preceding operations have been executed. */
+		TERMINATE;
+	}
 	
-	/** The adapter. */
-	private final ISequelAdapter<T>        adapter;
+	/**
+	 * A queued operation.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 */
+	static final class Operation<T> {
+		
+		/** The kind. */
+		final Kind kind;
+		
+		/** The entity. */
+		final T    entity;
+		
+		/**
+		 * Instantiates a new operation.
+		 *
+		 * @param kind
+		 *            the kind
+		 * @param entity
+		 *            the entity
+		 */
+		Operation(final Kind kind, final T entity) {
+			this.kind = kind;
+			this.entity = entity;
+		}
+	}
+	
+	/** The max number of batches per transaction the commit interval adapts to. */
+	private static final int  MAX_COMMIT_BATCHES    = 64;
+	
+	/** The default number of rows sent to the database at once. */
+	private static int        defaultBatchSize      = 100;
 	
-	/** The save. */
-	private final PreparedStatement        save;
+	/** The default max number of queued operations. */
+	private static int        defaultCapacity       = 100000;
 	
-	/** The next id. */
-	private final PreparedStatement        nextId;
+	/** The default max time in milliseconds a row is kept in a pending batch. */
+	private static long       defaultFlushInterval  = 1000;
+	
+	/** The interval in milliseconds in which blocked producers check whether the writer is still alive. */
+	private static final long WRITER_CHECK_INTERVAL = 100;
+	
+	/**
+	 * Gets the default batch size.
+	 *
+	 * @return the default batch size
+	 */
+	public static int getDefaultBatchSize() {
+		return defaultBatchSize;
+	}
+	
+	/**
+	 * Gets the default capacity.
+	 *
+	 * @return the default capacity
+	 */
+	public static int getDefaultCapacity() {
+		return defaultCapacity;
+	}
+	
+	/**
+	 * Gets the default flush interval.
+	 *
+	 * @return the default flush interval in milliseconds
+	 */
+	public static long getDefaultFlushInterval() {
+		return defaultFlushInterval;
+	}
+	
+	/**
+	 * Sets the default batch size used by dumpers that are created afterwards.
+	 *
+	 * @param batchSize
+	 *            the new default batch size
+	 */
+	public static void setDefaultBatchSize(final int batchSize) {
+		Requires.positive(batchSize);
+		defaultBatchSize = batchSize;
+	}
+	
+	/**
+	 * Sets the default capacity used by dumpers that are created afterwards.
+	 *
+	 * @param capacity
+	 *            the new default capacity
+	 */
+	public static void setDefaultCapacity(final int capacity) {
+		Requires.positive(capacity);
+		defaultCapacity = capacity;
+	}
+	
+	/**
+	 * Sets the default flush interval used by dumpers that are created afterwards.
+	 *
+	 * @param interval
+	 *            the interval
+	 * @param unit
+	 *            the unit
+	 */
+	public static void setDefaultFlushInterval(final long interval,
+	                                           final TimeUnit unit) {
+		Requires.positive(interval);
+		defaultFlushInterval = unit.toMillis(interval);
+	}
+	
+	/** The adapter. */
+	private final ISequelAdapter<T>           adapter;
+	
+	/** The save statement; prepared on the connection of the writer. */
+	private PreparedStatement                 save;
 	
 	/** The queue. */
-	private final ConcurrentLinkedQueue<T> queue      = new ConcurrentLinkedQueue<>();
+	private final BlockingQueue<Operation<T>> queue;
+	
+	/** The entities in the pending batch of the save statement, in the order they have been added. */
+	private final List<T>                     batch          = new ArrayList<>();
+	
+	/** The time the first entity has been added to the pending batch. */
+	private long                              batchStart;
+	
+	/** The batch size. */
+	private int                               batchSize      = defaultBatchSize;
+	
+	/** The flush interval in milliseconds. */
+	private long                              flushInterval  = defaultFlushInterval;
+	
+	/** The number of operations after which the transaction is committed. */
+	private volatile int                      commitInterval = defaultBatchSize;
+	
+	/** The end of the last commit. */
+	private long                              lastCommit;
+	
+	/** The number of executed operations. */
+	private volatile long                     rows;
+	
+	/** The time the producers have been blocked by a full queue, in nanoseconds. */
+	private final AtomicLong                  waitTime       = new AtomicLong();
+	
+	/** The queue operations are spilled to while the queue is full; <code>null</code> if the dumper does not spill. */
+	private SpillQueue<T>                     spill;
+	
+	/** Whether operations are spilled, i.e. new operations have to be appended to the spill queue. */
+	private volatile boolean                  spilling;
 	
-	/** The terminate. */
-	private volatile boolean               terminate  = false;
+	/** The number of spilled operations. */
+	private volatile long                     spilled;
+	
+	/** The failure the writer has died of; <code>null</code> as long as it has not failed. */
+	private volatile Throwable                failure;
+	
+	/** Whether the dumper has been terminated, i.e. rejects new operations. */
+	private volatile boolean                  terminated;
+	
+	/** The start of the writer. */
+	private volatile long                     startNanos;
+	
+	/** The end of the writer. */
+	private volatile long                     endNanos;
 	
 	/**
-	 * Instantiates a new database dumper.
+	 * Instantiates a new database dumper with the default capacity.
 	 *
 	 * @param adapter
 	 *            the adapter
 	 */
 	public DatabaseDumper(final ISequelAdapter<T> adapter) {
-		super(Thread.currentThread().getName() + "->DatabaseDumper");
+		this(adapter, defaultCapacity);
+	}
+	
+	/**
+	 * Instantiates a new database dumper. Producers block as soon as the given number of operations is queued, i.e. the
+	 * memory held by the queue is bounded if the database falls behind. Dumpers that spill do not block, but spill
+	 * the operations to disk instead.
+	 *
+	 * @param adapter
+	 *            the adapter
+	 * @param capacity
+	 *            the max number of queued operations
+	 */
+	public DatabaseDumper(final ISequelAdapter<T> adapter, final int capacity) {
+		super(Thread.currentThread().getName() + "->DatabaseDumper[" + adapter.getClass().getSimpleName() + "]");
+		Requires.positive(capacity);
 		this.adapter = adapter;
-		this.save = adapter.prepareSaveStatement();
-		this.nextId = adapter.prepareNextIdStatement();
+		this.queue = new LinkedBlockingQueue<>(capacity);
+	}
+	
+	/**
+	 * Checks that the writer is able to execute further operations, i.e. that it has neither failed nor terminated.
+	 * Operations enqueued afterwards would never be executed.
+	 */
+	private void checkWriter() {
+		final Throwable failure = this.failure;
+		if (failure != null) {
+			throw new IllegalStateException(String.format("The writer of %s has failed.", getName()), failure);
+		}
+		if (this.terminated || getState() == State.TERMINATED) {
+			throw new IllegalStateException(String.format("The writer of %s has terminated.", getName()));
+		}
+	}
+	
+	/**
+	 * Commits the transaction, including the pending batch.
+	 *
+	 * @param adapt
+	 *            whether the commit interval is adapted to the latency of this commit
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void commit(final boolean adapt) throws SQLException {
+		flush();
+		
+		final long start = System.nanoTime();
+		this.save.getConnection().commit();
+		final long end = System.nanoTime();
+		
+		if (this.spill != null) {
+			synchronized (this.spill) {
+				this.spill.commit();
+			}
+		}
+		
+		if (adapt) {
+			// keep the commits below a tenth of the time of the writer: transactions grow while commits are expensive and
+			// shrink again when they are cheap, which keeps the work lost with a failed transaction small
+			final long latency = end - start;
+			final long work = start - this.lastCommit;
+			if (latency * 10 > work) {
+				this.commitInterval = Math.min(2 * this.commitInterval, MAX_COMMIT_BATCHES * this.batchSize);
+			} else if (latency * 50 < work) {
+				this.commitInterval = Math.max(this.commitInterval / 2, this.batchSize);
+			}
+		}
+		this.lastCommit = end;
+	}
+	
+	/**
+	 * Delete later. The entity has to be persisted already. Operations are executed in the order they have been
+	 * enqueued, i.e. an entity can be deleted right after it has been saved.
+	 *
+	 * @param entity
+	 *            the entity
+	 */
+	public void deleteLater(final T entity) {
+		enqueue(new Operation<>(Kind.DELETE, entity));
+	}
+	
+	/**
+	 * Enqueues the given operation. Blocks while the queue is full, unless the dumper spills.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @throws IllegalStateException
+	 *             if the writer has failed or terminated
+	 */
+	private void enqueue(final Operation<T> operation) {
+		checkWriter();
+		
+		if (!this.spilling && this.queue.offer(operation)) {
+			return;
+		}
+		
+		if (this.spill != null) {
+			synchronized (this.spill) {
+				// the segments of a writer that has failed are kept, but must not grow any further
+				checkWriter();
+				if (!this.spilling && this.queue.offer(operation)) {
+					return;
+				}
+				// once spilling, all operations are spilled until the writer has caught up, i.e. they keep their order
+				this.spilling = true;
+				this.spill.offer(operation);
+				++this.spilled;
+			}
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		try {
+			// the producer wakes up regularly, i.e. it fails instead of waiting forever for a writer that has died
+			while (!this.queue.offer(operation, WRITER_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+				checkWriter();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			this.waitTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Executes the given operation. Saves are added to the pending batch.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@SuppressWarnings ("unchecked")
+	private void execute(final Operation<T> operation) throws SQLException {
+		if (operation.kind != Kind.SAVE) {
+			// updates and deletes are not batched and have to see the rows that are pending
+			flush();
+		}
+		
+		switch (operation.kind) {
+			case SAVE:
+				this.adapter.save(this.save, operation.entity.id(), operation.entity);
+				if (this.batch.isEmpty()) {
+					this.batchStart = System.currentTimeMillis();
+				}
+				this.batch.add(operation.entity);
+				break;
+			case UPDATE:
+				// the adapters implement update with their concrete entity type, i.e. a generic T[] would fail the cast
+				final T[] entities = (T[]) Array.newInstance(operation.entity.getClass(), 1);
+				entities[0] = operation.entity;
+				this.adapter.update(entities);
+				break;
+			case DELETE:
+				this.adapter.delete(operation.entity);
+				break;
+			default:
+				throw new RuntimeException("Unsupported operation: " + operation.kind.name());
+		}
+	}
+	
+	/**
+	 * Sends the pending batch of the save statement to the database. If the batch fails, the entity the database
+	 * rejected is reported.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void flush() throws SQLException {
+		if (this.batch.isEmpty()) {
+			return;
+		}
+		
+		try {
+			this.save.executeBatch();
+		} catch (final BatchUpdateException e) {
+			// drivers either stop at the first failure, i.e. only report the counts of the preceding rows, or mark the
+			// failed rows
+			final int[] counts = e.getUpdateCounts();
+			int index = counts.length;
+			for (int i = 0; i < counts.length; ++i) {
+				if (counts[i] == Statement.EXECUTE_FAILED) {
+					index = i;
+					break;
+				}
+			}
+			
+			if (index >= this.batch.size()) {
+				throw e;
+			}
+			
+			// the batch exception itself is generic, the cause is chained
+			final SQLException cause = e.getNextException() != null
+			                                                       ? e.getNextException()
+			                                                       : e;
+			if (Logger.logError()) {
+				Logger.error(cause, "Could not save '%s'.", this.batch.get(index));
+			}
+			throw new RuntimeException(String.format("Could not save '%s'.", this.batch.get(index)), cause);
+		} finally {
+			this.batch.clear();
+		}
 	}
 	
 	/**
-	 * Next id.
+	 * Gets the batch size.
 	 *
-	 * @return the object
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+	
+	/**
+	 * Gets the commit interval the writer has adapted to.
+	 *
+	 * @return the number of operations per transaction
+	 */
+	public int getCommitInterval() {
+		return this.commitInterval;
+	}
+	
+	/**
+	 * Gets the flush interval.
+	 *
+	 * @return the flush interval in milliseconds
+	 */
+	public long getFlushInterval() {
+		return this.flushInterval;
+	}
+	
+	/**
+	 * Gets the time the producers have been blocked by a full queue.
+	 *
+	 * @return the wait time in milliseconds
+	 */
+	public long getProducerWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.waitTime.get());
+	}
+	
+	/**
+	 * Gets the number of queued operations.
+	 *
+	 * @return the queue depth
+	 */
+	public int getQueueDepth() {
+		if (this.spill != null) {
+			synchronized (this.spill) {
+				return this.queue.size() + this.spill.size();
+			}
+		}
+		return this.queue.size();
+	}
+	
+	/**
+	 * Gets the number of executed operations.
+	 *
+	 * @return the rows
+	 */
+	public long getRows() {
+		return this.rows;
+	}
+	
+	/**
+	 * Gets the number of executed operations per second since the writer has been started.
+	 *
+	 * @return the rows per second
+	 */
+	public double getRowsPerSecond() {
+		final long start = this.startNanos;
+		if (start == 0) {
+			return 0;
+		}
+		final long end = this.endNanos != 0
+		                                   ? this.endNanos
+		                                   : System.nanoTime();
+		return end > start
+		                  ? this.rows * 1e9 / (end - start)
+		                  : 0;
+	}
+	
+	/**
+	 * Gets the number of operations that have been spilled to disk.
+	 *
+	 * @return the number of spilled operations
+	 */
+	public long getSpilled() {
+		return this.spilled;
+	}
+	
+	/**
+	 * Save later. The id of the entity has been assigned already.
+	 *
+	 * @param entity
+	 *            the entity
 	 */
-	private long nextId() {
-		return this.adapter.nextId(this.nextId);
+	void insertLater(final T entity) {
+		enqueue(new Operation<>(Kind.SAVE, entity));
+	}
+	
+	/**
+	 * Removes the next operation, from the queue or, once the queue has been drained, from the spill queue.
+	 *
+	 * @return the operation, or <code>null</code> if there is none
+	 */
+	private Operation<T> poll() {
+		final Operation<T> operation = this.queue.poll();
+		if (operation != null || !this.spilling) {
+			return operation;
+		}
+		
+		synchronized (this.spill) {
+			// the queue holds the operations that have been enqueued before the dumper started to spill
+			Operation<T> next = this.queue.poll();
+			if (next == null) {
+				next = this.spill.poll();
+				if (next == null) {
+					this.spilling = false;
+				}
+			}
+			return next;
+		}
 	}
 	
 	/**
@@ -75,55 +553,92 @@ public class DatabaseDumper<T extends ISequelEntity> extends Thread {
 	 */
 	@Override
 	public void run() {
+		this.startNanos = System.nanoTime();
+		this.lastCommit = this.startNanos;
+		
+		final SequelDatabase database = this.adapter.getDatabase();
 		try {
+			// the writer has a connection and transactions of its own, i.e. it does not commit the work of others
+			database.lease();
+			this.save = this.adapter.prepareSaveStatement();
+			
 			int counter = 0;
-			T entity;
+			// set once terminated or interrupted; the writer stops as soon as the queues are empty
+			boolean draining = false;
+			Operation<T> operation;
 			
-			while (!this.terminate) {
-				entity = this.queue.poll();
-				if (entity == null) {
+			while (true) {
+				operation = poll();
+				if (operation == null) {
 					// nothing to store right now. Persist pending stuff.
 					if (counter > 0) {
-						this.save.getConnection().commit();
+						commit(false);
 						counter = 0;
 						continue;
 					}
+					if (draining) {
+						break;
+					}
 					
-					// still nothing, go to sleep for 10s
+					// still nothing, wait for new work
 					try {
-						Thread.sleep(10000);
+						operation = this.queue.take();
 					} catch (final InterruptedException e) {
-						this.terminate = true;
+						// an interrupt terminates the writer, too
+						operation = new Operation<>(Kind.TERMINATE, null);
 					}
+				}
+				if (operation.kind == Kind.TERMINATE) {
+					// the remaining operations are executed like all others, i.e. in batches and transactions
+					if (!draining && Logger.logInfo()) {
+						Logger.info("Persisting remaining entities.");
+					}
+					draining = true;
 					continue;
 				}
+				
 				++counter;
 				try {
-					this.adapter.save(this.save, entity.id(), entity);
+					execute(operation);
 				} catch (final Throwable e) {
 					if (Logger.logError()) {
-						Logger.error("Could not save '%s'.", entity);
+						Logger.error("Could not %s '%s'.", operation.kind.name().toLowerCase(), operation.entity);
 					}
 					throw e;
 				}
-				if (counter % BATCH_SIZE == 0) {
-					this.save.getConnection().commit();
+				++this.rows;
+				
+				if (this.batch.size() >= this.batchSize
+				        || (!this.batch.isEmpty() && System.currentTimeMillis() - this.batchStart >= this.flushInterval)) {
+					flush();
+				}
+				if (counter >= this.commitInterval) {
+					commit(true);
 					counter = 0;
 				}
 			}
-			
-			if (Logger.logInfo()) {
-				Logger.info("Persisting remaining entities.");
-			}
-			
-			for (final T entity2 : this.queue) {
-				this.adapter.save(this.save, entity2.id(), entity2);
-			}
-			this.save.getConnection().commit();
 		} catch (final SQLException e) {
+			this.failure = e;
 			if (Logger.logError()) {
 				Logger.error(e);
 			}
+		} catch (final RuntimeException | Error e) {
+			this.failure = e;
+			throw e;
+		} finally {
+			database.release();
+			if (this.spill != null) {
+				synchronized (this.spill) {
+					if (this.failure == null) {
+						this.spill.close();
+					} else if (Logger.logWarn()) {
+						// the operations that have not been committed are replayed by the next dumper that spills to
+						// the directory
+						Logger.warn("Keeping %s spilled operations of %s.", this.spill.size(), getName());
+					}
+				}
+			}
+			this.endNanos = System.nanoTime();
 		}
 	}
 	
@@ -134,15 +649,113 @@ public class DatabaseDumper<T extends ISequelEntity> extends Thread {
 	 *            the entity
 	 */
 	public void saveLater(final T entity) {
-		entity.id(nextId());
-		this.queue.add(entity);
+		entity.id(this.adapter.nextId());
+		enqueue(new Operation<>(Kind.SAVE, entity));
+	}
+	
+	/**
+	 * Save later. Assigns ids to all given entities and enqueues them at once.
+	 *
+	 * @param entities
+	 *            the entities
+	 */
+	public void saveLater(final Collection<? extends T> entities) {
+		for (final T entity : entities) {
+			entity.id(this.adapter.nextId());
+			enqueue(new Operation<>(Kind.SAVE, entity));
+		}
+	}
+	
+	/**
+	 * Sets the number of rows sent to the database at once. Entities that are expensive to save, e.g. the ones that
+	 * cascade to other tables, should use small batches; small rows that are saved in bulk should use large ones.
+	 *
+	 * @param batchSize
+	 *            the new batch size
+	 */
+	public void setBatchSize(final int batchSize) {
+		Requires.positive(batchSize);
+		this.batchSize = batchSize;
+		this.commitInterval = batchSize;
+	}
+	
+	/**
+	 * Sets the max time rows are kept in a pending batch before they are sent to the database, even if the batch is
+	 * not full.
+	 *
+	 * @param interval
+	 *            the interval
+	 * @param unit
+	 *            the unit
+	 */
+	public void setFlushInterval(final long interval,
+	                             final TimeUnit unit) {
+		Requires.positive(interval);
+		this.flushInterval = unit.toMillis(interval);
+	}
+	
+	/**
+	 * Lets the producers spill operations to memory-mapped segment files in the given directory instead of blocking
+	 * while the queue is full. The spilled operations are executed in order once the writer has caught up. Has to be
+	 * called before the dumper is used.
+	 *
+	 * If the writer fails, the segment files are kept and hold the spilled operations that have not been committed. The
+	 * next dumper of the same table that spills to the directory replays these operations before the new ones.
+	 *
+	 * @param codec
+	 *            the codec of the entities
+	 * @param directory
+	 *            the directory of the segment files
+	 */
+	public void setSpill(final IEntityCodec<T> codec,
+	                     final File directory) {
+		setSpill(codec, directory, this.adapter.getTableName() + "-");
 	}
 	
 	/**
-	 * Terminate.
+	 * Lets the producers spill operations to segment files with the given prefix.
+	 *
+	 * @param codec
+	 *            the codec of the entities
+	 * @param directory
+	 *            the directory of the segment files
+	 * @param prefix
+	 *            the prefix of the names of the segment files
+	 * @see #setSpill(IEntityCodec, File)
+	 */
+	void setSpill(final IEntityCodec<T> codec,
+	              final File directory,
+	              final String prefix) {
+		Requires.notNull(codec);
+		Requires.notNull(directory);
+		Contract.requires(getState() == State.NEW, "The dumper has been started already.");
+		
+		this.spill = new SpillQueue<>(directory, prefix, codec, SpillQueue.DEFAULT_SEGMENT_SIZE);
+		// the operations left behind by a previous dumper precede the new ones
+		this.spilling = !this.spill.isEmpty();
+	}
+	
+	/**
+	 * Terminate. The writer stops after the operations that have been enqueued before. Operations enqueued afterwards
+	 * are rejected; the ones enqueued concurrently are executed before the writer stops.
+	 *
+	 * @throws IllegalStateException
+	 *             if the writer has failed or terminated already
 	 */
 	public void terminate() {
-		this.terminate = true;
+		enqueue(new Operation<T>(Kind.TERMINATE, null));
+		this.terminated = true;
+	}
+	
+	/**
+	 * Update later. The entity has to be persisted already; it keeps its id. Operations are executed in the order they
+	 * have been enqueued.
+	 *
+	 * @param entity
+	 *            the entity
+	 */
+	public void updateLater(final T entity) {
+		enqueue(new Operation<>(Kind.UPDATE, entity));
 	}
 	
 }
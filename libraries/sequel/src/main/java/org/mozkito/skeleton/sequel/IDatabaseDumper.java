@@ -0,0 +1,127 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.util.Collection;
+
+/**
+ * The Interface IDatabaseDumper. Dumpers persist entities asynchronously; operations on the same entity are executed
+ * in the order they have been enqueued.
+ *
+ * @author Sascha Just
+ * @param <T>
+ *            the generic type
+ */
+public interface IDatabaseDumper<T extends ISequelEntity> {
+	
+	/**
+	 * Delete later. The entity has to be persisted already.
+	 *
+	 * @param entity
+	 *            the entity
+	 */
+	void deleteLater(T entity);
+	
+	/**
+	 * Gets the name.
+	 *
+	 * @return the name
+	 */
+	String getName();
+	
+	/**
+	 * Gets the time the producers have been blocked by a full queue.
+	 *
+	 * @return the wait time in milliseconds
+	 */
+	long getProducerWaitTime();
+	
+	/**
+	 * Gets the number of queued operations.
+	 *
+	 * @return the queue depth
+	 */
+	int getQueueDepth();
+	
+	/**
+	 * Gets the number of executed operations.
+	 *
+	 * @return the rows
+	 */
+	long getRows();
+	
+	/**
+	 * Gets the number of executed operations per second.
+	 *
+	 * @return the rows per second
+	 */
+	double getRowsPerSecond();
+	
+	/**
+	 * Gets the number of operations that have been spilled to disk.
+	 *
+	 * @return the number of spilled operations
+	 */
+	long getSpilled();
+	
+	/**
+	 * Waits until all operations have been executed. Has to be called after {@link #terminate()}.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	void join() throws InterruptedException;
+	
+	/**
+	 * Save later. Assigns the id of the entity.
+	 *
+	 * @param entity
+	 *            the entity
+	 */
+	void saveLater(T entity);
+	
+	/**
+	 * Save later. Assigns ids to all given entities and enqueues them at once.
+	 *
+	 * @param entities
+	 *            the entities
+	 */
+	void saveLater(Collection<? extends T> entities);
+	
+	/**
+	 * Sets the number of rows sent to the database at once.
+	 *
+	 * @param batchSize
+	 *            the new batch size
+	 */
+	void setBatchSize(int batchSize);
+	
+	/**
+	 * Starts the writers.
+	 */
+	void start();
+	
+	/**
+	 * Terminate. The writers stop after the operations that have been enqueued before.
+	 */
+	void terminate();
+	
+	/**
+	 * Update later. The entity has to be persisted already; it keeps its id.
+	 *
+	 * @param entity
+	 *            the entity
+	 */
+	void updateLater(T entity);
+}
@@ -0,0 +1,49 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The Interface IEntityCodec. Codecs encode entities in a compact binary form, e.g. to spill them to disk while the
+ * database falls behind.
+ *
+ * @author Sascha Just
+ * @param <T>
+ *            the generic type
+ */
+public interface IEntityCodec<T extends ISequelEntity> {
+	
+	/**
+	 * Decodes an entity, including its id, from the current position of the given buffer.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the entity
+	 */
+	T decode(ByteBuffer buffer);
+	
+	/**
+	 * Encodes the given entity, including its id, at the current position of the given buffer.
+	 *
+	 * @param entity
+	 *            the entity
+	 * @param buffer
+	 *            the buffer
+	 * @throws java.nio.BufferOverflowException
+	 *             if the entity does not fit into the remaining buffer; the position of the buffer is undefined then
+	 */
+	void encode(T entity,
+	            ByteBuffer buffer);
+}
@@ -37,17 +37,17 @@ public interface ISequelAdapter<T> {
 	T create(ResultSet result);
 	
 	/**
-	 * Creates the constraints.
+	 * Creates the constraints, i.e. the primary key, of the table. Does nothing if the adapter has no constraints.
 	 */
 	void createConstraints();
 	
 	/**
-	 * Creates the indexes.
+	 * Creates the indexes of the table. Does nothing if the adapter has no indexes.
 	 */
 	void createIndexes();
 	
 	/**
-	 * Creates the scheme.
+	 * Creates the scheme, i.e. the sequence and the table without constraints and indexes.
 	 */
 	void createScheme();
 	
@@ -59,6 +59,20 @@ public interface ISequelAdapter<T> {
 	 */
 	void delete(T object);
 	
+	/**
+	 * Gets the database.
+	 *
+	 * @return the database
+	 */
+	SequelDatabase getDatabase();
+	
+	/**
+	 * Gets the name of the table the entities are saved to.
+	 *
+	 * @return the table name
+	 */
+	String getTableName();
+	
 	/**
 	 * Load.
 	 *
@@ -85,30 +99,29 @@ public interface ISequelAdapter<T> {
 	T load(long id);
 	
 	/**
-	 * Next id.
+	 * Next id. May be called by several threads at once; in {@link SequelDatabase.IdMode#SEQUENCE} the ids are reserved
+	 * from the sequence in blocks of {@link SequelDatabase#getIdBlockSize()} ids, which are unique across processes.
 	 *
-	 * @param nextIdStatement
-	 *            the next id statement
 	 * @return the object
 	 */
-	long nextId(PreparedStatement nextIdStatement);
+	long nextId();
 	
 	/**
-	 * Prepare next id statement.
+	 * Prepare save statement.
 	 *
 	 * @return the prepared statement
 	 */
-	PreparedStatement prepareNextIdStatement();
+	PreparedStatement prepareSaveStatement();
 	
 	/**
-	 * Prepare save statement.
-	 *
-	 * @return the prepared statement
+	 * Continues the local id sequence after the highest id that has already been persisted. Has to be called before
+	 * entities are added to a database that already contains entities of this type.
 	 */
-	PreparedStatement prepareSaveStatement();
+	void resumeIds();
 	
 	/**
-	 * Save.
+	 * Save. Binds the entity to the save statement and adds it to the batch of the statement; the caller has to execute
+	 * the batch.
 	 *
 	 * @param saveStatement
 	 *            the save statement
@@ -122,17 +135,15 @@ public interface ISequelAdapter<T> {
 	          T entity);
 	
 	/**
-	 * Save.
+	 * Save. Assigns the next id to the entity and adds it to the batch of the save statement; the caller has to execute
+	 * the batch.
 	 *
 	 * @param saveStatement
 	 *            the save statement
-	 * @param idStatement
-	 *            the id statement
 	 * @param entity
 	 *            the entity
 	 */
 	void save(PreparedStatement saveStatement,
-	          PreparedStatement idStatement,
 	          T entity);
 	
 	/**
@@ -15,6 +15,7 @@ package org.mozkito.skeleton.sequel;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Iterator;
 
 import org.mozkito.skeleton.contracts.Requires;
@@ -53,11 +54,28 @@ public class ResultIterator<T extends ISequelEntity> implements Iterator<T> {
 		this.results = results;
 		try {
 			this.hasNext = results.next();
+			if (!this.hasNext) {
+				close();
+			}
 		} catch (final SQLException e) {
 			throw new RuntimeException("Failed fetching next set of data for adapter " + this.adapter, e);
 		}
 	}
 	
+	/**
+	 * Closes the results and the statement they have been created by, once all results have been fetched.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private void close() throws SQLException {
+		final Statement statement = this.results.getStatement();
+		this.results.close();
+		if (statement != null) {
+			statement.close();
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 *
@@ -78,6 +96,9 @@ public class ResultIterator<T extends ISequelEntity> implements Iterator<T> {
 		try {
 			final T result = this.adapter.create(this.results);
 			this.hasNext = this.results.next();
+			if (!this.hasNext) {
+				close();
+			}
 			return result;
 		} catch (final SQLException e) {
 			throw new RuntimeException("Failed fetching next set of data for adapter " + this.adapter, e);
@@ -17,11 +17,20 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sql.DataSource;
 
@@ -29,6 +38,7 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import org.mozkito.libraries.logging.Logger;
+import org.mozkito.skeleton.contracts.Contract;
 import org.mozkito.skeleton.contracts.Requires;
 
 /**
@@ -49,6 +59,17 @@ public class SequelDatabase implements DataSource, Closeable {
 		LOCAL;
 	}
 	
+	/**
+	 * How the rows of new entities are loaded into the database.
+	 */
+	public static enum LoadMode {
+		
+		/** Batched inserts. */
+		INSERT,
+		/** The COPY protocol of PostgreSQL, for the adapters that support it. */
+		COPY;
+	}
+	
 	/**
 	 * The Enum Type.
 	 */
@@ -68,14 +89,32 @@ public class SequelDatabase implements DataSource, Closeable {
 	/** The type. */
 	private final Type                             type;
 	
-	/** The connection. */
+	/** The connection shared by all threads that do not lease a connection of their own. */
 	private final Connection                       connection;
 	
+	/** The connections leased by the current thread. */
+	private final ThreadLocal<Connection>          leases      = new ThreadLocal<>();
+	
+	/** The number of leased connections. */
+	private int                                    leased      = 0;
+	
 	/** The adapters. */
-	private final Map<Class<?>, ISequelAdapter<?>> adapters = new HashMap<>();
+	private final Map<Class<?>, ISequelAdapter<?>> adapters    = new HashMap<>();
 	
 	private IdMode                                 idMode;
 	
+	/** The number of ids reserved from a sequence at once. */
+	private int                                    idBlockSize = 100;
+	
+	/** The load mode. */
+	private LoadMode                               loadMode    = LoadMode.INSERT;
+	
+	/** Whether a bulk load is in progress. */
+	private boolean                                bulkLoad    = false;
+	
+	/** Whether the tables of the bulk load are unlogged. */
+	private boolean                                unlogged    = false;
+	
 	/**
 	 * Instantiates a new sequel database.
 	 *
@@ -113,6 +152,9 @@ public class SequelDatabase implements DataSource, Closeable {
 		
 		Logger.info("Connecting to database using: " + config.getJdbcUrl());
 		
+		// transactions are committed explicitly, by the owner of the connection
+		config.setAutoCommit(false);
+		
 		this.type = type;
 		this.idMode = IdMode.LOCAL;
 		
@@ -120,10 +162,54 @@ public class SequelDatabase implements DataSource, Closeable {
 		if (port != null) {
 			this.dataSource.addDataSourceProperty("port", 1433);
 		}
-		this.dataSource.getConnection().setAutoCommit(false);
 		this.connection = this.dataSource.getConnection();
 	}
 	
+	/**
+	 * Begins a bulk load: creates the schemes of all registered adapters, but defers their constraints and indexes to
+	 * {@link #endBulkLoad()}, i.e. the rows are loaded without maintaining them. Unlogged tables are not written to
+	 * the write-ahead log of PostgreSQL until the end of the bulk load, but their contents are lost if the server
+	 * crashes in the meantime.
+	 *
+	 * @param unlogged
+	 *            whether the tables are unlogged; requires {@link Type#POSTGRES}
+	 */
+	public void beginBulkLoad(final boolean unlogged) {
+		Contract.requires(!this.bulkLoad, "A bulk load is in progress already.");
+		Contract.requires(!unlogged || this.type == Type.POSTGRES, "Unlogged tables are not supported by %s.",
+		                  this.type);
+		
+		for (final ISequelAdapter<?> adapter : this.adapters.values()) {
+			adapter.createScheme();
+		}
+		
+		if (unlogged) {
+			synchronized (this) {
+				for (final ISequelAdapter<?> adapter : this.adapters.values()) {
+					execute("ALTER TABLE " + adapter.getTableName() + " SET UNLOGGED");
+				}
+			}
+		}
+		
+		this.bulkLoad = true;
+		this.unlogged = unlogged;
+	}
+	
+	/**
+	 * Borrows a connection from the pool for a short unit of work of its own, e.g. the reservation of ids. The connection
+	 * commits every statement right away, i.e. independently of the transactions of the shared and the leased
+	 * connections, and has to be closed right after the work, which returns it to the pool.
+	 *
+	 * @return the connection
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	Connection borrow() throws SQLException {
+		final Connection connection = this.dataSource.getConnection();
+		connection.setAutoCommit(true);
+		return connection;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 *
@@ -146,12 +232,93 @@ public class SequelDatabase implements DataSource, Closeable {
 	}
 	
 	/**
-	 * Creates the scheme.
+	 * Creates the schemes of all registered adapters including their constraints and indexes.
+	 *
+	 * @see #beginBulkLoad(boolean)
 	 */
 	public void createScheme() {
 		for (final ISequelAdapter<?> adapter : this.adapters.values()) {
 			adapter.createScheme();
 		}
+		for (final ISequelAdapter<?> adapter : this.adapters.values()) {
+			adapter.createConstraints();
+			adapter.createIndexes();
+		}
+	}
+	
+	/**
+	 * Ends the bulk load: builds the constraints and indexes of all registered adapters. The tables are built
+	 * concurrently, each on a connection of its own, as many at once as the pool has connections to spare. Has to be
+	 * called after all rows have been loaded, i.e. after the dumpers have been joined.
+	 */
+	public void endBulkLoad() {
+		Contract.requires(this.bulkLoad, "No bulk load is in progress.");
+		
+		final int connections;
+		synchronized (this.leases) {
+			// the builds must not wait for the pool, which keeps one connection for the shared connection and one for
+			// borrowing
+			connections = this.dataSource.getMaximumPoolSize() - this.leased - 2;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(this.adapters.size(),
+		                                                                                   connections)));
+		final List<Future<?>> builds = new ArrayList<>(this.adapters.size());
+		
+		for (final ISequelAdapter<?> adapter : this.adapters.values()) {
+			builds.add(executor.submit(new Runnable() {
+				
+				/**
+				 * {@inheritDoc}
+				 * 
+				 * @see java.lang.Runnable#run()
+				 */
+				@Override
+				public void run() {
+					try {
+						lease();
+					} catch (final SQLException e) {
+						throw new RuntimeException(e);
+					}
+					
+					try {
+						if (SequelDatabase.this.unlogged) {
+							execute("ALTER TABLE " + adapter.getTableName() + " SET LOGGED");
+						}
+						adapter.createConstraints();
+						adapter.createIndexes();
+					} finally {
+						release();
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+		
+		try {
+			for (final Future<?> build : builds) {
+				build.get();
+			}
+		} catch (final InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		
+		this.bulkLoad = false;
+		this.unlogged = false;
+	}
+	
+	/**
+	 * Executes the given statement on the connection of the current thread and commits it.
+	 *
+	 * @param sql
+	 *            the sql
+	 */
+	private void execute(final String sql) {
+		try (final Statement statement = getConnection().createStatement()) {
+			statement.executeUpdate(sql);
+			getConnection().commit();
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
 	}
 	
 	/**
@@ -169,13 +336,20 @@ public class SequelDatabase implements DataSource, Closeable {
 	}
 	
 	/**
-	 * {@inheritDoc}
+	 * Gets the connection leased by the current thread, or the shared connection if the thread does not lease one.
 	 *
+	 * @return the connection
+	 * @throws SQLException
+	 *             the SQL exception
 	 * @see javax.sql.DataSource#getConnection()
+	 * @see #lease()
 	 */
 	@Override
 	public Connection getConnection() throws SQLException {
-		return this.connection;
+		final Connection lease = this.leases.get();
+		return lease != null
+		                    ? lease
+		                    : this.connection;
 	}
 	
 	/**
@@ -191,6 +365,15 @@ public class SequelDatabase implements DataSource, Closeable {
 		return this.dataSource.getConnection(username, password);
 	}
 	
+	/**
+	 * Gets the number of ids reserved from a sequence at once.
+	 *
+	 * @return the id block size
+	 */
+	public int getIdBlockSize() {
+		return this.idBlockSize;
+	}
+	
 	/**
 	 * @return the idMode
 	 */
@@ -198,6 +381,15 @@ public class SequelDatabase implements DataSource, Closeable {
 		return this.idMode;
 	}
 	
+	/**
+	 * Gets the load mode.
+	 *
+	 * @return the load mode
+	 */
+	public LoadMode getLoadMode() {
+		return this.loadMode;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 *
@@ -237,6 +429,42 @@ public class SequelDatabase implements DataSource, Closeable {
 		return this.type;
 	}
 	
+	/**
+	 * Checks if a table with the given name exists. The lookup is case insensitive, since Derby reports unquoted names in
+	 * upper case while PostgreSQL uses lower case.
+	 *
+	 * @param tableName
+	 *            the table name
+	 * @return true, if the table exists
+	 */
+	public boolean hasTable(final String tableName) {
+		Requires.notNull(tableName);
+		
+		try {
+			final DatabaseMetaData metaData = getConnection().getMetaData();
+			for (final String name : new String[] { tableName, tableName.toUpperCase(), tableName.toLowerCase() }) {
+				try (final ResultSet result = metaData.getTables(null, null, name, new String[] { "TABLE" })) {
+					if (result.next()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Checks if the current thread leases a connection.
+	 *
+	 * @return true, if the thread leases a connection
+	 * @see #lease()
+	 */
+	boolean isLeased() {
+		return this.leases.get() != null;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 *
@@ -247,6 +475,38 @@ public class SequelDatabase implements DataSource, Closeable {
 		return this.dataSource.isWrapperFor(iface);
 	}
 	
+	/**
+	 * Leases a dedicated connection from the pool to the current thread until it is released. All statements the
+	 * adapters prepare on this thread use this connection, i.e. the thread has transactions of its own and commits do
+	 * not interfere with other threads. The pool grows with the number of leases.
+	 *
+	 * @return the connection
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	public Connection lease() throws SQLException {
+		Contract.requires(this.leases.get() == null, "The current thread already leases a connection.");
+		
+		synchronized (this.leases) {
+			++this.leased;
+			// one connection is kept for the shared connection and one for borrowing
+			if (this.dataSource.getMaximumPoolSize() < this.leased + 2) {
+				this.dataSource.setMaximumPoolSize(this.leased + 2);
+			}
+		}
+		
+		try {
+			final Connection lease = this.dataSource.getConnection();
+			this.leases.set(lease);
+			return lease;
+		} catch (final SQLException e) {
+			synchronized (this.leases) {
+				--this.leased;
+			}
+			throw e;
+		}
+	}
+	
 	/**
 	 * Register.
 	 *
@@ -262,6 +522,49 @@ public class SequelDatabase implements DataSource, Closeable {
 		this.adapters.put(managedEntityType, adapter);
 	}
 	
+	/**
+	 * Returns the connection leased by the current thread to the pool. Work that has not been committed is rolled back.
+	 * Does nothing if the thread does not lease a connection.
+	 */
+	public void release() {
+		final Connection lease = this.leases.get();
+		if (lease == null) {
+			return;
+		}
+		
+		this.leases.remove();
+		synchronized (this.leases) {
+			--this.leased;
+		}
+		try {
+			lease.rollback();
+			lease.close();
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Continues the local id sequences of all registered adapters after the highest persisted ids.
+	 */
+	public void resumeIds() {
+		for (final ISequelAdapter<?> adapter : this.adapters.values()) {
+			adapter.resumeIds();
+		}
+	}
+	
+	/**
+	 * Sets the number of ids reserved from a sequence at once. Larger blocks save round trips to the database, but the
+	 * unused ids of the blocks are lost when the process ends.
+	 *
+	 * @param idBlockSize
+	 *            the new id block size
+	 */
+	public void setIdBlockSize(final int idBlockSize) {
+		Requires.positive(idBlockSize);
+		this.idBlockSize = idBlockSize;
+	}
+	
 	/**
 	 * @param idMode
 	 *            the idMode to set
@@ -270,6 +573,19 @@ public class SequelDatabase implements DataSource, Closeable {
 		this.idMode = idMode;
 	}
 	
+	/**
+	 * Sets the load mode. Has to be set before the save statements are prepared.
+	 *
+	 * @param loadMode
+	 *            the new load mode
+	 */
+	public void setLoadMode(final LoadMode loadMode) {
+		Requires.notNull(loadMode);
+		Contract.requires(loadMode != LoadMode.COPY || this.type == Type.POSTGRES,
+		                  "The load mode %s is not supported by %s.", loadMode, this.type);
+		this.loadMode = loadMode;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 *
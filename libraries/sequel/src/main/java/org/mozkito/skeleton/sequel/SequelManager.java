@@ -35,7 +35,32 @@ import org.mozkito.skeleton.contracts.Requires;
 public class SequelManager {
 	
 	/**
-	 * Execute sql.
+	 * Runs the given script on the given connection and commits it.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param in
+	 *            the in
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private static void executeSQL(final Connection connection,
+	                               final InputStream in) throws SQLException {
+		try {
+			final ScriptRunner runner = new ScriptRunner(connection);
+			runner.setLogWriter(new PrintWriter(Logger.debug));
+			runner.setErrorLogWriter(new PrintWriter(Logger.error));
+			runner.runScript(new InputStreamReader(in));
+			connection.commit();
+		} catch (final SQLException e) {
+			connection.rollback();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Execute sql. Scripts run on the shared connection are serialized; threads that lease a connection of their own
+	 * run their scripts concurrently.
 	 *
 	 * @param database
 	 *            the database
@@ -48,17 +73,11 @@ public class SequelManager {
 	 */
 	public static void executeSQL(final SequelDatabase database,
 	                              final InputStream in) throws SQLException, IOException {
-		synchronized (database) {
-			final Connection connection = database.getConnection();
-			try {
-				final ScriptRunner runner = new ScriptRunner(connection);
-				runner.setLogWriter(new PrintWriter(Logger.debug));
-				runner.setErrorLogWriter(new PrintWriter(Logger.error));
-				runner.runScript(new InputStreamReader(in));
-				connection.commit();
-			} catch (final SQLException e) {
-				connection.rollback();
-				throw e;
+		if (database.isLeased()) {
+			executeSQL(database.getConnection(), in);
+		} else {
+			synchronized (database) {
+				executeSQL(database.getConnection(), in);
 			}
 		}
 	}
@@ -88,6 +107,25 @@ public class SequelManager {
 		executeSQL(database, stream);
 	}
 	
+	/**
+	 * Checks if the SQL resource with the given name exists for the type of the database.
+	 *
+	 * @param database
+	 *            the database
+	 * @param name
+	 *            the name
+	 * @return true, if the resource exists
+	 */
+	public static boolean hasSQL(final SequelDatabase database,
+	                             final String name) {
+		Requires.notNull(database);
+		Requires.notNull(name);
+		
+		Asserts.notNull(database.getType());
+		
+		return ClassLoader.getSystemResource(name + "." + database.getType().name().toLowerCase()) != null;
+	}
+	
 	/**
 	 * Load query.
 	 *
@@ -0,0 +1,304 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * A dumper that persists the entities of a single type through several writers, each with a connection, a save
+ * statement and a queue of its own. Entities are routed to the writers by a key, i.e. all operations on an entity are
+ * executed by the same writer in the order they have been enqueued.
+ *
+ * By default, entities are routed by ranges of {@link #ID_RANGE} consecutive ids, which keeps the entities that are
+ * saved at once together and balances the writers. Alternatively, a key like the depot of the entity can be given.
+ *
+ * @author Sascha Just
+ * @param <T>
+ *            the generic type
+ */
+public class ShardedDatabaseDumper<T extends ISequelEntity> implements IDatabaseDumper<T> {
+	
+	/** The number of consecutive ids routed to the same writer. */
+	public static final int                 ID_RANGE = 1024;
+	
+	/** The adapter. */
+	private final ISequelAdapter<T>         adapter;
+	
+	/** The key the entities are routed by; <code>null</code> to route by id ranges. */
+	private final ToLongFunction<? super T> key;
+	
+	/** The writers. */
+	private final List<DatabaseDumper<T>>   shards   = new ArrayList<>();
+	
+	/** The name. */
+	private final String                    name;
+	
+	/**
+	 * Instantiates a new sharded database dumper that routes the entities by ranges of ids.
+	 *
+	 * @param adapter
+	 *            the adapter
+	 * @param shards
+	 *            the number of writers
+	 */
+	public ShardedDatabaseDumper(final ISequelAdapter<T> adapter, final int shards) {
+		this(adapter, shards, null);
+	}
+	
+	/**
+	 * Instantiates a new sharded database dumper that routes the entities by the given key.
+	 *
+	 * @param adapter
+	 *            the adapter
+	 * @param shards
+	 *            the number of writers
+	 * @param key
+	 *            the key, e.g. the id of the depot of the entity; <code>null</code> to route by ranges of ids
+	 */
+	public ShardedDatabaseDumper(final ISequelAdapter<T> adapter, final int shards,
+	        final ToLongFunction<? super T> key) {
+		Requires.notNull(adapter);
+		Requires.positive(shards);
+		
+		this.adapter = adapter;
+		this.key = key;
+		
+		for (int i = 0; i < shards; ++i) {
+			this.shards.add(new DatabaseDumper<>(adapter));
+		}
+		this.name = this.shards.get(0).getName();
+		for (int i = 0; i < shards; ++i) {
+			this.shards.get(i).setName(this.name + "#" + i);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#deleteLater(org.mozkito.skeleton.sequel.ISequelEntity)
+	 */
+	@Override
+	public void deleteLater(final T entity) {
+		shard(entity).deleteLater(entity);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getName()
+	 */
+	@Override
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getProducerWaitTime()
+	 */
+	@Override
+	public long getProducerWaitTime() {
+		long waitTime = 0;
+		for (final DatabaseDumper<T> shard : this.shards) {
+			waitTime += shard.getProducerWaitTime();
+		}
+		return waitTime;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getQueueDepth()
+	 */
+	@Override
+	public int getQueueDepth() {
+		int depth = 0;
+		for (final DatabaseDumper<T> shard : this.shards) {
+			depth += shard.getQueueDepth();
+		}
+		return depth;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getRows()
+	 */
+	@Override
+	public long getRows() {
+		long rows = 0;
+		for (final DatabaseDumper<T> shard : this.shards) {
+			rows += shard.getRows();
+		}
+		return rows;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getRowsPerSecond()
+	 */
+	@Override
+	public double getRowsPerSecond() {
+		double rowsPerSecond = 0;
+		for (final DatabaseDumper<T> shard : this.shards) {
+			rowsPerSecond += shard.getRowsPerSecond();
+		}
+		return rowsPerSecond;
+	}
+	
+	/**
+	 * Gets the writers.
+	 *
+	 * @return the shards
+	 */
+	public List<DatabaseDumper<T>> getShards() {
+		return new ArrayList<>(this.shards);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#getSpilled()
+	 */
+	@Override
+	public long getSpilled() {
+		long spilled = 0;
+		for (final DatabaseDumper<T> shard : this.shards) {
+			spilled += shard.getSpilled();
+		}
+		return spilled;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#join()
+	 */
+	@Override
+	public void join() throws InterruptedException {
+		for (final DatabaseDumper<T> shard : this.shards) {
+			shard.join();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#saveLater(java.util.Collection)
+	 */
+	@Override
+	public void saveLater(final Collection<? extends T> entities) {
+		for (final T entity : entities) {
+			saveLater(entity);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#saveLater(org.mozkito.skeleton.sequel.ISequelEntity)
+	 */
+	@Override
+	public void saveLater(final T entity) {
+		// the id is assigned before the entity is routed, since it may be the key
+		entity.id(this.adapter.nextId());
+		shard(entity).insertLater(entity);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#setBatchSize(int)
+	 */
+	@Override
+	public void setBatchSize(final int batchSize) {
+		for (final DatabaseDumper<T> shard : this.shards) {
+			shard.setBatchSize(batchSize);
+		}
+	}
+	
+	/**
+	 * Lets the producers spill operations to disk instead of blocking while the queue of a writer is full. Every writer
+	 * spills to segment files of its own; the operations a failed writer has left behind are replayed by the writer
+	 * with the same index, i.e. given the same number of writers.
+	 *
+	 * @param codec
+	 *            the codec of the entities
+	 * @param directory
+	 *            the directory of the segment files
+	 * @see DatabaseDumper#setSpill(IEntityCodec, File)
+	 */
+	public void setSpill(final IEntityCodec<T> codec,
+	                     final File directory) {
+		for (int i = 0; i < this.shards.size(); ++i) {
+			this.shards.get(i).setSpill(codec, directory, this.adapter.getTableName() + "-" + i + "-");
+		}
+	}
+	
+	/**
+	 * Gets the writer of the given entity.
+	 *
+	 * @param entity
+	 *            the entity
+	 * @return the writer
+	 */
+	private DatabaseDumper<T> shard(final T entity) {
+		final long value = this.key != null
+		                                   ? this.key.applyAsLong(entity)
+		                                   : entity.id() / ID_RANGE;
+		return this.shards.get((int) Math.floorMod(value, (long) this.shards.size()));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#start()
+	 */
+	@Override
+	public void start() {
+		for (final DatabaseDumper<T> shard : this.shards) {
+			shard.start();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#terminate()
+	 */
+	@Override
+	public void terminate() {
+		for (final DatabaseDumper<T> shard : this.shards) {
+			shard.terminate();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IDatabaseDumper#updateLater(org.mozkito.skeleton.sequel.ISequelEntity)
+	 */
+	@Override
+	public void updateLater(final T entity) {
+		shard(entity).updateLater(entity);
+	}
+}
@@ -0,0 +1,376 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.mozkito.skeleton.contracts.Requires;
+import org.mozkito.skeleton.sequel.DatabaseDumper.Kind;
+import org.mozkito.skeleton.sequel.DatabaseDumper.Operation;
+
+/**
+ * A queue of dumper operations that is kept on disk instead of the heap. The operations are appended to memory-mapped
+ * segment files of a fixed size and read back in the order they have been appended. The segment files outlive the
+ * process: a segment file is deleted once the operations read from it have been committed, and the header of the first
+ * segment file tracks the committed operations. The segment files a previous queue with the same prefix has left
+ * behind, e.g. because its writer has failed, are recovered, i.e. their uncommitted operations are read first.
+ *
+ * The queue is not thread-safe, the dumper guards it.
+ *
+ * @author Sascha Just
+ * @param <T>
+ *            the generic type
+ */
+final class SpillQueue<T extends ISequelEntity> implements Closeable {
+	
+	/**
+	 * A segment file and the views used to append to and to read from it.
+	 */
+	private static final class Segment {
+		
+		/** The file. */
+		private final File       file;
+		
+		/** The view operations are appended to. */
+		private final ByteBuffer writer;
+		
+		/** The view operations are read from. */
+		private final ByteBuffer reader;
+		
+		/** The end of the operations a previous queue has left behind; 0 if there are none. */
+		private int              recovered;
+		
+		/**
+		 * Instantiates a new segment.
+		 *
+		 * @param file
+		 *            the file
+		 * @param buffer
+		 *            the mapped buffer
+		 */
+		private Segment(final File file, final MappedByteBuffer buffer) {
+			this.file = file;
+			this.writer = buffer;
+			this.reader = buffer.duplicate();
+		}
+	}
+	
+	/** The default size of a segment file in bytes. */
+	static final int              DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	/** The size of the header of a segment file, which holds the offset of the first uncommitted operation. */
+	private static final int      HEADER               = 4;
+	
+	/** The marker of the end of the operations of a segment; the kinds are stored incremented by one. */
+	private static final byte     END                  = 0;
+	
+	/** The directory of the segment files. */
+	private final File            directory;
+	
+	/** The prefix of the names of the segment files. */
+	private final String          prefix;
+	
+	/** The codec. */
+	private final IEntityCodec<T> codec;
+	
+	/** The size of a segment file in bytes. */
+	private final int             segmentSize;
+	
+	/** The segments; operations are appended to the last one. */
+	private final List<Segment>   segments             = new ArrayList<>();
+	
+	/** The index of the segment operations are read from; the preceding segments have been read completely. */
+	private int                   reading;
+	
+	/** The number of the next segment file. */
+	private long                  next;
+	
+	/** The number of queued operations. */
+	private int                   size;
+	
+	/**
+	 * Instantiates a new spill queue and recovers the segment files with the given prefix in the given directory.
+	 *
+	 * @param directory
+	 *            the directory of the segment files
+	 * @param prefix
+	 *            the prefix of the names of the segment files
+	 * @param codec
+	 *            the codec
+	 * @param segmentSize
+	 *            the size of a segment file in bytes
+	 */
+	SpillQueue(final File directory, final String prefix, final IEntityCodec<T> codec, final int segmentSize) {
+		Requires.notNull(directory);
+		Requires.notNull(prefix);
+		Requires.notNull(codec);
+		Requires.positive(segmentSize);
+		
+		this.directory = directory;
+		this.prefix = prefix;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+		
+		recover();
+	}
+	
+	/**
+	 * Appends a new segment file.
+	 *
+	 * @return the segment
+	 */
+	private Segment append() {
+		final File file = new File(this.directory, String.format("%s%010d.spill", this.prefix, this.next++));
+		try {
+			if (!file.createNewFile()) {
+				throw new IOException("The segment file " + file + " exists already.");
+			}
+			final Segment segment = new Segment(file, map(file, this.segmentSize));
+			segment.writer.putInt(0, HEADER);
+			segment.writer.position(HEADER);
+			segment.reader.position(HEADER);
+			this.segments.add(segment);
+			return segment;
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Deletes the segment files, i.e. the operations that have not been read are lost. Has to be called once all
+	 * operations have been executed and committed; the queue is empty afterwards.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		for (final Segment segment : this.segments) {
+			segment.file.delete();
+		}
+		this.segments.clear();
+		this.reading = 0;
+		this.size = 0;
+	}
+	
+	/**
+	 * Marks the operations that have been read as committed: deletes the segment files that have been read completely
+	 * and stores the offset of the first unread operation in the header of the first remaining segment file. Once the
+	 * queue has been drained, the last segment is rewound and reused.
+	 */
+	void commit() {
+		for (; this.reading > 0; --this.reading) {
+			this.segments.remove(0).file.delete();
+		}
+		if (this.segments.isEmpty()) {
+			return;
+		}
+		
+		final Segment segment = this.segments.get(0);
+		if (this.segments.size() == 1 && segment.reader.position() == segment.writer.position()) {
+			segment.reader.position(HEADER);
+			segment.writer.position(HEADER);
+			segment.writer.put(HEADER, END);
+			segment.recovered = 0;
+		}
+		segment.writer.putInt(0, segment.reader.position());
+	}
+	
+	/**
+	 * Checks if the queue is empty.
+	 *
+	 * @return true, if empty
+	 */
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	/**
+	 * Maps the given file.
+	 *
+	 * @param file
+	 *            the file
+	 * @param size
+	 *            the size of the mapping
+	 * @return the mapped buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private MappedByteBuffer map(final File file,
+	                             final long size) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			// the mapping stays valid after the channel has been closed
+			return raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+		}
+	}
+	
+	/**
+	 * Appends the given operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 */
+	void offer(final Operation<T> operation) {
+		Segment segment = this.segments.isEmpty()
+		                                         ? null
+		                                         : this.segments.get(this.segments.size() - 1);
+		if (segment == null || !write(segment.writer, operation)) {
+			segment = append();
+			if (!write(segment.writer, operation)) {
+				throw new RuntimeException(String.format("'%s' exceeds the segment size of %s bytes.",
+				                                         operation.entity, this.segmentSize));
+			}
+		}
+		++this.size;
+	}
+	
+	/**
+	 * Removes the oldest operation. The terminations of previous queues are skipped.
+	 *
+	 * @return the operation, or <code>null</code> if the queue is empty
+	 */
+	Operation<T> poll() {
+		while (this.reading < this.segments.size()) {
+			final Segment segment = this.segments.get(this.reading);
+			if (segment.reader.position() < segment.writer.position()) {
+				final int start = segment.reader.position();
+				final Operation<T> operation = read(segment.reader);
+				--this.size;
+				if (operation.kind != Kind.TERMINATE || start >= segment.recovered) {
+					return operation;
+				}
+				continue;
+			}
+			
+			if (this.reading == this.segments.size() - 1) {
+				return null;
+			}
+			++this.reading;
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads an operation.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the operation
+	 */
+	private Operation<T> read(final ByteBuffer buffer) {
+		final Kind kind = Kind.values()[buffer.get() - 1];
+		if (kind == Kind.TERMINATE) {
+			return new Operation<>(kind, null);
+		}
+		return new Operation<>(kind, this.codec.decode(buffer));
+	}
+	
+	/**
+	 * Recovers the segment files with the prefix of this queue, in the order they have been appended. The operations
+	 * before the offset in the header of a file have been committed already.
+	 */
+	private void recover() {
+		final Pattern pattern = Pattern.compile(Pattern.quote(this.prefix) + "(\\d+)\\.spill");
+		final SortedMap<Long, File> files = new TreeMap<>();
+		final File[] children = this.directory.listFiles();
+		if (children != null) {
+			for (final File file : children) {
+				final Matcher matcher = pattern.matcher(file.getName());
+				if (matcher.matches()) {
+					files.put(Long.parseLong(matcher.group(1)), file);
+				}
+			}
+		}
+		
+		try {
+			for (final File file : files.values()) {
+				final Segment segment = new Segment(file, map(file, file.length()));
+				final int committed = segment.writer.getInt(0);
+				if (committed < HEADER || committed > segment.writer.limit()) {
+					throw new IOException("The segment file " + file + " is corrupt.");
+				}
+				segment.reader.position(committed);
+				
+				// the operations end with the first end marker or with the file
+				final ByteBuffer scanner = segment.reader.duplicate();
+				while (scanner.hasRemaining() && scanner.get(scanner.position()) != END) {
+					read(scanner);
+					++this.size;
+				}
+				segment.writer.position(scanner.position());
+				segment.recovered = scanner.position();
+				this.segments.add(segment);
+			}
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		this.next = files.isEmpty()
+		                           ? 0
+		                           : files.lastKey() + 1;
+	}
+	
+	/**
+	 * Gets the number of queued operations.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Writes the given operation if it fits into the remaining buffer, followed by an end marker if there is room left.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param operation
+	 *            the operation
+	 * @return true, if the operation has been written
+	 */
+	private boolean write(final ByteBuffer buffer,
+	                      final Operation<T> operation) {
+		final int start = buffer.position();
+		try {
+			buffer.put((byte) (operation.kind.ordinal() + 1));
+			if (operation.entity != null) {
+				this.codec.encode(operation.entity, buffer);
+			}
+		} catch (final BufferOverflowException e) {
+			// the partial operation must not be mistaken for one
+			buffer.position(start);
+			if (start < buffer.limit()) {
+				buffer.put(start, END);
+			}
+			return false;
+		}
+		if (buffer.hasRemaining()) {
+			// a rewound segment still holds the operations that have been read before
+			buffer.put(buffer.position(), END);
+		}
+		return true;
+	}
+}
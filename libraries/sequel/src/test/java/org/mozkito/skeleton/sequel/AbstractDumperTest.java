@@ -0,0 +1,93 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import org.mozkito.skeleton.sequel.SequelDatabase.Type;
+
+/**
+ * The base of the dumper tests. Every test runs against an in-memory Derby database of its own, which contains the
+ * scheme of the {@link Entity}.
+ *
+ * @author Sascha Just
+ */
+public abstract class AbstractDumperTest {
+	
+	/** The number of databases created so far. */
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+	
+	/**
+	 * Keeps the log of Derby out of the working directory.
+	 */
+	@BeforeClass
+	public static void setUpClass() {
+		System.setProperty("derby.stream.error.file", new File("target", "derby.log").getPath());
+	}
+	
+	/** The database. */
+	protected SequelDatabase database;
+	
+	/** The adapter. */
+	protected EntityAdapter  adapter;
+	
+	/**
+	 * Loads all persisted entities, ordered by their ids.
+	 *
+	 * @return the entities
+	 */
+	protected List<Entity> load() {
+		final List<Entity> entities = new ArrayList<>();
+		for (final Iterator<Entity> iterator = this.adapter.load(); iterator.hasNext();) {
+			entities.add(iterator.next());
+		}
+		return entities;
+	}
+	
+	/**
+	 * Creates an in-memory database with the scheme of the entities.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		this.database = new SequelDatabase(Type.DERBY, "memory:dumper" + DATABASES.incrementAndGet() + ";create=true",
+		                                   null, null, null, null);
+		this.adapter = new EntityAdapter(this.database);
+		this.database.register(Entity.class, this.adapter);
+		this.database.createScheme();
+	}
+	
+	/**
+	 * Closes the database, if it has been created.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (this.database != null) {
+			this.database.close();
+		}
+	}
+}
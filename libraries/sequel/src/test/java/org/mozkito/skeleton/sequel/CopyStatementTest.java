@@ -0,0 +1,118 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+
+package org.mozkito.skeleton.sequel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import org.mozkito.skeleton.sequel.CopyStatement.Format;
+
+/**
+ * The Class CopyStatementTest.
+ *
+ * @author Sascha Just
+ */
+public class CopyStatementTest {
+	
+	/** The columns. */
+	private static final String[] COLUMNS = { "id", "type", "hash", "time", "body" };
+	
+	/** The types. */
+	private static final String[] TYPES   = { "int8", "int2", "bpchar", "timestamp", "text" };
+	
+	/**
+	 * Test the encoding of rows in the binary format.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testBinary() throws Exception {
+		final CopyStatement copy = new CopyStatement(null, "revisions", COLUMNS, TYPES, Format.BINARY);
+		final PreparedStatement statement = copy.newProxy();
+		
+		for (int i = 1; i <= 2; ++i) {
+			statement.setLong(1, i);
+			statement.setShort(2, (short) 3);
+			statement.setString(3, "a");
+			statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.of(2000, 1, 2, 0, 0, 0, 1000)));
+			statement.setNull(5, Types.VARCHAR);
+			statement.addBatch();
+		}
+		assertThat(copy.getRows(), equalTo(2));
+		
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final DataOutputStream output = new DataOutputStream(expected);
+		output.write("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1));
+		output.writeInt(0);
+		output.writeInt(0);
+		for (int i = 1; i <= 2; ++i) {
+			output.writeShort(5);
+			output.writeInt(8);
+			output.writeLong(i);
+			output.writeInt(2);
+			output.writeShort(3);
+			output.writeInt(1);
+			output.writeByte('a');
+			output.writeInt(8);
+			output.writeLong(86400000001l);
+			output.writeInt(-1);
+		}
+		output.writeShort(-1);
+		
+		assertThat(copy.toByteArray(), equalTo(expected.toByteArray()));
+		assertThat(copy.getCommand(), equalTo("COPY revisions (id, type, hash, time, body) FROM STDIN (FORMAT binary)"));
+	}
+	
+	/**
+	 * Test the encoding and the escaping of rows in the text format.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testText() throws Exception {
+		final CopyStatement copy = new CopyStatement(null, "revisions", COLUMNS, TYPES, Format.TEXT);
+		final PreparedStatement statement = copy.newProxy();
+		
+		statement.setLong(1, 1);
+		statement.setShort(2, (short) 3);
+		statement.setString(3, "a");
+		statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.of(2000, 1, 2, 0, 0, 0, 1000)));
+		statement.setString(5, "tab\tnewline\nbackslash\\ü");
+		statement.addBatch();
+		
+		statement.setNull(5, Types.VARCHAR);
+		statement.addBatch();
+		
+		assertThat(new String(copy.toByteArray(), StandardCharsets.UTF_8),
+		           equalTo("1\t3\ta\t2000-01-02 00:00:00.000001\ttab\\tnewline\\nbackslash\\\\ü\n"
+		                   + "1\t3\ta\t2000-01-02 00:00:00.000001\t\\N\n"));
+		
+		statement.clearBatch();
+		assertThat(copy.getRows(), equalTo(0));
+		assertThat(statement.executeBatch().length, equalTo(0));
+	}
+}
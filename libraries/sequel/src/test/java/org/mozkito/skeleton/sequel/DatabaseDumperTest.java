@@ -0,0 +1,261 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mozkito.skeleton.sequel.SequelDatabase.IdMode;
+
+/**
+ * The Class DatabaseDumperTest.
+ *
+ * @author Sascha Just
+ */
+public class DatabaseDumperTest extends AbstractDumperTest {
+	
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Test that saves, updates and deletes are executed in the order they have been enqueued.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testOrder() throws Exception {
+		final DatabaseDumper<Entity> dumper = new DatabaseDumper<>(this.adapter, 2);
+		dumper.start();
+		
+		final List<Entity> entities = new ArrayList<>();
+		for (int i = 0; i < 10; ++i) {
+			entities.add(new Entity("e" + i));
+		}
+		dumper.saveLater(entities);
+		dumper.updateLater(new Entity(entities.get(3).id(), "updated"));
+		dumper.deleteLater(entities.get(5));
+		dumper.terminate();
+		dumper.join();
+		
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(9));
+		assertThat(persisted.get(3).name, equalTo("updated"));
+		assertThat(persisted.get(5).name, equalTo("e6"));
+		assertThat(dumper.getRows(), equalTo(12L));
+	}
+	
+	/**
+	 * Test that the spilled operations of a writer that has failed are kept, and that they are replayed by the next
+	 * dumper that spills to the same directory.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testReplay() throws Exception {
+		final File directory = this.folder.newFolder();
+		final DatabaseDumper<Entity> failed = new DatabaseDumper<>(this.adapter, 1);
+		failed.setSpill(new EntityCodec(), directory);
+		
+		// the queue holds the entity the writer fails with, the others are spilled
+		failed.saveLater(new Entity("a name that does not fit"));
+		for (int i = 1; i <= 10; ++i) {
+			failed.saveLater(new Entity("e" + i));
+		}
+		failed.terminate();
+		failed.start();
+		failed.join();
+		
+		try {
+			failed.saveLater(new Entity("e11"));
+			fail("The producers have to fail once the writer has died.");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		assertThat(load().size(), equalTo(0));
+		assertThat(directory.list().length, equalTo(1));
+		
+		final DatabaseDumper<Entity> replay = new DatabaseDumper<>(this.adapter, 1);
+		replay.setSpill(new EntityCodec(), directory);
+		assertThat(replay.getQueueDepth(), equalTo(11));
+		replay.start();
+		replay.saveLater(new Entity("e11"));
+		replay.terminate();
+		replay.join();
+		
+		// the termination of the failed dumper has been skipped
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(11));
+		for (int i = 1; i <= 11; ++i) {
+			assertThat(persisted.get(i - 1).name, equalTo("e" + i));
+		}
+		assertThat(persisted.get(9).id(), equalTo(persisted.get(0).id() + 9));
+		assertThat(persisted.get(10).id() > persisted.get(9).id(), equalTo(true));
+		assertThat(directory.list().length, equalTo(0));
+	}
+	
+	/**
+	 * Test that the ids reserved from the sequence in blocks are unique and that the connections they have been
+	 * reserved on are returned to the pool without auto-commit.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testSequence() throws Exception {
+		this.database.setIdMode(IdMode.SEQUENCE);
+		this.database.setIdBlockSize(13);
+		
+		final DatabaseDumper<Entity> dumper = new DatabaseDumper<>(this.adapter);
+		dumper.start();
+		for (int i = 0; i < 20; ++i) {
+			dumper.saveLater(new Entity("e" + i));
+		}
+		dumper.terminate();
+		dumper.join();
+		
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(20));
+		for (int i = 0; i < 20; ++i) {
+			assertThat(persisted.get(i).id(), equalTo(i + 1L));
+			assertThat(persisted.get(i).name, equalTo("e" + i));
+		}
+		
+		// the producer has reserved the ids on a connection of the pool, which the lease of the same thread reuses
+		this.database.lease();
+		try {
+			assertThat(this.database.getConnection().getAutoCommit(), equalTo(false));
+		} finally {
+			this.database.release();
+		}
+	}
+	
+	/**
+	 * Test that the operations that do not fit into the queue are spilled and executed in order.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testSpill() throws Exception {
+		final File directory = this.folder.newFolder();
+		final DatabaseDumper<Entity> dumper = new DatabaseDumper<>(this.adapter, 2);
+		dumper.setSpill(new EntityCodec(), directory);
+		
+		// the writer has not been started yet, i.e. all operations beyond the first two are spilled
+		final List<Entity> entities = new ArrayList<>();
+		for (int i = 0; i < 50; ++i) {
+			entities.add(new Entity("e" + i));
+		}
+		dumper.saveLater(entities);
+		for (int i = 0; i < 50; i += 5) {
+			dumper.updateLater(new Entity(entities.get(i).id(), "updated" + i));
+		}
+		dumper.deleteLater(entities.get(1));
+		dumper.terminate();
+		assertThat(dumper.getSpilled(), equalTo(60L));
+		assertThat(dumper.getQueueDepth(), equalTo(62));
+		
+		dumper.start();
+		dumper.join();
+		
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(49));
+		assertThat(persisted.get(0).name, equalTo("updated0"));
+		assertThat(persisted.get(1).name, equalTo("e2"));
+		assertThat(persisted.get(4).name, equalTo("updated5"));
+		assertThat(persisted.get(48).name, equalTo("e49"));
+		assertThat(directory.list().length, equalTo(0));
+	}
+	
+	/**
+	 * Test that the operations enqueued before the termination are executed and that later ones are rejected.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testTerminate() throws Exception {
+		final DatabaseDumper<Entity> dumper = new DatabaseDumper<>(this.adapter, 1000);
+		dumper.setBatchSize(7);
+		for (int i = 0; i < 100; ++i) {
+			dumper.saveLater(new Entity("e" + i));
+		}
+		dumper.terminate();
+		
+		try {
+			dumper.saveLater(new Entity("e100"));
+			fail("Operations must not be enqueued after the termination.");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		try {
+			dumper.terminate();
+			fail("The dumper must not be terminated twice.");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		
+		dumper.start();
+		dumper.join();
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(100));
+		assertThat(persisted.get(99).name, equalTo("e99"));
+		assertThat(dumper.getQueueDepth(), equalTo(0));
+	}
+	
+	/**
+	 * Test that the producers and the termination fail instead of blocking forever once the writer has died.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testWriterFailure() throws Exception {
+		final DatabaseDumper<Entity> dumper = new DatabaseDumper<>(this.adapter, 1);
+		dumper.start();
+		
+		// the name exceeds the column, i.e. the writer dies with the first batch
+		dumper.saveLater(new Entity("a name that does not fit"));
+		try {
+			while (true) {
+				dumper.saveLater(new Entity("e"));
+			}
+		} catch (final IllegalStateException e) {
+			assertThat(e.getCause(), instanceOf(RuntimeException.class));
+		}
+		
+		try {
+			dumper.terminate();
+			fail("The termination has to fail once the writer has died.");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		
+		dumper.join();
+		assertThat(load().size(), equalTo(0));
+	}
+}
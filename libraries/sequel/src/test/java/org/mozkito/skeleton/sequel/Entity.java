@@ -0,0 +1,84 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+/**
+ * A named entity, persisted by the {@link EntityAdapter}.
+ *
+ * @author Sascha Just
+ */
+final class Entity implements ISequelEntity {
+	
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+	
+	/** The id. */
+	private long              id;
+	
+	/** The name. */
+	final String              name;
+	
+	/**
+	 * Instantiates a new entity that has not been persisted yet.
+	 *
+	 * @param name
+	 *            the name
+	 */
+	Entity(final String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Instantiates a new entity.
+	 *
+	 * @param id
+	 *            the id
+	 * @param name
+	 *            the name
+	 */
+	Entity(final long id, final String name) {
+		this.id = id;
+		this.name = name;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelEntity#id()
+	 */
+	@Override
+	public long id() {
+		return this.id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelEntity#id(long)
+	 */
+	@Override
+	public void id(final long id) {
+		this.id = id;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Entity [id=" + this.id + ", name=" + this.name + "]";
+	}
+}
@@ -0,0 +1,172 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mozkito.skeleton.contracts.Requires;
+
+/**
+ * The adapter of the {@link Entity entities}. Updates and deletes are executed on the connection of the calling
+ * thread, i.e. the one of the writer if called by a dumper.
+ *
+ * @author Sascha Just
+ */
+final class EntityAdapter extends AbstractSequelAdapter<Entity> {
+	
+	/**
+	 * Instantiates a new entity adapter.
+	 *
+	 * @param database
+	 *            the database
+	 */
+	EntityAdapter(final SequelDatabase database) {
+		super(database, "entity");
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#create(java.sql.ResultSet)
+	 */
+	@Override
+	public Entity create(final ResultSet result) {
+		try {
+			return new Entity(result.getLong(1), result.getString(2));
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#delete(java.lang.Object)
+	 */
+	@Override
+	public void delete(final Entity entity) {
+		Requires.notNull(entity);
+		
+		final String sql = "DELETE FROM entities WHERE id = ?";
+		try (final PreparedStatement statement = this.database.getConnection().prepareStatement(sql)) {
+			statement.setLong(1, entity.id());
+			statement.executeUpdate();
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#load()
+	 */
+	@Override
+	public Iterator<Entity> load() {
+		try {
+			final String sql = "SELECT id, name FROM entities ORDER BY id";
+			final PreparedStatement statement = this.database.getConnection().prepareStatement(sql);
+			return new ResultIterator<>(this, statement.executeQuery());
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#load(long[])
+	 */
+	@Override
+	public List<Entity> load(final long... ids) {
+		Requires.notNull(ids);
+		
+		final List<Entity> entities = new ArrayList<>(ids.length);
+		for (final long id : ids) {
+			final Entity entity = load(id);
+			if (entity != null) {
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#load(long)
+	 */
+	@Override
+	public Entity load(final long id) {
+		final String sql = "SELECT id, name FROM entities WHERE id = ?";
+		try (final PreparedStatement statement = this.database.getConnection().prepareStatement(sql)) {
+			statement.setLong(1, id);
+			try (final ResultSet result = statement.executeQuery()) {
+				return result.next()
+				                    ? create(result)
+				                    : null;
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#save(java.sql.PreparedStatement, long, java.lang.Object)
+	 */
+	@Override
+	public void save(final PreparedStatement statement,
+	                 final long id,
+	                 final Entity entity) {
+		Requires.notNull(statement);
+		Requires.notNull(entity);
+		
+		try {
+			statement.setLong(1, id);
+			statement.setString(2, entity.name);
+			statement.addBatch();
+			entity.id(id);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.ISequelAdapter#update(java.lang.Object[])
+	 */
+	@Override
+	public void update(final Entity... entities) {
+		Requires.notNull(entities);
+		
+		final String sql = "UPDATE entities SET name = ? WHERE id = ?";
+		try (final PreparedStatement statement = this.database.getConnection().prepareStatement(sql)) {
+			for (final Entity entity : entities) {
+				statement.setString(1, entity.name);
+				statement.setLong(2, entity.id());
+				statement.executeUpdate();
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
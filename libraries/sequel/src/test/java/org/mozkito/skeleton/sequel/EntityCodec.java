@@ -0,0 +1,48 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The codec of the {@link Entity entities}.
+ *
+ * @author Sascha Just
+ */
+final class EntityCodec extends AbstractEntityCodec<Entity> {
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#decode(java.nio.ByteBuffer)
+	 */
+	@Override
+	public Entity decode(final ByteBuffer buffer) {
+		final long id = buffer.getLong();
+		return new Entity(id, getString(buffer));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.mozkito.skeleton.sequel.IEntityCodec#encode(org.mozkito.skeleton.sequel.ISequelEntity,
+	 *      java.nio.ByteBuffer)
+	 */
+	@Override
+	public void encode(final Entity entity,
+	                   final ByteBuffer buffer) {
+		buffer.putLong(entity.id());
+		putString(buffer, entity.name);
+	}
+}
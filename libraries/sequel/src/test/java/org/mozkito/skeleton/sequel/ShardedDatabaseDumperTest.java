@@ -0,0 +1,108 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+
+package org.mozkito.skeleton.sequel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The Class ShardedDatabaseDumperTest.
+ *
+ * @author Sascha Just
+ */
+public class ShardedDatabaseDumperTest extends AbstractDumperTest {
+	
+	/**
+	 * Test that the entities are routed by their keys and that the operations on an entity are executed in the order
+	 * they have been enqueued, even though they are interleaved with the ones of the other writers.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testKey() throws Exception {
+		// the key is the number in the name, i.e. the ids of the entities of a writer are not consecutive
+		final ShardedDatabaseDumper<Entity> dumper = new ShardedDatabaseDumper<>(this.adapter, 3,
+		                                                                       e -> e.name.charAt(1) - '0');
+		dumper.start();
+		
+		final List<Entity> entities = new ArrayList<>();
+		for (int i = 0; i < 30; ++i) {
+			entities.add(new Entity("k" + (i % 5)));
+		}
+		dumper.saveLater(entities);
+		for (final Entity entity : entities) {
+			// keeps the key, i.e. the writer
+			dumper.updateLater(new Entity(entity.id(), entity.name + "-updated"));
+		}
+		for (int i = 0; i < entities.size(); i += 2) {
+			dumper.deleteLater(entities.get(i));
+		}
+		dumper.terminate();
+		dumper.join();
+		
+		final List<DatabaseDumper<Entity>> shards = dumper.getShards();
+		// the writers get the keys 0 and 3, 1 and 4, and 2; six entities per key, which are saved and updated, and half
+		// of which are deleted
+		assertThat(shards.get(0).getRows(), equalTo(30L));
+		assertThat(shards.get(1).getRows(), equalTo(30L));
+		assertThat(shards.get(2).getRows(), equalTo(15L));
+		
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(15));
+		for (int i = 0; i < persisted.size(); ++i) {
+			assertThat(persisted.get(i).id(), equalTo(entities.get(2 * i + 1).id()));
+			assertThat(persisted.get(i).name, equalTo("k" + ((2 * i + 1) % 5) + "-updated"));
+		}
+	}
+	
+	/**
+	 * Test that the entities are routed by ranges of ids, across all writers.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test (timeout = 60000)
+	public void testRanges() throws Exception {
+		final ShardedDatabaseDumper<Entity> dumper = new ShardedDatabaseDumper<>(this.adapter, 3);
+		dumper.start();
+		
+		// the local ids start at 1, i.e. the first range is one id short; the fourth range wraps around to the first
+		// writer
+		final int count = 4 * ShardedDatabaseDumper.ID_RANGE - 1;
+		for (int i = 0; i < count; ++i) {
+			dumper.saveLater(new Entity("e" + i));
+		}
+		dumper.terminate();
+		dumper.join();
+		
+		final List<DatabaseDumper<Entity>> shards = dumper.getShards();
+		assertThat(shards.get(0).getRows(), equalTo(2L * ShardedDatabaseDumper.ID_RANGE - 1));
+		assertThat(shards.get(1).getRows(), equalTo((long) ShardedDatabaseDumper.ID_RANGE));
+		assertThat(shards.get(2).getRows(), equalTo((long) ShardedDatabaseDumper.ID_RANGE));
+		assertThat(dumper.getRows(), equalTo((long) count));
+		
+		final List<Entity> persisted = load();
+		assertThat(persisted.size(), equalTo(count));
+		for (int i = 0; i < count; ++i) {
+			assertThat(persisted.get(i).id(), equalTo(i + 1L));
+			assertThat(persisted.get(i).name, equalTo("e" + i));
+		}
+	}
+}
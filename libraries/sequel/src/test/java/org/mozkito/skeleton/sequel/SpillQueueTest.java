@@ -0,0 +1,129 @@
+/***********************************************************************************************************************
+ * Copyright 2015 mozkito.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+package org.mozkito.skeleton.sequel;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mozkito.skeleton.sequel.DatabaseDumper.Kind;
+import org.mozkito.skeleton.sequel.DatabaseDumper.Operation;
+
+/**
+ * The Class SpillQueueTest.
+ *
+ * @author Sascha Just
+ */
+public class SpillQueueTest {
+	
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Test that the operations are read in order across several segments and that drained segments are deleted once committed.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testOrder() throws Exception {
+		final File directory = this.folder.newFolder();
+		// every segment holds the header and three operations
+		final SpillQueue<Entity> queue = new SpillQueue<>(directory, "entities-", new EntityCodec(), 52);
+		
+		for (int round = 0; round < 2; ++round) {
+			for (int i = 1; i <= 10; ++i) {
+				queue.offer(new Operation<>(i % 4 == 0
+				                                      ? Kind.UPDATE
+				                                      : Kind.SAVE, new Entity(i, "e" + i)));
+			}
+			queue.offer(new Operation<Entity>(Kind.TERMINATE, null));
+			assertThat(queue.size(), equalTo(11));
+			assertThat(directory.list().length, equalTo(4));
+			
+			for (int i = 1; i <= 10; ++i) {
+				final Operation<Entity> operation = queue.poll();
+				assertThat(operation.kind, equalTo(i % 4 == 0
+				                                             ? Kind.UPDATE
+				                                             : Kind.SAVE));
+				assertThat(operation.entity.id(), equalTo((long) i));
+				assertThat(operation.entity.name, equalTo("e" + i));
+			}
+			assertThat(queue.poll().kind, equalTo(Kind.TERMINATE));
+			assertThat(queue.poll() == null, equalTo(true));
+			assertThat(queue.isEmpty(), equalTo(true));
+			assertThat(directory.list().length, equalTo(4));
+			
+			// the last segment is kept for the next round
+			queue.commit();
+			assertThat(directory.list().length, equalTo(1));
+		}
+		
+		queue.close();
+		assertThat(directory.list().length, equalTo(0));
+	}
+	
+	/**
+	 * Test that a new queue reads the uncommitted operations a previous queue with the same prefix has left behind and
+	 * skips its termination.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRecover() throws Exception {
+		final File directory = this.folder.newFolder();
+		final SpillQueue<Entity> previous = new SpillQueue<>(directory, "entities-", new EntityCodec(), 52);
+		for (int i = 1; i <= 10; ++i) {
+			previous.offer(new Operation<>(Kind.SAVE, new Entity(i, "e" + i)));
+		}
+		previous.offer(new Operation<Entity>(Kind.TERMINATE, null));
+		
+		for (int i = 1; i <= 5; ++i) {
+			previous.poll();
+		}
+		previous.commit();
+		// read, but not committed
+		previous.poll();
+		previous.poll();
+		assertThat(directory.list().length, equalTo(3));
+		
+		assertThat(new SpillQueue<>(directory, "others-", new EntityCodec(), 52).isEmpty(), equalTo(true));
+		
+		final SpillQueue<Entity> queue = new SpillQueue<>(directory, "entities-", new EntityCodec(), 52);
+		assertThat(queue.size(), equalTo(6));
+		queue.offer(new Operation<>(Kind.SAVE, new Entity(11, "e11")));
+		queue.offer(new Operation<Entity>(Kind.TERMINATE, null));
+		assertThat(queue.size(), equalTo(8));
+		
+		for (int i = 6; i <= 11; ++i) {
+			final Operation<Entity> operation = queue.poll();
+			assertThat(operation.kind, equalTo(Kind.SAVE));
+			assertThat(operation.entity.id(), equalTo((long) i));
+			assertThat(operation.entity.name, equalTo("e" + i));
+		}
+		assertThat(queue.poll().kind, equalTo(Kind.TERMINATE));
+		assertThat(queue.poll() == null, equalTo(true));
+		
+		queue.commit();
+		assertThat(directory.list().length, equalTo(1));
+		queue.close();
+		assertThat(directory.list().length, equalTo(0));
+	}
+}